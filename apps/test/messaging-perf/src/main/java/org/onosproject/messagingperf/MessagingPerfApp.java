@@ -6,18 +6,24 @@ import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.apache.felix.scr.annotations.Activate;
@@ -32,6 +38,7 @@ import org.onlab.util.BoundedThreadPool;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.core.CoreService;
 import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
@@ -42,6 +49,7 @@ import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -49,6 +57,11 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Application for measuring cluster messaging performance.
+ * <p>
+ * Depending on the configured mode, sender threads either keep one
+ * request/reply exchange in flight each, or send one-way messages to peers
+ * in turn, or broadcast them to all peers. Results are kept per peer.
+ * </p>
  */
 @Component(immediate = true, enabled = true)
 @Service(value = MessagingPerfApp.class)
@@ -73,8 +86,25 @@ public class MessagingPerfApp {
     private static final MessageSubject TEST_REQUEST_REPLY_TOPIC =
             new MessageSubject("net-perf-rr-message");
 
+    // Senders are unknown to receivers when payloads are not deserialized.
+    private static final NodeId UNKNOWN_PEER = new NodeId("unknown");
+
+    /**
+     * Traffic patterns the benchmark can generate.
+     */
+    public enum Mode {
+        /** Each sender thread keeps one request/reply exchange in flight. */
+        REQUEST_REPLY,
+        /** Each sender thread sends one-way messages to peers in turn. */
+        UNICAST,
+        /** Each sender thread broadcasts one-way messages to all peers. */
+        BROADCAST
+    }
+
     private static final int DEFAULT_SENDER_THREAD_POOL_SIZE = 2;
     private static final int DEFAULT_RECEIVER_THREAD_POOL_SIZE = 2;
+    private static final String DEFAULT_MODE = "REQUEST_REPLY";
+    private static final int DEFAULT_PAYLOAD_SIZE = 0;
 
     @Property(name = "totalSenderThreads", intValue = DEFAULT_SENDER_THREAD_POOL_SIZE,
             label = "Number of sender threads")
@@ -92,6 +122,14 @@ public class MessagingPerfApp {
             label = "Set this to true to handle message on IO thread")
     private boolean receiveOnIOLoopThread = false;
 
+    @Property(name = "mode", value = DEFAULT_MODE,
+            label = "Traffic pattern: REQUEST_REPLY, UNICAST or BROADCAST")
+    private Mode mode = Mode.valueOf(DEFAULT_MODE);
+
+    @Property(name = "payloadSize", intValue = DEFAULT_PAYLOAD_SIZE,
+            label = "Number of padding bytes added to each message")
+    private int payloadSize = DEFAULT_PAYLOAD_SIZE;
+
     protected int reportIntervalSeconds = 1;
 
     private Executor messageReceivingExecutor;
@@ -104,10 +142,16 @@ public class MessagingPerfApp {
             Executors.newSingleThreadScheduledExecutor(
                     groupedThreads("onos/net-perf-test", "reporter"));
 
-    private AtomicInteger received = new AtomicInteger(0);
-    private AtomicInteger sent = new AtomicInteger(0);
-    private AtomicInteger attempted = new AtomicInteger(0);
-    private AtomicInteger completed = new AtomicInteger(0);
+    // Stop token of the current run; each run's tasks hold on to their own
+    private volatile AtomicBoolean running = new AtomicBoolean(false);
+    private volatile List<NodeId> peers = ImmutableList.of();
+    private final AtomicInteger nextPeer = new AtomicInteger(0);
+
+    private volatile Map<NodeId, PeerStatistics> statistics = new ConcurrentHashMap<>();
+    private volatile long startMillis = System.currentTimeMillis();
+    private long lastReportSent = 0;
+    private long lastReportReplies = 0;
+    private long lastReportReceived = 0;
 
     protected static final KryoSerializer SERIALIZER = new KryoSerializer() {
         @Override
@@ -121,12 +165,8 @@ public class MessagingPerfApp {
         }
     };
 
-    private final Data data = new Data().withStringField("test")
-                                .withListField(Lists.newArrayList("1", "2", "3"))
-                                .withSetField(Sets.newHashSet("1", "2", "3"));
-    private final byte[] dataBytes = SERIALIZER.encode(new Data().withStringField("test")
-            .withListField(Lists.newArrayList("1", "2", "3"))
-            .withSetField(Sets.newHashSet("1", "2", "3")));
+    private Data data;
+    private byte[] dataBytes;
 
     private Function<Data, byte[]> encoder;
     private Function<byte[], Data> decoder;
@@ -165,6 +205,8 @@ public class MessagingPerfApp {
             totalReceiverThreads = DEFAULT_RECEIVER_THREAD_POOL_SIZE;
             serializationOn = true;
             receiveOnIOLoopThread = false;
+            mode = Mode.valueOf(DEFAULT_MODE);
+            payloadSize = DEFAULT_PAYLOAD_SIZE;
             return;
         }
 
@@ -174,6 +216,8 @@ public class MessagingPerfApp {
         int newTotalReceiverThreads = totalReceiverThreads;
         boolean newSerializationOn = serializationOn;
         boolean newReceiveOnIOLoopThread = receiveOnIOLoopThread;
+        Mode newMode = mode;
+        int newPayloadSize = payloadSize;
         try {
             String s = get(properties, "totalSenderThreads");
             newTotalSenderThreads = isNullOrEmpty(s)
@@ -191,14 +235,24 @@ public class MessagingPerfApp {
             newReceiveOnIOLoopThread = isNullOrEmpty(s)
                     ? receiveOnIOLoopThread : Boolean.parseBoolean(s.trim());
 
-        } catch (NumberFormatException | ClassCastException e) {
+            s = get(properties, "mode");
+            newMode = isNullOrEmpty(s)
+                    ? mode : Mode.valueOf(s.trim().toUpperCase());
+
+            s = get(properties, "payloadSize");
+            newPayloadSize = isNullOrEmpty(s)
+                    ? payloadSize : Math.max(0, Integer.parseInt(s.trim()));
+
+        } catch (IllegalArgumentException | ClassCastException e) {
             return;
         }
 
         boolean modified = newTotalSenderThreads != totalSenderThreads ||
                 newTotalReceiverThreads != totalReceiverThreads ||
                 newSerializationOn != serializationOn ||
-                newReceiveOnIOLoopThread != receiveOnIOLoopThread;
+                newReceiveOnIOLoopThread != receiveOnIOLoopThread ||
+                newMode != mode ||
+                newPayloadSize != payloadSize;
 
         // If nothing has changed, simply return.
         if (!modified) {
@@ -208,6 +262,8 @@ public class MessagingPerfApp {
         totalSenderThreads = newTotalSenderThreads;
         totalReceiverThreads = newTotalReceiverThreads;
         serializationOn = newSerializationOn;
+        mode = newMode;
+        payloadSize = newPayloadSize;
         if (!receiveOnIOLoopThread && newReceiveOnIOLoopThread != receiveOnIOLoopThread) {
             ((ExecutorService) messageReceivingExecutor).shutdown();
         }
@@ -234,18 +290,81 @@ public class MessagingPerfApp {
         logConfig("Reconfigured");
     }
 
+    /**
+     * Returns the benchmark results gathered since the test was last
+     * (re)started, keyed by peer.
+     *
+     * @return map of peer to results
+     */
+    public Map<NodeId, PeerStatistics> statistics() {
+        return ImmutableMap.copyOf(statistics);
+    }
+
+    /**
+     * Returns the time over which the current results were gathered.
+     *
+     * @return elapsed time in seconds
+     */
+    public double elapsedSeconds() {
+        return (System.currentTimeMillis() - startMillis) / 1000.0;
+    }
+
+    /**
+     * Returns the traffic pattern of the running test.
+     *
+     * @return benchmark mode
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns the number of padding bytes added to each message.
+     *
+     * @return payload size in bytes
+     */
+    public int payloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * Returns the number of sender threads.
+     *
+     * @return sender thread count
+     */
+    public int senderThreads() {
+        return totalSenderThreads;
+    }
+
+    /**
+     * Discards the results gathered so far and restarts the measurement.
+     */
+    public void resetStatistics() {
+        statistics = new ConcurrentHashMap<>();
+        startMillis = System.currentTimeMillis();
+        lastReportSent = 0;
+        lastReportReplies = 0;
+        lastReportReceived = 0;
+    }
 
     private void logConfig(String prefix) {
         log.info("{} with senderThreadPoolSize = {}; receivingThreadPoolSize = {}"
-                + " serializationOn = {}, receiveOnIOLoopThread = {}",
+                + " serializationOn = {}, receiveOnIOLoopThread = {}, mode = {}, payloadSize = {}",
                  prefix,
                  totalSenderThreads,
                  totalReceiverThreads,
                  serializationOn,
-                 receiveOnIOLoopThread);
+                 receiveOnIOLoopThread,
+                 mode,
+                 payloadSize);
     }
 
     private void setupCodecs() {
+        data = new Data().withStringField(clusterService.getLocalNode().id().toString())
+                .withListField(Lists.newArrayList("1", "2", "3"))
+                .withSetField(Sets.newHashSet("1", "2", "3"))
+                .withPadding(new byte[payloadSize]);
+        dataBytes = SERIALIZER.encode(data);
         encoder = serializationOn ? SERIALIZER::encode : d -> dataBytes;
         decoder = serializationOn ? SERIALIZER::decode : b -> data;
     }
@@ -254,13 +373,16 @@ public class MessagingPerfApp {
         communicationService.<Data>addSubscriber(
                 TEST_UNICAST_MESSAGE_TOPIC,
                 decoder,
-                d -> { received.incrementAndGet(); },
+                this::received,
                 messageReceivingExecutor);
 
         communicationService.<Data, Data>addSubscriber(
                 TEST_REQUEST_REPLY_TOPIC,
                 decoder,
-                Function.identity(),
+                d -> {
+                    received(d);
+                    return d;
+                },
                 encoder,
                 messageReceivingExecutor);
     }
@@ -271,78 +393,147 @@ public class MessagingPerfApp {
     }
 
     private void startTest() {
-        IntStream.range(0, totalSenderThreads).forEach(i -> requestReply());
+        ControllerNode localNode = clusterService.getLocalNode();
+        peers = clusterService.getNodes()
+                    .stream()
+                    .filter(node -> !localNode.equals(node))
+                    .map(ControllerNode::id)
+                    .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+        resetStatistics();
+        if (peers.isEmpty()) {
+            log.warn("No peers to exchange messages with");
+            return;
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = messageSendingExecutor;
+        this.running = running;
+        switch (mode) {
+        case UNICAST:
+            IntStream.range(0, totalSenderThreads).forEach(i -> submit(executor, () -> unicast(running)));
+            break;
+        case BROADCAST:
+            IntStream.range(0, totalSenderThreads).forEach(i -> submit(executor, () -> broadcast(running)));
+            break;
+        case REQUEST_REPLY:
+        default:
+            IntStream.range(0, totalSenderThreads).forEach(i -> requestReply(running, executor));
+            break;
+        }
     }
 
     private void stopTest() {
-        messageSendingExecutor.shutdown();
+        running.set(false);
+        messageSendingExecutor.shutdownNow();
     }
 
-    private void requestReply() {
+    private void submit(ExecutorService executor, Runnable task) {
         try {
-            attempted.incrementAndGet();
+            executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Sender stopped");
+        }
+    }
+
+    private PeerStatistics statisticsFor(NodeId peer) {
+        return statistics.computeIfAbsent(peer, PeerStatistics::new);
+    }
+
+    private void received(Data message) {
+        statisticsFor(serializationOn ? new NodeId(message.stringField) : UNKNOWN_PEER).received();
+    }
+
+    private void requestReply(AtomicBoolean running, ExecutorService executor) {
+        if (!running.get()) {
+            return;
+        }
+        NodeId peer = nextPeer();
+        PeerStatistics peerStatistics = statisticsFor(peer);
+        try {
+            peerStatistics.sent();
+            long start = System.nanoTime();
             CompletableFuture<Data> response =
                     communicationService.<Data, Data>sendAndReceive(
                             data,
                             TEST_REQUEST_REPLY_TOPIC,
                             encoder,
                             decoder,
-                            randomPeer());
+                            peer);
             response.whenComplete((result, error) -> {
-                if (Objects.equals(data, result)) {
-                    completed.incrementAndGet();
+                if (error == null && Objects.equals(data, result)) {
+                    peerStatistics.replied(System.nanoTime() - start);
+                } else {
+                    peerStatistics.failed();
                 }
-                messageSendingExecutor.submit(this::requestReply);
+                submit(executor, () -> requestReply(running, executor));
             });
         } catch (Exception e) {
-            e.printStackTrace();
+            peerStatistics.failed();
+            log.warn("Failed to send request to {}", peer, e);
+            submit(executor, () -> requestReply(running, executor));
         }
     }
 
-    private void unicast() {
-        try {
-            sent.incrementAndGet();
-            communicationService.<Data>unicast(
-                    data,
-                    TEST_UNICAST_MESSAGE_TOPIC,
-                    encoder,
-                    randomPeer());
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void unicast(AtomicBoolean running) {
+        while (running.get()) {
+            NodeId peer = nextPeer();
+            PeerStatistics peerStatistics = statisticsFor(peer);
+            peerStatistics.sent();
+            try {
+                if (!communicationService.<Data>unicast(data, TEST_UNICAST_MESSAGE_TOPIC, encoder, peer)) {
+                    peerStatistics.failed();
+                }
+            } catch (Exception e) {
+                peerStatistics.failed();
+            }
         }
-        messageSendingExecutor.submit(this::unicast);
     }
 
-    private void broadcast() {
-        try {
-            sent.incrementAndGet();
-            communicationService.<Data>broadcast(
-                    data,
-                    TEST_UNICAST_MESSAGE_TOPIC,
-                    encoder);
-        } catch (Exception e) {
-            e.printStackTrace();
+    // Encodes each message once like a broadcast does, but sends it to each
+    // peer separately so that failures are counted against the right peer.
+    private void broadcast(AtomicBoolean running) {
+        while (running.get()) {
+            byte[] payload = encoder.apply(data);
+            for (NodeId peer : peers) {
+                PeerStatistics peerStatistics = statisticsFor(peer);
+                peerStatistics.sent();
+                try {
+                    if (!communicationService.<byte[]>unicast(payload, TEST_UNICAST_MESSAGE_TOPIC,
+                                                              Function.identity(), peer)) {
+                        peerStatistics.failed();
+                    }
+                } catch (Exception e) {
+                    peerStatistics.failed();
+                }
+            }
         }
-        messageSendingExecutor.submit(this::broadcast);
     }
 
-    private NodeId randomPeer() {
-        return clusterService.getNodes()
-                    .stream()
-                    .filter(node -> clusterService.getLocalNode().equals(node))
-                    .findAny()
-                    .get()
-                    .id();
+    private NodeId nextPeer() {
+        List<NodeId> candidates = peers;
+        return candidates.get(Math.floorMod(nextPeer.getAndIncrement(), candidates.size()));
     }
 
     private void reportPerformance() {
-        log.info("Attempted: {} Completed: {}", attempted.getAndSet(0), completed.getAndSet(0));
+        long sent = 0;
+        long replies = 0;
+        long receivedCount = 0;
+        for (PeerStatistics peerStatistics : statistics.values()) {
+            sent += peerStatistics.sentCount();
+            replies += peerStatistics.replyCount();
+            receivedCount += peerStatistics.receivedCount();
+        }
+        log.info("Sent: {} Replies: {} Received: {}",
+                 sent - lastReportSent, replies - lastReportReplies, receivedCount - lastReportReceived);
+        lastReportSent = sent;
+        lastReportReplies = replies;
+        lastReportReceived = receivedCount;
     }
 
     private static class Data {
         private String stringField;
         private List<String> listField;
         private Set<String> setField;
+        private byte[] padding;
 
         public Data withStringField(String value) {
             stringField = value;
@@ -359,9 +550,14 @@ public class MessagingPerfApp {
             return this;
         }
 
+        public Data withPadding(byte[] value) {
+            padding = value;
+            return this;
+        }
+
         @Override
         public int hashCode() {
-            return Objects.hash(stringField, listField, setField);
+            return Objects.hash(stringField, listField, setField, Arrays.hashCode(padding));
         }
 
         @Override
@@ -370,7 +566,8 @@ public class MessagingPerfApp {
                 Data that = (Data) other;
                 return Objects.equals(this.stringField, that.stringField) &&
                 Objects.equals(this.listField, that.listField) &&
-                Objects.equals(this.setField, that.setField);
+                Objects.equals(this.setField, that.setField) &&
+                Arrays.equals(this.padding, that.padding);
             }
             return false;
         }
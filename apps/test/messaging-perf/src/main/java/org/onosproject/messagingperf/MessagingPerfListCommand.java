@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.messagingperf;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onosproject.cli.AbstractShellCommand;
+
+import com.codahale.metrics.Snapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+/**
+ * Displays cluster messaging benchmark results per peer.
+ */
+@Command(scope = "onos", name = "messaging-perf",
+        description = "Displays cluster messaging benchmark results per peer")
+public class MessagingPerfListCommand extends AbstractShellCommand {
+
+    private static final String FMT =
+            "peer=%s, sent=%d (%.0f/s), replies=%d (%.0f/s), failures=%d, received=%d (%.0f/s), "
+            + "latency mean=%.0fus p50=%.0fus p99=%.0fus p99.9=%.0fus max=%dus";
+
+    @Option(name = "-r", aliases = "--reset", description = "Reset results after displaying them",
+            required = false, multiValued = false)
+    private boolean reset = false;
+
+    @Override
+    protected void execute() {
+        MessagingPerfApp app = get(MessagingPerfApp.class);
+        double elapsed = app.elapsedSeconds();
+        List<PeerStatistics> results = Lists.newArrayList(app.statistics().values());
+        results.sort(Comparator.comparing(s -> s.peer().toString()));
+
+        if (outputJson()) {
+            print("%s", MessagingPerfResource.json(new ObjectMapper(), app, results, elapsed));
+        } else {
+            print("mode=%s, senderThreads=%d, payloadSize=%d, elapsed=%.1fs",
+                  app.mode(), app.senderThreads(), app.payloadSize(), elapsed);
+            for (PeerStatistics stats : results) {
+                Snapshot latency = stats.latency();
+                print(FMT, stats.peer(),
+                      stats.sentCount(), PeerStatistics.rate(stats.sentCount(), elapsed),
+                      stats.replyCount(), PeerStatistics.rate(stats.replyCount(), elapsed),
+                      stats.failureCount(),
+                      stats.receivedCount(), PeerStatistics.rate(stats.receivedCount(), elapsed),
+                      latency.getMean(), latency.getMedian(), latency.get99thPercentile(),
+                      latency.get999thPercentile(), latency.getMax());
+            }
+        }
+
+        if (reset) {
+            app.resetStatistics();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.messagingperf;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.onlab.rest.BaseResource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+
+/**
+ * REST API for cluster messaging benchmark results.
+ */
+@Path("results")
+public class MessagingPerfResource extends BaseResource {
+
+    /**
+     * Returns the benchmark results per peer.
+     *
+     * @return 200 OK with the results
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response results() {
+        MessagingPerfApp app = get(MessagingPerfApp.class);
+        double elapsed = app.elapsedSeconds();
+        List<PeerStatistics> results = Lists.newArrayList(app.statistics().values());
+        results.sort(Comparator.comparing(s -> s.peer().toString()));
+        return Response.ok(json(new ObjectMapper(), app, results, elapsed).toString()).build();
+    }
+
+    /**
+     * Discards the results gathered so far.
+     *
+     * @return 204 NO CONTENT
+     */
+    @DELETE
+    public Response reset() {
+        get(MessagingPerfApp.class).resetStatistics();
+        return Response.noContent().build();
+    }
+
+    /**
+     * Produces the JSON representation of benchmark results.
+     *
+     * @param mapper object mapper
+     * @param app benchmark application
+     * @param results results per peer
+     * @param elapsed duration of the run in seconds
+     * @return JSON object
+     */
+    static ObjectNode json(ObjectMapper mapper, MessagingPerfApp app,
+                           Collection<PeerStatistics> results, double elapsed) {
+        ArrayNode peers = mapper.createArrayNode();
+        results.forEach(stats -> peers.add(stats.json(mapper, elapsed)));
+        ObjectNode result = mapper.createObjectNode()
+                .put("mode", app.mode().toString())
+                .put("senderThreads", app.senderThreads())
+                .put("payloadSize", app.payloadSize())
+                .put("elapsedSeconds", elapsed);
+        result.set("peers", peers);
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.messagingperf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.onosproject.cluster.NodeId;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Messaging benchmark results for a single peer.
+ */
+public final class PeerStatistics {
+
+    private static final int LATENCY_SAMPLES = 256 * 1024;
+
+    private final NodeId peer;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong replies = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    // Round trip latencies in microseconds, sampled uniformly over the whole run.
+    // The reservoir is large enough to leave a few hundred samples above the
+    // 99.9th percentile; the default of 1028 leaves about one.
+    private final Histogram latency = new Histogram(new UniformReservoir(LATENCY_SAMPLES));
+
+    PeerStatistics(NodeId peer) {
+        this.peer = peer;
+    }
+
+    void sent() {
+        sent.incrementAndGet();
+    }
+
+    void replied(long latencyNanos) {
+        replies.incrementAndGet();
+        latency.update(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+    }
+
+    void received() {
+        received.incrementAndGet();
+    }
+
+    /**
+     * Returns the peer these results are for.
+     *
+     * @return peer node identifier
+     */
+    public NodeId peer() {
+        return peer;
+    }
+
+    /**
+     * Returns the number of messages sent to the peer.
+     *
+     * @return sent message count
+     */
+    public long sentCount() {
+        return sent.get();
+    }
+
+    /**
+     * Returns the number of replies received from the peer.
+     *
+     * @return reply count
+     */
+    public long replyCount() {
+        return replies.get();
+    }
+
+    /**
+     * Returns the number of sends to the peer that failed.
+     *
+     * @return failure count
+     */
+    public long failureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the number of messages received from the peer.
+     *
+     * @return received message count
+     */
+    public long receivedCount() {
+        return received.get();
+    }
+
+    /**
+     * Returns a snapshot of the round trip latencies, in microseconds.
+     *
+     * @return latency snapshot
+     */
+    public Snapshot latency() {
+        return latency.getSnapshot();
+    }
+
+    /**
+     * Produces a JSON representation of these results.
+     *
+     * @param mapper object mapper
+     * @param elapsedSeconds duration of the run used to compute rates
+     * @return JSON object
+     */
+    public ObjectNode json(ObjectMapper mapper, double elapsedSeconds) {
+        Snapshot snapshot = latency();
+        return mapper.createObjectNode()
+                .put("peer", peer.toString())
+                .put("sent", sentCount())
+                .put("sentPerSecond", rate(sentCount(), elapsedSeconds))
+                .put("replies", replyCount())
+                .put("repliesPerSecond", rate(replyCount(), elapsedSeconds))
+                .put("failures", failureCount())
+                .put("received", receivedCount())
+                .put("receivedPerSecond", rate(receivedCount(), elapsedSeconds))
+                .put("latencyMeanUs", snapshot.getMean())
+                .put("latencyP50Us", snapshot.getMedian())
+                .put("latencyP99Us", snapshot.get99thPercentile())
+                .put("latencyP999Us", snapshot.get999thPercentile())
+                .put("latencyMaxUs", snapshot.getMax());
+    }
+
+    /**
+     * Returns the rate of events per second.
+     *
+     * @param count event count
+     * @param elapsedSeconds elapsed time in seconds
+     * @return events per second
+     */
+    static double rate(long count, double elapsedSeconds) {
+        return elapsedSeconds > 0 ? count / elapsedSeconds : 0;
+    }
+}
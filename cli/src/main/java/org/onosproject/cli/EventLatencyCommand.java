@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.cli;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onlab.metrics.MetricsService;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Lists event queue wait, sink and listener processing latencies, slowest
+ * first.
+ */
+@Command(scope = "onos", name = "event-latency",
+         description = "Lists event queue wait, sink and listener processing latencies")
+public class EventLatencyCommand extends AbstractShellCommand {
+
+    // Metrics component under which the event dispatcher publishes its timers
+    private static final String PREFIX = "Events.";
+
+    private static final String FMT =
+            "count=%d, mean=%.3fms, p99=%.3fms, max=%.3fms, %s";
+
+    @Option(name = "-s", aliases = "--slow",
+            description = "Only list entries with max latency above given millis",
+            required = false, multiValued = false)
+    private long slowMs = 0;
+
+    @Override
+    protected void execute() {
+        MetricsService service = get(MetricsService.class);
+        Map<String, Timer> timers =
+                service.getTimers((name, metric) -> name.startsWith(PREFIX));
+
+        List<Map.Entry<String, Timer>> entries = newArrayList(timers.entrySet());
+        entries.removeIf(e -> nanoToMs(e.getValue().getSnapshot().getMax()) < slowMs);
+        entries.sort((a, b) -> Double.compare(b.getValue().getSnapshot().getMean(),
+                                              a.getValue().getSnapshot().getMean()));
+
+        if (outputJson()) {
+            print("%s", json(entries));
+        } else {
+            for (Map.Entry<String, Timer> entry : entries) {
+                Snapshot snapshot = entry.getValue().getSnapshot();
+                print(FMT, entry.getValue().getCount(),
+                      nanoToMs(snapshot.getMean()),
+                      nanoToMs(snapshot.get99thPercentile()),
+                      nanoToMs(snapshot.getMax()),
+                      entry.getKey().substring(PREFIX.length()));
+            }
+        }
+    }
+
+    // Produces JSON structure.
+    private JsonNode json(List<Map.Entry<String, Timer>> entries) {
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode result = mapper.createArrayNode();
+        for (Map.Entry<String, Timer> entry : entries) {
+            Snapshot snapshot = entry.getValue().getSnapshot();
+            result.add(mapper.createObjectNode()
+                               .put("name", entry.getKey().substring(PREFIX.length()))
+                               .put("count", entry.getValue().getCount())
+                               .put("meanMs", nanoToMs(snapshot.getMean()))
+                               .put("p99Ms", nanoToMs(snapshot.get99thPercentile()))
+                               .put("maxMs", nanoToMs(snapshot.getMax())));
+        }
+        return result;
+    }
+
+    private double nanoToMs(double nano) {
+        return nano / 1_000_000D;
+    }
+}
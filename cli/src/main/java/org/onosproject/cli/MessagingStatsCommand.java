@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.cli;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.common.collect.Maps;
+import org.apache.karaf.shell.commands.Command;
+import org.onlab.metrics.MetricsService;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Lists cluster messaging traffic and latencies per message subject, busiest
+ * subject first.
+ */
+@Command(scope = "onos", name = "messaging-stats",
+         description = "Lists cluster messaging traffic and latencies per message subject")
+public class MessagingStatsCommand extends AbstractShellCommand {
+
+    // Metrics component under which cluster messaging publishes its metrics
+    private static final String PREFIX = "ClusterCommunication.";
+
+    private static final String FMT =
+            "sent=%d/%dB, received=%d/%dB, share=%.1f%%, rate=%.0fB/s, "
+            + "rttP99=%.3fms, handlerP99=%.3fms, compression=%.2f, %s";
+
+    @Override
+    protected void execute() {
+        MetricsService service = get(MetricsService.class);
+        MetricFilter filter = (name, metric) -> name.startsWith(PREFIX);
+
+        Map<String, SubjectStats> subjects = Maps.newHashMap();
+        service.getMeters(filter).forEach((name, meter) -> add(subjects, name, meter));
+        service.getTimers(filter).forEach((name, timer) -> add(subjects, name, timer));
+        service.getGauges(filter).forEach((name, gauge) -> add(subjects, name, gauge));
+
+        List<SubjectStats> entries = newArrayList(subjects.values());
+        entries.sort((a, b) -> Long.compare(b.totalBytes(), a.totalBytes()));
+        long total = entries.stream().mapToLong(SubjectStats::totalBytes).sum();
+
+        if (outputJson()) {
+            print("%s", json(entries, total));
+        } else {
+            for (SubjectStats stats : entries) {
+                print(FMT, count(stats.meter("messagesSent")), count(stats.meter("bytesSent")),
+                      count(stats.meter("messagesReceived")), count(stats.meter("bytesReceived")),
+                      share(stats, total), stats.byteRate(),
+                      p99(stats.timer("roundTrip")), p99(stats.timer("handler")),
+                      stats.compressionRatio(), stats.subject);
+            }
+        }
+    }
+
+    private void add(Map<String, SubjectStats> subjects, String name, Metric metric) {
+        String rest = name.substring(PREFIX.length());
+        int split = rest.lastIndexOf('.');
+        if (split > 0) {
+            String subject = rest.substring(0, split);
+            subjects.computeIfAbsent(subject, SubjectStats::new)
+                    .metrics.put(rest.substring(split + 1), metric);
+        }
+    }
+
+    // Produces JSON structure.
+    private JsonNode json(List<SubjectStats> entries, long total) {
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode result = mapper.createArrayNode();
+        for (SubjectStats stats : entries) {
+            result.add(mapper.createObjectNode()
+                               .put("subject", stats.subject)
+                               .put("messagesSent", count(stats.meter("messagesSent")))
+                               .put("bytesSent", count(stats.meter("bytesSent")))
+                               .put("messagesReceived", count(stats.meter("messagesReceived")))
+                               .put("bytesReceived", count(stats.meter("bytesReceived")))
+                               .put("sharePercent", share(stats, total))
+                               .put("bytesPerSecond", stats.byteRate())
+                               .put("roundTripP99Ms", p99(stats.timer("roundTrip")))
+                               .put("handlerP99Ms", p99(stats.timer("handler")))
+                               .put("compressionRatio", stats.compressionRatio()));
+        }
+        return result;
+    }
+
+    private long count(Meter meter) {
+        return meter == null ? 0 : meter.getCount();
+    }
+
+    private double p99(Timer timer) {
+        return timer == null ? 0 : nanoToMs(timer.getSnapshot().get99thPercentile());
+    }
+
+    private double share(SubjectStats stats, long total) {
+        return total == 0 ? 0 : 100.0 * stats.totalBytes() / total;
+    }
+
+    private double nanoToMs(double nano) {
+        return nano / 1_000_000D;
+    }
+
+    // Metrics published for a single message subject.
+    private static final class SubjectStats {
+        private final String subject;
+        private final Map<String, Metric> metrics = Maps.newHashMap();
+
+        private SubjectStats(String subject) {
+            this.subject = subject;
+        }
+
+        private Meter meter(String name) {
+            Metric metric = metrics.get(name);
+            return metric instanceof Meter ? (Meter) metric : null;
+        }
+
+        private Timer timer(String name) {
+            Metric metric = metrics.get(name);
+            return metric instanceof Timer ? (Timer) metric : null;
+        }
+
+        private long totalBytes() {
+            Meter sent = meter("bytesSent");
+            Meter received = meter("bytesReceived");
+            return (sent == null ? 0 : sent.getCount()) + (received == null ? 0 : received.getCount());
+        }
+
+        private double byteRate() {
+            Meter sent = meter("bytesSent");
+            Meter received = meter("bytesReceived");
+            return (sent == null ? 0 : sent.getOneMinuteRate()) + (received == null ? 0 : received.getOneMinuteRate());
+        }
+
+        private double compressionRatio() {
+            Metric metric = metrics.get("compressionRatio");
+            if (metric instanceof Gauge && ((Gauge<?>) metric).getValue() instanceof Number) {
+                return ((Number) ((Gauge<?>) metric).getValue()).doubleValue();
+            }
+            return 1.0;
+        }
+    }
+}
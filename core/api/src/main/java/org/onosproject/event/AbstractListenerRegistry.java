@@ -15,10 +15,17 @@
  */
 package org.onosproject.event;
 
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.slf4j.Logger;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -33,9 +40,19 @@ public class AbstractListenerRegistry<E extends Event, L extends EventListener<E
 
     private final Logger log = getLogger(getClass());
 
+    private static final long DEFAULT_SLOW_LISTENER_MS = 1000;
+
     private final Set<L> listeners = new CopyOnWriteArraySet<>();
     private volatile boolean shutdown = false;
 
+    // Per-listener latency tracking; timers are only kept when metrics are enabled
+    private final Map<L, Timer> listenerTimers = Maps.newConcurrentMap();
+    private volatile MetricsService metricsService;
+    private volatile MetricsComponent metricsComponent;
+    private volatile MetricsFeature metricsFeature;
+    private volatile long slowListenerNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_LISTENER_MS);
+
     /**
      * Adds the specified listener.
      *
@@ -54,16 +71,75 @@ public class AbstractListenerRegistry<E extends Event, L extends EventListener<E
     public void removeListener(L listener) {
         checkNotNull(listener, "Listener cannot be null");
         checkArgument(listeners.remove(listener), "Listener not registered");
+        listenerTimers.remove(listener);
     }
 
     @Override
     public void process(E event) {
         for (L listener : listeners) {
+            long start = System.nanoTime();
             try {
                 listener.event(event);
             } catch (Exception error) {
                 reportProblem(event, error);
             }
+            recordLatency(listener, event, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Enables publishing of the per-listener processing latency through the
+     * given metrics service. Listeners whose processing of a single event
+     * exceeds the specified threshold are reported in the log.
+     *
+     * @param service            metrics service; null to only report slow listeners
+     * @param component          name of the metrics component
+     * @param feature            name of the metrics feature, e.g. event class name
+     * @param slowListenerMillis latency threshold in millis for reporting slow listeners
+     */
+    public void enableMetrics(MetricsService service, String component,
+                              String feature, long slowListenerMillis) {
+        slowListenerNanos = TimeUnit.MILLISECONDS.toNanos(slowListenerMillis);
+        listenerTimers.clear();
+        if (service != null) {
+            metricsComponent = service.registerComponent(component);
+            metricsFeature = metricsComponent.registerFeature(feature);
+        }
+        metricsService = service;
+    }
+
+    /**
+     * Disables publishing of the per-listener processing latency.
+     */
+    public void disableMetrics() {
+        metricsService = null;
+        listenerTimers.clear();
+    }
+
+    /**
+     * Returns the name under which the latency of the given listener is
+     * tracked.
+     *
+     * @param listener event listener
+     * @return listener metric name
+     */
+    public static String listenerMetricName(EventListener<?> listener) {
+        return "listener." + listener.getClass().getName();
+    }
+
+    // Records the time it took the given listener to process the event.
+    private void recordLatency(L listener, E event, long nanos) {
+        if (nanos > slowListenerNanos && !shutdown) {
+            log.warn("Listener {} took {} ms to process event {}",
+                     listener.getClass().getName(),
+                     TimeUnit.NANOSECONDS.toMillis(nanos), event);
+        }
+        MetricsService service = metricsService;
+        if (service != null) {
+            Timer timer = listenerTimers.computeIfAbsent(listener,
+                    l -> service.createTimer(metricsComponent, metricsFeature,
+                                             listenerMetricName(l)));
+            timer.update(nanos, TimeUnit.NANOSECONDS);
         }
     }
 
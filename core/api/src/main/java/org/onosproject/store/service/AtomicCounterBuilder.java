@@ -32,6 +32,25 @@ public interface AtomicCounterBuilder {
      */
     public AtomicCounterBuilder withPartitionsDisabled();
 
+    /**
+     * Serves increments from blocks of values leased by this node.
+     * <p>
+     * Each node reserves blocks of values with a single update of the
+     * distributed counter and hands them out locally, leasing the next block
+     * in the background. Values returned by increments are unique and
+     * increase monotonically on each node, but are neither contiguous nor
+     * ordered across nodes, and unused values of a block are lost when the
+     * node stops. Suitable for identifiers that only need to be unique.
+     * </p>
+     * <p>
+     * Note: By default every increment updates the distributed counter.
+     * </p>
+     *
+     * @param blockSize number of values leased at a time
+     * @return this AtomicCounterBuilder
+     */
+    public AtomicCounterBuilder withBlockAllocation(long blockSize);
+
     /**
      * Builds a AtomicCounter based on the configuration options
      * supplied to this builder.
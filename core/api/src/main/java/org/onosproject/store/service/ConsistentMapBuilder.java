@@ -64,6 +64,24 @@ public interface ConsistentMapBuilder<K, V> {
      */
     public ConsistentMapBuilder<K, V> withUpdatesDisabled();
 
+    /**
+     * Enables a bounded local cache for map reads.
+     * <p>
+     * Entries read through the map are kept locally, so that subsequent reads
+     * of the same key do not go through the consensus protocol. Cached entries
+     * are dropped when the key is updated through any map instance with the
+     * same name in the cluster; updates made on other nodes are therefore
+     * observed after a short delay. Read-mostly maps benefit the most.
+     * </p>
+     * <p>
+     * Note: By default reads are not cached.
+     * </p>
+     *
+     * @param maxEntries maximum number of entries to cache
+     * @return this ConsistentMapBuilder
+     */
+    public ConsistentMapBuilder<K, V> withReadCache(int maxEntries);
+
     /**
      * Builds an consistent map based on the configuration options
      * supplied to this builder.
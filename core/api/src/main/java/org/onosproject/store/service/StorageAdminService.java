@@ -56,4 +56,12 @@ public interface StorageAdminService {
      * Redrives stuck transactions while removing those that are done.
      */
     void redriveTransactions();
+
+    /**
+     * Moves map entries that are not stored in the partition owning their
+     * key, e.g. after partitions were added, to the owning partition.
+     * Maps remain available while entries are being moved. Nothing is moved
+     * until every node in the cluster uses the same partition layout.
+     */
+    void rebalancePartitions();
 }
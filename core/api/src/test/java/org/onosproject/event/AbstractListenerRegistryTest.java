@@ -15,8 +15,13 @@
  */
 package org.onosproject.event;
 
+import com.codahale.metrics.Timer;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -61,4 +66,26 @@ public class AbstractListenerRegistryTest {
         assertTrue("event not processed", secondListener.events.contains(event));
     }
 
+    @Test
+    public void listenerMetrics() {
+        TestListener listener = new TestListener();
+        TestListenerRegistry manager = new TestListenerRegistry();
+        MetricsManager metrics = new MetricsManager();
+        manager.enableMetrics(metrics, "Events", "TestEvent", 1000);
+        manager.addListener(listener);
+
+        manager.process(new TestEvent(TestEvent.Type.BAR, "bar"));
+        manager.process(new TestEvent(TestEvent.Type.FOO, "foo"));
+
+        Map<String, Timer> timers = metrics.getTimers((name, metric) -> true);
+        String name = "Events.TestEvent." +
+                AbstractListenerRegistry.listenerMetricName(listener);
+        assertTrue("listener timer missing", timers.containsKey(name));
+        assertEquals("incorrect listener timer count", 2, timers.get(name).getCount());
+
+        manager.disableMetrics();
+        manager.process(new TestEvent(TestEvent.Type.FOO, "foo"));
+        assertEquals("timer updated after disable", 2, timers.get(name).getCount());
+    }
+
 }
@@ -15,75 +15,370 @@
  */
 package org.onosproject.event.impl;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.event.AbstractEvent;
+import org.onosproject.event.AbstractListenerRegistry;
 import org.onosproject.event.DefaultEventSinkRegistry;
 import org.onosproject.event.Event;
 import org.onosproject.event.EventDeliveryService;
 import org.onosproject.event.EventSink;
+import org.onosproject.net.Element;
+import org.onosproject.net.Link;
+import org.onosproject.net.LinkKey;
+import org.onosproject.net.intent.Intent;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Simple implementation of an event dispatching service.
+ * <p>
+ * By default all events are delivered by a single dispatch thread. When
+ * configured with more than one dispatch thread, events are sharded across
+ * the threads by their subject, so that events pertaining to the same
+ * subject, e.g. the same device, link or intent, are still delivered in
+ * order, while events about unrelated subjects are delivered in parallel.
+ * Note that in that mode, event sinks and listeners may be invoked
+ * concurrently for different subjects.
+ * </p>
+ * <p>
+ * The time events spend queued, the time spent by each sink and by each
+ * listener of the registry-based sinks are published via the metrics
+ * service; sinks and listeners exceeding the slow listener threshold are
+ * reported in the log.
+ * </p>
  */
 @Component(immediate = true)
 @Service
 public class CoreEventDispatcher extends DefaultEventSinkRegistry
         implements EventDeliveryService {
 
+    private static final int DEFAULT_DISPATCH_THREADS = 1;
+    private static final int MAX_DISPATCH_THREADS = 64;
+    private static final int DEFAULT_SLOW_LISTENER_MS = 1000;
+
+    /**
+     * Name of the metrics component under which event delivery metrics
+     * are published.
+     */
+    public static final String METRICS_COMPONENT = "Events";
+    private static final String DISPATCHER_FEATURE = "Dispatcher";
+    private static final String QUEUE_DEPTH = "queueDepth";
+    private static final String QUEUE_WAIT = "queueWait";
+    private static final String SINK_PROCESSING = "sinkProcessing";
+
     private final Logger log = getLogger(getClass());
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    @Property(name = "dispatchThreads", intValue = DEFAULT_DISPATCH_THREADS,
+            label = "Number of event dispatch threads; events are sharded " +
+                    "across threads by subject")
+    private int dispatchThreads = DEFAULT_DISPATCH_THREADS;
+
+    @Property(name = "slowListenerMs", intValue = DEFAULT_SLOW_LISTENER_MS,
+            label = "Event processing time in millis above which an event " +
+                    "sink or listener is reported as slow")
+    private int slowListenerMs = DEFAULT_SLOW_LISTENER_MS;
+
     private final ExecutorService executor =
-            newSingleThreadExecutor(groupedThreads("onos/event", "dispatch-%d"));
+            newCachedThreadPool(groupedThreads("onos/event", "dispatch-%d"));
 
     @SuppressWarnings("unchecked")
     private static final Event KILL_PILL = new AbstractEvent(null, 0) {
     };
 
-    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    // Events posted prior to activation are queued up by the initial loop.
+    private volatile DispatchLoop[] loops = { new DispatchLoop() };
+    private volatile boolean active = false;
 
-    private volatile boolean stopped = false;
+    // Per event class queue wait and sink processing timers
+    private final Map<Class<?>, EventTimers> eventTimers = Maps.newConcurrentMap();
+    private MetricsComponent metricsComponent;
 
     @Override
     public void post(Event event) {
-        events.add(event);
+        enqueue(new QueuedEvent(event, System.nanoTime()));
+    }
+
+    // Adds the event to the queue of the dispatch loop responsible for it.
+    private void enqueue(QueuedEvent queued) {
+        DispatchLoop[] current = loops;
+        DispatchLoop loop = current[partition(queued.event, current.length)];
+        loop.events.add(queued);
+
+        // If the loop got retired while we were adding to it, its backlog
+        // may have already been handed over; if so re-route the event.
+        if (loop.retired && loop.events.remove(queued)) {
+            enqueue(queued);
+        }
     }
 
     @Activate
-    public void activate() {
-        stopped = false;
-        executor.execute(new DispatchLoop());
-        log.info("Started");
+    public void activate(ComponentContext context) {
+        if (cfgService != null) {
+            cfgService.registerProperties(getClass());
+        }
+        modified(context);
+        registerMetrics();
+        active = true;
+        DispatchLoop[] current = loops;
+        for (DispatchLoop loop : current) {
+            executor.execute(loop);
+        }
+        if (current.length != dispatchThreads) {
+            startLoops(dispatchThreads);
+        }
+        log.info("Started with {} dispatch thread(s)", loops.length);
     }
 
     @Deactivate
     public void deactivate() {
-        stopped = true;
-        post(KILL_PILL);
+        if (cfgService != null) {
+            cfgService.unregisterProperties(getClass(), false);
+        }
+        active = false;
+        DispatchLoop[] current = loops;
+        loops = new DispatchLoop[] { new DispatchLoop() };
+        for (DispatchLoop loop : current) {
+            loop.stopped = true;
+            loop.events.add(new QueuedEvent(KILL_PILL, 0));
+        }
+        unregisterMetrics();
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary<?, ?> properties = context.getProperties();
+        int newDispatchThreads, newSlowListenerMs;
+        try {
+            String s = get(properties, "dispatchThreads");
+            newDispatchThreads = isNullOrEmpty(s) ? dispatchThreads : Integer.parseInt(s.trim());
+
+            s = get(properties, "slowListenerMs");
+            newSlowListenerMs = isNullOrEmpty(s) ? slowListenerMs : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            newDispatchThreads = DEFAULT_DISPATCH_THREADS;
+            newSlowListenerMs = DEFAULT_SLOW_LISTENER_MS;
+        }
+        newDispatchThreads = Math.max(1, Math.min(newDispatchThreads, MAX_DISPATCH_THREADS));
+
+        if (newSlowListenerMs != slowListenerMs) {
+            slowListenerMs = newSlowListenerMs;
+            getSinks().forEach(c -> enableMetrics(c, getSink(c)));
+            log.info("Reconfigured with slowListenerMs = {}", slowListenerMs);
+        }
+
+        if (newDispatchThreads != dispatchThreads) {
+            dispatchThreads = newDispatchThreads;
+            if (active) {
+                startLoops(dispatchThreads);
+                log.info("Reconfigured with {} dispatch thread(s)", dispatchThreads);
+            }
+        }
+    }
+
+    @Override
+    public <E extends Event> void addSink(Class<E> eventClass, EventSink<E> sink) {
+        super.addSink(eventClass, sink);
+        enableMetrics(eventClass, sink);
+    }
+
+    @Override
+    public <E extends Event> void removeSink(Class<E> eventClass) {
+        EventSink<E> sink = getSink(eventClass);
+        if (sink instanceof AbstractListenerRegistry) {
+            ((AbstractListenerRegistry<?, ?>) sink).disableMetrics();
+        }
+        super.removeSink(eventClass);
+    }
+
+    // Enables per-listener latency tracking for registry-based sinks.
+    private void enableMetrics(Class<?> eventClass, EventSink<?> sink) {
+        if (sink instanceof AbstractListenerRegistry) {
+            ((AbstractListenerRegistry<?, ?>) sink)
+                    .enableMetrics(metricsService, METRICS_COMPONENT,
+                                   eventClass.getSimpleName(), slowListenerMs);
+        }
+    }
+
+    // Registers the aggregate queue depth gauge.
+    private void registerMetrics() {
+        if (metricsService == null) {
+            return;
+        }
+        metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+        MetricsFeature feature = metricsComponent.registerFeature(DISPATCHER_FEATURE);
+        metricsService.removeMetric(metricsComponent, feature, QUEUE_DEPTH);
+        metricsService.registerMetric(metricsComponent, feature, QUEUE_DEPTH,
+                                      (Gauge<Integer>) this::queueDepth);
+    }
+
+    private void unregisterMetrics() {
+        if (metricsService != null && metricsComponent != null) {
+            metricsService.removeMetric(metricsComponent,
+                                        metricsComponent.registerFeature(DISPATCHER_FEATURE),
+                                        QUEUE_DEPTH);
+        }
+        eventTimers.clear();
+    }
+
+    /**
+     * Returns the number of events currently awaiting dispatch.
+     *
+     * @return number of queued events
+     */
+    int queueDepth() {
+        int depth = 0;
+        for (DispatchLoop loop : loops) {
+            depth += loop.events.size();
+        }
+        return depth;
+    }
+
+    // Returns the timers for the given event class, creating them if needed.
+    private EventTimers timers(Class<?> eventClass) {
+        return eventTimers.computeIfAbsent(eventClass, EventTimers::new);
+    }
+
+    // Starts the given number of dispatch loops and retires any prior ones,
+    // handing their backlog over to the new loops. Note that events for the
+    // same subject may be reordered while the backlog is being handed over.
+    private synchronized void startLoops(int count) {
+        DispatchLoop[] newLoops = new DispatchLoop[count];
+        for (int i = 0; i < count; i++) {
+            newLoops[i] = new DispatchLoop();
+        }
+
+        DispatchLoop[] oldLoops = loops;
+        loops = newLoops;
+        for (DispatchLoop loop : oldLoops) {
+            loop.events.add(new QueuedEvent(KILL_PILL, 0));
+        }
+        for (DispatchLoop loop : newLoops) {
+            executor.execute(loop);
+        }
+    }
+
+    /**
+     * Returns the index of the dispatch loop responsible for the specified
+     * event.
+     *
+     * @param event event to be dispatched
+     * @param count number of dispatch loops
+     * @return dispatch loop index
+     */
+    static int partition(Event event, int count) {
+        if (count == 1) {
+            return 0;
+        }
+        Object key = partitionKey(event.subject());
+        return key == null ? 0 : Math.abs(key.hashCode() % count);
+    }
+
+    // Reduces the event subject to its identity, so that events carrying
+    // different snapshots of the same subject land in the same partition.
+    private static Object partitionKey(Object subject) {
+        if (subject instanceof Element) {
+            return ((Element) subject).id();
+        } else if (subject instanceof Link) {
+            return LinkKey.linkKey((Link) subject);
+        } else if (subject instanceof Intent) {
+            return ((Intent) subject).key();
+        }
+        return subject;
+    }
+
+    // Event along with the time at which it was posted.
+    private static final class QueuedEvent {
+        private final Event event;
+        private final long postedNanos;
+
+        private QueuedEvent(Event event, long postedNanos) {
+            this.event = event;
+            this.postedNanos = postedNanos;
+        }
+    }
+
+    // Queue wait and sink processing timers for a single event class.
+    private final class EventTimers {
+        private final Timer queueWait;
+        private final Timer sinkProcessing;
+
+        private EventTimers(Class<?> eventClass) {
+            if (metricsService != null && metricsComponent != null) {
+                MetricsFeature feature =
+                        metricsComponent.registerFeature(eventClass.getSimpleName());
+                queueWait = metricsService.createTimer(metricsComponent, feature, QUEUE_WAIT);
+                sinkProcessing = metricsService.createTimer(metricsComponent, feature,
+                                                            SINK_PROCESSING);
+            } else {
+                queueWait = null;
+                sinkProcessing = null;
+            }
+        }
+
+        private void update(long waitNanos, long processingNanos) {
+            if (queueWait != null) {
+                queueWait.update(waitNanos, TimeUnit.NANOSECONDS);
+                sinkProcessing.update(processingNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
     // Auxiliary event dispatching loop that feeds off the events queue.
     private class DispatchLoop implements Runnable {
+
+        private final BlockingQueue<QueuedEvent> events = new LinkedBlockingQueue<>();
+        private volatile boolean stopped = false;
+        private volatile boolean retired = false;
+
         @Override
         @SuppressWarnings("unchecked")
         public void run() {
-            log.info("Dispatch loop initiated");
+            log.debug("Dispatch loop initiated");
             while (!stopped) {
                 try {
                     // Fetch the next event and if it is the kill-pill, bail
-                    Event event = events.take();
+                    QueuedEvent queued = events.take();
+                    Event event = queued.event;
                     if (event == KILL_PILL) {
                         break;
                     }
@@ -92,7 +387,16 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
                     // process the event
                     EventSink sink = getSink(event.getClass());
                     if (sink != null) {
+                        long start = System.nanoTime();
                         sink.process(event);
+                        long end = System.nanoTime();
+                        timers(event.getClass()).update(start - queued.postedNanos,
+                                                        end - start);
+                        if (end - start > TimeUnit.MILLISECONDS.toNanos(slowListenerMs)) {
+                            log.warn("Sink {} took {} ms to process event {}",
+                                     sink.getClass().getName(),
+                                     TimeUnit.NANOSECONDS.toMillis(end - start), event);
+                        }
                     } else {
                         log.warn("No sink registered for event class {}",
                                  event.getClass());
@@ -101,7 +405,20 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
                     log.warn("Error encountered while dispatching event:", e);
                 }
             }
-            log.info("Dispatch loop terminated");
+            retire();
+            log.debug("Dispatch loop terminated");
+        }
+
+        // Hands any remaining backlog over to the currently active loops.
+        private void retire() {
+            retired = true;
+            if (stopped) {
+                return;
+            }
+            List<QueuedEvent> backlog = new ArrayList<>();
+            events.drainTo(backlog);
+            backlog.stream().filter(q -> q.event != KILL_PILL)
+                    .forEach(CoreEventDispatcher.this::enqueue);
         }
     }
 
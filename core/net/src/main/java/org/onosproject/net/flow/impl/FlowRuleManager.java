@@ -37,8 +37,13 @@ import org.onosproject.core.CoreService;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.event.AbstractListenerRegistry;
 import org.onosproject.event.EventDeliveryService;
+import org.onosproject.mastership.MastershipEvent;
+import org.onosproject.mastership.MastershipListener;
+import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.CompletedBatchOperation;
 import org.onosproject.net.flow.FlowEntry;
@@ -95,12 +100,28 @@ public class FlowRuleManager
             label = "Allow flow rules in switch not installed by ONOS")
     private boolean allowExtraneousRules = ALLOW_EXTRANEOUS_RULES;
 
+    private static final int FULL_RECONCILE_PERIOD = 10;
+    // Idle entries are rewritten in the store once their life has moved on by
+    // this much, so that life() stays close to that of the device.
+    private static final long IDLE_LIFE_REFRESH_SECONDS = 30;
+
+    @Property(name = "fullReconcilePeriod", intValue = FULL_RECONCILE_PERIOD,
+            label = "Flow stats replies per device between full reconciliations with the store; "
+                    + "1 to always reconcile fully")
+    private int fullReconcilePeriod = FULL_RECONCILE_PERIOD;
+
     private final Logger log = getLogger(getClass());
 
     private final AbstractListenerRegistry<FlowRuleEvent, FlowRuleListener>
             listenerRegistry = new AbstractListenerRegistry<>();
 
     private final FlowRuleStoreDelegate delegate = new InternalStoreDelegate();
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+    private final MastershipListener mastershipListener = new InternalMastershipListener();
+
+    private final Map<DeviceId, FlowTableSnapshot> snapshots = Maps.newConcurrentMap();
+    // Devices whose flow table may have changed since their snapshot was taken
+    private final Set<DeviceId> dirtyDevices = Sets.newConcurrentHashSet();
 
     protected ExecutorService deviceInstallers =
             Executors.newFixedThreadPool(32, groupedThreads("onos/flowservice", "device-installer-%d"));
@@ -125,6 +146,9 @@ public class FlowRuleManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MastershipService mastershipService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService cfgService;
 
@@ -137,6 +161,8 @@ public class FlowRuleManager
 
         store.setDelegate(delegate);
         eventDispatcher.addSink(FlowRuleEvent.class, listenerRegistry);
+        deviceService.addListener(deviceListener);
+        mastershipService.addListener(mastershipListener);
         log.info("Started");
     }
 
@@ -145,8 +171,11 @@ public class FlowRuleManager
         cfgService.unregisterProperties(getClass(), false);
         deviceInstallers.shutdownNow();
         operationsService.shutdownNow();
+        deviceService.removeListener(deviceListener);
+        mastershipService.removeListener(mastershipListener);
         store.unsetDelegate(delegate);
         eventDispatcher.removeSink(FlowRuleEvent.class);
+        snapshots.clear();
         log.info("Stopped");
     }
 
@@ -164,6 +193,15 @@ public class FlowRuleManager
         if (allowExtraneousRules) {
             log.info("Allowing flow rules not installed by ONOS");
         }
+
+        try {
+            s = Tools.get(properties, "fullReconcilePeriod");
+            fullReconcilePeriod = Strings.isNullOrEmpty(s) ? FULL_RECONCILE_PERIOD : Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid fullReconcilePeriod; using {}", FULL_RECONCILE_PERIOD);
+            fullReconcilePeriod = FULL_RECONCILE_PERIOD;
+        }
+        log.info("Reconciling flow stats fully every {} replies", fullReconcilePeriod);
     }
 
     @Override
@@ -241,6 +279,13 @@ public class FlowRuleManager
         listenerRegistry.removeListener(listener);
     }
 
+    // Forces the next flow stats reply of the device through a full
+    // reconciliation with the store.
+    private void invalidateSnapshot(DeviceId deviceId) {
+        dirtyDevices.add(deviceId);
+        snapshots.remove(deviceId);
+    }
+
     @Override
     protected FlowRuleProviderService createProviderService(
             FlowRuleProvider provider) {
@@ -262,6 +307,7 @@ public class FlowRuleManager
             checkNotNull(flowEntry, FLOW_RULE_NULL);
             checkValidity();
             lastSeen.remove(flowEntry);
+            invalidateSnapshot(flowEntry.deviceId());
             FlowEntry stored = store.getFlowEntry(flowEntry);
             if (stored == null) {
                 log.debug("Rule already evicted from store: {}", flowEntry);
@@ -327,7 +373,8 @@ public class FlowRuleManager
         }
 
 
-        private void flowAdded(FlowEntry flowEntry) {
+        // Returns whether the rule was kept and updated in the store.
+        private boolean flowAdded(FlowEntry flowEntry) {
             checkNotNull(flowEntry, FLOW_RULE_NULL);
             checkValidity();
 
@@ -336,13 +383,16 @@ public class FlowRuleManager
                 FlowRuleEvent event = store.addOrUpdateFlowRule(flowEntry);
                 if (event == null) {
                     log.debug("No flow store event generated.");
+                    return false;
                 } else {
                     log.trace("Flow {} {}", flowEntry, event.type());
                     post(event);
+                    return true;
                 }
             } else {
                 log.debug("Removing flow rules....");
                 removeFlowRules(flowEntry);
+                return false;
             }
 
         }
@@ -388,24 +438,53 @@ public class FlowRuleManager
 
         @Override
         public void pushFlowMetrics(DeviceId deviceId, Iterable<FlowEntry> flowEntries) {
-            Set<FlowEntry> storedRules = Sets.newHashSet(store.getFlowEntries(deviceId));
+            List<FlowEntry> reported = Lists.newArrayList(flowEntries);
+            boolean dirty = dirtyDevices.remove(deviceId);
+            FlowTableSnapshot snapshot = snapshots.get(deviceId);
+            if (!dirty && snapshot != null && snapshot.nextPoll() < fullReconcilePeriod
+                    && snapshot.matches(reported) && reconcileIncrementally(deviceId, snapshot, reported)) {
+                return;
+            }
+            reconcileFully(deviceId, reported);
+        }
+
+        // Walks the device table in the store against the reported entries,
+        // and takes a snapshot of the table if both agree.
+        private void reconcileFully(DeviceId deviceId, List<FlowEntry> flowEntries) {
+            Map<FlowEntry, FlowEntry> storedRules = Maps.newHashMap();
+            store.getFlowEntries(deviceId).forEach(rule -> storedRules.put(rule, rule));
+            Map<Long, FlowTableSnapshot.Entry> entries = Maps.newHashMap();
+            boolean consistent = true;
+            long now = System.currentTimeMillis();
             for (FlowEntry rule : flowEntries) {
                 try {
-                    if (storedRules.remove(rule)) {
+                    FlowEntry stored = storedRules.remove(rule);
+                    if (stored != null) {
                         // we both have the rule, let's update some info then.
-                        flowAdded(rule);
+                        if (flowAdded(rule)) {
+                            consistent &= entries.put(rule.id().value(), new FlowTableSnapshot.Entry(
+                                    stored, false, rule, lastSeen.getOrDefault(stored, now))) == null;
+                        } else {
+                            consistent = false;
+                        }
                     } else {
                         // the device has a rule the store does not have
                         if (!allowExtraneousRules) {
                             extraneousFlow(rule);
+                            consistent = false;
+                        } else {
+                            consistent &= entries.put(rule.id().value(),
+                                    new FlowTableSnapshot.Entry(rule, true, rule, now)) == null;
                         }
                     }
                 } catch (Exception e) {
                     log.debug("Can't process added or extra rule {}", e.getMessage());
+                    consistent = false;
                     continue;
                 }
             }
-            for (FlowEntry rule : storedRules) {
+            for (FlowEntry rule : storedRules.keySet()) {
+                consistent = false;
                 try {
                     // there are rules in the store that aren't on the switch
                     flowMissing(rule);
@@ -415,6 +494,65 @@ public class FlowRuleManager
                 }
             }
 
+            if (consistent) {
+                snapshots.put(deviceId, new FlowTableSnapshot(entries));
+            } else {
+                snapshots.remove(deviceId);
+            }
+        }
+
+        // Updates only the entries whose counters moved since the snapshot,
+        // plus one more update once they stop moving so that statistics see
+        // them idle; idle entries are rewritten only to refresh their life.
+        // Returns false, having changed nothing, if the reported entries do
+        // not match the snapshot after all.
+        private boolean reconcileIncrementally(DeviceId deviceId, FlowTableSnapshot snapshot,
+                                               List<FlowEntry> flowEntries) {
+            synchronized (snapshot) {
+                for (FlowEntry rule : flowEntries) {
+                    FlowTableSnapshot.Entry entry = snapshot.get(rule.id().value());
+                    if (entry == null || !entry.rule.equals(rule)) {
+                        return false;
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                for (FlowEntry rule : flowEntries) {
+                    FlowTableSnapshot.Entry entry = snapshot.get(rule.id().value());
+                    if (entry.extraneous) {
+                        continue;
+                    }
+
+                    boolean moved = entry.packets != rule.packets();
+                    if (moved) {
+                        entry.lastChange = now;
+                        if (!entry.permanent) {
+                            lastSeen.put(entry.rule, now);
+                        }
+                    } else if (entry.expired(now)) {
+                        log.debug("Removing flow rules....");
+                        removeFlowRules(rule);
+                        invalidateSnapshot(deviceId);
+                        continue;
+                    }
+
+                    moved |= entry.bytes != rule.bytes();
+                    if (moved || !entry.settled || rule.life() - entry.life >= IDLE_LIFE_REFRESH_SECONDS) {
+                        entry.packets = rule.packets();
+                        entry.bytes = rule.bytes();
+                        entry.life = rule.life();
+                        entry.settled = !moved;
+                        FlowRuleEvent event = store.addOrUpdateFlowRule(rule);
+                        post(event);
+                        if (event == null || event.type() != FlowRuleEvent.Type.RULE_UPDATED) {
+                            // The store no longer agrees with the snapshot; the
+                            // next reply is reconciled fully.
+                            invalidateSnapshot(deviceId);
+                        }
+                    }
+                }
+                return true;
+            }
         }
 
         @Override
@@ -437,6 +575,7 @@ public class FlowRuleManager
             final FlowRuleBatchRequest request = event.subject();
             switch (event.type()) {
             case BATCH_OPERATION_REQUESTED:
+                invalidateSnapshot(event.deviceId());
                 // Request has been forwarded to MASTER Node, and was
                 request.ops().stream().forEach(
                         op -> {
@@ -476,6 +615,7 @@ public class FlowRuleManager
                 break;
 
             case BATCH_OPERATION_COMPLETED:
+                invalidateSnapshot(event.deviceId());
 
                 FlowOperationsProcessor fops = pendingFlowOperations.remove(
                         event.subject().batchId());
@@ -495,6 +635,34 @@ public class FlowRuleManager
         }
     }
 
+    // Drops the snapshots of devices that went away or reconnected.
+    private class InternalDeviceListener implements DeviceListener {
+        @Override
+        public void event(DeviceEvent event) {
+            switch (event.type()) {
+                case DEVICE_ADDED:
+                case DEVICE_REMOVED:
+                case DEVICE_AVAILABILITY_CHANGED:
+                case DEVICE_SUSPENDED:
+                    invalidateSnapshot(event.subject().id());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Drops the snapshots of devices whose master changed, as the store may
+    // have been updated by another instance meanwhile.
+    private class InternalMastershipListener implements MastershipListener {
+        @Override
+        public void event(MastershipEvent event) {
+            if (event.type() == MastershipEvent.Type.MASTER_CHANGED) {
+                invalidateSnapshot(event.subject());
+            }
+        }
+    }
+
     private class FlowOperationsProcessor implements Runnable {
 
         private final List<Set<FlowRuleOperation>> stages;
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.flow.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.flow.FlowEntry;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flow entries of a device as of its last fully reconciled flow statistics.
+ * <p>
+ * Entries are keyed by flow id. The snapshot carries an order independent
+ * digest of its flow ids, so that statistics listing the same entries are
+ * recognized without walking the device table in the flow rule store.
+ * </p>
+ */
+final class FlowTableSnapshot {
+
+    private final Map<Long, Entry> entries;
+    private final long digest;
+    private final AtomicInteger polls = new AtomicInteger();
+
+    /**
+     * Creates a snapshot of the given entries.
+     *
+     * @param entries snapshot entries by flow id
+     */
+    FlowTableSnapshot(Map<Long, Entry> entries) {
+        this.entries = ImmutableMap.copyOf(entries);
+        long sum = 0;
+        for (long id : entries.keySet()) {
+            sum += mix(id);
+        }
+        this.digest = sum;
+    }
+
+    /**
+     * Returns whether the given flow entries have the same flow ids as this
+     * snapshot, as far as the digest can tell.
+     *
+     * @param flowEntries flow entries reported by the device
+     * @return true if the flow ids match
+     */
+    boolean matches(Collection<FlowEntry> flowEntries) {
+        if (flowEntries.size() != entries.size()) {
+            return false;
+        }
+        long sum = 0;
+        for (FlowEntry entry : flowEntries) {
+            sum += mix(entry.id().value());
+        }
+        return sum == digest;
+    }
+
+    /**
+     * Returns the snapshot entry of the given flow.
+     *
+     * @param flowId flow id
+     * @return snapshot entry, or null if the flow is not in the snapshot
+     */
+    Entry get(long flowId) {
+        return entries.get(flowId);
+    }
+
+    /**
+     * Counts a flow statistics reply reconciled against this snapshot.
+     *
+     * @return number of replies reconciled so far, including this one
+     */
+    int nextPoll() {
+        return polls.incrementAndGet();
+    }
+
+    // Spreads flow ids, which are mostly sequential, over the whole range
+    // so that their sum identifies the set.
+    private static long mix(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * State of a single flow entry, as last reported by the device. Guarded
+     * by the snapshot it belongs to.
+     */
+    static final class Entry {
+
+        final FlowEntry rule;
+        final boolean extraneous;
+        final boolean permanent;
+        final long timeout;
+
+        long packets;
+        long bytes;
+        long life;
+        long lastChange;
+        boolean settled;
+
+        /**
+         * Creates a snapshot entry.
+         *
+         * @param rule       stored flow entry, or the reported flow entry
+         *                   for a rule the store does not have
+         * @param extraneous whether the store does not have the rule
+         * @param reported   flow entry reported by the device
+         * @param lastChange time the packet counter last moved, in millis
+         */
+        Entry(FlowEntry rule, boolean extraneous, FlowEntry reported, long lastChange) {
+            this.rule = rule;
+            this.extraneous = extraneous;
+            this.permanent = rule.isPermanent();
+            this.timeout = rule.timeout() * 1000L;
+            this.packets = reported.packets();
+            this.bytes = reported.bytes();
+            this.life = reported.life();
+            this.lastChange = lastChange;
+        }
+
+        /**
+         * Returns whether the rule has been idle for longer than its timeout.
+         *
+         * @param now current time in millis
+         * @return true if the rule has expired
+         */
+        boolean expired(long now) {
+            return !permanent && now - lastChange > timeout;
+        }
+    }
+}
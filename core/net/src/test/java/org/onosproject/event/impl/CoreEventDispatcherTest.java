@@ -18,6 +18,7 @@ package org.onosproject.event.impl;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.event.AbstractEvent;
 import org.onosproject.event.EventSink;
 
@@ -27,6 +28,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.onosproject.event.impl.CoreEventDispatcher.partition;
 
 /**
  * Test of the even dispatcher mechanism.
@@ -39,7 +41,8 @@ public class CoreEventDispatcherTest {
 
     @Before
     public void setUp() {
-        dispatcher.activate();
+        dispatcher.cfgService = new ComponentConfigAdapter();
+        dispatcher.activate(null);
         dispatcher.addSink(Prickle.class, prickleSink);
         dispatcher.addSink(Goo.class, gooSink);
     }
@@ -76,6 +79,18 @@ public class CoreEventDispatcherTest {
         validate(prickleSink);
     }
 
+    @Test
+    public void partitionBySubject() {
+        assertEquals("incorrect single partition", 0, partition(new Prickle("yo"), 1));
+        for (int i = 0; i < 100; i++) {
+            String subject = "s" + i;
+            int p = partition(new Prickle(subject), 8);
+            assertEquals("partition out of range", p, Math.max(0, Math.min(p, 7)));
+            assertEquals("same subject must map to same partition",
+                         p, partition(new Goo(subject), 8));
+        }
+    }
+
     private void validate(Sink sink, String... strings) {
         int i = 0;
         assertEquals("incorrect event count", strings.length, sink.subjects.size());
@@ -30,6 +30,7 @@ import org.onosproject.core.CoreServiceAdapter;
 import org.onosproject.core.DefaultApplicationId;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.event.impl.TestEventDispatcher;
+import org.onosproject.mastership.MastershipServiceAdapter;
 import org.onosproject.net.DefaultDevice;
 import org.onosproject.net.Device;
 import org.onosproject.net.Device.Type;
@@ -114,6 +115,7 @@ public class FlowRuleManagerTest {
         mgr.eventDispatcher = new TestEventDispatcher();
         mgr.deviceService = new TestDeviceService();
         mgr.coreService = new TestCoreService();
+        mgr.mastershipService = new MastershipServiceAdapter();
         mgr.operationsService = MoreExecutors.newDirectExecutorService();
         mgr.deviceInstallers = MoreExecutors.newDirectExecutorService();
         mgr.cfgService = new ComponentConfigAdapter();
@@ -342,6 +344,66 @@ public class FlowRuleManagerTest {
 
     }
 
+    /*
+     * Tests that stats of an unchanged flow table only update the entries
+     * whose counters moved.
+     */
+    @Test
+    public void incrementalFlowMetrics() {
+        FlowRule f1 = flowRule(1, 1);
+        FlowRule f2 = flowRule(2, 2);
+        mgr.applyFlowRules(f1, f2);
+
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 0), flowEntry(f2, 0)));
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADDED, RULE_ADDED);
+
+        // one more update once the counters settle, then none while idle
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 0), flowEntry(f2, 0)));
+        validateEvents(RULE_UPDATED, RULE_UPDATED);
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f2, 0), flowEntry(f1, 0)));
+        validateEvents();
+
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 10), flowEntry(f2, 0)));
+        validateEvents(RULE_UPDATED);
+        for (FlowEntry entry : service.getFlowEntries(DID)) {
+            assertEquals("packets should be updated", entry.equals(f1) ? 10 : 0, entry.packets());
+        }
+
+        // a changed flow table is reconciled with the store again
+        FlowRule f3 = flowRule(3, 3);
+        mgr.applyFlowRules(f3);
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 10), flowEntry(f2, 0),
+                                                                flowEntry(f3, 0)));
+        validateEvents(RULE_ADD_REQUESTED, RULE_UPDATED, RULE_UPDATED, RULE_ADDED);
+    }
+
+    /*
+     * Tests that the life of idle entries keeps being refreshed in the store.
+     */
+    @Test
+    public void incrementalFlowMetricsRefreshLife() {
+        FlowRule f1 = flowRule(1, 1);
+        mgr.applyFlowRules(f1);
+
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 0, 0)));
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 0, 5)));
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADDED, RULE_UPDATED);
+
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 0, 10)));
+        validateEvents();
+        providerService.pushFlowMetrics(DID, Lists.newArrayList(flowEntry(f1, 0, 40)));
+        validateEvents(RULE_UPDATED);
+        assertEquals("life should be refreshed", 40, service.getFlowEntries(DID).iterator().next().life());
+    }
+
+    private FlowEntry flowEntry(FlowRule rule, long packets) {
+        return flowEntry(rule, packets, 0);
+    }
+
+    private FlowEntry flowEntry(FlowRule rule, long packets, long life) {
+        return new DefaultFlowEntry(rule, FlowEntryState.ADDED, life, packets, packets * 100);
+    }
+
     /*
      * Tests whether a rule that was marked for removal but no flowRemoved was received
      * is indeed removed at the next stats update.
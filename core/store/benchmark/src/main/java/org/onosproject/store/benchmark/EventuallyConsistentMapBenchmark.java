@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.benchmark;
+
+import org.onlab.util.KryoNamespace;
+import org.onosproject.store.ecmap.EventuallyConsistentMapBuilderImpl;
+import org.onosproject.store.impl.WallClockTimestamp;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.EventuallyConsistentMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks the local put, get and remove paths of an eventually consistent
+ * map running in a single node cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EventuallyConsistentMapBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int keyCount;
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    private EventuallyConsistentMap<String, String> map;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new EventuallyConsistentMapBuilderImpl<String, String>(
+                    new LocalClusterService(), new LocalClusterCommunicationService())
+                .withName("benchmark")
+                .withSerializer(KryoNamespace.newBuilder().register(KryoNamespaces.API))
+                .withClockService((k, v) -> new WallClockTimestamp(clock.incrementAndGet()))
+                .build();
+
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+            map.put(keys[i], "value-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        map.destroy();
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public void put() {
+        map.put(randomKey(), "value");
+    }
+
+    @Benchmark
+    public String get() {
+        return map.get(randomKey());
+    }
+
+    @Benchmark
+    public String removeAndPut() {
+        String key = randomKey();
+        map.remove(key);
+        map.put(key, "value");
+        return key;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.benchmark;
+
+import com.google.common.collect.ImmutableSet;
+import org.onlab.graph.AbstractEdge;
+import org.onlab.graph.AdjacencyListsGraph;
+import org.onlab.graph.BellmanFordGraphSearch;
+import org.onlab.graph.BreadthFirstSearch;
+import org.onlab.graph.DepthFirstSearch;
+import org.onlab.graph.DijkstraGraphSearch;
+import org.onlab.graph.EdgeWeight;
+import org.onlab.graph.Graph;
+import org.onlab.graph.GraphPathSearch;
+import org.onlab.graph.KshortestPathSearch;
+import org.onlab.graph.TarjanGraphSearch;
+import org.onlab.graph.Vertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the graph path search algorithms on a randomly generated,
+ * strongly connected graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GraphSearchBenchmark {
+
+    private static final long SEED = 42L;
+    private static final int EXTRA_EDGES_PER_VERTEX = 3;
+    private static final EdgeWeight<BenchVertex, BenchEdge> HOP_COUNT = edge -> 1.0;
+
+    @Param({ "100", "1000" })
+    public int vertexCount;
+
+    private Graph<BenchVertex, BenchEdge> graph;
+    private BenchVertex src;
+    private BenchVertex dst;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        ImmutableSet.Builder<BenchVertex> vertexes = ImmutableSet.builder();
+        BenchVertex[] all = new BenchVertex[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            all[i] = new BenchVertex(i);
+            vertexes.add(all[i]);
+        }
+
+        // A ring keeps the graph strongly connected; random chords add path diversity.
+        ImmutableSet.Builder<BenchEdge> edges = ImmutableSet.builder();
+        for (int i = 0; i < vertexCount; i++) {
+            edges.add(new BenchEdge(all[i], all[(i + 1) % vertexCount]));
+            for (int j = 0; j < EXTRA_EDGES_PER_VERTEX; j++) {
+                int other = random.nextInt(vertexCount);
+                if (other != i) {
+                    edges.add(new BenchEdge(all[i], all[other]));
+                }
+            }
+        }
+
+        graph = new AdjacencyListsGraph<>(vertexes.build(), edges.build());
+        src = all[0];
+        dst = all[vertexCount / 2];
+    }
+
+    @Benchmark
+    public GraphPathSearch.Result<BenchVertex, BenchEdge> breadthFirst() {
+        return new BreadthFirstSearch<BenchVertex, BenchEdge>()
+                .search(graph, src, dst, HOP_COUNT, GraphPathSearch.ALL_PATHS);
+    }
+
+    @Benchmark
+    public GraphPathSearch.Result<BenchVertex, BenchEdge> depthFirst() {
+        return new DepthFirstSearch<BenchVertex, BenchEdge>()
+                .search(graph, src, dst, HOP_COUNT, GraphPathSearch.ALL_PATHS);
+    }
+
+    @Benchmark
+    public GraphPathSearch.Result<BenchVertex, BenchEdge> dijkstra() {
+        return new DijkstraGraphSearch<BenchVertex, BenchEdge>()
+                .search(graph, src, dst, HOP_COUNT, GraphPathSearch.ALL_PATHS);
+    }
+
+    @Benchmark
+    public GraphPathSearch.Result<BenchVertex, BenchEdge> bellmanFord() {
+        return new BellmanFordGraphSearch<BenchVertex, BenchEdge>()
+                .search(graph, src, dst, HOP_COUNT, GraphPathSearch.ALL_PATHS);
+    }
+
+    @Benchmark
+    public TarjanGraphSearch.SCCResult<BenchVertex, BenchEdge> tarjan() {
+        return new TarjanGraphSearch<BenchVertex, BenchEdge>().search(graph, HOP_COUNT);
+    }
+
+    @Benchmark
+    public List<List<BenchEdge>> kShortest() {
+        return new KshortestPathSearch<>(graph).search(src, dst, HOP_COUNT, 3);
+    }
+
+    /**
+     * Vertex identified by an integer.
+     */
+    static final class BenchVertex implements Vertex {
+        private final int id;
+
+        BenchVertex(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof BenchVertex && ((BenchVertex) obj).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return "v" + id;
+        }
+    }
+
+    /**
+     * Directed edge between two benchmark vertexes.
+     */
+    static final class BenchEdge extends AbstractEdge<BenchVertex> {
+        BenchEdge(BenchVertex src, BenchVertex dst) {
+            super(src, dst);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.benchmark;
+
+import org.onlab.packet.IpPrefix;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultLink;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.HostId;
+import org.onosproject.net.Link;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.provider.ProviderId;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks serialization of commonly stored types using the
+ * {@link KryoNamespaces#API} namespace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KryoNamespaceBenchmark {
+
+    @Param({ "deviceId", "connectPoint", "hostId", "link", "flowRule", "flowEntry" })
+    public String type;
+
+    private final KryoNamespace serializer = KryoNamespaces.API;
+
+    private Object object;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DeviceId did = DeviceId.deviceId("of:0000000000000001");
+        ConnectPoint src = new ConnectPoint(did, PortNumber.portNumber(1));
+        ConnectPoint dst = new ConnectPoint(DeviceId.deviceId("of:0000000000000002"),
+                                            PortNumber.portNumber(2));
+        switch (type) {
+            case "deviceId":
+                object = did;
+                break;
+            case "connectPoint":
+                object = src;
+                break;
+            case "hostId":
+                object = HostId.hostId("00:00:00:00:00:01/-1");
+                break;
+            case "link":
+                object = new DefaultLink(new ProviderId("of", "foo"), src, dst, Link.Type.DIRECT);
+                break;
+            case "flowRule":
+                object = flowRule(did);
+                break;
+            case "flowEntry":
+                object = new DefaultFlowEntry(flowRule(did), FlowEntryState.ADDED, 10, 1000, 64000);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type " + type);
+        }
+        bytes = serializer.serialize(object);
+    }
+
+    private static FlowRule flowRule(DeviceId did) {
+        return DefaultFlowRule.builder()
+                .forDevice(did)
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchInPort(PortNumber.portNumber(1))
+                                      .matchEthType((short) 0x0800)
+                                      .matchIPDst(IpPrefix.valueOf("10.0.0.0/24"))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                                       .setOutput(PortNumber.portNumber(2))
+                                       .build())
+                .withPriority(40000)
+                .fromApp(new DefaultApplicationId(1, "benchmark"))
+                .makePermanent()
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(object);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+}
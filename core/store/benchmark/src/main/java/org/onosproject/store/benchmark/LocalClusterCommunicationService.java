@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.benchmark;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cluster communication service for a single node cluster; messages are
+ * encoded, so that the serialization cost is accounted for, and then dropped.
+ */
+class LocalClusterCommunicationService implements ClusterCommunicationService {
+
+    @Override
+    public boolean broadcast(ClusterMessage message) {
+        return true;
+    }
+
+    @Override
+    public boolean broadcastIncludeSelf(ClusterMessage message) {
+        return true;
+    }
+
+    @Override
+    public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+        return true;
+    }
+
+    @Override
+    public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+        return true;
+    }
+
+    @Override
+    public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) {
+        return Futures.immediateFailedFuture(new IllegalStateException("No peers"));
+    }
+
+    @Override
+    public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                              ExecutorService executor) {
+    }
+
+    @Override
+    public <M> void broadcast(M message, MessageSubject subject, Function<M, byte[]> encoder) {
+        encoder.apply(message);
+    }
+
+    @Override
+    public <M> void broadcastIncludeSelf(M message, MessageSubject subject,
+                                         Function<M, byte[]> encoder) {
+        encoder.apply(message);
+    }
+
+    @Override
+    public <M> boolean unicast(M message, MessageSubject subject,
+                               Function<M, byte[]> encoder, NodeId toNodeId) {
+        encoder.apply(message);
+        return true;
+    }
+
+    @Override
+    public <M> void multicast(M message, MessageSubject subject,
+                              Function<M, byte[]> encoder, Set<NodeId> nodeIds) {
+        encoder.apply(message);
+    }
+
+    @Override
+    public <M, R> CompletableFuture<R> sendAndReceive(M message, MessageSubject subject,
+                                                      Function<M, byte[]> encoder,
+                                                      Function<byte[], R> decoder,
+                                                      NodeId toNodeId) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("No peers"));
+        return future;
+    }
+
+    @Override
+    public <M, R> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                     Function<M, R> handler, Function<R, byte[]> encoder,
+                                     Executor executor) {
+    }
+
+    @Override
+    public <M> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                  Consumer<M> handler, Executor executor) {
+    }
+
+    @Override
+    public void removeSubscriber(MessageSubject subject) {
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.benchmark;
+
+import com.google.common.collect.ImmutableSet;
+import org.joda.time.DateTime;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cluster.ClusterEventListener;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+
+import java.util.Set;
+
+/**
+ * Cluster service describing a cluster made up of the local node only.
+ */
+class LocalClusterService implements ClusterService {
+
+    private final ControllerNode localNode =
+            new DefaultControllerNode(new NodeId("local"), IpAddress.valueOf("127.0.0.1"));
+    private final DateTime started = DateTime.now();
+
+    @Override
+    public ControllerNode getLocalNode() {
+        return localNode;
+    }
+
+    @Override
+    public Set<ControllerNode> getNodes() {
+        return ImmutableSet.of(localNode);
+    }
+
+    @Override
+    public ControllerNode getNode(NodeId nodeId) {
+        return localNode.id().equals(nodeId) ? localNode : null;
+    }
+
+    @Override
+    public ControllerNode.State getState(NodeId nodeId) {
+        return localNode.id().equals(nodeId) ? ControllerNode.State.ACTIVE : null;
+    }
+
+    @Override
+    public DateTime getLastUpdated(NodeId nodeId) {
+        return started;
+    }
+
+    @Override
+    public void addListener(ClusterEventListener listener) {
+    }
+
+    @Override
+    public void removeListener(ClusterEventListener listener) {
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * JMH micro-benchmarks for the distributed store primitives.
+ * <p>
+ * The module packages into a self-contained jar that runs without network
+ * access or a running cluster, e.g.:
+ * </p>
+ * <pre>
+ * mvn -pl core/store/benchmark -am package -DskipTests
+ * java -jar core/store/benchmark/target/onos-store-benchmarks.jar -rf json -rff results.json
+ * </pre>
+ * <p>
+ * A benchmark subset can be selected with a regular expression, e.g.
+ * {@code java -jar onos-store-benchmarks.jar GraphSearch}. The JSON result
+ * file can be compared across builds to detect performance regressions.
+ * </p>
+ */
+package org.onosproject.store.benchmark;
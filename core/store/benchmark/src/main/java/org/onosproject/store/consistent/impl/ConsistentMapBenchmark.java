@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.util.concurrent.Futures;
+import net.kuujo.copycat.CopycatConfig;
+import net.kuujo.copycat.cluster.ClusterConfig;
+import net.kuujo.copycat.cluster.internal.coordinator.ClusterCoordinator;
+import net.kuujo.copycat.cluster.internal.coordinator.DefaultClusterCoordinator;
+import net.kuujo.copycat.log.BufferedLog;
+import net.kuujo.copycat.protocol.Consistency;
+import net.kuujo.copycat.protocol.LocalProtocol;
+import net.kuujo.copycat.util.concurrent.NamedThreadFactory;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.ConsistentMap;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.Versioned;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks consistent map operations against single replica Copycat
+ * partitions that communicate over the in-JVM local protocol.
+ * <p>
+ * The databases are assembled the same way {@link DatabaseManager} does it,
+ * except that the logs are kept in memory and no sockets are opened.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConsistentMapBenchmark {
+
+    private static final String MEMBER_URI = "local://benchmark";
+    private static final long ELECTION_TIMEOUT_MILLIS = 10L;
+
+    @Param({ "1000", "10000" })
+    public int keyCount;
+
+    @Param({ "true", "false" })
+    public boolean partitioned;
+
+    private ClusterCoordinator coordinator;
+    private Database inMemoryDatabase;
+    private PartitionedDatabase partitionedDatabase;
+    private ConsistentMap<String, String> map;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ClusterConfig clusterConfig = new ClusterConfig()
+                .withProtocol(new LocalProtocol())
+                .withElectionTimeout(ELECTION_TIMEOUT_MILLIS)
+                .withHeartbeatInterval(ELECTION_TIMEOUT_MILLIS / 2)
+                .withMembers(MEMBER_URI)
+                .withLocalMember(MEMBER_URI);
+
+        CopycatConfig copycatConfig = new CopycatConfig()
+                .withName("benchmark")
+                .withClusterConfig(clusterConfig)
+                .withDefaultSerializer(new DatabaseSerializer())
+                .withDefaultExecutor(Executors.newSingleThreadExecutor(
+                        new NamedThreadFactory("copycat-benchmark-%d")));
+
+        coordinator = new DefaultClusterCoordinator(copycatConfig.resolve());
+        inMemoryDatabase = newDatabase("in-memory", clusterConfig, copycatConfig);
+        partitionedDatabase = new PartitionedDatabase("benchmark-store",
+                Arrays.asList(newDatabase("p1", clusterConfig, copycatConfig),
+                                        newDatabase("p2", clusterConfig, copycatConfig),
+                                        newDatabase("p3", clusterConfig, copycatConfig)));
+
+        Futures.getUnchecked(coordinator.open().thenCompose(v -> CompletableFuture.allOf(
+                inMemoryDatabase.open(), partitionedDatabase.open())));
+
+        DefaultConsistentMapBuilder<String, String> builder =
+                new DefaultConsistentMapBuilder<>(inMemoryDatabase, partitionedDatabase);
+        builder.withName("benchmark")
+                .withSerializer(Serializer.using(KryoNamespace.newBuilder()
+                                                         .register(KryoNamespaces.BASIC)
+                                                         .build()));
+        if (!partitioned) {
+            builder.withPartitionsDisabled();
+        }
+        map = builder.build();
+
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+            map.put(keys[i], "value-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Futures.getUnchecked(CompletableFuture.allOf(inMemoryDatabase.close(), partitionedDatabase.close())
+                                     .thenCompose(v -> coordinator.close()));
+    }
+
+    private Database newDatabase(String name, ClusterConfig clusterConfig, CopycatConfig copycatConfig) {
+        DatabaseConfig config = new DatabaseConfig()
+                .withName(name)
+                .withElectionTimeout(ELECTION_TIMEOUT_MILLIS)
+                .withHeartbeatInterval(ELECTION_TIMEOUT_MILLIS / 2)
+                .withConsistency(Consistency.STRONG)
+                .withLog(new BufferedLog()
+                                 .withFlushOnWrite(false)
+                                 .withFlushInterval(Long.MAX_VALUE)
+                                 .withSegmentSize(10485760)
+                                 .withSegmentInterval(Long.MAX_VALUE))
+                .withDefaultSerializer(new DatabaseSerializer())
+                .withReplicas(MEMBER_URI);
+        return coordinator.getResource(name, config.resolve(clusterConfig)
+                .withSerializer(copycatConfig.getDefaultSerializer())
+                .withDefaultExecutor(copycatConfig.getDefaultExecutor()));
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public Versioned<String> put() {
+        return map.put(randomKey(), "value");
+    }
+
+    @Benchmark
+    public Versioned<String> get() {
+        return map.get(randomKey());
+    }
+
+    @Benchmark
+    public boolean replace() {
+        String key = randomKey();
+        Versioned<String> current = map.get(key);
+        return current != null && map.replace(key, current.version(), "value");
+    }
+
+    @Benchmark
+    public Versioned<String> removeAndPut() {
+        String key = randomKey();
+        map.remove(key);
+        return map.put(key, "value");
+    }
+}
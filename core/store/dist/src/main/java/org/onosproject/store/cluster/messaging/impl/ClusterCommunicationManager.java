@@ -18,11 +18,19 @@ package org.onosproject.store.cluster.messaging.impl;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onlab.netty.BackpressurePolicy;
+import org.onlab.netty.CompressionStatistics;
 import org.onlab.netty.NettyMessagingManager;
 import org.onlab.nio.service.IOLoopMessagingManager;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.cluster.ClusterEvent;
+import org.onosproject.cluster.ClusterEventListener;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
@@ -32,14 +40,19 @@ import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
 import org.onosproject.store.cluster.messaging.Endpoint;
 import org.onosproject.store.cluster.messaging.MessageSubject;
 import org.onosproject.store.cluster.messaging.MessagingService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import java.io.IOException;
+import java.util.Dictionary;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
@@ -49,6 +62,8 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.util.Tools.get;
 
 @Component(immediate = true)
 @Service
@@ -57,22 +72,67 @@ public class ClusterCommunicationManager
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    private static final int DEFAULT_BATCH_SIZE_BYTES = 0;
+    private static final long DEFAULT_BATCH_WINDOW_MICROS = 200;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 0;
+    private static final String DEFAULT_BACKPRESSURE_POLICY = "UNBOUNDED";
+    private static final String DEFAULT_LOW_PRIORITY_SUBJECTS = "";
+    private static final boolean DEFAULT_USE_NETTY = true;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private ClusterService clusterService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    private ComponentConfigService cfgService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    private MetricsService metricsService;
+
+    @Property(name = "batchSizeBytes", intValue = DEFAULT_BATCH_SIZE_BYTES,
+            label = "Payload bytes that trigger sending a batch of messages to a peer; 0 disables batching")
+    private int batchSizeBytes = DEFAULT_BATCH_SIZE_BYTES;
+
+    @Property(name = "batchWindowMicros", longValue = DEFAULT_BATCH_WINDOW_MICROS,
+            label = "Maximum time in microseconds a message waits in a batch")
+    private long batchWindowMicros = DEFAULT_BATCH_WINDOW_MICROS;
+
+    @Property(name = "compressionThresholdBytes", intValue = DEFAULT_COMPRESSION_THRESHOLD_BYTES,
+            label = "Smallest message payload in bytes that is compressed; 0 disables compression")
+    private int compressionThresholdBytes = DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+
+    @Property(name = "backpressurePolicy", value = DEFAULT_BACKPRESSURE_POLICY,
+            label = "Behavior when sending to a congested peer: UNBOUNDED, BLOCK, FAIL or DROP_LOW_PRIORITY")
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.valueOf(DEFAULT_BACKPRESSURE_POLICY);
+
+    @Property(name = "lowPrioritySubjects", value = DEFAULT_LOW_PRIORITY_SUBJECTS,
+            label = "Comma separated message subjects dropped under the DROP_LOW_PRIORITY policy")
+    private Set<String> lowPrioritySubjects = ImmutableSet.of();
+
     // TODO: This probably should not be a OSGi service.
     private MessagingService messagingService;
 
-    private final boolean useNetty = true;
+    @Property(name = "useNetty", boolValue = DEFAULT_USE_NETTY,
+            label = "Use the Netty transport instead of the IOLoop transport; takes effect on activation")
+    private boolean useNetty = DEFAULT_USE_NETTY;
+
+    private ClusterMessagingMetrics metrics;
+    private final ClusterEventListener clusterListener = new InternalClusterEventListener();
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        if (context != null) {
+            String s = get(context.getProperties(), "useNetty");
+            useNetty = isNullOrEmpty(s) ? DEFAULT_USE_NETTY : Boolean.parseBoolean(s.trim());
+        }
+        metrics = new ClusterMessagingMetrics(metricsService, this::compressionRatio);
         ControllerNode localNode = clusterService.getLocalNode();
         if (useNetty) {
             NettyMessagingManager netty = new NettyMessagingManager(localNode.ip(), localNode.tcpPort());
             try {
                 netty.activate();
                 messagingService = netty;
+                registerQueueMetrics(netty);
             } catch (Exception e) {
                 log.error("NettyMessagingService#activate", e);
             }
@@ -85,25 +145,115 @@ public class ClusterCommunicationManager
                 log.error("IOLoopMessagingService#activate", e);
             }
         }
+
+        modified(context);
+
         log.info("Started on {}:{}", localNode.ip(), localNode.tcpPort());
     }
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
+        clusterService.removeListener(clusterListener);
         // TODO: cleanup messageingService if needed.
         // FIXME: workaround until it becomes a service.
         try {
-            if (useNetty) {
+            if (messagingService instanceof NettyMessagingManager) {
                 ((NettyMessagingManager) messagingService).deactivate();
-            } else {
+            } else if (messagingService instanceof IOLoopMessagingManager) {
                 ((IOLoopMessagingManager) messagingService).deactivate();
             }
         } catch (Exception e) {
             log.error("MessagingService#deactivate", e);
         }
+        metrics.removeAll();
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary properties = context.getProperties();
+        int newBatchSize;
+        long newBatchWindow;
+        int newCompressionThreshold;
+        try {
+            String s = get(properties, "batchSizeBytes");
+            newBatchSize = isNullOrEmpty(s) ? batchSizeBytes : Integer.parseInt(s.trim());
+
+            s = get(properties, "batchWindowMicros");
+            newBatchWindow = isNullOrEmpty(s) ? batchWindowMicros : Long.parseLong(s.trim());
+
+            s = get(properties, "compressionThresholdBytes");
+            newCompressionThreshold = isNullOrEmpty(s) ? compressionThresholdBytes : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            newBatchSize = DEFAULT_BATCH_SIZE_BYTES;
+            newBatchWindow = DEFAULT_BATCH_WINDOW_MICROS;
+            newCompressionThreshold = DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+        }
+
+        if (newBatchSize < 0 || newBatchWindow <= 0 || newCompressionThreshold < 0) {
+            log.warn("Ignoring invalid messaging configuration: batch of {} bytes, {} us; compression above {} bytes",
+                     newBatchSize, newBatchWindow, newCompressionThreshold);
+            return;
+        }
+        batchSizeBytes = newBatchSize;
+        batchWindowMicros = newBatchWindow;
+        compressionThresholdBytes = newCompressionThreshold;
+        if (messagingService instanceof NettyMessagingManager) {
+            NettyMessagingManager netty = (NettyMessagingManager) messagingService;
+            netty.setBatching(batchSizeBytes, batchWindowMicros);
+            netty.setCompressionThreshold(compressionThresholdBytes);
+        }
+        log.info("Configured messaging: batch of {} bytes, {} us; compression above {} bytes",
+                 batchSizeBytes, batchWindowMicros, compressionThresholdBytes);
+
+        modifiedBackpressure(properties);
+    }
+
+    private void modifiedBackpressure(Dictionary properties) {
+        BackpressurePolicy newPolicy;
+        Set<String> newLowPriority;
+        try {
+            String s = get(properties, "backpressurePolicy");
+            newPolicy = isNullOrEmpty(s) ? backpressurePolicy : BackpressurePolicy.valueOf(s.trim().toUpperCase());
+
+            s = get(properties, "lowPrioritySubjects");
+            newLowPriority = s == null ? lowPrioritySubjects
+                    : ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(s));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            log.warn("Ignoring invalid backpressure configuration", e);
+            return;
+        }
+
+        backpressurePolicy = newPolicy;
+        lowPrioritySubjects = newLowPriority;
+        if (messagingService instanceof NettyMessagingManager) {
+            ((NettyMessagingManager) messagingService).setBackpressure(backpressurePolicy, lowPrioritySubjects);
+        }
+        log.info("Configured backpressure: {}, low priority subjects {}", backpressurePolicy, lowPrioritySubjects);
+    }
+
+    private void registerQueueMetrics(NettyMessagingManager netty) {
+        // Nodes that join later are picked up by the cluster listener
+        clusterService.addListener(clusterListener);
+        clusterService.getNodes().forEach(this::registerQueueMetric);
+        metrics.registerDropped(netty::droppedMessages);
+    }
+
+    private void registerQueueMetric(ControllerNode node) {
+        if (node.equals(clusterService.getLocalNode()) || !(messagingService instanceof NettyMessagingManager)) {
+            return;
+        }
+        NettyMessagingManager netty = (NettyMessagingManager) messagingService;
+        Endpoint ep = new Endpoint(node.ip(), node.tcpPort());
+        metrics.registerQueue(node.id().toString(),
+                              () -> netty.outboundQueueBytes().getOrDefault(ep, 0L));
+    }
+
     @Override
     public boolean broadcast(ClusterMessage message) {
         boolean ok = true;
@@ -228,6 +378,7 @@ public class ClusterCommunicationManager
         Endpoint nodeEp = new Endpoint(node.ip(), node.tcpPort());
         try {
             messagingService.sendAsync(nodeEp, subject.value(), payload);
+            metrics.forSubject(subject).sent(payload.length);
             return true;
         } catch (IOException e) {
             log.debug("Failed to send cluster message to nodeId: " + toNodeId, e);
@@ -239,7 +390,21 @@ public class ClusterCommunicationManager
         ControllerNode node = clusterService.getNode(toNodeId);
         checkArgument(node != null, "Unknown nodeId: %s", toNodeId);
         Endpoint nodeEp = new Endpoint(node.ip(), node.tcpPort());
-        return messagingService.sendAndReceive(nodeEp, subject.value(), payload);
+        ClusterMessagingMetrics.SubjectMetrics subjectMetrics = metrics.forSubject(subject);
+        subjectMetrics.sent(payload.length);
+        Timer.Context timer = subjectMetrics.roundTrip().time();
+        return messagingService.sendAndReceive(nodeEp, subject.value(), payload)
+                .whenComplete((response, error) -> timer.stop());
+    }
+
+    private double compressionRatio(String type) {
+        if (messagingService instanceof NettyMessagingManager) {
+            CompressionStatistics stats = ((NettyMessagingManager) messagingService).compressionStatistics().get(type);
+            if (stats != null) {
+                return stats.ratio();
+            }
+        }
+        return 1.0;
     }
 
     @Override
@@ -247,7 +412,7 @@ public class ClusterCommunicationManager
                               ClusterMessageHandler subscriber,
                               ExecutorService executor) {
         messagingService.registerHandler(subject.value(),
-                new InternalClusterMessageHandler(subscriber),
+                new InternalClusterMessageHandler(subject, subscriber),
                 executor);
     }
 
@@ -264,7 +429,7 @@ public class ClusterCommunicationManager
             Function<R, byte[]> encoder,
             Executor executor) {
         messagingService.registerHandler(subject.value(),
-                new InternalMessageResponder<>(decoder, encoder, handler),
+                new InternalMessageResponder<>(subject, decoder, encoder, handler),
                 executor);
     }
 
@@ -274,33 +439,45 @@ public class ClusterCommunicationManager
             Consumer<M> handler,
             Executor executor) {
         messagingService.registerHandler(subject.value(),
-                new InternalMessageConsumer<>(decoder, handler),
+                new InternalMessageConsumer<>(subject, decoder, handler),
                 executor);
     }
 
     private class InternalClusterMessageHandler implements Function<byte[], byte[]> {
+        private final MessageSubject subject;
         private ClusterMessageHandler handler;
 
-        public InternalClusterMessageHandler(ClusterMessageHandler handler) {
+        public InternalClusterMessageHandler(MessageSubject subject, ClusterMessageHandler handler) {
+            this.subject = subject;
             this.handler = handler;
         }
 
         @Override
         public byte[] apply(byte[] bytes) {
-            ClusterMessage message = ClusterMessage.fromBytes(bytes);
-            handler.handle(message);
-            return message.response();
+            ClusterMessagingMetrics.SubjectMetrics subjectMetrics = metrics.forSubject(subject);
+            subjectMetrics.received(bytes.length);
+            Timer.Context timer = subjectMetrics.handler().time();
+            try {
+                ClusterMessage message = ClusterMessage.fromBytes(bytes);
+                handler.handle(message);
+                return message.response();
+            } finally {
+                timer.stop();
+            }
         }
     }
 
     private class InternalMessageResponder<M, R> implements Function<byte[], byte[]> {
+        private final MessageSubject subject;
         private final Function<byte[], M> decoder;
         private final Function<R, byte[]> encoder;
         private final Function<M, R> handler;
 
-        public InternalMessageResponder(Function<byte[], M> decoder,
+        public InternalMessageResponder(MessageSubject subject,
+                                        Function<byte[], M> decoder,
                                         Function<R, byte[]> encoder,
                                         Function<M, R> handler) {
+            this.subject = subject;
             this.decoder = decoder;
             this.encoder = encoder;
             this.handler = handler;
@@ -308,23 +485,50 @@ public class ClusterCommunicationManager
 
         @Override
         public byte[] apply(byte[] bytes) {
-            R reply = handler.apply(decoder.apply(ClusterMessage.fromBytes(bytes).payload()));
-            return encoder.apply(reply);
+            ClusterMessagingMetrics.SubjectMetrics subjectMetrics = metrics.forSubject(subject);
+            subjectMetrics.received(bytes.length);
+            Timer.Context timer = subjectMetrics.handler().time();
+            try {
+                R reply = handler.apply(decoder.apply(ClusterMessage.fromBytes(bytes).payload()));
+                return encoder.apply(reply);
+            } finally {
+                timer.stop();
+            }
         }
     }
 
     private class InternalMessageConsumer<M> implements Consumer<byte[]> {
+        private final MessageSubject subject;
         private final Function<byte[], M> decoder;
         private final Consumer<M> consumer;
 
-        public InternalMessageConsumer(Function<byte[], M> decoder, Consumer<M> consumer) {
+        public InternalMessageConsumer(MessageSubject subject, Function<byte[], M> decoder, Consumer<M> consumer) {
+            this.subject = subject;
             this.decoder = decoder;
             this.consumer = consumer;
         }
 
         @Override
         public void accept(byte[] bytes) {
-            consumer.accept(decoder.apply(ClusterMessage.fromBytes(bytes).payload()));
+            ClusterMessagingMetrics.SubjectMetrics subjectMetrics = metrics.forSubject(subject);
+            subjectMetrics.received(bytes.length);
+            Timer.Context timer = subjectMetrics.handler().time();
+            try {
+                consumer.accept(decoder.apply(ClusterMessage.fromBytes(bytes).payload()));
+            } finally {
+                timer.stop();
+            }
+        }
+    }
+
+    private final class InternalClusterEventListener implements ClusterEventListener {
+
+        @Override
+        public void event(ClusterEvent event) {
+            if (event.type() == ClusterEvent.Type.INSTANCE_ADDED
+                    || event.type() == ClusterEvent.Type.INSTANCE_ACTIVATED) {
+                registerQueueMetric(event.subject());
+            }
         }
     }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+/**
+ * Per message subject traffic and latency metrics for cluster messaging.
+ * <p>
+ * Metrics are registered with the metrics service under the
+ * {@value #COMPONENT} component, with the message subject as the feature.
+ * Outbound queue depths are registered under the {@value #QUEUE_COMPONENT}
+ * component, with the peer node as the feature.
+ * </p>
+ */
+final class ClusterMessagingMetrics {
+
+    static final String COMPONENT = "ClusterCommunication";
+
+    static final String MESSAGES_SENT = "messagesSent";
+    static final String BYTES_SENT = "bytesSent";
+    static final String MESSAGES_RECEIVED = "messagesReceived";
+    static final String BYTES_RECEIVED = "bytesReceived";
+    static final String ROUND_TRIP = "roundTrip";
+    static final String HANDLER = "handler";
+    static final String COMPRESSION_RATIO = "compressionRatio";
+
+    static final String QUEUE_COMPONENT = "ClusterMessagingQueue";
+    static final String QUEUE_BYTES = "outboundQueueBytes";
+    static final String DROPPED = "droppedMessages";
+    static final String ALL_PEERS = "all";
+
+    private final MetricsService metricsService;
+    private final MetricsComponent component;
+    private final Function<String, Double> compressionRatios;
+    private final Map<MessageSubject, SubjectMetrics> subjects = new ConcurrentHashMap<>();
+    private final MetricsComponent queueComponent;
+    private final Map<String, MetricsFeature> peers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates metrics backed by the given metrics service.
+     *
+     * @param metricsService metrics service
+     * @param compressionRatios function returning the compression ratio for a subject
+     */
+    ClusterMessagingMetrics(MetricsService metricsService, Function<String, Double> compressionRatios) {
+        this.metricsService = metricsService;
+        this.component = metricsService.registerComponent(COMPONENT);
+        this.queueComponent = metricsService.registerComponent(QUEUE_COMPONENT);
+        this.compressionRatios = compressionRatios;
+    }
+
+    /**
+     * Returns the metrics for the given subject, registering them on first use.
+     *
+     * @param subject message subject
+     * @return subject metrics
+     */
+    SubjectMetrics forSubject(MessageSubject subject) {
+        return subjects.computeIfAbsent(subject, SubjectMetrics::new);
+    }
+
+    /**
+     * Registers a gauge for the outbound queue depth of a peer, unless one
+     * is registered already.
+     *
+     * @param peer peer node name
+     * @param queueBytes supplier of the bytes queued for the peer
+     */
+    synchronized void registerQueue(String peer, Supplier<Long> queueBytes) {
+        if (peers.containsKey(peer)) {
+            return;
+        }
+        MetricsFeature feature = queueComponent.registerFeature(peer);
+        peers.put(peer, feature);
+        try {
+            metricsService.registerMetric(queueComponent, feature, QUEUE_BYTES, (Gauge<Long>) queueBytes::get);
+        } catch (IllegalArgumentException e) {
+            // Registered elsewhere under the same name; the existing gauge is kept
+            return;
+        }
+    }
+
+    /**
+     * Registers a gauge for the number of messages dropped under backpressure.
+     *
+     * @param dropped supplier of the dropped message count
+     */
+    void registerDropped(Supplier<Long> dropped) {
+        MetricsFeature feature = peers.computeIfAbsent(ALL_PEERS, queueComponent::registerFeature);
+        metricsService.registerMetric(queueComponent, feature, DROPPED, (Gauge<Long>) dropped::get);
+    }
+
+    /**
+     * Removes all metrics registered so far from the metrics service.
+     */
+    synchronized void removeAll() {
+        subjects.values().forEach(SubjectMetrics::remove);
+        subjects.clear();
+        peers.forEach((peer, feature) -> {
+            metricsService.removeMetric(queueComponent, feature, QUEUE_BYTES);
+            metricsService.removeMetric(queueComponent, feature, DROPPED);
+        });
+        peers.clear();
+    }
+
+    /**
+     * Metrics for a single message subject.
+     */
+    final class SubjectMetrics {
+
+        private final MetricsFeature feature;
+        private final Meter messagesSent;
+        private final Meter bytesSent;
+        private final Meter messagesReceived;
+        private final Meter bytesReceived;
+        private final Timer roundTrip;
+        private final Timer handler;
+
+        private SubjectMetrics(MessageSubject subject) {
+            String name = subject.value();
+            feature = component.registerFeature(name);
+            messagesSent = metricsService.createMeter(component, feature, MESSAGES_SENT);
+            bytesSent = metricsService.createMeter(component, feature, BYTES_SENT);
+            messagesReceived = metricsService.createMeter(component, feature, MESSAGES_RECEIVED);
+            bytesReceived = metricsService.createMeter(component, feature, BYTES_RECEIVED);
+            roundTrip = metricsService.createTimer(component, feature, ROUND_TRIP);
+            handler = metricsService.createTimer(component, feature, HANDLER);
+            metricsService.registerMetric(component, feature, COMPRESSION_RATIO,
+                                          (Gauge<Double>) () -> compressionRatios.apply(name));
+        }
+
+        /**
+         * Records a message sent to a peer.
+         *
+         * @param bytes size of the message
+         */
+        void sent(int bytes) {
+            messagesSent.mark();
+            bytesSent.mark(bytes);
+        }
+
+        /**
+         * Records a message received from a peer.
+         *
+         * @param bytes size of the message
+         */
+        void received(int bytes) {
+            messagesReceived.mark();
+            bytesReceived.mark(bytes);
+        }
+
+        /**
+         * Returns the timer for request/reply round trips.
+         *
+         * @return round trip timer
+         */
+        Timer roundTrip() {
+            return roundTrip;
+        }
+
+        /**
+         * Returns the timer for handler execution.
+         *
+         * @return handler timer
+         */
+        Timer handler() {
+            return handler;
+        }
+
+        private void remove() {
+            for (String metric : new String[] {MESSAGES_SENT, BYTES_SENT, MESSAGES_RECEIVED, BYTES_RECEIVED,
+                                               ROUND_TRIP, HANDLER, COMPRESSION_RATIO}) {
+                metricsService.removeMetric(component, feature, metric);
+            }
+        }
+    }
+}
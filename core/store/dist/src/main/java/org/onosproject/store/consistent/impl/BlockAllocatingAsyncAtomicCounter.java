@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import org.onosproject.store.service.AsyncAtomicCounter;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * AsyncAtomicCounter that leases blocks of values from a distributed counter
+ * and serves increments from the leased block without coordination.
+ * <p>
+ * Values returned by increments are unique across the cluster and increase
+ * monotonically on each node, but they are neither contiguous nor ordered
+ * across nodes. The next block is leased in the background once half of the
+ * current one has been used. {@link #get()} returns the highest value leased
+ * by any node; other updates are applied directly to the distributed counter
+ * and so never overlap a leased block.
+ * </p>
+ */
+public class BlockAllocatingAsyncAtomicCounter implements AsyncAtomicCounter {
+
+    private final AsyncAtomicCounter counter;
+    private final long blockSize;
+
+    // Current block is [nextValue, blockEnd); guarded by this.
+    private long nextValue = 0;
+    private long blockEnd = 0;
+    private CompletableFuture<Long> nextBlock;
+
+    /**
+     * Creates a counter that leases blocks from the given counter.
+     *
+     * @param counter distributed counter to lease blocks from
+     * @param blockSize number of values in each leased block
+     */
+    public BlockAllocatingAsyncAtomicCounter(AsyncAtomicCounter counter, long blockSize) {
+        checkArgument(blockSize > 0, "Block size must be positive");
+        this.counter = checkNotNull(counter);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public CompletableFuture<Long> incrementAndGet() {
+        CompletableFuture<Long> pending;
+        synchronized (this) {
+            if (nextValue >= blockEnd && nextBlock != null
+                    && nextBlock.isDone() && !nextBlock.isCompletedExceptionally()) {
+                nextValue = nextBlock.join();
+                blockEnd = nextValue + blockSize;
+                nextBlock = null;
+            }
+            if (nextValue < blockEnd) {
+                long value = nextValue++;
+                if (nextBlock == null && blockEnd - nextValue <= blockSize / 2) {
+                    leaseNextBlock();
+                }
+                return CompletableFuture.completedFuture(value);
+            }
+            if (nextBlock == null) {
+                leaseNextBlock();
+            }
+            pending = nextBlock;
+        }
+        // Retry once the next block has been leased; failures propagate.
+        return pending.thenCompose(start -> incrementAndGet());
+    }
+
+    @Override
+    public CompletableFuture<Long> getAndIncrement() {
+        // Values from a leased block are only meant to be unique, so both
+        // increment flavors hand out the next one.
+        return incrementAndGet();
+    }
+
+    @Override
+    public CompletableFuture<Long> getAndAdd(long delta) {
+        return counter.getAndAdd(delta);
+    }
+
+    @Override
+    public CompletableFuture<Long> addAndGet(long delta) {
+        return counter.addAndGet(delta);
+    }
+
+    @Override
+    public CompletableFuture<Long> get() {
+        return counter.get();
+    }
+
+    private void leaseNextBlock() {
+        // Leasing [previous + 1, previous + blockSize] mirrors incrementAndGet.
+        CompletableFuture<Long> lease = counter.getAndAdd(blockSize).thenApply(previous -> previous + 1);
+        nextBlock = lease;
+        lease.whenComplete((start, error) -> {
+            if (error != null) {
+                synchronized (this) {
+                    if (nextBlock == lease) {
+                        nextBlock = null;
+                    }
+                }
+            }
+        });
+    }
+}
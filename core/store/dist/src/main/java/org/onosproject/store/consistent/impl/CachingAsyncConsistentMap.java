@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.Versioned;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * AsyncConsistentMap that serves repeated reads from a bounded local cache.
+ * <p>
+ * Cached entries are invalidated whenever a key is updated through a caching
+ * map with the same name on any node. Updates made through maps without a
+ * read cache or through transactions are not tracked, so entries also expire
+ * a short while after they were read; until then such updates may not be
+ * visible through the cache.
+ * </p>
+ *
+ * @param <K> type of key.
+ * @param <V> type of value.
+ */
+class CachingAsyncConsistentMap<K, V> extends DefaultAsyncConsistentMap<K, V> {
+
+    static final long CACHE_EXPIRY_SECONDS = 30;
+
+    private final String name;
+    private final MapCacheInvalidator invalidator;
+    private final Cache<String, Versioned<V>> cache;
+
+    // Bumped on every invalidation; reads that overlap one are not cached.
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Creates a caching map.
+     *
+     * @param name map name
+     * @param database backing database
+     * @param serializer key and value serializer
+     * @param readOnly true if updates are disallowed
+     * @param maxEntries maximum number of cached entries
+     * @param invalidator invalidation channel; null to only track local updates
+     */
+    CachingAsyncConsistentMap(String name,
+                              Database database,
+                              Serializer serializer,
+                              boolean readOnly,
+                              int maxEntries,
+                              MapCacheInvalidator invalidator) {
+        this(name, database, serializer, readOnly, maxEntries, invalidator, Ticker.systemTicker());
+    }
+
+    // Allows tests to control the expiry of cached entries.
+    CachingAsyncConsistentMap(String name,
+                              Database database,
+                              Serializer serializer,
+                              boolean readOnly,
+                              int maxEntries,
+                              MapCacheInvalidator invalidator,
+                              Ticker ticker) {
+        super(name, database, serializer, readOnly);
+        checkArgument(maxEntries > 0, "Cache size must be positive");
+        this.name = name;
+        this.invalidator = invalidator;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(CACHE_EXPIRY_SECONDS, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+        if (invalidator != null) {
+            invalidator.register(this);
+        }
+    }
+
+    /**
+     * Returns the map name.
+     *
+     * @return map name
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * Drops a cached entry.
+     *
+     * @param key database key, or null to drop all entries
+     */
+    void invalidate(String key) {
+        generation.incrementAndGet();
+        if (key == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> get(K key) {
+        checkNotNull(key);
+        String rawKey = eK(key);
+        Versioned<V> cached = cache.getIfPresent(rawKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long readGeneration = generation.get();
+        return super.get(key).whenComplete((value, error) -> {
+            if (value == null) {
+                return;
+            }
+            cache.asMap().merge(rawKey, value,
+                                (current, update) -> update.version() >= current.version() ? update : current);
+            if (generation.get() != readGeneration) {
+                // raced with an update; the value may already be stale
+                cache.asMap().remove(rawKey, value);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> put(K key, V value) {
+        return invalidateOnCompletion(key, super.put(key, value));
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> remove(K key) {
+        return invalidateOnCompletion(key, super.remove(key));
+    }
+
+    @Override
+    public CompletableFuture<Void> clear() {
+        return invalidateOnCompletion(null, super.clear());
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> putIfAbsent(K key, V value) {
+        return invalidateOnCompletion(key, super.putIfAbsent(key, value));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> remove(K key, V value) {
+        return invalidateOnCompletion(key, super.remove(key, value));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> remove(K key, long version) {
+        return invalidateOnCompletion(key, super.remove(key, version));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> replace(K key, V oldValue, V newValue) {
+        return invalidateOnCompletion(key, super.replace(key, oldValue, newValue));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> replace(K key, long oldVersion, V newValue) {
+        return invalidateOnCompletion(key, super.replace(key, oldVersion, newValue));
+    }
+
+    private <T> CompletableFuture<T> invalidateOnCompletion(K key, CompletableFuture<T> future) {
+        return future.whenComplete((result, error) -> {
+            String rawKey = key == null ? null : eK(key);
+            if (invalidator != null) {
+                invalidator.invalidate(name, rawKey);
+            } else {
+                invalidate(rawKey);
+            }
+        });
+    }
+}
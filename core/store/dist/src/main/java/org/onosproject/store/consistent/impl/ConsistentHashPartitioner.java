@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Partitioner that places keys on a consistent hash ring.
+ * <p>
+ * Every partition owns a number of virtual nodes on the ring, placed by
+ * hashing the partition name, and a key belongs to the partition owning the
+ * first virtual node at or after the hash of the key. Adding a partition to
+ * a set of N therefore relocates only about 1/(N+1) of the keys, where a
+ * modulo hash would relocate almost all of them.
+ * </p>
+ */
+public class ConsistentHashPartitioner extends DatabasePartitioner {
+
+    /**
+     * Default number of virtual nodes per partition.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final NavigableMap<Long, Database> ring = new TreeMap<>();
+
+    public ConsistentHashPartitioner(List<Database> partitions) {
+        this(partitions, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashPartitioner(List<Database> partitions, int virtualNodes) {
+        super(partitions);
+        checkArgument(virtualNodes > 0, "virtualNodes must be positive");
+        for (Database partition : this.partitions) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(position(partition.name() + "#" + i), partition);
+            }
+        }
+    }
+
+    @Override
+    public Database getPartition(String tableName, String key) {
+        Map.Entry<Long, Database> entry = ring.ceilingEntry(position(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long position(String value) {
+        return HASH.hashString(value, Charsets.UTF_8).asLong();
+    }
+}
@@ -40,14 +40,18 @@ import org.apache.commons.lang.math.RandomUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.store.cluster.impl.DistributedClusterStore;
 import org.onosproject.store.cluster.impl.NodeInfo;
 import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.MessageSubject;
 import org.onosproject.store.ecmap.EventuallyConsistentMapBuilderImpl;
 import org.onosproject.store.service.AtomicCounterBuilder;
 import org.onosproject.store.service.ConsistentMapBuilder;
@@ -60,21 +64,29 @@ import org.onosproject.store.service.StorageAdminService;
 import org.onosproject.store.service.StorageService;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.TransactionContextBuilder;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.util.Tools.get;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -93,11 +105,20 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     private static final int RAFT_ELECTION_TIMEOUT_MILLIS = 3000;
     private static final int DATABASE_OPERATION_TIMEOUT_MILLIS = 5000;
 
+    private static final int REBALANCE_RETRY_SECONDS = 30;
+
+    private static final boolean DEFAULT_CONSISTENT_HASH_PARTITIONING = false;
+    private static final MessageSubject LAYOUT_CHANGED = new MessageSubject("onos-partition-layout-changed");
+
     private ClusterCoordinator coordinator;
     private PartitionedDatabase partitionedDatabase;
     private Database inMemoryDatabase;
 
     private TransactionManager transactionManager;
+    private ExecutorService cacheInvalidationExecutor;
+    private MapCacheInvalidator cacheInvalidator;
+    private ScheduledExecutorService layoutExecutor;
+    private ScheduledFuture<?> rebalanceRetry;
     private final IdGenerator transactionIdGenerator = () -> RandomUtils.nextLong();
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -106,12 +127,20 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterCommunicationService clusterCommunicator;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Property(name = "consistentHashPartitioning", boolValue = DEFAULT_CONSISTENT_HASH_PARTITIONING,
+            label = "Place keys in partitions by consistent hashing; enable only once every node supports it")
+    private boolean consistentHashPartitioning = DEFAULT_CONSISTENT_HASH_PARTITIONING;
+
     protected String nodeToUri(NodeInfo node) {
         return String.format("tcp://%s:%d", node.getIp(), COPYCAT_TCP_PORT);
     }
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
         // load database configuration
         File databaseDefFile = new File(PARTITION_DEFINITION_FILE);
         log.info("Loading database definition: {}", databaseDefFile.getAbsolutePath());
@@ -174,6 +203,8 @@ public class DatabaseManager implements StorageService, StorageAdminService {
             .collect(Collectors.toList());
 
         partitionedDatabase = new PartitionedDatabase("onos-store", partitions);
+        consistentHashPartitioning = isConsistentHashPartitioning(context);
+        partitionedDatabase.setConsistentHashing(consistentHashPartitioning);
 
         CompletableFuture<Void> status = coordinator.open()
             .thenCompose(v -> CompletableFuture.allOf(inMemoryDatabase.open(), partitionedDatabase.open())
@@ -188,9 +219,57 @@ public class DatabaseManager implements StorageService, StorageAdminService {
         Futures.getUnchecked(status);
 
         transactionManager = new TransactionManager(partitionedDatabase);
+        cacheInvalidationExecutor = Executors.newSingleThreadExecutor(
+                groupedThreads("onos/store/consistent", "cache-invalidator"));
+        cacheInvalidator = new MapCacheInvalidator(clusterCommunicator, cacheInvalidationExecutor);
+        layoutExecutor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/store/consistent", "partition-layout"));
+        clusterCommunicator.addSubscriber(LAYOUT_CHANGED, bytes -> new String(bytes, StandardCharsets.UTF_8),
+                                          this::layoutChanged, layoutExecutor);
+        // Entries are in place unless the layout changed since this node last ran; otherwise
+        // relocate entries left in the wrong partition, e.g. by a change of the partition definition.
+        partitionedDatabase.verifyUnchangedLayout(clusterService.getLocalNode().id().toString())
+                .whenCompleteAsync((unchanged, error) -> {
+                    if (error != null) {
+                        log.warn("Failed to read the partition layouts", error);
+                    } else if (!unchanged) {
+                        log.info("Partition layout changed; looking up entries outside their owning partition "
+                                         + "until they are rebalanced");
+                    }
+                    rebalancePartitions();
+                }, layoutExecutor);
         log.info("Started");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        boolean newConsistentHashPartitioning = isConsistentHashPartitioning(context);
+        if (newConsistentHashPartitioning == consistentHashPartitioning) {
+            return;
+        }
+        consistentHashPartitioning = newConsistentHashPartitioning;
+        partitionedDatabase.setConsistentHashing(consistentHashPartitioning);
+        log.info("Placing keys by {}", consistentHashPartitioning ? "consistent hashing" : "key hash");
+        clusterCommunicator.broadcast(clusterService.getLocalNode().id().toString(), LAYOUT_CHANGED,
+                                      id -> id.getBytes(StandardCharsets.UTF_8));
+        rebalancePartitions();
+    }
+
+    private boolean isConsistentHashPartitioning(ComponentContext context) {
+        if (context == null) {
+            return DEFAULT_CONSISTENT_HASH_PARTITIONING;
+        }
+        String s = get(context.getProperties(), "consistentHashPartitioning");
+        return isNullOrEmpty(s) ? DEFAULT_CONSISTENT_HASH_PARTITIONING : Boolean.parseBoolean(s.trim());
+    }
+
+    // Another node switched layouts and may place entries where this node does not look for them.
+    private void layoutChanged(String nodeId) {
+        log.info("Node {} changed the partition layout", nodeId);
+        partitionedDatabase.placementChanged();
+        rebalancePartitions();
+    }
+
     private void createDefaultDatabaseDefinition(DatabaseDefinitionStore store) {
         // Assumes IPv4 is returned.
         String ip = DistributedClusterStore.getSiteLocalAddress();
@@ -204,6 +283,12 @@ public class DatabaseManager implements StorageService, StorageAdminService {
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
+        clusterCommunicator.removeSubscriber(LAYOUT_CHANGED);
+        // Also drops a pending rebalance retry
+        layoutExecutor.shutdownNow();
+        cacheInvalidator.close();
+        cacheInvalidationExecutor.shutdown();
         CompletableFuture.allOf(inMemoryDatabase.close(), partitionedDatabase.close())
             .thenCompose(v -> coordinator.close())
             .whenComplete((result, error) -> {
@@ -308,7 +393,7 @@ public class DatabaseManager implements StorageService, StorageAdminService {
 
     @Override
     public <K, V> ConsistentMapBuilder<K, V> consistentMapBuilder() {
-        return new DefaultConsistentMapBuilder<>(inMemoryDatabase, partitionedDatabase);
+        return new DefaultConsistentMapBuilder<>(inMemoryDatabase, partitionedDatabase, cacheInvalidator);
     }
 
     @Override
@@ -368,4 +453,40 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     public void redriveTransactions() {
         getTransactions().stream().forEach(transactionManager::execute);
     }
+
+    @Override
+    public void rebalancePartitions() {
+        // Entries are only moved once every node places keys the same way;
+        // until then nodes would keep moving them back and forth.
+        Set<String> nodes = clusterService.getNodes()
+                .stream()
+                .map(node -> node.id().toString())
+                .collect(Collectors.toSet());
+        partitionedDatabase.publishLayout(clusterService.getLocalNode().id().toString())
+                .thenCompose(v -> partitionedDatabase.isLayoutShared(nodes))
+                .thenCompose(shared -> shared
+                        ? partitionedDatabase.rebalance() : CompletableFuture.<Integer>completedFuture(null))
+                .whenComplete((moved, error) -> {
+                    if (error != null) {
+                        log.warn("Failed to rebalance database partitions; retrying in {}s",
+                                 REBALANCE_RETRY_SECONDS, error);
+                        retryRebalance();
+                    } else if (moved == null) {
+                        log.info("Deferred rebalancing database partitions until all nodes use the same layout");
+                        retryRebalance();
+                    } else {
+                        log.info("Rebalanced database partitions; moved {} entries", moved);
+                    }
+                });
+    }
+
+    // Until a pass completes, entries are looked up outside their owning
+    // partition, so a deferred or failed pass is retried rather than left
+    // to the next layout change.
+    private synchronized void retryRebalance() {
+        if ((rebalanceRetry == null || rebalanceRetry.isDone()) && !layoutExecutor.isShutdown()) {
+            rebalanceRetry = layoutExecutor.schedule(this::rebalancePartitions,
+                                                     REBALANCE_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
 }
\ No newline at end of file
@@ -17,10 +17,12 @@
 package org.onosproject.store.consistent.impl;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
+import org.onosproject.store.service.DatabaseUpdate;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.Versioned;
 
@@ -189,6 +191,16 @@ public interface DatabaseProxy<K, V> {
      */
     CompletableFuture<Result<Boolean>> replace(String tableName, K key, long oldVersion, V newValue);
 
+    /**
+     * Applies the given updates, in order, as a single replicated command.
+     * Unlike a transaction the updates are independent of each other; the
+     * result of each update is the one its individual operation would return.
+     *
+     * @param updates updates to apply
+     * @return A completable future to be completed with the results of the updates, in order
+     */
+    CompletableFuture<List<Result<?>>> batch(List<DatabaseUpdate> updates);
+
     /**
      * Atomically add the given value to current value of the specified counter.
      *
@@ -17,10 +17,12 @@
 package org.onosproject.store.consistent.impl;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.onosproject.store.service.DatabaseUpdate;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.Versioned;
 
@@ -97,6 +99,9 @@ public interface DatabaseState<K, V> {
   @Command
   Result<Boolean> replace(String tableName, K key, long oldVersion, V newValue);
 
+  @Command
+  List<Result<?>> batch(List<DatabaseUpdate> updates);
+
   @Command
   Long counterAddAndGet(String counterName, long delta);
 
@@ -67,6 +67,10 @@ public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V>
         return serializer.decode(HexString.fromHexString(key));
     }
 
+    protected String eK(K key) {
+        return keyCache.getUnchecked(key);
+    }
+
     public DefaultAsyncConsistentMap(String name,
             Database database,
             Serializer serializer,
@@ -37,7 +37,16 @@ public class DefaultAtomicCounter implements AtomicCounter {
     private final AsyncAtomicCounter asyncCounter;
 
     public DefaultAtomicCounter(String name, Database database) {
-        asyncCounter = new DefaultAsyncAtomicCounter(name, database);
+        this(new DefaultAsyncAtomicCounter(name, database));
+    }
+
+    /**
+     * Creates a counter that blocks on the given async counter.
+     *
+     * @param asyncCounter backing async counter
+     */
+    public DefaultAtomicCounter(AsyncAtomicCounter asyncCounter) {
+        this.asyncCounter = asyncCounter;
     }
 
     @Override
@@ -13,6 +13,7 @@ public class DefaultAtomicCounterBuilder implements AtomicCounterBuilder {
 
     private String name;
     private boolean partitionsEnabled = true;
+    private long blockSize = 0;
     private final Database partitionedDatabase;
     private final Database inMemoryDatabase;
 
@@ -34,15 +35,22 @@ public class DefaultAtomicCounterBuilder implements AtomicCounterBuilder {
         return this;
     }
 
+    @Override
+    public AtomicCounterBuilder withBlockAllocation(long blockSize) {
+        checkArgument(blockSize > 0);
+        this.blockSize = blockSize;
+        return this;
+    }
+
     @Override
     public AtomicCounter build() {
-        Database database = partitionsEnabled ? partitionedDatabase : inMemoryDatabase;
-        return new DefaultAtomicCounter(name, database);
+        return new DefaultAtomicCounter(buildAsyncCounter());
     }
 
     @Override
     public AsyncAtomicCounter buildAsyncCounter() {
         Database database = partitionsEnabled ? partitionedDatabase : inMemoryDatabase;
-        return new DefaultAsyncAtomicCounter(name, database);
+        AsyncAtomicCounter counter = new DefaultAsyncAtomicCounter(name, database);
+        return blockSize > 0 ? new BlockAllocatingAsyncAtomicCounter(counter, blockSize) : counter;
     }
 }
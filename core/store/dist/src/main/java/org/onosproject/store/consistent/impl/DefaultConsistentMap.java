@@ -47,7 +47,16 @@ public class DefaultConsistentMap<K, V> implements ConsistentMap<K, V> {
             Database database,
             Serializer serializer,
             boolean readOnly) {
-        asyncMap = new DefaultAsyncConsistentMap<>(name, database, serializer, readOnly);
+        this(new DefaultAsyncConsistentMap<>(name, database, serializer, readOnly));
+    }
+
+    /**
+     * Creates a consistent map that blocks on the given async map.
+     *
+     * @param asyncMap backing async map
+     */
+    public DefaultConsistentMap(AsyncConsistentMap<K, V> asyncMap) {
+        this.asyncMap = asyncMap;
     }
 
     @Override
@@ -20,12 +20,21 @@ public class DefaultConsistentMapBuilder<K, V> implements ConsistentMapBuilder<K
     private String name;
     private boolean partitionsEnabled = true;
     private boolean readOnly = false;
+    private int cacheSize = 0;
     private final Database partitionedDatabase;
     private final Database inMemoryDatabase;
+    private final MapCacheInvalidator cacheInvalidator;
 
     public DefaultConsistentMapBuilder(Database inMemoryDatabase, Database partitionedDatabase) {
+        this(inMemoryDatabase, partitionedDatabase, null);
+    }
+
+    DefaultConsistentMapBuilder(Database inMemoryDatabase,
+                                Database partitionedDatabase,
+                                MapCacheInvalidator cacheInvalidator) {
         this.inMemoryDatabase = inMemoryDatabase;
         this.partitionedDatabase = partitionedDatabase;
+        this.cacheInvalidator = cacheInvalidator;
     }
 
     @Override
@@ -54,26 +63,33 @@ public class DefaultConsistentMapBuilder<K, V> implements ConsistentMapBuilder<K
         return this;
     }
 
+    @Override
+    public ConsistentMapBuilder<K, V> withReadCache(int maxEntries) {
+        checkArgument(maxEntries > 0);
+        cacheSize = maxEntries;
+        return this;
+    }
+
     private boolean validInputs() {
         return name != null && serializer != null;
     }
 
     @Override
     public ConsistentMap<K, V> build() {
-        checkState(validInputs());
-        return new DefaultConsistentMap<>(
-                name,
-                partitionsEnabled ? partitionedDatabase : inMemoryDatabase,
-                serializer,
-                readOnly);
+        return new DefaultConsistentMap<>(buildAsyncMap());
     }
 
     @Override
     public AsyncConsistentMap<K, V> buildAsyncMap() {
         checkState(validInputs());
+        Database database = partitionsEnabled ? partitionedDatabase : inMemoryDatabase;
+        if (cacheSize > 0) {
+            return new CachingAsyncConsistentMap<>(
+                    name, database, serializer, readOnly, cacheSize, cacheInvalidator);
+        }
         return new DefaultAsyncConsistentMap<>(
                 name,
-                partitionsEnabled ? partitionedDatabase : inMemoryDatabase,
+                database,
                 serializer,
                 readOnly);
     }
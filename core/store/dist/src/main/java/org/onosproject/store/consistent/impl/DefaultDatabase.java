@@ -23,11 +23,13 @@ import net.kuujo.copycat.state.internal.DefaultStateMachine;
 import net.kuujo.copycat.util.concurrent.Futures;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
+import org.onosproject.store.service.DatabaseUpdate;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.Versioned;
 
@@ -37,6 +39,8 @@ import org.onosproject.store.service.Versioned;
 public class DefaultDatabase extends AbstractResource<Database> implements Database {
     private final StateMachine<DatabaseState<String, byte[]>> stateMachine;
     private DatabaseProxy<String, byte[]> proxy;
+    private final UpdateBatcher updateBatcher =
+            new UpdateBatcher(updates -> checkOpen(() -> proxy.batch(updates)));
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public DefaultDatabase(ResourceManager context) {
@@ -96,12 +100,21 @@ public class DefaultDatabase extends AbstractResource<Database> implements Datab
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> put(String tableName, String key, byte[] value) {
-        return checkOpen(() -> proxy.put(tableName, key, value));
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.PUT)
+                .withTableName(tableName)
+                .withKey(key)
+                .withValue(value)
+                .build());
     }
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> remove(String tableName, String key) {
-        return checkOpen(() -> proxy.remove(tableName, key));
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.REMOVE)
+                .withTableName(tableName)
+                .withKey(key)
+                .build());
     }
 
     @Override
@@ -126,27 +139,68 @@ public class DefaultDatabase extends AbstractResource<Database> implements Datab
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> putIfAbsent(String tableName, String key, byte[] value) {
-        return checkOpen(() -> proxy.putIfAbsent(tableName, key, value));
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.PUT_IF_ABSENT)
+                .withTableName(tableName)
+                .withKey(key)
+                .withValue(value)
+                .build());
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, byte[] value) {
-        return checkOpen(() -> proxy.remove(tableName, key, value));
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.REMOVE_IF_VALUE_MATCH)
+                .withTableName(tableName)
+                .withKey(key)
+                .withCurrentValue(value)
+                .build());
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, long version) {
-        return checkOpen(() -> proxy.remove(tableName, key, version));
+        if (version < 0) {
+            return checkOpen(() -> proxy.remove(tableName, key, version));
+        }
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.REMOVE_IF_VERSION_MATCH)
+                .withTableName(tableName)
+                .withKey(key)
+                .withCurrentVersion(version)
+                .build());
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(String tableName, String key, byte[] oldValue, byte[] newValue) {
-        return checkOpen(() -> proxy.replace(tableName, key, oldValue, newValue));
+        if (oldValue == null) {
+            return checkOpen(() -> proxy.replace(tableName, key, oldValue, newValue));
+        }
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.PUT_IF_VALUE_MATCH)
+                .withTableName(tableName)
+                .withKey(key)
+                .withCurrentValue(oldValue)
+                .withValue(newValue)
+                .build());
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(String tableName, String key, long oldVersion, byte[] newValue) {
-        return checkOpen(() -> proxy.replace(tableName, key, oldVersion, newValue));
+        if (oldVersion < 0) {
+            return checkOpen(() -> proxy.replace(tableName, key, oldVersion, newValue));
+        }
+        return updateBatcher.submit(DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.PUT_IF_VERSION_MATCH)
+                .withTableName(tableName)
+                .withKey(key)
+                .withCurrentVersion(oldVersion)
+                .withValue(newValue)
+                .build());
+    }
+
+    @Override
+    public CompletableFuture<List<Result<?>>> batch(List<DatabaseUpdate> updates) {
+        return checkOpen(() -> proxy.batch(updates));
     }
 
     @Override
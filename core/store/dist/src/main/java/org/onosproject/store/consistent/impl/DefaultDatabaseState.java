@@ -16,9 +16,11 @@
 
 package org.onosproject.store.consistent.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
@@ -29,7 +31,6 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.onosproject.store.service.DatabaseUpdate;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.Versioned;
-import org.onosproject.store.service.DatabaseUpdate.Type;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -224,6 +225,13 @@ public class DefaultDatabaseState implements DatabaseState<String, byte[]> {
         return Result.ok(false);
     }
 
+    @Override
+    public List<Result<?>> batch(List<DatabaseUpdate> updates) {
+        List<Result<?>> results = new ArrayList<>(updates.size());
+        updates.forEach(update -> results.add(apply(update)));
+        return results;
+    }
+
     @Override
     public Long counterAddAndGet(String counterName, long delta) {
         return getCounter(counterName).addAndGet(delta);
@@ -275,6 +283,29 @@ public class DefaultDatabaseState implements DatabaseState<String, byte[]> {
         return true;
     }
 
+    private Result<?> apply(DatabaseUpdate update) {
+        String tableName = update.tableName();
+        String key = update.key();
+        switch (update.type()) {
+        case PUT:
+            return put(tableName, key, update.value());
+        case PUT_IF_ABSENT:
+            return putIfAbsent(tableName, key, update.value());
+        case PUT_IF_VERSION_MATCH:
+            return replace(tableName, key, update.currentVersion(), update.value());
+        case PUT_IF_VALUE_MATCH:
+            return replace(tableName, key, update.currentValue(), update.value());
+        case REMOVE:
+            return remove(tableName, key);
+        case REMOVE_IF_VERSION_MATCH:
+            return remove(tableName, key, update.currentVersion());
+        case REMOVE_IF_VALUE_MATCH:
+            return remove(tableName, key, update.currentValue());
+        default:
+            throw new IllegalStateException("Unsupported type: " + update.type());
+        }
+    }
+
     private Map<String, Versioned<byte[]>> getTableMap(String tableName) {
         return tables.computeIfAbsent(tableName, name -> Maps.newConcurrentMap());
     }
@@ -330,28 +361,19 @@ public class DefaultDatabaseState implements DatabaseState<String, byte[]> {
     private void commitProvisionalUpdate(DatabaseUpdate update, long transactionId) {
         String tableName = update.tableName();
         String key = update.key();
-        Type type = update.type();
         Update provisionalUpdate = getLockMap(tableName).get(key);
-        if (Objects.equal(transactionId, provisionalUpdate.transactionId()))  {
+        if (provisionalUpdate != null && Objects.equal(transactionId, provisionalUpdate.transactionId()))  {
             getLockMap(tableName).remove(key);
         } else {
             return;
         }
 
-        switch (type) {
-        case PUT:
-        case PUT_IF_ABSENT:
-        case PUT_IF_VERSION_MATCH:
-        case PUT_IF_VALUE_MATCH:
+        // Apply the update prepared for the key; a partition may also be sent
+        // updates of the transaction that it did not prepare.
+        if (provisionalUpdate.value() != null) {
             put(tableName, key, provisionalUpdate.value());
-            break;
-        case REMOVE:
-        case REMOVE_IF_VERSION_MATCH:
-        case REMOVE_IF_VALUE_MATCH:
+        } else {
             remove(tableName, key);
-            break;
-        default:
-            break;
         }
     }
 
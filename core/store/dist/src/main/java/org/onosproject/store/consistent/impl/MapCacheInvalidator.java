@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.MapMaker;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.serializers.KryoSerializer;
+import org.onosproject.store.serializers.StoreSerializer;
+import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Propagates consistent map updates to the read caches of the map instances
+ * sharing the same name, on this node and on the other cluster nodes.
+ */
+class MapCacheInvalidator {
+
+    private static final MessageSubject INVALIDATE_SUBJECT =
+            new MessageSubject("consistent-map-cache-invalidate");
+
+    private static final StoreSerializer SERIALIZER = new KryoSerializer() {
+        @Override
+        protected void setupKryoPool() {
+            serializerPool = KryoNamespace.newBuilder()
+                    .register(DistributedStoreSerializers.STORE_COMMON)
+                    .nextId(DistributedStoreSerializers.STORE_CUSTOM_BEGIN)
+                    .register(Invalidation.class)
+                    .build();
+        }
+    };
+
+    private final ClusterCommunicationService clusterCommunicator;
+    private final ConcurrentMap<String, Set<CachingAsyncConsistentMap<?, ?>>> caches =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates an invalidator that exchanges invalidations with other nodes.
+     *
+     * @param clusterCommunicator cluster communication service
+     * @param executor executor for processing invalidations from other nodes
+     */
+    MapCacheInvalidator(ClusterCommunicationService clusterCommunicator, ExecutorService executor) {
+        this.clusterCommunicator = checkNotNull(clusterCommunicator);
+        clusterCommunicator.addSubscriber(INVALIDATE_SUBJECT,
+                                          SERIALIZER::decode,
+                                          this::invalidateLocal,
+                                          executor);
+    }
+
+    /**
+     * Stops receiving invalidations from other nodes.
+     */
+    void close() {
+        clusterCommunicator.removeSubscriber(INVALIDATE_SUBJECT);
+    }
+
+    /**
+     * Registers a caching map for invalidations. Maps are weakly referenced
+     * and need not be unregistered.
+     *
+     * @param cache caching map
+     */
+    void register(CachingAsyncConsistentMap<?, ?> cache) {
+        caches.computeIfAbsent(cache.name(),
+                               n -> Collections.newSetFromMap(new MapMaker().weakKeys().makeMap()))
+                .add(cache);
+    }
+
+    /**
+     * Invalidates a key of the named map on all nodes.
+     *
+     * @param mapName map name
+     * @param key database key, or null to invalidate all keys
+     */
+    void invalidate(String mapName, String key) {
+        Invalidation invalidation = new Invalidation(mapName, key);
+        invalidateLocal(invalidation);
+        clusterCommunicator.broadcast(invalidation, INVALIDATE_SUBJECT, SERIALIZER::encode);
+    }
+
+    private void invalidateLocal(Invalidation invalidation) {
+        Set<CachingAsyncConsistentMap<?, ?>> maps = caches.get(invalidation.mapName);
+        if (maps != null) {
+            maps.forEach(map -> map.invalidate(invalidation.key));
+        }
+    }
+
+    /**
+     * Invalidation message.
+     */
+    private static final class Invalidation {
+        private final String mapName;
+        private final String key;
+
+        private Invalidation(String mapName, String key) {
+            this.mapName = mapName;
+            this.key = key;
+        }
+
+        // For serializer
+        @SuppressWarnings("unused")
+        private Invalidation() {
+            this(null, null);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import java.util.List;
+
+import org.onosproject.store.service.DatabaseUpdate;
+import org.onosproject.store.service.Transaction;
+
+import com.google.common.collect.ImmutableList;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A transaction moving an entry from a partition that does not own its key
+ * to the partition that does. The removal applies to the source partition
+ * and the insertion to the owner of the key.
+ */
+final class MoveTransaction implements Transaction {
+
+    private final long transactionId;
+    private final String source;
+    private final List<DatabaseUpdate> updates;
+    private final State state;
+    private final long lastUpdated;
+
+    /**
+     * Creates a move of an entry.
+     *
+     * @param transactionId transaction id
+     * @param source name of the partition holding the entry
+     * @param removal removal of the entry from the source partition
+     * @param insertion insertion of the entry into its owner
+     */
+    MoveTransaction(long transactionId, String source, DatabaseUpdate removal, DatabaseUpdate insertion) {
+        this(transactionId, checkNotNull(source), ImmutableList.of(removal, insertion),
+             State.PREPARING, System.currentTimeMillis());
+        checkArgument(removal.tableName().equals(insertion.tableName()) && removal.key().equals(insertion.key()),
+                      "Removal and insertion must update the same entry");
+    }
+
+    private MoveTransaction(long transactionId, String source, List<DatabaseUpdate> updates,
+                            State state, long lastUpdated) {
+        this.transactionId = transactionId;
+        this.source = source;
+        this.updates = updates;
+        this.state = state;
+        this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * Returns the name of the partition the entry is moved from.
+     *
+     * @return partition name
+     */
+    String source() {
+        return source;
+    }
+
+    /**
+     * Returns the removal of the entry from the source partition.
+     *
+     * @return database update
+     */
+    DatabaseUpdate removal() {
+        return updates.get(0);
+    }
+
+    /**
+     * Returns the insertion of the entry into the partition owning its key.
+     *
+     * @return database update
+     */
+    DatabaseUpdate insertion() {
+        return updates.get(1);
+    }
+
+    @Override
+    public long id() {
+        return transactionId;
+    }
+
+    @Override
+    public List<DatabaseUpdate> updates() {
+        return updates;
+    }
+
+    @Override
+    public State state() {
+        return state;
+    }
+
+    @Override
+    public Transaction transition(State newState) {
+        return new MoveTransaction(transactionId, source, updates, newState, System.currentTimeMillis());
+    }
+
+    @Override
+    public long lastUpdated() {
+        return lastUpdated;
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.onosproject.store.consistent.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +25,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -46,11 +49,24 @@ import static com.google.common.base.Preconditions.checkState;
 public class PartitionedDatabase implements Database {
 
     private final String name;
-    private final Partitioner<String> partitioner;
     private final List<Database> partitions;
+    private final TransactionManager transactionManager;
     private final AtomicBoolean isOpen = new AtomicBoolean(false);
     private static final String DB_NOT_OPEN = "Partitioned Database is not open";
 
+    // Kept in the first partition, which does not depend on the layout.
+    private static final String LAYOUT_TABLE = "onos-partition-layouts";
+    private static final String KEY_HASH_LAYOUT = "key-hash";
+    private static final String CONSISTENT_HASH_LAYOUT = "consistent-hash";
+
+    private volatile Partitioner<String> partitioner;
+    private volatile boolean consistentHashing = false;
+
+    // Until a rebalance pass completes, or the layout is found unchanged,
+    // entries may still live in partitions that do not own them, e.g. after
+    // the partition set or layout has changed.
+    private volatile boolean placementVerified = false;
+
     public PartitionedDatabase(
             String name,
             Collection<Database> partitions) {
@@ -60,6 +76,93 @@ public class PartitionedDatabase implements Database {
                 .sorted((db1, db2) -> db1.name().compareTo(db2.name()))
                 .collect(Collectors.toList());
         this.partitioner = new SimpleKeyHashPartitioner(this.partitions);
+        this.transactionManager = new TransactionManager(this);
+    }
+
+    /**
+     * Selects how keys are mapped to partitions. Entries placed under the
+     * previous layout remain readable and writable, and are moved to their
+     * new owners by the next rebalance pass.
+     *
+     * @param consistentHashing true to place keys on a consistent hash ring,
+     *                          false to use the key hash modulo layout of
+     *                          earlier releases
+     */
+    public void setConsistentHashing(boolean consistentHashing) {
+        if (this.consistentHashing != consistentHashing) {
+            placementVerified = false;
+            this.consistentHashing = consistentHashing;
+            this.partitioner = consistentHashing
+                    ? new ConsistentHashPartitioner(partitions) : new SimpleKeyHashPartitioner(partitions);
+        }
+    }
+
+    /**
+     * Notes that entries may have been placed by a member using another
+     * layout, so that they are looked up outside their owning partition
+     * until the next rebalance pass completes.
+     */
+    public void placementChanged() {
+        placementVerified = false;
+    }
+
+    /**
+     * Records the layout used by this database on behalf of the given member.
+     *
+     * @param memberId member identifier
+     * @return future completed once the layout is recorded
+     */
+    public CompletableFuture<Void> publishLayout(String memberId) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        return partitions.get(0).put(LAYOUT_TABLE, memberId, layout()).thenApply(r -> null);
+    }
+
+    /**
+     * Treats every entry as stored in the partition owning its key if the
+     * given member, and every other member that has recorded a layout, last
+     * recorded the layout used by this database. Must be called before the
+     * member records its layout.
+     *
+     * @param memberId member identifier
+     * @return future completed with true if the layout has not changed
+     */
+    public CompletableFuture<Boolean> verifyUnchangedLayout(String memberId) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        byte[] layout = layout();
+        return partitions.get(0).entrySet(LAYOUT_TABLE).thenApply(entries -> {
+            boolean unchanged = entries.stream().anyMatch(e -> e.getKey().equals(memberId))
+                    && entries.stream().allMatch(e -> Arrays.equals(e.getValue().value(), layout));
+            if (unchanged) {
+                placementVerified = true;
+            }
+            return unchanged;
+        });
+    }
+
+    /**
+     * Returns whether every given member has recorded the layout used by
+     * this database. Members of earlier releases never record a layout.
+     *
+     * @param memberIds member identifiers
+     * @return future completed with true if all members use the same layout
+     */
+    public CompletableFuture<Boolean> isLayoutShared(Collection<String> memberIds) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        byte[] layout = layout();
+        return partitions.get(0).entrySet(LAYOUT_TABLE).thenApply(entries -> {
+            Set<String> members = Sets.newHashSet(memberIds);
+            entries.stream()
+                    .filter(e -> Arrays.equals(e.getValue().value(), layout))
+                    .forEach(e -> members.remove(e.getKey()));
+            return members.isEmpty();
+        });
+    }
+
+    // Placement depends on the partition set as much as on the scheme.
+    private byte[] layout() {
+        return ((consistentHashing ? CONSISTENT_HASH_LAYOUT : KEY_HASH_LAYOUT) + ":"
+                + partitions.stream().map(Database::name).collect(Collectors.joining(",")))
+                .getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -125,7 +228,7 @@ public class PartitionedDatabase implements Database {
     @Override
     public CompletableFuture<Boolean> containsKey(String tableName, String key) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).containsKey(tableName, key);
+        return get(tableName, key).thenApply(v -> v != null);
     }
 
     @Override
@@ -142,19 +245,23 @@ public class PartitionedDatabase implements Database {
     @Override
     public CompletableFuture<Versioned<byte[]>> get(String tableName, String key) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).get(tableName, key);
+        return partitioner.getPartition(tableName, key).get(tableName, key)
+                .thenCompose(v -> v != null || placementVerified
+                        ? CompletableFuture.completedFuture(v) : findMisplaced(tableName, key));
     }
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> put(String tableName, String key, byte[] value) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).put(tableName, key, value);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key).put(tableName, key, value));
     }
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> remove(String tableName, String key) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).remove(tableName, key);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key).remove(tableName, key));
     }
 
     @Override
@@ -205,33 +312,70 @@ public class PartitionedDatabase implements Database {
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> putIfAbsent(String tableName, String key, byte[] value) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).putIfAbsent(tableName, key, value);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key).putIfAbsent(tableName, key, value));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, byte[] value) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).remove(tableName, key, value);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key).remove(tableName, key, value));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, long version) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).remove(tableName, key, version);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key).remove(tableName, key, version));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(
             String tableName, String key, byte[] oldValue, byte[] newValue) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).replace(tableName, key, oldValue, newValue);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key).replace(tableName, key, oldValue, newValue));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(
             String tableName, String key, long oldVersion, byte[] newValue) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).replace(tableName, key, oldVersion, newValue);
+        return placed(tableName, key)
+                .thenCompose(v -> partitioner.getPartition(tableName, key)
+                        .replace(tableName, key, oldVersion, newValue));
+    }
+
+    @Override
+    public CompletableFuture<List<Result<?>>> batch(List<DatabaseUpdate> updates) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        return placed(updates).thenCompose(v -> batchPlaced(updates));
+    }
+
+    private CompletableFuture<List<Result<?>>> batchPlaced(List<DatabaseUpdate> updates) {
+        Map<Database, List<Integer>> positions = Maps.newHashMap();
+        for (int i = 0; i < updates.size(); i++) {
+            DatabaseUpdate update = updates.get(i);
+            positions.computeIfAbsent(partitioner.getPartition(update.tableName(), update.key()),
+                                      db -> Lists.newArrayList())
+                     .add(i);
+        }
+        Result<?>[] results = new Result<?>[updates.size()];
+        return CompletableFuture.allOf(positions.entrySet()
+                    .stream()
+                    .map(entry -> {
+                        List<Integer> indexes = entry.getValue();
+                        List<DatabaseUpdate> subBatch = Lists.newArrayListWithCapacity(indexes.size());
+                        indexes.forEach(index -> subBatch.add(updates.get(index)));
+                        return entry.getKey().batch(subBatch).thenAccept(subResults -> {
+                            for (int i = 0; i < indexes.size(); i++) {
+                                results[indexes.get(i)] = subResults.get(i);
+                            }
+                        });
+                    })
+                    .toArray(CompletableFuture[]::new))
+                .thenApply(v -> Lists.newArrayList(results));
     }
 
     @Override
@@ -254,6 +398,11 @@ public class PartitionedDatabase implements Database {
 
     @Override
     public CompletableFuture<Boolean> prepareAndCommit(Transaction transaction) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        return placed(transaction.updates()).thenCompose(v -> prepareAndCommitPlaced(transaction));
+    }
+
+    private CompletableFuture<Boolean> prepareAndCommitPlaced(Transaction transaction) {
         Map<Database, Transaction> subTransactions = createSubTransactions(transaction);
         if (subTransactions.isEmpty()) {
             return CompletableFuture.completedFuture(true);
@@ -268,6 +417,14 @@ public class PartitionedDatabase implements Database {
 
     @Override
     public CompletableFuture<Boolean> prepare(Transaction transaction) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        if (transaction instanceof MoveTransaction) {
+            return preparePlaced(transaction);
+        }
+        return placed(transaction.updates()).thenCompose(v -> preparePlaced(transaction));
+    }
+
+    private CompletableFuture<Boolean> preparePlaced(Transaction transaction) {
         Map<Database, Transaction> subTransactions = createSubTransactions(transaction);
         AtomicBoolean status = new AtomicBoolean(true);
         return CompletableFuture.allOf(subTransactions.entrySet()
@@ -282,7 +439,9 @@ public class PartitionedDatabase implements Database {
 
     @Override
     public CompletableFuture<Boolean> commit(Transaction transaction) {
-        Map<Database, Transaction> subTransactions = createSubTransactions(transaction);
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        Map<Database, Transaction> subTransactions = transaction instanceof MoveTransaction
+                ? allPartitions(transaction) : createSubTransactions(transaction);
         return CompletableFuture.allOf(subTransactions.entrySet()
                 .stream()
                 .map(entry -> entry.getKey().commit(entry.getValue()))
@@ -292,7 +451,9 @@ public class PartitionedDatabase implements Database {
 
     @Override
     public CompletableFuture<Boolean> rollback(Transaction transaction) {
-        Map<Database, Transaction> subTransactions = createSubTransactions(transaction);
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        Map<Database, Transaction> subTransactions = transaction instanceof MoveTransaction
+                ? allPartitions(transaction) : createSubTransactions(transaction);
         return CompletableFuture.allOf(subTransactions.entrySet()
                 .stream()
                 .map(entry -> entry.getKey().rollback(entry.getValue()))
@@ -351,14 +512,165 @@ public class PartitionedDatabase implements Database {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Moves every entry that is not stored in the partition owning its key
+     * to that partition. Entries remain readable and writable while they
+     * are being moved.
+     *
+     * @return future completed with the number of entries moved
+     */
+    public CompletableFuture<Integer> rebalance() {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        AtomicInteger moved = new AtomicInteger();
+        CompletableFuture<Void> pass = CompletableFuture.completedFuture(null);
+        // Partitions are scanned one after another to bound the extra load.
+        for (Database partition : partitions) {
+            pass = pass.thenCompose(v -> rebalance(partition, moved));
+        }
+        return pass.thenApply(v -> {
+            placementVerified = true;
+            return moved.get();
+        });
+    }
+
+    private CompletableFuture<Void> rebalance(Database partition, AtomicInteger moved) {
+        return partition.tableNames().thenCompose(tables -> CompletableFuture.allOf(tables
+                .stream()
+                .filter(table -> !table.equals(LAYOUT_TABLE))
+                .map(table -> partition.entrySet(table).thenCompose(entries -> CompletableFuture.allOf(entries
+                        .stream()
+                        .filter(e -> !partitioner.getPartition(table, e.getKey()).equals(partition))
+                        .map(e -> move(partition, table, e.getKey(), e.getValue())
+                                .thenAccept(done -> {
+                                    if (done) {
+                                        moved.incrementAndGet();
+                                    }
+                                }))
+                        .toArray(CompletableFuture[]::new))))
+                .toArray(CompletableFuture[]::new)));
+    }
+
+    private CompletableFuture<Void> placed(List<DatabaseUpdate> updates) {
+        if (placementVerified) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(updates
+                .stream()
+                .map(update -> placed(update.tableName(), update.key()))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Ensures that an entry, if present, is stored in the partition owning
+     * its key, so that updates applied to that partition act on it.
+     *
+     * @param tableName table name
+     * @param key key
+     * @return future completed once the entry is in place
+     */
+    private CompletableFuture<Void> placed(String tableName, String key) {
+        if (placementVerified) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Database owner = partitioner.getPartition(tableName, key);
+        return CompletableFuture.allOf(partitions
+                .stream()
+                .filter(partition -> !partition.equals(owner))
+                .map(partition -> partition.get(tableName, key)
+                        .thenCompose(v -> v == null
+                                ? CompletableFuture.completedFuture(false)
+                                : move(partition, tableName, key, v)))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Versioned<byte[]>> findMisplaced(String tableName, String key) {
+        Database owner = partitioner.getPartition(tableName, key);
+        List<Versioned<byte[]>> found = new CopyOnWriteArrayList<>();
+        return CompletableFuture.allOf(partitions
+                    .stream()
+                    .filter(partition -> !partition.equals(owner))
+                    .map(partition -> partition.get(tableName, key).thenAccept(v -> {
+                        if (v != null) {
+                            found.add(v);
+                        }
+                    }))
+                    .toArray(CompletableFuture[]::new))
+                .thenApply(v -> found.isEmpty() ? null : found.get(0));
+    }
+
+    /**
+     * Atomically moves an entry from the given partition to the partition
+     * owning its key. The move is a transaction run by the transaction
+     * manager, so a move interrupted between prepare and commit is
+     * completed or rolled back when transactions are redriven. If the owner
+     * already holds a value for the key, that value is newer and the
+     * misplaced copy is dropped instead.
+     *
+     * @param source partition holding the misplaced entry
+     * @param tableName table name
+     * @param key key
+     * @param value entry found in the source partition
+     * @return future completed with true if this call moved or dropped the entry
+     */
+    private CompletableFuture<Boolean> move(Database source, String tableName, String key,
+                                           Versioned<byte[]> value) {
+        Transaction transaction = new MoveTransaction(ThreadLocalRandom.current().nextLong(), source.name(),
+                DatabaseUpdate.newBuilder()
+                        .withType(DatabaseUpdate.Type.REMOVE_IF_VERSION_MATCH)
+                        .withTableName(tableName)
+                        .withKey(key)
+                        .withCurrentVersion(value.version())
+                        .build(),
+                DatabaseUpdate.newBuilder()
+                        .withType(DatabaseUpdate.Type.PUT_IF_ABSENT)
+                        .withTableName(tableName)
+                        .withKey(key)
+                        .withValue(value.value())
+                        .build());
+        return transactionManager.execute(transaction)
+                .thenCompose(moved -> transactionManager.execute(transaction.transition(moved
+                                ? Transaction.State.COMMITTED : Transaction.State.ROLLEDBACK))
+                        .thenApply(v -> moved))
+                .thenCompose(moved -> moved
+                        ? CompletableFuture.completedFuture(true)
+                        : partitioner.getPartition(tableName, key).get(tableName, key)
+                                .thenCompose(current -> current == null
+                                        // concurrently moved, or locked by a transaction; retry on a later pass
+                                        ? CompletableFuture.completedFuture(false)
+                                        : source.remove(tableName, key, value.version())
+                                                .thenApply(r -> r.success() && r.value())));
+    }
+
+    // A move is completed on every partition, since the owner of its key may
+    // have changed with the layout since it was prepared. Partitions that
+    // hold no update prepared by the move ignore it.
+    private Map<Database, Transaction> allPartitions(Transaction transaction) {
+        Map<Database, Transaction> subTransactions = Maps.newHashMap();
+        partitions.forEach(partition -> subTransactions.put(partition,
+                new DefaultTransaction(transaction.id(), transaction.updates())));
+        return subTransactions;
+    }
+
     private Map<Database, Transaction> createSubTransactions(
             Transaction transaction) {
         Map<Database, List<DatabaseUpdate>> perPartitionUpdates = Maps.newHashMap();
-        for (DatabaseUpdate update : transaction.updates()) {
-            Database partition = partitioner.getPartition(update.tableName(), update.key());
-            List<DatabaseUpdate> partitionUpdates =
-                    perPartitionUpdates.computeIfAbsent(partition, k -> Lists.newLinkedList());
-            partitionUpdates.add(update);
+        if (transaction instanceof MoveTransaction) {
+            MoveTransaction move = (MoveTransaction) transaction;
+            DatabaseUpdate removal = move.removal();
+            DatabaseUpdate insertion = move.insertion();
+            partitions.stream()
+                    .filter(partition -> partition.name().equals(move.source()))
+                    .forEach(partition -> perPartitionUpdates.put(partition, Lists.newArrayList(removal)));
+            perPartitionUpdates.computeIfAbsent(partitioner.getPartition(insertion.tableName(), insertion.key()),
+                                                k -> Lists.newLinkedList())
+                               .add(insertion);
+        } else {
+            for (DatabaseUpdate update : transaction.updates()) {
+                Database partition = partitioner.getPartition(update.tableName(), update.key());
+                List<DatabaseUpdate> partitionUpdates =
+                        perPartitionUpdates.computeIfAbsent(partition, k -> Lists.newLinkedList());
+                partitionUpdates.add(update);
+            }
         }
         Map<Database, Transaction> subTransactions = Maps.newHashMap();
         perPartitionUpdates.forEach((k, v) -> subTransactions.put(k, new DefaultTransaction(transaction.id(), v)));
@@ -47,6 +47,7 @@ public class TransactionManager {
             .register(Transaction.State.class)
             .register(Pair.class)
             .register(ImmutablePair.class)
+            .register(MoveTransaction.class)
             .build();
 
     private final Serializer serializer = Serializer.using(KRYO_NAMESPACE);
@@ -80,7 +81,8 @@ public class TransactionManager {
         } else if (transaction.state() == Transaction.State.ROLLINGBACK) {
             return rollback(transaction);
         } else {
-            return prepare(transaction).thenCompose(v -> v ? commit(transaction) : rollback(transaction));
+            return prepare(transaction).thenCompose(v -> v
+                    ? commit(transaction) : rollback(transaction).thenApply(r -> false));
         }
     }
 
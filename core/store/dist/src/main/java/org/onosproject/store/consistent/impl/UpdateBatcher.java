@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import org.onosproject.store.service.DatabaseUpdate;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Groups concurrently submitted updates bound for the same database into
+ * batch commands.
+ * <p>
+ * Up to {@value #MAX_BATCHES_IN_FLIGHT} batches are outstanding at any time.
+ * An update submitted while fewer batches are outstanding is sent right
+ * away; updates submitted while all of them are being committed are queued
+ * and sent together as soon as one completes. Batches therefore grow with
+ * the offered load without delaying updates when the database is idle, and
+ * updates are handed to the database in submission order.
+ * </p>
+ */
+class UpdateBatcher {
+
+    static final int MAX_BATCH_SIZE = 512;
+    static final int MAX_BATCHES_IN_FLIGHT = 4;
+
+    private final Function<List<DatabaseUpdate>, CompletableFuture<List<Result<?>>>> batchCommand;
+    private final Queue<PendingUpdate> pending = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    /**
+     * Creates a batcher.
+     *
+     * @param batchCommand function that submits a batch of updates
+     */
+    UpdateBatcher(Function<List<DatabaseUpdate>, CompletableFuture<List<Result<?>>>> batchCommand) {
+        this.batchCommand = batchCommand;
+    }
+
+    /**
+     * Submits an update for inclusion in the next batch.
+     *
+     * @param update update to apply
+     * @param <T> type of the update result value
+     * @return future completed with the update result once its batch commits
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<Result<T>> submit(DatabaseUpdate update) {
+        PendingUpdate pendingUpdate = new PendingUpdate(update);
+        boolean send;
+        synchronized (this) {
+            pending.add(pendingUpdate);
+            send = inFlight < MAX_BATCHES_IN_FLIGHT;
+            if (send) {
+                inFlight++;
+            }
+        }
+        if (send) {
+            sendNextBatch();
+        }
+        return (CompletableFuture<Result<T>>) (CompletableFuture<?>) pendingUpdate.future;
+    }
+
+    private void sendNextBatch() {
+        List<PendingUpdate> batch;
+        CompletableFuture<List<Result<?>>> result;
+        // Submitted while holding the lock, so that concurrently sent
+        // batches reach the database in the order of their updates
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                inFlight--;
+                return;
+            }
+            batch = Lists.newArrayListWithCapacity(Math.min(pending.size(), MAX_BATCH_SIZE));
+            while (!pending.isEmpty() && batch.size() < MAX_BATCH_SIZE) {
+                batch.add(pending.remove());
+            }
+
+            List<DatabaseUpdate> updates = Lists.newArrayListWithCapacity(batch.size());
+            batch.forEach(pendingUpdate -> updates.add(pendingUpdate.update));
+            try {
+                result = batchCommand.apply(updates);
+            } catch (RuntimeException e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+        }
+        result.whenComplete((results, error) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (error != null) {
+                    batch.get(i).future.completeExceptionally(error);
+                } else {
+                    batch.get(i).future.complete(results.get(i));
+                }
+            }
+            sendNextBatch();
+        });
+    }
+
+    // Update waiting for its batch to commit.
+    private static final class PendingUpdate {
+        private final DatabaseUpdate update;
+        private final CompletableFuture<Result<?>> future = new CompletableFuture<>();
+
+        private PendingUpdate(DatabaseUpdate update) {
+            this.update = update;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.cluster.NodeId;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Anti-entropy digest message for eventually consistent map, carrying a
+ * hash digest of each bucket of map entries rather than the entries'
+ * timestamps.
+ */
+public class AntiEntropyDigest {
+
+    private final NodeId sender;
+    private final long[] digests;
+
+    /**
+     * Creates a new anti entropy digest message.
+     *
+     * @param sender the sender's node ID
+     * @param digests per-bucket digests of the sender's items and tombstones
+     */
+    public AntiEntropyDigest(NodeId sender, long[] digests) {
+        this.sender = checkNotNull(sender);
+        this.digests = checkNotNull(digests);
+    }
+
+    /**
+     * Returns the sender's node ID.
+     *
+     * @return the sender's node ID
+     */
+    public NodeId sender() {
+        return sender;
+    }
+
+    /**
+     * Returns the per-bucket digests.
+     *
+     * @return bucket digests
+     */
+    public long[] digests() {
+        return digests;
+    }
+
+    // For serializer
+    @SuppressWarnings("unused")
+    private AntiEntropyDigest() {
+        this.sender = null;
+        this.digests = null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("sender", sender)
+                .add("buckets", digests.length)
+                .toString();
+    }
+}
@@ -18,9 +18,11 @@ package org.onosproject.store.ecmap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.mutable.MutableBoolean;
+import org.apache.commons.lang3.mutable.MutableObject;
 import org.apache.commons.lang3.tuple.Pair;
 import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.KryoNamespace;
@@ -44,9 +46,11 @@ import org.onosproject.store.service.EventuallyConsistentMapListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +63,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
@@ -88,6 +93,10 @@ public class EventuallyConsistentMapImpl<K, V>
 
     private final MessageSubject updateMessageSubject;
     private final MessageSubject antiEntropyAdvertisementSubject;
+    private final MessageSubject antiEntropyDigestSubject;
+
+    // Digest of items and tombstones, kept up to date with every change
+    private final MapDigest<K> digest;
 
     private final Set<EventuallyConsistentMapListener<K, V>> listeners
             = new CopyOnWriteArraySet<>();
@@ -106,6 +115,10 @@ public class EventuallyConsistentMapImpl<K, V>
     private static final String ERROR_NULL_KEY = "Key cannot be null";
     private static final String ERROR_NULL_VALUE = "Null values are not allowed";
 
+    // Files of a MapDB store, renamed once the store has been imported
+    private static final String[] MAPDB_FILE_SUFFIXES = {"", ".p", ".t"};
+    private static final String MAPDB_IMPORTED_SUFFIX = ".imported";
+
     private final long initialDelaySec = 5;
     private final boolean lightweightAntiEntropy;
     private final boolean tombstonesDisabled;
@@ -118,6 +131,11 @@ public class EventuallyConsistentMapImpl<K, V>
     private final boolean persistent;
     private final PersistentStore<K, V> persistentStore;
 
+    // Updates superseded by a newer update of the same key before being
+    // sent to a peer vs. updates actually sent to peers
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final AtomicLong sentUpdates = new AtomicLong();
+
     /**
      * Creates a new eventually consistent map shared amongst multiple instances.
      * <p>
@@ -169,6 +187,7 @@ public class EventuallyConsistentMapImpl<K, V>
         this.clusterCommunicator = clusterCommunicator;
 
         this.serializer = createSerializer(serializerBuilder);
+        this.digest = new MapDigest<>(serializer::encode, MapDigest.DEFAULT_BUCKETS);
 
         this.clockService = clockService;
 
@@ -199,16 +218,22 @@ public class EventuallyConsistentMapImpl<K, V>
         }
 
         this.persistent = persistent;
+        this.tombstonesDisabled = tombstonesDisabled;
 
         if (this.persistent) {
             String dataDirectory = System.getProperty("karaf.data", "./data");
-            String filename = dataDirectory + "/" + "mapdb-ecm-" + mapName;
+            String filename = dataDirectory + "/" + "ecm-" + mapName;
 
-            ExecutorService dbExecutor =
-                    newFixedThreadPool(1, groupedThreads("onos/ecm", mapName + "-dbwriter"));
+            ScheduledExecutorService dbExecutor =
+                    newSingleThreadScheduledExecutor(groupedThreads("onos/ecm", mapName + "-dbwriter"));
 
-            persistentStore = new MapDbPersistentStore<>(filename, dbExecutor, serializer);
+            LogPersistentStore<K, V> logStore =
+                    new LogPersistentStore<>(filename, dbExecutor, serializer, tombstonesDisabled);
+            persistentStore = logStore;
             persistentStore.readInto(items, removedItems);
+            importMapDbStore(dataDirectory + "/" + "mapdb-ecm-" + mapName, logStore);
+            items.forEach((key, value) -> digest.add(key, value.timestamp(), false));
+            removedItems.forEach((key, timestamp) -> digest.add(key, timestamp, true));
         } else {
             this.persistentStore = null;
         }
@@ -233,7 +258,10 @@ public class EventuallyConsistentMapImpl<K, V>
         clusterCommunicator.addSubscriber(antiEntropyAdvertisementSubject,
                                           new InternalAntiEntropyListener(), this.backgroundExecutor);
 
-        this.tombstonesDisabled = tombstonesDisabled;
+        antiEntropyDigestSubject = new MessageSubject("ecm-" + mapName + "-anti-entropy-digest");
+        clusterCommunicator.addSubscriber(antiEntropyDigestSubject,
+                                          new InternalAntiEntropyDigestListener(), this.backgroundExecutor);
+
         this.lightweightAntiEntropy = !convergeFaster;
     }
 
@@ -251,6 +279,9 @@ public class EventuallyConsistentMapImpl<K, V>
                         .register(AntiEntropyAdvertisement.class)
                         .register(HashMap.class)
                         .register(Timestamped.class)
+                        .register(HashSet.class)
+                        .register(long[].class)
+                        .register(AntiEntropyDigest.class)
                         .build();
             }
         };
@@ -321,6 +352,7 @@ public class EventuallyConsistentMapImpl<K, V>
         }
 
         final MutableBoolean updated = new MutableBoolean(false);
+        final MutableObject<Timestamp> replaced = new MutableObject<>();
 
         items.compute(key, (k, existing) -> {
             if (existing != null && existing.isNewerThan(timestamp)) {
@@ -328,6 +360,7 @@ public class EventuallyConsistentMapImpl<K, V>
                 return existing;
             } else {
                 updated.setTrue();
+                replaced.setValue(existing != null ? existing.timestamp() : null);
                 return new Timestamped<>(value, timestamp);
             }
             });
@@ -337,8 +370,17 @@ public class EventuallyConsistentMapImpl<K, V>
             log.debug("ecmap - existing was newer {}", value);
         }
 
-        if (success && removed != null) {
-            removedItems.remove(key, removed);
+        // the digest is updated outside of compute() to keep serialization
+        // out of the map lock
+        if (success) {
+            digest.add(key, timestamp, false);
+            if (replaced.getValue() != null) {
+                digest.remove(key, replaced.getValue(), false);
+            }
+        }
+
+        if (success && removed != null && removedItems.remove(key, removed)) {
+            digest.remove(key, removed, true);
         }
 
         if (success && persistent) {
@@ -371,6 +413,7 @@ public class EventuallyConsistentMapImpl<K, V>
 
         counter.incrementCount();
         final MutableBoolean updated = new MutableBoolean(false);
+        final MutableObject<Timestamp> replaced = new MutableObject<>();
 
         items.compute(key, (k, existing) -> {
             if (existing != null && existing.isNewerThan(timestamp)) {
@@ -378,6 +421,7 @@ public class EventuallyConsistentMapImpl<K, V>
                 return existing;
             } else {
                 updated.setTrue();
+                replaced.setValue(existing != null ? existing.timestamp() : null);
                 // remove from items map
                 return null;
             }
@@ -397,6 +441,16 @@ public class EventuallyConsistentMapImpl<K, V>
             } else if (timestamp.isNewerThan(removedTimestamp)) {
                 updatedTombstone = removedItems.replace(key, removedTimestamp, timestamp);
             }
+            if (updatedTombstone) {
+                digest.add(key, timestamp, true);
+                if (removedTimestamp != null) {
+                    digest.remove(key, removedTimestamp, true);
+                }
+            }
+        }
+
+        if (replaced.getValue() != null) {
+            digest.remove(key, replaced.getValue(), false);
         }
 
         if (updated.booleanValue() && persistent) {
@@ -483,6 +537,48 @@ public class EventuallyConsistentMapImpl<K, V>
 
         clusterCommunicator.removeSubscriber(updateMessageSubject);
         clusterCommunicator.removeSubscriber(antiEntropyAdvertisementSubject);
+        clusterCommunicator.removeSubscriber(antiEntropyDigestSubject);
+
+        if (persistent) {
+            persistentStore.close();
+        }
+    }
+
+    // Imports the state persisted by releases which kept persistent maps in
+    // MapDB into the current persistent store, unless the store already has
+    // state of its own. The MapDB files are then renamed, so that a map which
+    // later becomes empty does not import stale state on the next restart.
+    private void importMapDbStore(String filename, LogPersistentStore<K, V> logStore) {
+        if (!new File(filename).exists()) {
+            return;
+        }
+        if (items.isEmpty() && removedItems.isEmpty()) {
+            MapDbPersistentStore<K, V> mapDbStore =
+                    new MapDbPersistentStore<>(filename, MoreExecutors.newDirectExecutorService(), serializer);
+            try {
+                mapDbStore.readInto(items, removedItems);
+            } finally {
+                mapDbStore.close();
+            }
+            if (tombstonesDisabled) {
+                removedItems.clear();
+            }
+            items.forEach((key, value) -> logStore.put(key, value.value(), value.timestamp()));
+            removedItems.forEach((key, timestamp) -> logStore.remove(key, timestamp));
+            if (!logStore.sync()) {
+                log.warn("Unable to persist the state imported from {}; importing it again on restart",
+                         filename);
+                return;
+            }
+            log.info("Imported {} items and {} tombstones from {}",
+                     items.size(), removedItems.size(), filename);
+        }
+        for (String suffix : MAPDB_FILE_SUFFIXES) {
+            File file = new File(filename + suffix);
+            if (file.exists() && !file.renameTo(new File(filename + suffix + MAPDB_IMPORTED_SUFFIX))) {
+                log.warn("Unable to rename {} after importing it", file);
+            }
+        }
     }
 
     private void notifyListeners(EventuallyConsistentMapEvent<K, V> event) {
@@ -515,6 +611,25 @@ public class EventuallyConsistentMapImpl<K, V>
 //        communicationExecutor.execute(() -> clusterCommunicator.unicast(message, peer));
     }
 
+    /**
+     * Returns the number of peer updates which were superseded by a newer
+     * update of the same key before they were sent.
+     *
+     * @return number of coalesced updates
+     */
+    long coalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    /**
+     * Returns the number of updates sent to peers.
+     *
+     * @return number of sent updates
+     */
+    long sentUpdates() {
+        return sentUpdates.get();
+    }
+
     private boolean underHighLoad() {
         return counter.get(LOAD_WINDOW) > HIGH_LOAD_THRESHOLD;
     }
@@ -555,10 +670,10 @@ public class EventuallyConsistentMapImpl<K, V>
                     return;
                 }
 
-                AntiEntropyAdvertisement<K> ad = createAdvertisement();
+                AntiEntropyDigest ad = new AntiEntropyDigest(self, digest.digests());
 
-                if (!unicastMessage(peer, antiEntropyAdvertisementSubject, ad)) {
-                    log.debug("Failed to send anti-entropy advertisement to {}", peer);
+                if (!unicastMessage(peer, antiEntropyDigestSubject, ad)) {
+                    log.debug("Failed to send anti-entropy digest to {}", peer);
                 }
             } catch (Exception e) {
                 // Catch all exceptions to avoid scheduled task being suppressed.
@@ -567,16 +682,65 @@ public class EventuallyConsistentMapImpl<K, V>
         }
     }
 
-    private AntiEntropyAdvertisement<K> createAdvertisement() {
+    /**
+     * Creates an advertisement of the timestamps of the items and tombstones
+     * in the specified digest buckets.
+     *
+     * @param buckets buckets to advertise; null to advertise all items
+     * @return anti-entropy advertisement
+     */
+    private AntiEntropyAdvertisement<K> createAdvertisement(Set<Integer> buckets) {
         final NodeId self = clusterService.getLocalNode().id();
 
-        Map<K, Timestamp> timestamps = new HashMap<>(items.size());
+        Map<K, Timestamp> timestamps = new HashMap<>();
+        Map<K, Timestamp> tombstones = new HashMap<>();
+        if (buckets == null) {
+            items.forEach((key, value) -> timestamps.put(key, value.timestamp()));
+            tombstones.putAll(removedItems);
+        } else {
+            for (K key : digest.keys(buckets)) {
+                Timestamped<V> value = items.get(key);
+                if (value != null) {
+                    timestamps.put(key, value.timestamp());
+                }
+                Timestamp timestamp = removedItems.get(key);
+                if (timestamp != null) {
+                    tombstones.put(key, timestamp);
+                }
+            }
+        }
 
-        items.forEach((key, value) -> timestamps.put(key, value.timestamp()));
+        return new AntiEntropyAdvertisement<>(self, timestamps, tombstones, buckets);
+    }
 
-        Map<K, Timestamp> tombstones = new HashMap<>(removedItems);
+    /**
+     * Returns the keys of the specified digest buckets.
+     *
+     * @param buckets buckets to visit; null to visit all keys of the given map
+     * @param all     map whose keys are visited when no buckets are specified
+     * @return keys to visit
+     */
+    private Collection<K> keysIn(Set<Integer> buckets, Map<K, ?> all) {
+        return buckets == null ? all.keySet() : digest.keys(buckets);
+    }
 
-        return new AntiEntropyAdvertisement<>(self, timestamps, tombstones);
+    /**
+     * Compares the remote digest against the local one and, for the buckets
+     * which differ, sends the local timestamps back to the remote so it can
+     * work out which items are out of date.
+     *
+     * @param remote remote anti-entropy digest
+     */
+    private void handleAntiEntropyDigest(AntiEntropyDigest remote) {
+        Set<Integer> mismatched = digest.mismatched(remote.digests());
+        if (mismatched.isEmpty()) {
+            return;
+        }
+
+        AntiEntropyAdvertisement<K> ad = createAdvertisement(mismatched);
+        if (!unicastMessage(remote.sender(), antiEntropyAdvertisementSubject, ad)) {
+            log.debug("Failed to send anti-entropy advertisement to {}", remote.sender());
+        }
     }
 
     private void handleAntiEntropyAdvertisement(AntiEntropyAdvertisement<K> ad) {
@@ -594,7 +758,7 @@ public class EventuallyConsistentMapImpl<K, V>
                 if (!items.containsKey(key)) {
                     // Send the advertisement back if this peer is out-of-sync
                     final NodeId sender = ad.sender();
-                    AntiEntropyAdvertisement<K> myAd = createAdvertisement();
+                    AntiEntropyAdvertisement<K> myAd = createAdvertisement(ad.buckets());
                     if (!unicastMessage(sender, antiEntropyAdvertisementSubject, myAd)) {
                         log.debug("Failed to send reactive anti-entropy advertisement to {}", sender);
                     }
@@ -621,9 +785,11 @@ public class EventuallyConsistentMapImpl<K, V>
                 = new LinkedList<>();
         final NodeId sender = ad.sender();
 
-        for (Map.Entry<K, Timestamped<V>> item : items.entrySet()) {
-            K key = item.getKey();
-            Timestamped<V> localValue = item.getValue();
+        for (K key : keysIn(ad.buckets(), items)) {
+            Timestamped<V> localValue = items.get(key);
+            if (localValue == null) {
+                continue;
+            }
 
             Timestamp remoteTimestamp = ad.timestamps().get(key);
             if (remoteTimestamp == null) {
@@ -660,9 +826,11 @@ public class EventuallyConsistentMapImpl<K, V>
     private void antiEntropyCheckLocalRemoved(AntiEntropyAdvertisement<K> ad) {
         final NodeId sender = ad.sender();
 
-        for (Map.Entry<K, Timestamp> dead : removedItems.entrySet()) {
-            K key = dead.getKey();
-            Timestamp localDeadTimestamp = dead.getValue();
+        for (K key : keysIn(ad.buckets(), removedItems)) {
+            Timestamp localDeadTimestamp = removedItems.get(key);
+            if (localDeadTimestamp == null) {
+                continue;
+            }
 
             Timestamp remoteLiveTimestamp = ad.timestamps().get(key);
             if (remoteLiveTimestamp != null
@@ -729,6 +897,24 @@ public class EventuallyConsistentMapImpl<K, V>
         }
     }
 
+    private final class InternalAntiEntropyDigestListener
+            implements ClusterMessageHandler {
+
+        @Override
+        public void handle(ClusterMessage message) {
+            log.trace("Received anti-entropy digest from peer: {}",
+                      message.sender());
+            AntiEntropyDigest remote = serializer.decode(message.payload());
+            try {
+                if (!underHighLoad() && !destroyed) {
+                    handleAntiEntropyDigest(remote);
+                }
+            } catch (Exception e) {
+                log.warn("Exception thrown handling anti-entropy digest", e);
+            }
+        }
+    }
+
     private final class InternalEventListener implements ClusterMessageHandler {
         @Override
         public void handle(ClusterMessage message) {
@@ -784,22 +970,51 @@ public class EventuallyConsistentMapImpl<K, V>
     private static final int DEFAULT_MAX_BATCH_MS = 50;
     private static final Timer TIMER = new Timer("onos-ecm-sender-events");
 
+    /**
+     * Accumulates the updates pending for a peer, keeping only the most
+     * recent update of each key, so that a key updated many times within
+     * the send window is sent only once. The batch triggers are driven by
+     * the number of distinct keys pending.
+     */
     private final class EventAccumulator extends AbstractAccumulator<AbstractEntry<K, V>> {
 
         private final NodeId peer;
+        private Map<K, AbstractEntry<K, V>> pending = Maps.newHashMap();
 
         private EventAccumulator(NodeId peer) {
             super(TIMER, DEFAULT_MAX_EVENTS, DEFAULT_MAX_BATCH_MS, DEFAULT_MAX_IDLE_MS);
             this.peer = peer;
         }
 
+        @Override
+        public synchronized void add(AbstractEntry<K, V> entry) {
+            AbstractEntry<K, V> existing = pending.get(entry.key());
+            if (existing == null || entry.compareTo(existing) > 0) {
+                pending.put(entry.key(), entry);
+            }
+            if (existing == null) {
+                super.add(entry);
+            } else {
+                coalescedUpdates.incrementAndGet();
+            }
+        }
+
+        // Demotes and returns the currently pending updates.
+        private synchronized Map<K, AbstractEntry<K, V>> finalizePending() {
+            Map<K, AbstractEntry<K, V>> toBeSent = pending;
+            pending = Maps.newHashMap();
+            return toBeSent;
+        }
+
         @Override
         public void processItems(List<AbstractEntry<K, V>> items) {
-            Map<K, AbstractEntry<K, V>> map = Maps.newHashMap();
-            items.forEach(item -> map.compute(item.key(), (key, oldValue) ->
-                  oldValue == null || item.compareTo(oldValue) > 0 ? item : oldValue
-                  )
-            );
+            Map<K, AbstractEntry<K, V>> map = finalizePending();
+            if (map.isEmpty()) {
+                return;
+            }
+            sentUpdates.addAndGet(map.size());
+            log.trace("Sending {} updates to {}; {} sent, {} coalesced so far",
+                      map.size(), peer, sentUpdates, coalescedUpdates);
             communicationExecutor.submit(() -> {
                 try {
                     unicastMessage(peer, updateMessageSubject, Lists.newArrayList(map.values()));
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.google.common.collect.Maps;
+import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.Timestamped;
+import org.onosproject.store.serializers.KryoSerializer;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Write-behind persistent store which appends updates to a log and
+ * periodically compacts the log into a snapshot.
+ * <p>
+ * Updates are coalesced by key in memory and appended to the log in
+ * batches by a single writer. Once the log grows past a threshold, a new
+ * snapshot is written from the maps populated by
+ * {@link #readInto(Map, Map)}, which are expected to be the live maps
+ * backing the eventually consistent map, and the log is truncated. At
+ * startup the snapshot is loaded in bulk and the log is replayed on top
+ * of it. As replay compares timestamps the same way the map does, records
+ * may be applied more than once, which makes the snapshot switch-over safe
+ * to interrupt. For maps without tombstones, removals are replayed without
+ * leaving tombstones behind.
+ * </p>
+ */
+class LogPersistentStore<K, V> implements PersistentStore<K, V> {
+
+    private static final long FLUSH_PERIOD_MS = 100;
+    private static final long MIN_COMPACTION_BYTES = 32L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final Logger log = getLogger(getClass());
+
+    private final ScheduledExecutorService executor;
+    private final KryoSerializer serializer;
+    private final boolean tombstonesDisabled;
+
+    private final File snapshotFile;
+    private final File logFile;
+
+    // Updates not yet written to the log, newest per key
+    private final Map<K, AbstractEntry<K, V>> pending = Maps.newConcurrentMap();
+
+    // Live state used as the source of snapshots
+    private Map<K, Timestamped<V>> liveItems;
+    private Map<K, Timestamp> liveTombstones;
+
+    private DataOutputStream logStream;
+    private FileOutputStream logFileStream;
+    private long logBytes;
+    private long snapshotBytes;
+    private boolean logDamaged = false;
+
+    /**
+     * Creates a new log based persistent store.
+     *
+     * @param filename   base filename of the snapshot and log on disk
+     * @param executor   single threaded executor to use for tasks that write
+     *                   to the disk
+     * @param serializer serializer for keys, values and timestamps
+     * @param tombstonesDisabled true if the map does not keep tombstones
+     */
+    LogPersistentStore(String filename, ScheduledExecutorService executor,
+                       KryoSerializer serializer, boolean tombstonesDisabled) {
+        this.executor = checkNotNull(executor);
+        this.serializer = checkNotNull(serializer);
+        this.tombstonesDisabled = tombstonesDisabled;
+        this.snapshotFile = new File(filename + ".snapshot");
+        this.logFile = new File(filename + ".log");
+
+        File parent = snapshotFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            log.warn("Unable to create directory {}", parent);
+        }
+
+        executor.scheduleWithFixedDelay(this::flush, FLUSH_PERIOD_MS,
+                                        FLUSH_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void readInto(Map<K, Timestamped<V>> items, Map<K, Timestamp> tombstones) {
+        liveItems = items;
+        liveTombstones = tombstones;
+        snapshotBytes = replay(snapshotFile, items, tombstones);
+        logBytes = replay(logFile, items, tombstones);
+        if (snapshotFile.length() > snapshotBytes) {
+            // Rewrite the snapshot without its unreadable tail on first flush
+            logDamaged = true;
+        }
+        if (logFile.length() > logBytes) {
+            truncateLog();
+        }
+        log.info("Loaded {} items and {} tombstones from {}",
+                 items.size(), tombstones.size(), snapshotFile);
+    }
+
+    // Applies the records in the given file to the specified maps and
+    // returns the number of bytes of valid records read.
+    private long replay(File file, Map<K, Timestamped<V>> items,
+                        Map<K, Timestamp> tombstones) {
+        if (!file.exists()) {
+            return 0;
+        }
+        long bytes = 0;
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            while (true) {
+                AbstractEntry<K, V> entry = readRecord(in, length - bytes);
+                if (entry == null) {
+                    break;
+                }
+                apply(entry, items, tombstones);
+                bytes = length - in.available();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable tail of {} after {} bytes", file, bytes, e);
+        }
+        return bytes;
+    }
+
+    // Reads the next record, or returns null at the end of the file; the
+    // record length is checked against the bytes left in the file so that
+    // a corrupt length fails the read instead of the allocation.
+    private AbstractEntry<K, V> readRecord(DataInputStream in, long remaining) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > remaining - Integer.BYTES) {
+            throw new IOException("Invalid record length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return serializer.decode(bytes);
+    }
+
+    private void apply(AbstractEntry<K, V> entry, Map<K, Timestamped<V>> items,
+                       Map<K, Timestamp> tombstones) {
+        K key = entry.key();
+        Timestamp timestamp = entry.timestamp();
+        Timestamped<V> existing = items.get(key);
+        if (existing != null && existing.isNewerThan(timestamp)) {
+            return;
+        }
+        Timestamp removed = tombstones.get(key);
+        if (entry instanceof PutEntry) {
+            if (removed == null || !removed.isNewerThan(timestamp)) {
+                items.put(key, new Timestamped<>(((PutEntry<K, V>) entry).value(), timestamp));
+                tombstones.remove(key);
+            }
+        } else {
+            items.remove(key);
+            if (!tombstonesDisabled && (removed == null || timestamp.isNewerThan(removed))) {
+                tombstones.put(key, timestamp);
+            }
+        }
+    }
+
+    @Override
+    public void put(K key, V value, Timestamp timestamp) {
+        enqueue(new PutEntry<>(key, value, timestamp));
+    }
+
+    @Override
+    public void remove(K key, Timestamp timestamp) {
+        enqueue(new RemoveEntry<>(key, timestamp));
+    }
+
+    private void enqueue(AbstractEntry<K, V> entry) {
+        pending.merge(entry.key(), entry,
+                      (existing, update) -> update.compareTo(existing) >= 0 ? update : existing);
+    }
+
+    /**
+     * Writes the pending updates to disk and waits until they are written.
+     *
+     * @return true if all updates pending so far are on disk
+     */
+    boolean sync() {
+        try {
+            return executor.submit(() -> flush()).get(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Unable to write updates to {}", logFile, e);
+            return false;
+        }
+    }
+
+    // Appends the pending updates to the log and compacts it if needed;
+    // returns false if the updates could not be written.
+    private boolean flush() {
+        if (pending.isEmpty() && !logDamaged) {
+            return true;
+        }
+        try {
+            DataOutputStream out = logStream();
+            for (Map.Entry<K, AbstractEntry<K, V>> e : pending.entrySet()) {
+                logBytes += writeRecord(out, e.getValue());
+                pending.remove(e.getKey(), e.getValue());
+            }
+            out.flush();
+            logFileStream.getChannel().force(false);
+
+            // A failed write may have left a partial record in the log;
+            // compacting rewrites the full state and starts a fresh log.
+            if (logDamaged || (logBytes > MIN_COMPACTION_BYTES && logBytes > snapshotBytes)) {
+                compact();
+                logDamaged = false;
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to write updates to {}", logFile, e);
+            logDamaged = true;
+            closeLog();
+            return false;
+        }
+    }
+
+    // Cuts a torn or corrupt tail off the log, so that new records are not
+    // appended after it where replay would never reach them.
+    private void truncateLog() {
+        log.warn("Truncating {} to its {} readable bytes", logFile, logBytes);
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(logBytes);
+            channel.force(false);
+        } catch (IOException e) {
+            log.warn("Unable to truncate {}; compacting it on first flush", logFile, e);
+            logDamaged = true;
+        }
+    }
+
+    private DataOutputStream logStream() throws IOException {
+        if (logStream == null) {
+            logFileStream = new FileOutputStream(logFile, true);
+            logStream = new DataOutputStream(new BufferedOutputStream(logFileStream, BUFFER_SIZE));
+        }
+        return logStream;
+    }
+
+    private void closeLog() {
+        if (logStream != null) {
+            try {
+                logStream.close();
+            } catch (IOException e) {
+                log.debug("Unable to close {}", logFile, e);
+            }
+            logStream = null;
+            logFileStream = null;
+        }
+    }
+
+    // Writes a length-prefixed record and returns the number of bytes written.
+    private long writeRecord(DataOutputStream out, AbstractEntry<K, V> entry) throws IOException {
+        byte[] bytes = serializer.encode(entry);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+
+    // Writes a snapshot of the live state and truncates the log. Updates
+    // made while the snapshot is being written are still pending and end up
+    // in the new log.
+    private void compact() throws IOException {
+        if (liveItems == null) {
+            return;
+        }
+        File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        long bytes = 0;
+        try (FileOutputStream fileStream = new FileOutputStream(tmpFile);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(fileStream, BUFFER_SIZE))) {
+            for (Map.Entry<K, Timestamped<V>> e : liveItems.entrySet()) {
+                bytes += writeRecord(out, new PutEntry<>(e.getKey(), e.getValue().value(),
+                                                        e.getValue().timestamp()));
+            }
+            for (Map.Entry<K, Timestamp> e : liveTombstones.entrySet()) {
+                bytes += writeRecord(out, new RemoveEntry<>(e.getKey(), e.getValue()));
+            }
+            out.flush();
+            fileStream.getChannel().force(false);
+        }
+        Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        closeLog();
+        new FileOutputStream(logFile).close();
+        log.debug("Compacted {} bytes of log into {} byte snapshot {}",
+                  logBytes, bytes, snapshotFile);
+        logBytes = 0;
+        snapshotBytes = bytes;
+    }
+
+    @Override
+    public void close() {
+        Future<?> closed = executor.submit(() -> {
+            flush();
+            closeLog();
+        });
+        executor.shutdown();
+        try {
+            closed.get(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Unable to write updates to {} before closing it", logFile, e);
+        }
+    }
+}
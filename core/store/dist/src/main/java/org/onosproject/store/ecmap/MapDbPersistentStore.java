@@ -163,4 +163,8 @@ class MapDbPersistentStore<K, V> implements PersistentStore<K, V> {
         database.commit();
     }
 
+    @Override
+    public void close() {
+        database.close();
+    }
 }
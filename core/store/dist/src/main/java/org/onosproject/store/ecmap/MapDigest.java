@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.onosproject.store.Timestamp;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Incrementally maintained bucketed digest of the contents of an eventually
+ * consistent map.
+ * <p>
+ * Keys are assigned to a fixed number of buckets. The digest of a bucket is
+ * the XOR of the hashes of the (key, timestamp, tombstone) triples it holds,
+ * so that adding and removing an entry are the same cheap operation and the
+ * digest never needs to be recomputed from scratch. Hashes are computed from
+ * the serialized form of keys and timestamps, which makes them consistent
+ * across cluster members.
+ * </p>
+ * <p>
+ * The bucket and hash of a key are computed once, when the key first enters
+ * the digest, and kept until its last entry leaves it. Keys are also indexed
+ * by bucket, so that an anti-entropy round only visits the keys of the
+ * buckets which differ.
+ * </p>
+ */
+final class MapDigest<K> {
+
+    /**
+     * Default number of digest buckets.
+     */
+    static final int DEFAULT_BUCKETS = 1024;
+
+    private static final HashFunction BUCKET_HASH = Hashing.murmur3_32();
+    private static final HashFunction ENTRY_HASH = Hashing.murmur3_128();
+
+    private final Function<Object, byte[]> encoder;
+    private final AtomicLongArray digests;
+    private final ConcurrentMap<K, KeyDigest> keys = new ConcurrentHashMap<>();
+    private final Set<K>[] bucketKeys;
+
+    /**
+     * Creates a new map digest.
+     *
+     * @param encoder function to serialize keys and timestamps
+     * @param buckets number of buckets
+     */
+    @SuppressWarnings("unchecked")
+    MapDigest(Function<Object, byte[]> encoder, int buckets) {
+        this.encoder = encoder;
+        this.digests = new AtomicLongArray(buckets);
+        this.bucketKeys = new Set[buckets];
+        for (int i = 0; i < buckets; i++) {
+            bucketKeys[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * Returns the keys in the digest which belong to the specified buckets.
+     *
+     * @param buckets bucket indexes
+     * @return keys in the buckets
+     */
+    Set<K> keys(Set<Integer> buckets) {
+        ImmutableSet.Builder<K> builder = ImmutableSet.builder();
+        buckets.stream()
+                .filter(bucket -> bucket >= 0 && bucket < bucketKeys.length)
+                .forEach(bucket -> builder.addAll(bucketKeys[bucket]));
+        return builder.build();
+    }
+
+    /**
+     * Accounts for an entry being added to the map.
+     *
+     * @param key       map key
+     * @param timestamp timestamp of the live item or tombstone
+     * @param tombstone true if the entry is a tombstone
+     */
+    void add(K key, Timestamp timestamp, boolean tombstone) {
+        toggle(key, timestamp, tombstone, 1);
+    }
+
+    /**
+     * Accounts for an entry being removed from the map.
+     *
+     * @param key       map key
+     * @param timestamp timestamp of the live item or tombstone
+     * @param tombstone true if the entry is a tombstone
+     */
+    void remove(K key, Timestamp timestamp, boolean tombstone) {
+        toggle(key, timestamp, tombstone, -1);
+    }
+
+    // Adding and removing an entry flip the same bits of its bucket digest;
+    // the delta only tracks how many entries of the key remain, so that the
+    // key is forgotten once it has none.
+    private void toggle(K key, Timestamp timestamp, boolean tombstone, int delta) {
+        byte[] timestampBytes = encoder.apply(timestamp);
+        KeyDigest keyDigest = keys.get(key);
+        if (keyDigest == null) {
+            keyDigest = new KeyDigest(encoder.apply(key));
+        }
+        KeyDigest created = keyDigest;
+        keyDigest = keys.compute(key, (k, existing) -> {
+            KeyDigest current = existing != null ? existing : created;
+            current.entries += delta;
+            if (current.entries == 0) {
+                bucketKeys[current.bucket].remove(k);
+                return null;
+            }
+            if (existing == null) {
+                bucketKeys[current.bucket].add(k);
+            }
+            return current;
+        });
+        if (keyDigest == null) {
+            keyDigest = created;
+        }
+
+        long hash = ENTRY_HASH.newHasher()
+                .putLong(keyDigest.hash)
+                .putBytes(timestampBytes)
+                .putBoolean(tombstone)
+                .hash().asLong();
+        long prev;
+        do {
+            prev = digests.get(keyDigest.bucket);
+        } while (!digests.compareAndSet(keyDigest.bucket, prev, prev ^ hash));
+    }
+
+    /**
+     * Returns a snapshot of the bucket digests.
+     *
+     * @return bucket digests
+     */
+    long[] digests() {
+        long[] snapshot = new long[digests.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = digests.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the buckets whose digests differ from the given remote digests.
+     * If the number of buckets differs, all buckets are deemed mismatched.
+     *
+     * @param remote remote bucket digests
+     * @return indexes of mismatched buckets
+     */
+    Set<Integer> mismatched(long[] remote) {
+        Set<Integer> buckets = new HashSet<>();
+        for (int i = 0; i < digests.length(); i++) {
+            if (remote.length != digests.length() || remote[i] != digests.get(i)) {
+                buckets.add(i);
+            }
+        }
+        return buckets;
+    }
+
+    // Bucket and hash of a key, and the number of its entries in the digest
+    private final class KeyDigest {
+        private final int bucket;
+        private final long hash;
+        private int entries;
+
+        private KeyDigest(byte[] keyBytes) {
+            this.bucket = Math.floorMod(BUCKET_HASH.hashBytes(keyBytes).asInt(), digests.length());
+            this.hash = ENTRY_HASH.hashBytes(keyBytes).asLong();
+        }
+    }
+}
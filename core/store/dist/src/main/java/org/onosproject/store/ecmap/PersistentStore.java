@@ -50,4 +50,11 @@ interface PersistentStore<K, V> {
      * @param timestamp the timestamp of the update
      */
     void remove(K key, Timestamp timestamp);
+
+    /**
+     * Writes out any buffered updates and releases the resources held by
+     * the store.
+     */
+    default void close() {
+    }
 }
@@ -15,15 +15,10 @@
  */
 package org.onosproject.store.flow.impl;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
-import com.hazelcast.core.IMap;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -33,7 +28,6 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
-import org.onlab.util.BoundedThreadPool;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.NewConcurrentHashMap;
 import org.onlab.util.Tools;
@@ -69,8 +63,7 @@ import org.onosproject.store.flow.ReplicaInfo;
 import org.onosproject.store.flow.ReplicaInfoEvent;
 import org.onosproject.store.flow.ReplicaInfoEventListener;
 import org.onosproject.store.flow.ReplicaInfoService;
-import org.onosproject.store.hz.AbstractHazelcastStore;
-import org.onosproject.store.hz.SMap;
+import org.onosproject.store.AbstractStore;
 import org.onosproject.store.serializers.KryoSerializer;
 import org.onosproject.store.serializers.StoreSerializer;
 import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
@@ -79,24 +72,24 @@ import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.concurrent.ConcurrentUtils.createIfAbsentUnchecked;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.onlab.util.Tools.get;
@@ -111,13 +104,14 @@ import static org.slf4j.LoggerFactory.getLogger;
 @Component(immediate = true)
 @Service
 public class DistributedFlowRuleStore
-        extends AbstractHazelcastStore<FlowRuleBatchEvent, FlowRuleStoreDelegate>
+        extends AbstractStore<FlowRuleBatchEvent, FlowRuleStoreDelegate>
         implements FlowRuleStore {
 
     private final Logger log = getLogger(getClass());
 
     private static final int MESSAGE_HANDLER_THREAD_POOL_SIZE = 8;
     private static final boolean DEFAULT_BACKUP_ENABLED = true;
+    private static final int DEFAULT_BACKUP_PERIOD_MILLIS = 100;
     private static final long FLOW_RULE_STORE_TIMEOUT_MILLIS = 5000;
 
     @Property(name = "msgHandlerPoolSize", intValue = MESSAGE_HANDLER_THREAD_POOL_SIZE,
@@ -128,8 +122,15 @@ public class DistributedFlowRuleStore
             label = "Indicates whether backups are enabled or not")
     private boolean backupEnabled = DEFAULT_BACKUP_ENABLED;
 
+    @Property(name = "backupPeriod", intValue = DEFAULT_BACKUP_PERIOD_MILLIS,
+            label = "Delay in ms between successive flow table backups")
+    private int backupPeriod = DEFAULT_BACKUP_PERIOD_MILLIS;
+
     private InternalFlowTable flowTable = new InternalFlowTable();
 
+    // Standby copies of the flow tables of devices this node backs up
+    private final InternalFlowTable backupTable = new InternalFlowTable();
+
     /*private final ConcurrentMap<DeviceId, ConcurrentMap<FlowId, Set<StoredFlowEntry>>>
             flowEntries = new ConcurrentHashMap<>();*/
 
@@ -153,16 +154,26 @@ public class DistributedFlowRuleStore
 
     private Map<Long, NodeId> pendingResponses = Maps.newConcurrentMap();
 
-    // Cache of SMaps used for backup data.  each SMap contain device flow table
-    private LoadingCache<DeviceId, SMap<FlowId, ImmutableList<StoredFlowEntry>>> smaps;
+    // Rules changed since the last backup, per device mastered by this node
+    private final ConcurrentMap<DeviceId, Set<FlowRule>> pendingBackups = Maps.newConcurrentMap();
+
+    // Devices whose standby nodes need a complete copy of the flow table
+    private final Set<DeviceId> pendingSnapshots = Sets.newConcurrentHashSet();
+
+    // Last backup sequence number sent, per device mastered by this node
+    private final Map<DeviceId, Long> sentSequences = Maps.newConcurrentMap();
+
+    // Last backup sequence number applied, per device backed up by this node
+    private final Map<DeviceId, Long> receivedSequences = Maps.newConcurrentMap();
 
     private ExecutorService messageHandlingExecutor;
 
-    private final ExecutorService backupExecutors =
-            BoundedThreadPool.newSingleThreadExecutor(groupedThreads("onos/flow", "async-backups"));
-            //Executors.newSingleThreadExecutor(groupedThreads("onos/flow", "async-backups"));
+    // Backup updates must be applied in the order they were sent
+    private ExecutorService backupHandlingExecutor;
+
+    private ScheduledExecutorService backupSenderExecutor;
 
-    private boolean syncBackup = false;
+    private ScheduledFuture<?> backupTask;
 
     protected static final StoreSerializer SERIALIZER = new KryoSerializer() {
         @Override
@@ -172,6 +183,8 @@ public class DistributedFlowRuleStore
                     .nextId(DistributedStoreSerializers.STORE_CUSTOM_BEGIN)
                     .register(FlowRuleEvent.class)
                     .register(FlowRuleEvent.Type.class)
+                    .register(FlowTableUpdate.class)
+                    .register(FlowTableDigest.class)
                     .build();
         }
     };
@@ -185,22 +198,23 @@ public class DistributedFlowRuleStore
     @Activate
     public void activate(ComponentContext context) {
         configService.registerProperties(getClass());
-        super.serializer = SERIALIZER;
-        super.theInstance = storeService.getHazelcastInstance();
 
         idGenerator = coreService.getIdGenerator(FlowRuleService.FLOW_OP_TOPIC);
 
         local = clusterService.getLocalNode().id();
 
-        // Cache to create SMap on demand
-        smaps = CacheBuilder.newBuilder()
-                .softValues()
-                .build(new SMapLoader());
-
         messageHandlingExecutor = Executors.newFixedThreadPool(
                 msgHandlerPoolSize, groupedThreads("onos/store/flow", "message-handlers"));
 
+        backupHandlingExecutor = Executors.newSingleThreadExecutor(
+                groupedThreads("onos/store/flow", "backup-handler"));
+
         registerMessageHandlers(messageHandlingExecutor);
+        registerBackupHandlers(backupHandlingExecutor);
+
+        backupSenderExecutor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/store/flow", "backup-sender"));
+        scheduleBackups();
 
         replicaInfoEventListener = new InternalReplicaInfoEventListener();
 
@@ -214,6 +228,8 @@ public class DistributedFlowRuleStore
         configService.unregisterProperties(getClass(), false);
         unregisterMessageHandlers();
         messageHandlingExecutor.shutdownNow();
+        backupHandlingExecutor.shutdownNow();
+        backupSenderExecutor.shutdownNow();
         replicaInfoManager.removeListener(replicaInfoEventListener);
         log.info("Stopped");
     }
@@ -229,6 +245,7 @@ public class DistributedFlowRuleStore
         Dictionary properties = context.getProperties();
         int newPoolSize;
         boolean newBackupEnabled;
+        int newBackupPeriod;
         try {
             String s = get(properties, "msgHandlerPoolSize");
             newPoolSize = isNullOrEmpty(s) ? msgHandlerPoolSize : Integer.parseInt(s.trim());
@@ -236,14 +253,22 @@ public class DistributedFlowRuleStore
             s = get(properties, "backupEnabled");
             newBackupEnabled = isNullOrEmpty(s) ? backupEnabled : Boolean.parseBoolean(s.trim());
 
+            s = get(properties, "backupPeriod");
+            newBackupPeriod = isNullOrEmpty(s) ? backupPeriod : Integer.parseInt(s.trim());
+
         } catch (NumberFormatException | ClassCastException e) {
             newPoolSize = MESSAGE_HANDLER_THREAD_POOL_SIZE;
             newBackupEnabled = DEFAULT_BACKUP_ENABLED;
+            newBackupPeriod = DEFAULT_BACKUP_PERIOD_MILLIS;
         }
 
         if (newBackupEnabled != backupEnabled) {
             backupEnabled = newBackupEnabled;
         }
+        if (newBackupPeriod != backupPeriod && newBackupPeriod > 0) {
+            backupPeriod = newBackupPeriod;
+            scheduleBackups();
+        }
         if (newPoolSize != msgHandlerPoolSize) {
             msgHandlerPoolSize = newPoolSize;
             ExecutorService oldMsgHandler = messageHandlingExecutor;
@@ -304,7 +329,40 @@ public class DistributedFlowRuleStore
         }, executor);
     }
 
+    private void registerBackupHandlers(ExecutorService executor) {
+
+        clusterCommunicator.addSubscriber(FLOW_TABLE_BACKUP, new ClusterMessageHandler() {
+            @Override
+            public void handle(ClusterMessage message) {
+                FlowTableUpdate update = SERIALIZER.decode(message.payload());
+                log.trace("Received flow table backup {} from {}", update, message.sender());
+                applyBackup(update, message.sender());
+            }
+        }, executor);
+
+        clusterCommunicator.addSubscriber(FLOW_TABLE_DIGEST, new ClusterMessageHandler() {
+            @Override
+            public void handle(ClusterMessage message) {
+                FlowTableDigest digest = SERIALIZER.decode(message.payload());
+                log.trace("Received flow table digest {} from {}", digest, message.sender());
+                checkBackup(digest, message.sender());
+            }
+        }, executor);
+
+        clusterCommunicator.addSubscriber(FLOW_TABLE_RESYNC, new ClusterMessageHandler() {
+            @Override
+            public void handle(ClusterMessage message) {
+                DeviceId deviceId = SERIALIZER.decode(message.payload());
+                log.debug("Backup of {} on {} is out of sync", deviceId, message.sender());
+                pendingSnapshots.add(deviceId);
+            }
+        }, executor);
+    }
+
     private void unregisterMessageHandlers() {
+        clusterCommunicator.removeSubscriber(FLOW_TABLE_RESYNC);
+        clusterCommunicator.removeSubscriber(FLOW_TABLE_DIGEST);
+        clusterCommunicator.removeSubscriber(FLOW_TABLE_BACKUP);
         clusterCommunicator.removeSubscriber(REMOVE_FLOW_ENTRY);
         clusterCommunicator.removeSubscriber(GET_DEVICE_FLOW_ENTRIES);
         clusterCommunicator.removeSubscriber(GET_FLOW_ENTRY);
@@ -313,8 +371,17 @@ public class DistributedFlowRuleStore
     }
 
     private void logConfig(String prefix) {
-        log.info("{} with msgHandlerPoolSize = {}; backupEnabled = {}",
-                 prefix, msgHandlerPoolSize, backupEnabled);
+        log.info("{} with msgHandlerPoolSize = {}; backupEnabled = {}; backupPeriod = {}",
+                 prefix, msgHandlerPoolSize, backupEnabled, backupPeriod);
+    }
+
+    private void scheduleBackups() {
+        if (backupTask != null) {
+            backupTask.cancel(false);
+        }
+        backupTask = backupSenderExecutor.scheduleWithFixedDelay(this::backupFlowTables,
+                                                                 backupPeriod, backupPeriod,
+                                                                 TimeUnit.MILLISECONDS);
     }
 
 
@@ -499,17 +566,10 @@ public class DistributedFlowRuleStore
         if (!backupEnabled) {
             return;
         }
-
-        Future<?> backup = backupExecutors.submit(new UpdateBackup(deviceId, entries));
-
-        if (syncBackup) {
-            // wait for backup to complete
-            try {
-                backup.get();
-            } catch (InterruptedException | ExecutionException e) {
-                log.error("Failed to create backups", e);
-            }
-        }
+        // Only the affected rules are recorded; their current entries are
+        // looked up when the next backup is sent.
+        Set<FlowRule> pending = pendingBackups.computeIfAbsent(deviceId, k -> Sets.newConcurrentHashSet());
+        entries.forEach(entry -> pending.add(entry.target()));
     }
 
     @Override
@@ -625,33 +685,137 @@ public class DistributedFlowRuleStore
     }
 
     private void loadFromBackup(final DeviceId did) {
-        if (!backupEnabled) {
-            return;
-        }
         log.info("We are now the master for {}. Will load flow rules from backup", did);
-        try {
-            log.debug("Loading FlowRules for {} from backups", did);
-            SMap<FlowId, ImmutableList<StoredFlowEntry>> backupFlowTable = smaps.get(did);
-            for (Entry<FlowId, ImmutableList<StoredFlowEntry>> e
-                    : backupFlowTable.entrySet()) {
+        flowTable.merge(did, backupTable.removeDevice(did));
+        Long sequence = receivedSequences.remove(did);
+        sentSequences.put(did, sequence == null ? 0L : sequence);
+        sendDigests(did);
+    }
 
-                log.trace("loading {}", e.getValue());
-                for (StoredFlowEntry entry : e.getValue()) {
-                    flowTable.getFlowEntriesById(entry).remove(entry);
-                    flowTable.getFlowEntriesById(entry).add(entry);
+    private void moveToBackup(final DeviceId did, boolean standby) {
+        pendingBackups.remove(did);
+        pendingSnapshots.remove(did);
+        Long sequence = sentSequences.remove(did);
+        ConcurrentMap<FlowId, Set<StoredFlowEntry>> table = flowTable.removeDevice(did);
+        if (standby) {
+            // keep our copy; the new master reconciles it through digests
+            backupTable.merge(did, table);
+            receivedSequences.put(did, sequence == null ? 0L : sequence);
+        } else {
+            removeBackup(did);
+        }
+    }
 
+    private void removeBackup(final DeviceId did) {
+        backupTable.removeDevice(did);
+        receivedSequences.remove(did);
+    }
 
+    // Sends the changes made since the previous run to the standby nodes.
+    private void backupFlowTables() {
+        try {
+            Set<DeviceId> devices = new HashSet<>(pendingBackups.keySet());
+            devices.addAll(pendingSnapshots);
+            devices.forEach(this::backupFlowTable);
+        } catch (Exception e) {
+            log.warn("Failed to back up flow tables", e);
+        }
+    }
+
+    private void backupFlowTable(DeviceId deviceId) {
+        ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(deviceId);
+        if (!backupEnabled || !local.equals(replicaInfo.master().orNull())) {
+            pendingBackups.remove(deviceId);
+            pendingSnapshots.remove(deviceId);
+            return;
+        }
+
+        boolean snapshot = pendingSnapshots.remove(deviceId);
+        List<FlowEntry> entries = new ArrayList<>();
+        List<FlowRule> removed = new ArrayList<>();
+        Set<FlowRule> changed = pendingBackups.getOrDefault(deviceId, Collections.emptySet());
+        // rules changed while draining stay pending for the next run
+        for (Iterator<FlowRule> it = changed.iterator(); it.hasNext();) {
+            FlowRule rule = it.next();
+            it.remove();
+            if (!snapshot) {
+                FlowEntry entry = flowTable.getFlowEntry(rule);
+                if (entry != null) {
+                    entries.add(entry);
+                } else {
+                    removed.add(rule);
                 }
             }
-        } catch (ExecutionException e) {
-            log.error("Failed to load backup flowtable for {}", did, e);
+        }
+        if (snapshot) {
+            entries.addAll(flowTable.getFlowEntries(deviceId));
+        } else if (entries.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        long sequence = sentSequences.merge(deviceId, 1L, Long::sum);
+        FlowTableUpdate update = new FlowTableUpdate(deviceId, sequence, snapshot, entries, removed);
+        for (NodeId backup : replicaInfo.backups()) {
+            if (!backup.equals(local)
+                    && !clusterCommunicator.unicast(update, FLOW_TABLE_BACKUP, SERIALIZER::encode, backup)) {
+                // the gap in sequence numbers makes the standby ask for a snapshot
+                log.debug("Failed to send flow table backup for {} to {}", deviceId, backup);
+            }
+        }
+    }
+
+    // Asks the standby nodes of a device to compare their copy with ours.
+    private void sendDigests(DeviceId deviceId) {
+        if (!backupEnabled) {
+            return;
+        }
+        ReplicaInfo replicaInfo = replicaInfoManager.getReplicaInfoFor(deviceId);
+        FlowTableDigest digest = flowTable.digest(deviceId, sentSequences.getOrDefault(deviceId, 0L));
+        for (NodeId backup : replicaInfo.backups()) {
+            if (!backup.equals(local)) {
+                clusterCommunicator.unicast(digest, FLOW_TABLE_DIGEST, SERIALIZER::encode, backup);
+            }
         }
     }
 
-    private void removeFromPrimary(final DeviceId did) {
-        flowTable.clearDevice(did);
+    private void applyBackup(FlowTableUpdate update, NodeId sender) {
+        final DeviceId did = update.deviceId();
+        if (local.equals(replicaInfoManager.getReplicaInfoFor(did).master().orNull())) {
+            // late update from a previous master
+            return;
+        }
+
+        Long last = receivedSequences.get(did);
+        if (update.isSnapshot()) {
+            backupTable.clearDevice(did);
+        } else if (last == null ? update.sequence() != 1 : update.sequence() != last + 1) {
+            log.debug("Missed flow table backups for {}; expected {} but got {}",
+                      did, last == null ? 1 : last + 1, update.sequence());
+            clusterCommunicator.unicast(did, FLOW_TABLE_RESYNC, SERIALIZER::encode, sender);
+        }
+
+        for (FlowEntry entry : update.entries()) {
+            backupTable.remove(did, entry);
+            backupTable.add(entry);
+        }
+        for (FlowRule rule : update.removed()) {
+            backupTable.remove(did, rule);
+        }
+        receivedSequences.put(did, update.sequence());
     }
 
+    private void checkBackup(FlowTableDigest digest, NodeId sender) {
+        final DeviceId did = digest.deviceId();
+        if (local.equals(replicaInfoManager.getReplicaInfoFor(did).master().orNull())) {
+            return;
+        }
+        FlowTableDigest ours = backupTable.digest(did, receivedSequences.getOrDefault(did, 0L));
+        receivedSequences.put(did, digest.sequence());
+        if (!ours.matches(digest)) {
+            log.debug("Backup of {} diverged from master {}: {} vs {}", did, sender, ours, digest);
+            clusterCommunicator.unicast(did, FLOW_TABLE_RESYNC, SERIALIZER::encode, sender);
+        }
+    }
 
     private final class OnStoreBatch implements ClusterMessageHandler {
         private final NodeId local;
@@ -689,17 +853,6 @@ public class DistributedFlowRuleStore
         }
     }
 
-    private final class SMapLoader
-            extends CacheLoader<DeviceId, SMap<FlowId, ImmutableList<StoredFlowEntry>>> {
-
-        @Override
-        public SMap<FlowId, ImmutableList<StoredFlowEntry>> load(DeviceId id)
-                throws Exception {
-            IMap<byte[], byte[]> map = theInstance.getMap("flowtable_" + id.toString());
-            return new SMap<FlowId, ImmutableList<StoredFlowEntry>>(map, SERIALIZER);
-        }
-    }
-
     private final class InternalReplicaInfoEventListener
             implements ReplicaInfoEventListener {
 
@@ -711,18 +864,26 @@ public class DistributedFlowRuleStore
 
             switch (event.type()) {
                 case MASTER_CHANGED:
+                    // Handled in order with incoming backups, so that none is
+                    // applied to a table that already moved.
                     if (local.equals(rInfo.master().orNull())) {
                         // This node is the new master, populate local structure
                         // from backup
-                        loadFromBackup(did);
+                        backupHandlingExecutor.execute(() -> loadFromBackup(did));
+                    } else {
+                        // This node is no longer the master holder; keep the
+                        // flow table only if this node is one of its standbys
+                        boolean standby = rInfo.backups().contains(local);
+                        backupHandlingExecutor.execute(() -> moveToBackup(did, standby));
+                    }
+                    break;
+                case BACKUPS_CHANGED:
+                    if (local.equals(rInfo.master().orNull())) {
+                        // new standbys ask for a snapshot after comparing digests
+                        backupHandlingExecutor.execute(() -> sendDigests(did));
+                    } else if (!rInfo.backups().contains(local)) {
+                        backupHandlingExecutor.execute(() -> removeBackup(did));
                     }
-                    //else {
-                        // This node is no longer the master holder,
-                        // clean local structure
-                        //removeFromPrimary(did);
-                        // TODO: probably should stop pending backup activities in
-                        // executors to avoid overwriting with old value
-                    //}
                     break;
                 default:
                     break;
@@ -731,62 +892,6 @@ public class DistributedFlowRuleStore
         }
     }
 
-    // Task to update FlowEntries in backup HZ store
-    private final class UpdateBackup implements Runnable {
-
-        private final DeviceId deviceId;
-        private final Set<FlowRuleBatchEntry> ops;
-
-
-        public UpdateBackup(DeviceId deviceId,
-                            Set<FlowRuleBatchEntry> ops) {
-            this.deviceId = checkNotNull(deviceId);
-            this.ops = checkNotNull(ops);
-
-        }
-
-        @Override
-        public void run() {
-            try {
-                log.trace("update backup {} {}", deviceId, ops
-                );
-                final SMap<FlowId, ImmutableList<StoredFlowEntry>> backupFlowTable = smaps.get(deviceId);
-
-
-                ops.stream().forEach(
-                        op -> {
-                            final FlowRule entry = op.target();
-                            final FlowId id = entry.id();
-                            ImmutableList<StoredFlowEntry> original = backupFlowTable.get(id);
-                            List<StoredFlowEntry> list = new ArrayList<>();
-                            if (original != null) {
-                                list.addAll(original);
-                            }
-                            list.remove(op.target());
-                            if (op.operator() == FlowRuleOperation.ADD) {
-                                list.add((StoredFlowEntry) entry);
-                            }
-
-                            ImmutableList<StoredFlowEntry> newValue = ImmutableList.copyOf(list);
-                            boolean success;
-                            if (original == null) {
-                                success = (backupFlowTable.putIfAbsent(id, newValue) == null);
-                            } else {
-                                success = backupFlowTable.replace(id, original, newValue);
-                            }
-                            if (!success) {
-                                log.error("Updating backup failed.");
-                            }
-
-                        }
-                );
-            } catch (ExecutionException e) {
-                log.error("Failed to write to backups", e);
-            }
-
-        }
-    }
-
     private class InternalFlowTable {
 
         /*
@@ -867,9 +972,60 @@ public class DistributedFlowRuleStore
             //return flowEntries.remove(deviceId, rule);
         }
 
+        public boolean remove(DeviceId deviceId, FlowRule rule) {
+            return getFlowEntriesInternal(deviceId, rule.id()).remove(rule);
+        }
+
         public void clearDevice(DeviceId did) {
             flowEntries.remove(did);
         }
+
+        /**
+         * Removes and returns the flow table of the specified device.
+         *
+         * @param did identifier of the device
+         * @return flow table of the device; empty if there was none
+         */
+        public ConcurrentMap<FlowId, Set<StoredFlowEntry>> removeDevice(DeviceId did) {
+            ConcurrentMap<FlowId, Set<StoredFlowEntry>> table = flowEntries.remove(did);
+            return table == null ? new ConcurrentHashMap<>() : table;
+        }
+
+        /**
+         * Adds the entries of the given flow table to the table of the
+         * specified device. Entries already present are kept.
+         *
+         * @param did   identifier of the device
+         * @param table flow table to merge
+         */
+        public void merge(DeviceId did, ConcurrentMap<FlowId, Set<StoredFlowEntry>> table) {
+            if (table.isEmpty()) {
+                return;
+            }
+            // adopt the table as is unless entries were added concurrently
+            if (flowEntries.putIfAbsent(did, table) != null) {
+                table.forEach((id, entries) -> getFlowEntriesInternal(did, id).addAll(entries));
+            }
+        }
+
+        /**
+         * Computes a digest of the flow table of the specified device.
+         *
+         * @param did      identifier of the device
+         * @param sequence backup sequence number the table reflects
+         * @return flow table digest
+         */
+        public FlowTableDigest digest(DeviceId did, long sequence) {
+            Map<FlowId, Set<StoredFlowEntry>> table = flowEntries.getOrDefault(did, Maps.newConcurrentMap());
+            Collection<StoredFlowEntry> entries = table.values().stream()
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList());
+            long checksum = 0;
+            for (StoredFlowEntry entry : entries) {
+                checksum += FlowTableDigest.checksum(entry);
+            }
+            return new FlowTableDigest(did, sequence, entries.size(), checksum);
+        }
     }
 
 
@@ -37,4 +37,13 @@ public final class FlowStoreMessageSubjects {
 
     public static final MessageSubject REMOTE_APPLY_COMPLETED
             = new MessageSubject("peer-apply-completed");
+
+    public static final MessageSubject FLOW_TABLE_BACKUP
+            = new MessageSubject("peer-flow-table-backup");
+
+    public static final MessageSubject FLOW_TABLE_DIGEST
+            = new MessageSubject("peer-flow-table-digest");
+
+    public static final MessageSubject FLOW_TABLE_RESYNC
+            = new MessageSubject("peer-flow-table-resync");
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowEntry;
+
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Summary of a device flow table, used to detect standby copies that have
+ * diverged from the master's table.
+ */
+public final class FlowTableDigest {
+
+    private final DeviceId deviceId;
+    private final long sequence;
+    private final int size;
+    private final long checksum;
+
+    /**
+     * Creates a new flow table digest.
+     *
+     * @param deviceId device identifier
+     * @param sequence last update sequence number reflected in the table
+     * @param size     number of flow entries
+     * @param checksum order independent checksum of the flow entries
+     */
+    public FlowTableDigest(DeviceId deviceId, long sequence, int size, long checksum) {
+        this.deviceId = checkNotNull(deviceId);
+        this.sequence = sequence;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    // for serialization
+    private FlowTableDigest() {
+        this.deviceId = null;
+        this.sequence = 0;
+        this.size = 0;
+        this.checksum = 0;
+    }
+
+    /**
+     * Returns the device identifier.
+     *
+     * @return device identifier
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Returns the last update sequence number reflected in the table.
+     *
+     * @return sequence number
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns whether the given digest describes the same flow entries as
+     * this one, regardless of sequence number.
+     *
+     * @param other other digest
+     * @return true if both tables hold the same entries
+     */
+    public boolean matches(FlowTableDigest other) {
+        return Objects.equals(deviceId, other.deviceId)
+                && size == other.size
+                && checksum == other.checksum;
+    }
+
+    /**
+     * Returns the contribution of a flow entry to the checksum of its table.
+     * <p>
+     * Only the flow id and entry state are used, as they are the same on
+     * every node; the hash codes of the entry and its criteria are not.
+     * Counters are left out since statistics updates are not backed up.
+     * </p>
+     *
+     * @param entry flow entry
+     * @return checksum of the entry
+     */
+    static long checksum(FlowEntry entry) {
+        long h = entry.id().value() * 31 + entry.state().ordinal();
+        // mix the bits so that the sum over a table identifies its entries
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("deviceId", deviceId)
+                .add("sequence", sequence)
+                .add("size", size)
+                .add("checksum", checksum)
+                .toString();
+    }
+}
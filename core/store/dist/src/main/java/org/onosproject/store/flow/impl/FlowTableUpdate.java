@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowRule;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Changes to a device flow table, sent by the master to its standby nodes.
+ */
+public final class FlowTableUpdate {
+
+    private final DeviceId deviceId;
+    private final long sequence;
+    private final boolean snapshot;
+    private final List<FlowEntry> entries;
+    private final List<FlowRule> removed;
+
+    /**
+     * Creates a new flow table update.
+     *
+     * @param deviceId device whose flow table changed
+     * @param sequence sequence number of this update for the device
+     * @param snapshot true if the entries are the complete flow table
+     * @param entries  flow entries added or updated
+     * @param removed  flow rules removed
+     */
+    public FlowTableUpdate(DeviceId deviceId, long sequence, boolean snapshot,
+                           Collection<FlowEntry> entries, Collection<FlowRule> removed) {
+        this.deviceId = checkNotNull(deviceId);
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.entries = ImmutableList.copyOf(entries);
+        this.removed = ImmutableList.copyOf(removed);
+    }
+
+    // for serialization
+    private FlowTableUpdate() {
+        this.deviceId = null;
+        this.sequence = 0;
+        this.snapshot = false;
+        this.entries = null;
+        this.removed = null;
+    }
+
+    /**
+     * Returns the device whose flow table changed.
+     *
+     * @return device identifier
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Returns the sequence number of this update. Updates for a device are
+     * numbered consecutively by its master.
+     *
+     * @return sequence number
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns whether this update carries the complete flow table, replacing
+     * any previously backed up entries.
+     *
+     * @return true for a full snapshot of the flow table
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the flow entries added or updated.
+     *
+     * @return flow entries
+     */
+    public List<FlowEntry> entries() {
+        return entries;
+    }
+
+    /**
+     * Returns the flow rules removed.
+     *
+     * @return flow rules
+     */
+    public List<FlowRule> removed() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("deviceId", deviceId)
+                .add("sequence", sequence)
+                .add("snapshot", snapshot)
+                .add("entries", entries.size())
+                .add("removed", removed.size())
+                .toString();
+    }
+}
@@ -48,6 +48,8 @@ public class DistributedFlowObjectiveStore
 
     private final Logger log = getLogger(getClass());
 
+    private static final long NEXT_ID_BLOCK_SIZE = 1000;
+
     private ConsistentMap<Integer, byte[]> nextGroups;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -67,6 +69,7 @@ public class DistributedFlowObjectiveStore
 
         nextIds = storageService.atomicCounterBuilder()
                 .withName("next-objective-counter")
+                .withBlockAllocation(NEXT_ID_BLOCK_SIZE)
                 .build();
 
         log.info("Started");
@@ -38,6 +38,7 @@ import org.onosproject.net.intent.PartitionService;
 import org.onosproject.store.AbstractStore;
 import org.onosproject.store.impl.MultiValuedTimestamp;
 import org.onosproject.store.impl.WallClockTimestamp;
+import org.onosproject.store.serializers.IntentDataSerializer;
 import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.service.EventuallyConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMapEvent;
@@ -87,7 +88,7 @@ public class GossipIntentStore
     public void activate() {
         KryoNamespace.Builder intentSerializer = KryoNamespace.newBuilder()
                 .register(KryoNamespaces.API)
-                .register(IntentData.class)
+                .register(new IntentDataSerializer(), IntentData.class)
                 .register(MultiValuedTimestamp.class)
                 .register(WallClockTimestamp.class);
 
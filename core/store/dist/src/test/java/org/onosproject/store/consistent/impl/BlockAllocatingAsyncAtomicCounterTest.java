@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.onosproject.store.service.AsyncAtomicCounter;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for BlockAllocatingAsyncAtomicCounter.
+ */
+public class BlockAllocatingAsyncAtomicCounterTest {
+
+    private static final long BLOCK_SIZE = 10;
+
+    /**
+     * Counter that completes immediately and counts the updates it receives.
+     */
+    private static class TestCounter implements AsyncAtomicCounter {
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicInteger updates = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Long> incrementAndGet() {
+            return addAndGet(1L);
+        }
+
+        @Override
+        public CompletableFuture<Long> getAndIncrement() {
+            return getAndAdd(1L);
+        }
+
+        @Override
+        public CompletableFuture<Long> getAndAdd(long delta) {
+            updates.incrementAndGet();
+            return CompletableFuture.completedFuture(value.getAndAdd(delta));
+        }
+
+        @Override
+        public CompletableFuture<Long> addAndGet(long delta) {
+            updates.incrementAndGet();
+            return CompletableFuture.completedFuture(value.addAndGet(delta));
+        }
+
+        @Override
+        public CompletableFuture<Long> get() {
+            return CompletableFuture.completedFuture(value.get());
+        }
+    }
+
+    @Test
+    public void incrementsAreLocalAndUnique() {
+        TestCounter backing = new TestCounter();
+        BlockAllocatingAsyncAtomicCounter first = new BlockAllocatingAsyncAtomicCounter(backing, BLOCK_SIZE);
+        BlockAllocatingAsyncAtomicCounter second = new BlockAllocatingAsyncAtomicCounter(backing, BLOCK_SIZE);
+
+        Set<Long> values = Sets.newHashSet();
+        long previous = 0;
+        for (int i = 0; i < 100; i++) {
+            long value = first.incrementAndGet().join();
+            assertTrue("values must increase", value > previous);
+            previous = value;
+            assertTrue("duplicate value " + value, values.add(value));
+            assertTrue("duplicate value", values.add(second.getAndIncrement().join()));
+        }
+
+        // 200 values from blocks of 10, plus at most one prefetched block per counter
+        assertTrue("too many counter updates: " + backing.updates.get(), backing.updates.get() <= 22);
+    }
+
+    @Test
+    public void directUpdatesDoNotOverlapBlocks() {
+        TestCounter backing = new TestCounter();
+        BlockAllocatingAsyncAtomicCounter counter = new BlockAllocatingAsyncAtomicCounter(backing, BLOCK_SIZE);
+
+        long leased = counter.incrementAndGet().join();
+        long reserved = counter.addAndGet(5).join();
+        assertTrue(reserved > leased + BLOCK_SIZE - 1);
+        assertEquals(backing.get().join(), counter.get().join());
+        assertEquals(leased + 1, (long) counter.incrementAndGet().join());
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.testing.FakeTicker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.service.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for CachingAsyncConsistentMap.
+ */
+public class CachingAsyncConsistentMapTest {
+
+    private static final String MAP = "test-map";
+    private static final int CACHE_SIZE = 100;
+
+    private static final Serializer SERIALIZER = new Serializer() {
+        @Override
+        public <T> byte[] encode(T object) {
+            return ((String) object).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T decode(byte[] bytes) {
+            return (T) new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private TestDatabase database;
+    private FakeTicker ticker;
+
+    @Before
+    public void setUp() {
+        database = new TestDatabase("test");
+        ticker = new FakeTicker();
+    }
+
+    private CachingAsyncConsistentMap<String, String> newMap(MapCacheInvalidator invalidator) {
+        return new CachingAsyncConsistentMap<>(MAP, database, SERIALIZER, false,
+                                               CACHE_SIZE, invalidator, ticker);
+    }
+
+    private static String value(CachingAsyncConsistentMap<String, String> map, String key) {
+        return map.get(key).join().value();
+    }
+
+    @Test
+    public void readThrough() {
+        CachingAsyncConsistentMap<String, String> map = newMap(null);
+        map.put("a", "1").join();
+
+        assertEquals("1", value(map, "a"));
+        assertEquals("1", value(map, "a"));
+        assertEquals("repeated read not cached", 1, database.gets.get());
+    }
+
+    @Test
+    public void localWriteInvalidates() {
+        CachingAsyncConsistentMap<String, String> map = newMap(null);
+        map.put("a", "1").join();
+        assertEquals("1", value(map, "a"));
+
+        map.put("a", "2").join();
+        assertEquals("2", value(map, "a"));
+        map.remove("a").join();
+        assertEquals(null, map.get("a").join());
+    }
+
+    @Test
+    public void remoteWriteInvalidates() {
+        TestClusterCommunicationService node1 = new TestClusterCommunicationService();
+        TestClusterCommunicationService node2 = new TestClusterCommunicationService();
+        node1.peers.add(node2);
+        node2.peers.add(node1);
+        ExecutorService executor = MoreExecutors.newDirectExecutorService();
+        CachingAsyncConsistentMap<String, String> map1 = newMap(new MapCacheInvalidator(node1, executor));
+        CachingAsyncConsistentMap<String, String> map2 = newMap(new MapCacheInvalidator(node2, executor));
+
+        map1.put("a", "1").join();
+        assertEquals("1", value(map2, "a"));
+
+        map1.put("a", "2").join();
+        assertEquals("remote update not seen", "2", value(map2, "a"));
+    }
+
+    @Test
+    public void untrackedWriteVisibleAfterExpiry() {
+        CachingAsyncConsistentMap<String, String> map = newMap(null);
+        map.put("a", "1").join();
+        assertEquals("1", value(map, "a"));
+
+        // Written through a map without a read cache
+        new DefaultAsyncConsistentMap<String, String>(MAP, database, SERIALIZER, false).put("a", "2").join();
+        assertEquals("1", value(map, "a"));
+
+        ticker.advance(CachingAsyncConsistentMap.CACHE_EXPIRY_SECONDS + 1, TimeUnit.SECONDS);
+        assertEquals("2", value(map, "a"));
+    }
+
+    /**
+     * Cluster communication service which delivers broadcasts synchronously
+     * to the subscribers of its peers.
+     */
+    private static class TestClusterCommunicationService implements ClusterCommunicationService {
+
+        final List<TestClusterCommunicationService> peers = Lists.newArrayList();
+        private final Map<MessageSubject, Consumer<byte[]>> subscribers = Maps.newConcurrentMap();
+
+        @Override
+        public <M> void broadcast(M message, MessageSubject subject, Function<M, byte[]> encoder) {
+            byte[] payload = encoder.apply(message);
+            peers.forEach(peer -> {
+                Consumer<byte[]> subscriber = peer.subscribers.get(subject);
+                if (subscriber != null) {
+                    subscriber.accept(payload);
+                }
+            });
+        }
+
+        @Override
+        public <M> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                      Consumer<M> handler, Executor executor) {
+            subscribers.put(subject, payload -> handler.accept(decoder.apply(payload)));
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+            subscribers.remove(subject);
+        }
+
+        @Override
+        public boolean broadcast(ClusterMessage message) {
+            return false;
+        }
+
+        @Override
+        public boolean broadcastIncludeSelf(ClusterMessage message) {
+            return false;
+        }
+
+        @Override
+        public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+            return false;
+        }
+
+        @Override
+        public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+            return false;
+        }
+
+        @Override
+        public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) {
+            return null;
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                                  ExecutorService executor) {
+        }
+
+        @Override
+        public <M> void broadcastIncludeSelf(M message, MessageSubject subject,
+                                             Function<M, byte[]> encoder) {
+        }
+
+        @Override
+        public <M> boolean unicast(M message, MessageSubject subject,
+                                   Function<M, byte[]> encoder, NodeId toNodeId) {
+            return false;
+        }
+
+        @Override
+        public <M> void multicast(M message, MessageSubject subject,
+                                  Function<M, byte[]> encoder, Set<NodeId> nodeIds) {
+        }
+
+        @Override
+        public <M, R> CompletableFuture<R> sendAndReceive(M message, MessageSubject subject,
+                                                          Function<M, byte[]> encoder,
+                                                          Function<byte[], R> decoder, NodeId toNodeId) {
+            return null;
+        }
+
+        @Override
+        public <M, R> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                         Function<M, R> handler, Function<R, byte[]> encoder,
+                                         Executor executor) {
+        }
+    }
+}
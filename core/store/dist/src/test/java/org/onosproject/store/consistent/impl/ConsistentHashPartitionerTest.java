@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for ConsistentHashPartitioner.
+ */
+public class ConsistentHashPartitionerTest {
+
+    private static final int KEYS = 10000;
+
+    private static Database partition(String name) {
+        Database database = createMock(Database.class);
+        expect(database.name()).andReturn(name).anyTimes();
+        replay(database);
+        return database;
+    }
+
+    @Test
+    public void keysSpreadAcrossPartitions() {
+        List<Database> partitions = Lists.newArrayList(partition("p1"), partition("p2"), partition("p3"));
+        ConsistentHashPartitioner partitioner = new ConsistentHashPartitioner(partitions);
+
+        int[] counts = new int[partitions.size()];
+        for (int i = 0; i < KEYS; i++) {
+            counts[partitions.indexOf(partitioner.getPartition("table", "key" + i))]++;
+        }
+        for (int count : counts) {
+            assertTrue("partition is unbalanced: " + count, count > KEYS / 6);
+        }
+    }
+
+    @Test
+    public void addingPartitionMovesFewKeys() {
+        List<Database> partitions = Lists.newArrayList(partition("p1"), partition("p2"), partition("p3"));
+        ConsistentHashPartitioner before = new ConsistentHashPartitioner(partitions);
+        Database added = partition("p4");
+        partitions.add(added);
+        ConsistentHashPartitioner after = new ConsistentHashPartitioner(partitions);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key" + i;
+            Database owner = after.getPartition("table", key);
+            if (!owner.equals(before.getPartition("table", key))) {
+                // keys only ever move to the new partition
+                assertEquals(added, owner);
+                moved++;
+            }
+        }
+        assertTrue("too many keys moved: " + moved, moved < KEYS / 2);
+    }
+}
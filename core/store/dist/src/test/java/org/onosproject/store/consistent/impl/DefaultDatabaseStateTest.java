@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.onosproject.store.service.DatabaseUpdate;
+import org.onosproject.store.service.Versioned;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the batch command of DefaultDatabaseState.
+ */
+public class DefaultDatabaseStateTest {
+
+    private static final String TABLE = "table";
+
+    private final TestDatabase database = new TestDatabase("test");
+
+    private static DatabaseUpdate.Builder update(DatabaseUpdate.Type type, String key) {
+        return DatabaseUpdate.newBuilder()
+                .withType(type)
+                .withTableName(TABLE)
+                .withKey(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] value(Result<?> result) {
+        return ((Versioned<byte[]>) result.value()).value();
+    }
+
+    @Test
+    public void batchAppliedInOrder() {
+        List<DatabaseUpdate> updates = Lists.newArrayList(
+                update(DatabaseUpdate.Type.PUT, "a").withValue(new byte[] {1}).build(),
+                update(DatabaseUpdate.Type.PUT, "a").withValue(new byte[] {2}).build(),
+                update(DatabaseUpdate.Type.PUT_IF_ABSENT, "a").withValue(new byte[] {3}).build(),
+                update(DatabaseUpdate.Type.PUT_IF_VALUE_MATCH, "a")
+                        .withCurrentValue(new byte[] {2}).withValue(new byte[] {4}).build(),
+                update(DatabaseUpdate.Type.REMOVE_IF_VALUE_MATCH, "b")
+                        .withCurrentValue(new byte[] {1}).build(),
+                update(DatabaseUpdate.Type.REMOVE, "a").build());
+
+        List<Result<?>> results = database.batch(updates).join();
+
+        assertEquals(updates.size(), results.size());
+        assertNull(results.get(0).value());
+        assertArrayEquals(new byte[] {1}, value(results.get(1)));
+        assertArrayEquals("present value not returned",
+                          new byte[] {2}, value(results.get(2)));
+        assertEquals(true, results.get(3).value());
+        assertEquals(false, results.get(4).value());
+        assertArrayEquals(new byte[] {4}, value(results.get(5)));
+        assertNull(database.get(TABLE, "a").join());
+    }
+
+    @Test
+    public void batchUpdateOfLockedKeyFails() {
+        DatabaseUpdate locking = update(DatabaseUpdate.Type.PUT, "a").withValue(new byte[] {1}).build();
+        assertTrue(database.prepare(new DefaultTransaction(1, Lists.newArrayList(locking))).join());
+
+        List<Result<?>> results = database.batch(Lists.newArrayList(
+                update(DatabaseUpdate.Type.PUT, "a").withValue(new byte[] {2}).build(),
+                update(DatabaseUpdate.Type.PUT, "b").withValue(new byte[] {2}).build())).join();
+
+        assertEquals(Result.Status.LOCKED, results.get(0).status());
+        assertTrue("unlocked key not updated", results.get(1).success());
+        assertFalse(database.containsKey(TABLE, "a").join());
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.onosproject.store.service.DatabaseUpdate;
+import org.onosproject.store.service.Transaction;
+import org.onosproject.store.service.Versioned;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for PartitionedDatabase.
+ */
+public class PartitionedDatabaseTest {
+
+    private static final String TABLE = "table";
+    private static final int KEYS = 100;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static DatabaseUpdate put(String key, String value) {
+        return DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.PUT)
+                .withTableName(TABLE)
+                .withKey(key)
+                .withValue(bytes(value))
+                .build();
+    }
+
+    private static PartitionedDatabase open(List<TestDatabase> partitions) {
+        PartitionedDatabase database = new PartitionedDatabase("test", Lists.newArrayList(partitions));
+        database.open().join();
+        return database;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] value(Result<?> result) {
+        return ((Versioned<byte[]>) result.value()).value();
+    }
+
+    @Test
+    public void resultsMappedToUpdates() {
+        List<TestDatabase> partitions = Lists.newArrayList(
+                new TestDatabase("p1"), new TestDatabase("p2"), new TestDatabase("p3"));
+        PartitionedDatabase database = open(partitions);
+
+        List<DatabaseUpdate> updates = Lists.newArrayList();
+        for (int i = 0; i < KEYS; i++) {
+            database.put(TABLE, "key" + i, bytes("old" + i)).join();
+            updates.add(put("key" + i, "new" + i));
+        }
+        List<Result<?>> results = database.batch(updates).join();
+
+        assertEquals(KEYS, results.size());
+        for (int i = 0; i < KEYS; i++) {
+            assertArrayEquals("result mapped to wrong update",
+                              bytes("old" + i), value(results.get(i)));
+            assertArrayEquals(bytes("new" + i), database.get(TABLE, "key" + i).join().value());
+        }
+
+        int updated = 0;
+        for (TestDatabase partition : partitions) {
+            assertEquals("updates not grouped per partition", 1, partition.batches.size());
+            updated += partition.batches.get(0).size();
+            for (DatabaseUpdate update : partition.batches.get(0)) {
+                assertTrue(partition.containsKey(TABLE, update.key()).join());
+            }
+        }
+        assertEquals(KEYS, updated);
+    }
+
+    @Test
+    public void partitionFailureFailsBatch() throws InterruptedException {
+        IllegalStateException error = new IllegalStateException("partition unavailable");
+        TestDatabase failing = new TestDatabase("p2") {
+            @Override
+            public CompletableFuture<List<Result<?>>> batch(List<DatabaseUpdate> updates) {
+                CompletableFuture<List<Result<?>>> future = new CompletableFuture<>();
+                future.completeExceptionally(error);
+                return future;
+            }
+        };
+        PartitionedDatabase database = open(Lists.newArrayList(new TestDatabase("p1"), failing));
+
+        List<DatabaseUpdate> updates = Lists.newArrayList();
+        for (int i = 0; i < KEYS; i++) {
+            updates.add(put("key" + i, "value" + i));
+        }
+        try {
+            database.batch(updates).get();
+            fail("partition failure not propagated");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    // Returns a key owned by different partitions under the two layouts.
+    private static String movingKey(List<Database> partitions) {
+        SimpleKeyHashPartitioner keyHash = new SimpleKeyHashPartitioner(partitions);
+        ConsistentHashPartitioner consistentHash = new ConsistentHashPartitioner(partitions);
+        for (int i = 0;; i++) {
+            String key = "key" + i;
+            if (!keyHash.getPartition(TABLE, key).equals(consistentHash.getPartition(TABLE, key))) {
+                return key;
+            }
+        }
+    }
+
+    @Test
+    public void keyHashLayoutByDefault() {
+        List<TestDatabase> partitions = Lists.newArrayList(
+                new TestDatabase("p1"), new TestDatabase("p2"), new TestDatabase("p3"));
+        PartitionedDatabase database = open(partitions);
+        SimpleKeyHashPartitioner keyHash = new SimpleKeyHashPartitioner(Lists.newArrayList(partitions));
+
+        for (int i = 0; i < KEYS; i++) {
+            database.put(TABLE, "key" + i, bytes("value" + i)).join();
+            assertTrue("key placed differently from earlier releases",
+                       keyHash.getPartition(TABLE, "key" + i).containsKey(TABLE, "key" + i).join());
+        }
+    }
+
+    @Test
+    public void rebalanceMovesEntriesToNewLayout() {
+        List<TestDatabase> partitions = Lists.newArrayList(
+                new TestDatabase("p1"), new TestDatabase("p2"), new TestDatabase("p3"));
+        PartitionedDatabase database = open(partitions);
+        for (int i = 0; i < KEYS; i++) {
+            database.put(TABLE, "key" + i, bytes("value" + i)).join();
+        }
+
+        database.setConsistentHashing(true);
+        for (int i = 0; i < KEYS; i++) {
+            assertArrayEquals("entry lost by layout change",
+                              bytes("value" + i), database.get(TABLE, "key" + i).join().value());
+        }
+        assertTrue("nothing moved", database.rebalance().join() > 0);
+
+        ConsistentHashPartitioner consistentHash = new ConsistentHashPartitioner(Lists.newArrayList(partitions));
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key" + i;
+            Database owner = consistentHash.getPartition(TABLE, key);
+            for (TestDatabase partition : partitions) {
+                assertEquals(key + " not in owner", partition.equals(owner),
+                             partition.containsKey(TABLE, key).join());
+            }
+        }
+        assertTrue("move transactions left behind",
+                   new TransactionManager(database).getTransactions().join().isEmpty());
+    }
+
+    @Test
+    public void interruptedMoveRedriven() {
+        AtomicBoolean commitsFail = new AtomicBoolean();
+        List<Database> partitions = Lists.newArrayList();
+        for (String name : new String[] {"p1", "p2", "p3"}) {
+            partitions.add(new TestDatabase(name) {
+                @Override
+                public CompletableFuture<Boolean> commit(Transaction transaction) {
+                    if (commitsFail.get()) {
+                        CompletableFuture<Boolean> future = new CompletableFuture<>();
+                        future.completeExceptionally(new IllegalStateException("node stopped"));
+                        return future;
+                    }
+                    return super.commit(transaction);
+                }
+            });
+        }
+        PartitionedDatabase database = new PartitionedDatabase("test", partitions);
+        database.open().join();
+        String key = movingKey(partitions);
+        database.put(TABLE, key, bytes("value")).join();
+        Database source = new SimpleKeyHashPartitioner(partitions).getPartition(TABLE, key);
+
+        database.setConsistentHashing(true);
+        commitsFail.set(true);
+        try {
+            database.rebalance().join();
+            fail("commit failure not propagated");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals("key not locked by the prepared move",
+                     Result.Status.LOCKED, source.put(TABLE, key, bytes("other")).join().status());
+
+        commitsFail.set(false);
+        TransactionManager transactionManager = new TransactionManager(database);
+        Collection<Transaction> transactions = transactionManager.getTransactions().join();
+        assertEquals("move not recorded", 1, transactions.size());
+        transactions.forEach(transaction -> transactionManager.execute(transaction).join());
+
+        assertNull(source.get(TABLE, key).join());
+        Database owner = new ConsistentHashPartitioner(partitions).getPartition(TABLE, key);
+        assertArrayEquals(bytes("value"), owner.get(TABLE, key).join().value());
+        assertTrue(database.put(TABLE, key, bytes("next")).join().success());
+    }
+
+    @Test
+    public void layoutSharedOnceAllMembersUseIt() {
+        PartitionedDatabase database = open(Lists.newArrayList(new TestDatabase("p1"), new TestDatabase("p2")));
+        List<String> members = Lists.newArrayList("a", "b");
+
+        database.publishLayout("a").join();
+        assertFalse("member without layout counted", database.isLayoutShared(members).join());
+        database.publishLayout("b").join();
+        assertTrue(database.isLayoutShared(members).join());
+
+        database.setConsistentHashing(true);
+        database.publishLayout("a").join();
+        assertFalse("member with other layout counted", database.isLayoutShared(members).join());
+        database.publishLayout("b").join();
+        assertTrue(database.isLayoutShared(members).join());
+    }
+
+    @Test
+    public void unchangedLayoutVerified() {
+        List<TestDatabase> partitions = Lists.newArrayList(
+                new TestDatabase("p1"), new TestDatabase("p2"), new TestDatabase("p3"));
+        open(partitions).publishLayout("a").join();
+
+        PartitionedDatabase restarted = open(partitions);
+        assertFalse("unknown member verified", restarted.verifyUnchangedLayout("b").join());
+        assertTrue(restarted.verifyUnchangedLayout("a").join());
+
+        int gets = partitions.stream().mapToInt(p -> p.gets.get()).sum();
+        assertNull(restarted.get(TABLE, "missing").join());
+        assertEquals("missing key looked up outside its owner",
+                     gets + 1, partitions.stream().mapToInt(p -> p.gets.get()).sum());
+    }
+
+    @Test
+    public void changedLayoutNotVerified() {
+        List<TestDatabase> partitions = Lists.newArrayList(new TestDatabase("p1"), new TestDatabase("p2"));
+        open(partitions).publishLayout("a").join();
+
+        PartitionedDatabase otherScheme = open(partitions);
+        otherScheme.setConsistentHashing(true);
+        assertFalse("scheme change ignored", otherScheme.verifyUnchangedLayout("a").join());
+
+        List<TestDatabase> grown = Lists.newArrayList(partitions);
+        grown.add(new TestDatabase("p3"));
+        assertFalse("partition change ignored", open(grown).verifyUnchangedLayout("a").join());
+    }
+
+    @Test
+    public void transactionShapedLikeMoveNotMoved() {
+        Set<String> prepared = ConcurrentHashMap.newKeySet();
+        List<Database> partitions = Lists.newArrayList();
+        for (String name : new String[] {"p1", "p2", "p3"}) {
+            partitions.add(new TestDatabase(name) {
+                @Override
+                public CompletableFuture<Boolean> prepare(Transaction transaction) {
+                    prepared.add(name());
+                    return super.prepare(transaction);
+                }
+            });
+        }
+        PartitionedDatabase database = new PartitionedDatabase("test", partitions);
+        database.open().join();
+        Database owner = new SimpleKeyHashPartitioner(partitions).getPartition(TABLE, "key");
+        String other = partitions.stream().filter(p -> !p.equals(owner)).findFirst().get().name();
+
+        Transaction transaction = new DefaultTransaction(1, Lists.newArrayList(
+                DatabaseUpdate.newBuilder()
+                        .withType(DatabaseUpdate.Type.REMOVE_IF_VERSION_MATCH)
+                        .withTableName(TABLE)
+                        .withKey("key")
+                        .withCurrentVersion(0)
+                        .withValue(bytes(other))
+                        .build(),
+                DatabaseUpdate.newBuilder()
+                        .withType(DatabaseUpdate.Type.PUT_IF_ABSENT)
+                        .withTableName(TABLE)
+                        .withKey("key")
+                        .withValue(bytes("value"))
+                        .build()));
+        database.prepare(transaction).join();
+        database.rollback(transaction).join();
+        assertEquals("user transaction routed as a move", Sets.newHashSet(owner.name()), prepared);
+    }
+}
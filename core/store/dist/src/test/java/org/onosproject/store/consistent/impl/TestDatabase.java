@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.kuujo.copycat.Task;
+import net.kuujo.copycat.cluster.Cluster;
+import net.kuujo.copycat.resource.ResourceState;
+import net.kuujo.copycat.state.StateContext;
+import org.onosproject.store.service.DatabaseUpdate;
+import org.onosproject.store.service.Transaction;
+import org.onosproject.store.service.Versioned;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database that applies commands synchronously to an in-memory database
+ * state, for testing.
+ */
+class TestDatabase implements Database {
+
+    private final String name;
+    private final DatabaseState<String, byte[]> state = new DefaultDatabaseState();
+    private boolean open = true;
+
+    /**
+     * Batches received, in order.
+     */
+    final List<List<DatabaseUpdate>> batches = Lists.newCopyOnWriteArrayList();
+
+    /**
+     * Number of reads of individual entries.
+     */
+    final AtomicInteger gets = new AtomicInteger();
+
+    /**
+     * Creates an open database.
+     *
+     * @param name database name
+     */
+    @SuppressWarnings("unchecked")
+    TestDatabase(String name) {
+        this.name = name;
+        // Only get and put are used by the database state
+        Map<String, Object> values = Maps.newConcurrentMap();
+        state.init((StateContext<DatabaseState<String, byte[]>>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {StateContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return values.get(args[0]);
+                        case "put":
+                            values.put((String) args[0], args[1]);
+                            return proxy;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> tableNames() {
+        return CompletableFuture.completedFuture(state.tableNames());
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> counters() {
+        return CompletableFuture.completedFuture(state.counters());
+    }
+
+    @Override
+    public CompletableFuture<Integer> size(String tableName) {
+        return CompletableFuture.completedFuture(state.size(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isEmpty(String tableName) {
+        return CompletableFuture.completedFuture(state.isEmpty(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsKey(String tableName, String key) {
+        return CompletableFuture.completedFuture(state.containsKey(tableName, key));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsValue(String tableName, byte[] value) {
+        return CompletableFuture.completedFuture(state.containsValue(tableName, value));
+    }
+
+    @Override
+    public CompletableFuture<Versioned<byte[]>> get(String tableName, String key) {
+        gets.incrementAndGet();
+        return CompletableFuture.completedFuture(state.get(tableName, key));
+    }
+
+    @Override
+    public CompletableFuture<Result<Versioned<byte[]>>> put(String tableName, String key, byte[] value) {
+        return CompletableFuture.completedFuture(state.put(tableName, key, value));
+    }
+
+    @Override
+    public CompletableFuture<Result<Versioned<byte[]>>> remove(String tableName, String key) {
+        return CompletableFuture.completedFuture(state.remove(tableName, key));
+    }
+
+    @Override
+    public CompletableFuture<Result<Void>> clear(String tableName) {
+        return CompletableFuture.completedFuture(state.clear(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> keySet(String tableName) {
+        return CompletableFuture.completedFuture(state.keySet(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Collection<Versioned<byte[]>>> values(String tableName) {
+        return CompletableFuture.completedFuture(state.values(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Set<Map.Entry<String, Versioned<byte[]>>>> entrySet(String tableName) {
+        return CompletableFuture.completedFuture(state.entrySet(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Result<Versioned<byte[]>>> putIfAbsent(String tableName, String key, byte[] value) {
+        return CompletableFuture.completedFuture(state.putIfAbsent(tableName, key, value));
+    }
+
+    @Override
+    public CompletableFuture<Result<Boolean>> remove(String tableName, String key, byte[] value) {
+        return CompletableFuture.completedFuture(state.remove(tableName, key, value));
+    }
+
+    @Override
+    public CompletableFuture<Result<Boolean>> remove(String tableName, String key, long version) {
+        return CompletableFuture.completedFuture(state.remove(tableName, key, version));
+    }
+
+    @Override
+    public CompletableFuture<Result<Boolean>> replace(String tableName, String key,
+                                                      byte[] oldValue, byte[] newValue) {
+        return CompletableFuture.completedFuture(state.replace(tableName, key, oldValue, newValue));
+    }
+
+    @Override
+    public CompletableFuture<Result<Boolean>> replace(String tableName, String key,
+                                                      long oldVersion, byte[] newValue) {
+        return CompletableFuture.completedFuture(state.replace(tableName, key, oldVersion, newValue));
+    }
+
+    @Override
+    public CompletableFuture<List<Result<?>>> batch(List<DatabaseUpdate> updates) {
+        batches.add(updates);
+        return CompletableFuture.completedFuture(state.batch(updates));
+    }
+
+    @Override
+    public CompletableFuture<Long> counterAddAndGet(String counterName, long delta) {
+        return CompletableFuture.completedFuture(state.counterAddAndGet(counterName, delta));
+    }
+
+    @Override
+    public CompletableFuture<Long> counterGetAndAdd(String counterName, long delta) {
+        return CompletableFuture.completedFuture(state.counterGetAndAdd(counterName, delta));
+    }
+
+    @Override
+    public CompletableFuture<Long> counterGet(String counterName) {
+        return CompletableFuture.completedFuture(state.counterGet(counterName));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> prepareAndCommit(Transaction transaction) {
+        return CompletableFuture.completedFuture(state.prepareAndCommit(transaction));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> prepare(Transaction transaction) {
+        return CompletableFuture.completedFuture(state.prepare(transaction));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> commit(Transaction transaction) {
+        return CompletableFuture.completedFuture(state.commit(transaction));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> rollback(Transaction transaction) {
+        return CompletableFuture.completedFuture(state.rollback(transaction));
+    }
+
+    @Override
+    public CompletableFuture<Database> open() {
+        open = true;
+        return CompletableFuture.completedFuture(this);
+    }
+
+    @Override
+    public CompletableFuture<Void> close() {
+        open = false;
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !open;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Cluster cluster() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Database addStartupTask(Task<CompletableFuture<Void>> task) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Database addShutdownTask(Task<CompletableFuture<Void>> task) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ResourceState state() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.store.service.DatabaseUpdate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for UpdateBatcher.
+ */
+public class UpdateBatcherTest {
+
+    private final List<List<DatabaseUpdate>> batches = Lists.newArrayList();
+    private final List<CompletableFuture<List<Result<?>>>> replies = Lists.newArrayList();
+    private UpdateBatcher batcher;
+
+    @Before
+    public void setUp() {
+        batcher = new UpdateBatcher(updates -> {
+            CompletableFuture<List<Result<?>>> reply = new CompletableFuture<>();
+            batches.add(updates);
+            replies.add(reply);
+            return reply;
+        });
+    }
+
+    private static DatabaseUpdate update(int i) {
+        return DatabaseUpdate.newBuilder()
+                .withType(DatabaseUpdate.Type.PUT)
+                .withTableName("table")
+                .withKey("key" + i)
+                .withValue(new byte[] {(byte) i})
+                .build();
+    }
+
+    private List<String> keys(int batch) {
+        List<String> keys = Lists.newArrayList();
+        batches.get(batch).forEach(update -> keys.add(update.key()));
+        return keys;
+    }
+
+    // Completes the given batch with results carrying the index of each update.
+    private void reply(int batch) {
+        List<Result<?>> results = Lists.newArrayList();
+        batches.get(batch).forEach(update -> results.add(Result.ok(update.key())));
+        replies.get(batch).complete(results);
+    }
+
+    @Test
+    public void idleUpdateSentRightAway() {
+        CompletableFuture<Result<String>> future = batcher.submit(update(0));
+
+        assertEquals(1, batches.size());
+        assertEquals(Lists.newArrayList("key0"), keys(0));
+        assertFalse(future.isDone());
+
+        reply(0);
+        assertEquals("key0", future.join().value());
+    }
+
+    @Test
+    public void batchesInFlightBounded() {
+        int sent = UpdateBatcher.MAX_BATCHES_IN_FLIGHT;
+        List<CompletableFuture<Result<String>>> futures = Lists.newArrayList();
+        for (int i = 0; i < sent + 3; i++) {
+            futures.add(batcher.submit(update(i)));
+        }
+        assertEquals("batch sent while too many are in flight", sent, batches.size());
+
+        // batches may complete out of order
+        reply(1);
+        assertEquals(sent + 1, batches.size());
+        assertEquals("queued updates not sent in order",
+                     Lists.newArrayList("key" + sent, "key" + (sent + 1), "key" + (sent + 2)), keys(sent));
+
+        futures.add(batcher.submit(update(sent + 3)));
+        assertEquals(sent + 1, batches.size());
+        reply(0);
+        assertEquals(Lists.newArrayList("key" + (sent + 3)), keys(sent + 1));
+        for (int i = 2; i < batches.size(); i++) {
+            reply(i);
+        }
+
+        assertEquals(sent + 2, batches.size());
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("key" + i, futures.get(i).join().value());
+        }
+    }
+
+    @Test
+    public void batchSizeLimited() {
+        int sent = UpdateBatcher.MAX_BATCHES_IN_FLIGHT;
+        int count = sent + UpdateBatcher.MAX_BATCH_SIZE * 2 + 10;
+        List<CompletableFuture<Result<String>>> futures = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            futures.add(batcher.submit(update(i)));
+        }
+
+        reply(0);
+        assertEquals(UpdateBatcher.MAX_BATCH_SIZE, batches.get(sent).size());
+        reply(1);
+        assertEquals(UpdateBatcher.MAX_BATCH_SIZE, batches.get(sent + 1).size());
+        reply(2);
+        assertEquals(10, batches.get(sent + 2).size());
+        for (int i = 3; i < batches.size(); i++) {
+            reply(i);
+        }
+
+        assertEquals(sent + 3, batches.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("result mapped to wrong update", "key" + i, futures.get(i).join().value());
+        }
+    }
+
+    @Test
+    public void failureReachesEveryUpdateInBatch() throws InterruptedException {
+        int sent = UpdateBatcher.MAX_BATCHES_IN_FLIGHT;
+        for (int i = 0; i < sent; i++) {
+            batcher.submit(update(i));
+        }
+        List<CompletableFuture<Result<String>>> failed = Lists.newArrayList();
+        for (int i = sent; i < sent + 3; i++) {
+            failed.add(batcher.submit(update(i)));
+        }
+        reply(0);
+        // queued behind the batches in flight
+        CompletableFuture<Result<String>> next = batcher.submit(update(sent + 3));
+
+        IllegalStateException error = new IllegalStateException("boom");
+        replies.get(sent).completeExceptionally(error);
+
+        for (CompletableFuture<Result<String>> future : failed) {
+            try {
+                future.get();
+                fail("batch failure not propagated");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+
+        assertEquals("batcher stalled after a failed batch", sent + 2, batches.size());
+        reply(sent + 1);
+        assertEquals("key" + (sent + 3), next.join().value());
+    }
+
+    @Test
+    public void commandExceptionFailsBatch() {
+        UpdateBatcher failing = new UpdateBatcher(updates -> {
+            throw new IllegalStateException("not open");
+        });
+        CompletableFuture<Result<String>> future = failing.submit(update(0));
+        assertTrue(future.isCompletedExceptionally());
+        // the batcher is idle again
+        assertTrue(failing.submit(update(1)).isCompletedExceptionally());
+    }
+}
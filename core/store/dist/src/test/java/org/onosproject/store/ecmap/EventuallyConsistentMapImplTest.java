@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 
+import org.easymock.Capture;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,6 +39,7 @@ import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
 import org.onosproject.store.cluster.messaging.MessageSubject;
 import org.onosproject.store.service.ClockService;
 import org.onosproject.store.impl.LogicalTimestamp;
+import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.impl.WallClockTimestamp;
 import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.serializers.KryoSerializer;
@@ -82,6 +84,8 @@ public class EventuallyConsistentMapImplTest {
             = new MessageSubject("ecm-" + MAP_NAME + "-update");
     private static final MessageSubject ANTI_ENTROPY_MESSAGE_SUBJECT
             = new MessageSubject("ecm-" + MAP_NAME + "-anti-entropy");
+    private static final MessageSubject ANTI_ENTROPY_DIGEST_MESSAGE_SUBJECT
+            = new MessageSubject("ecm-" + MAP_NAME + "-anti-entropy-digest");
 
     private static final String KEY1 = "one";
     private static final String KEY2 = "two";
@@ -93,6 +97,7 @@ public class EventuallyConsistentMapImplTest {
 
     private ClusterMessageHandler updateHandler;
     private ClusterMessageHandler antiEntropyHandler;
+    private ClusterMessageHandler antiEntropyDigestHandler;
 
     /*
      * Serialization is a bit tricky here. We need to serialize in the tests
@@ -116,6 +121,10 @@ public class EventuallyConsistentMapImplTest {
                     .register(ArrayList.class)
                     .register(AntiEntropyAdvertisement.class)
                     .register(HashMap.class)
+                    .register(Timestamped.class)
+                    .register(HashSet.class)
+                    .register(long[].class)
+                    .register(AntiEntropyDigest.class)
                     .build();
         }
     };
@@ -576,10 +585,83 @@ public class EventuallyConsistentMapImplTest {
         return true;
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAntiEntropyDigest() throws Exception {
+        expectPeerMessage(clusterCommunicator);
+        ecMap.put(KEY1, VALUE1);
+
+        NodeId peer = new NodeId("peer");
+        Capture<AntiEntropyAdvertisement<String>> ad = new Capture<>();
+        reset(clusterCommunicator);
+        expect(clusterCommunicator.unicast(anyObject(), eq(UPDATE_MESSAGE_SUBJECT),
+                                           anyObject(Function.class), anyObject(NodeId.class)))
+                .andReturn(true).anyTimes();
+        expect(clusterCommunicator.unicast(capture(ad), eq(ANTI_ENTROPY_MESSAGE_SUBJECT),
+                                           anyObject(Function.class), eq(peer)))
+                .andReturn(true).once();
+        replay(clusterCommunicator);
+
+        // A peer with an empty map differs only in the bucket holding KEY1,
+        // so only that bucket's timestamps should be advertised back
+        AntiEntropyDigest digest = new AntiEntropyDigest(peer, new long[MapDigest.DEFAULT_BUCKETS]);
+        antiEntropyDigestHandler.handle(new ClusterMessage(
+                peer, ANTI_ENTROPY_DIGEST_MESSAGE_SUBJECT, SERIALIZER.encode(digest)));
+
+        verify(clusterCommunicator);
+        assertEquals(ImmutableSet.of(KEY1), ad.getValue().timestamps().keySet());
+        assertEquals(1, ad.getValue().buckets().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPeerUpdateCoalescing() throws Exception {
+        NodeId peer = new NodeId("peer");
+        reset(clusterCommunicator);
+        clusterCommunicator.addSubscriber(anyObject(MessageSubject.class),
+                anyObject(ClusterMessageHandler.class), anyObject(ExecutorService.class));
+        expectLastCall().anyTimes();
+        clusterCommunicator.removeSubscriber(anyObject(MessageSubject.class));
+        expectLastCall().anyTimes();
+        expect(clusterCommunicator.unicast(anyObject(), anyObject(MessageSubject.class),
+                                           anyObject(Function.class), eq(peer)))
+                .andReturn(true).anyTimes();
+        replay(clusterCommunicator);
+
+        EventuallyConsistentMapImpl<String, String> map =
+                (EventuallyConsistentMapImpl<String, String>)
+                        new EventuallyConsistentMapBuilderImpl<String, String>(
+                                clusterService, clusterCommunicator)
+                                .withName("coalesce")
+                                .withSerializer(KryoNamespace.newBuilder()
+                                                        .register(KryoNamespaces.API))
+                                .withClockService(clockService)
+                                .withCommunicationExecutor(MoreExecutors.newDirectExecutorService())
+                                .withPeerUpdateFunction((k, v) -> ImmutableSet.of(peer))
+                                .build();
+        try {
+            for (int i = 0; i < 100; i++) {
+                map.put(KEY1, VALUE1 + i);
+            }
+            map.put(KEY2, VALUE2);
+
+            long deadline = System.currentTimeMillis() + 1000;
+            while (map.coalescedUpdates() + map.sentUpdates() < 101 &&
+                    System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(101, map.coalescedUpdates() + map.sentUpdates());
+            assertTrue("updates not coalesced", map.coalescedUpdates() > 0);
+        } finally {
+            map.destroy();
+        }
+    }
+
     @Test
     public void testDestroy() throws Exception {
         clusterCommunicator.removeSubscriber(UPDATE_MESSAGE_SUBJECT);
         clusterCommunicator.removeSubscriber(ANTI_ENTROPY_MESSAGE_SUBJECT);
+        clusterCommunicator.removeSubscriber(ANTI_ENTROPY_DIGEST_MESSAGE_SUBJECT);
 
         replay(clusterCommunicator);
 
@@ -742,6 +824,8 @@ public class EventuallyConsistentMapImplTest {
                 updateHandler = subscriber;
             } else if (subject.equals(ANTI_ENTROPY_MESSAGE_SUBJECT)) {
                 antiEntropyHandler = subscriber;
+            } else if (subject.equals(ANTI_ENTROPY_DIGEST_MESSAGE_SUBJECT)) {
+                antiEntropyDigestHandler = subscriber;
             } else {
                 throw new RuntimeException("Unexpected message subject " + subject.toString());
             }
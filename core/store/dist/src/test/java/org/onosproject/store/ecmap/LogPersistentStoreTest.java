@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.LogicalTimestamp;
+import org.onosproject.store.impl.Timestamped;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.serializers.KryoSerializer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the log based persistent store.
+ */
+public class LogPersistentStoreTest {
+
+    private static final KryoSerializer SERIALIZER = new KryoSerializer() {
+        @Override
+        protected void setupKryoPool() {
+            serializerPool = KryoNamespace.newBuilder()
+                    .register(KryoNamespaces.API)
+                    .register(LogicalTimestamp.class)
+                    .register(PutEntry.class)
+                    .register(RemoveEntry.class)
+                    .build();
+        }
+    };
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("ecm-log").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private LogPersistentStore<String, String> open(ScheduledExecutorService executor,
+                                                    Map<String, Timestamped<String>> items,
+                                                    Map<String, Timestamp> tombstones) {
+        return open(executor, items, tombstones, false);
+    }
+
+    private LogPersistentStore<String, String> open(ScheduledExecutorService executor,
+                                                    Map<String, Timestamped<String>> items,
+                                                    Map<String, Timestamp> tombstones,
+                                                    boolean tombstonesDisabled) {
+        LogPersistentStore<String, String> store =
+                new LogPersistentStore<>(dir.getPath() + "/test", executor, SERIALIZER, tombstonesDisabled);
+        store.readInto(items, tombstones);
+        return store;
+    }
+
+    @Test
+    public void writeAndReload() throws Exception {
+        ScheduledExecutorService executor = newSingleThreadScheduledExecutor();
+        Map<String, Timestamped<String>> items = Maps.newConcurrentMap();
+        Map<String, Timestamp> tombstones = Maps.newConcurrentMap();
+        LogPersistentStore<String, String> store = open(executor, items, tombstones);
+
+        store.put("a", "a1", new LogicalTimestamp(1));
+        store.put("a", "a2", new LogicalTimestamp(2));
+        store.put("b", "b1", new LogicalTimestamp(3));
+        store.remove("b", new LogicalTimestamp(4));
+        store.put("c", "c1", new LogicalTimestamp(5));
+        store.close();
+        assertTrue("writer not stopped", executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Map<String, Timestamped<String>> loadedItems = Maps.newConcurrentMap();
+        Map<String, Timestamp> loadedTombstones = Maps.newConcurrentMap();
+        ScheduledExecutorService executor2 = newSingleThreadScheduledExecutor();
+        open(executor2, loadedItems, loadedTombstones).close();
+
+        assertEquals("incorrect item count", 2, loadedItems.size());
+        assertEquals("incorrect value", "a2", loadedItems.get("a").value());
+        assertEquals("incorrect value", "c1", loadedItems.get("c").value());
+        assertNull("removed item loaded", loadedItems.get("b"));
+        assertEquals("incorrect tombstone", new LogicalTimestamp(4), loadedTombstones.get("b"));
+    }
+
+    @Test
+    public void olderUpdateIgnored() throws Exception {
+        ScheduledExecutorService executor = newSingleThreadScheduledExecutor();
+        LogPersistentStore<String, String> store =
+                open(executor, Maps.newConcurrentMap(), Maps.newConcurrentMap());
+
+        store.put("a", "new", new LogicalTimestamp(2));
+        store.put("a", "old", new LogicalTimestamp(1));
+        store.close();
+        assertTrue("writer not stopped", executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Map<String, Timestamped<String>> loadedItems = Maps.newConcurrentMap();
+        ScheduledExecutorService executor2 = newSingleThreadScheduledExecutor();
+        open(executor2, loadedItems, Maps.newConcurrentMap()).close();
+        assertEquals("incorrect value", "new", loadedItems.get("a").value());
+    }
+
+    @Test
+    public void recordsAfterCorruptTailKept() throws Exception {
+        ScheduledExecutorService executor = newSingleThreadScheduledExecutor();
+        LogPersistentStore<String, String> store =
+                open(executor, Maps.newConcurrentMap(), Maps.newConcurrentMap());
+        store.put("a", "a1", new LogicalTimestamp(1));
+        store.close();
+        assertTrue("writer not stopped", executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // A torn record whose length field is garbage
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "test.log"), true)) {
+            out.write(new byte[] {0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2, 3});
+        }
+
+        Map<String, Timestamped<String>> items = Maps.newConcurrentMap();
+        ScheduledExecutorService executor2 = newSingleThreadScheduledExecutor();
+        store = open(executor2, items, Maps.newConcurrentMap());
+        assertEquals("incorrect value", "a1", items.get("a").value());
+        store.put("b", "b1", new LogicalTimestamp(2));
+        store.close();
+        assertTrue("writer not stopped", executor2.awaitTermination(5, TimeUnit.SECONDS));
+
+        Map<String, Timestamped<String>> loadedItems = Maps.newConcurrentMap();
+        ScheduledExecutorService executor3 = newSingleThreadScheduledExecutor();
+        open(executor3, loadedItems, Maps.newConcurrentMap()).close();
+        assertEquals("incorrect item count", 2, loadedItems.size());
+        assertEquals("incorrect value", "a1", loadedItems.get("a").value());
+        assertEquals("record written after corrupt tail lost", "b1", loadedItems.get("b").value());
+    }
+
+    @Test
+    public void closeWritesPendingUpdates() {
+        LogPersistentStore<String, String> store =
+                open(newSingleThreadScheduledExecutor(), Maps.newConcurrentMap(), Maps.newConcurrentMap());
+        store.put("a", "a1", new LogicalTimestamp(1));
+        store.close();
+
+        Map<String, Timestamped<String>> loadedItems = Maps.newConcurrentMap();
+        open(newSingleThreadScheduledExecutor(), loadedItems, Maps.newConcurrentMap()).close();
+        assertEquals("update not written by close", "a1", loadedItems.get("a").value());
+    }
+
+    @Test
+    public void syncWritesPendingUpdates() {
+        LogPersistentStore<String, String> store =
+                open(newSingleThreadScheduledExecutor(), Maps.newConcurrentMap(), Maps.newConcurrentMap());
+        store.put("a", "a1", new LogicalTimestamp(1));
+        assertTrue(store.sync());
+
+        Map<String, Timestamped<String>> loadedItems = Maps.newConcurrentMap();
+        open(newSingleThreadScheduledExecutor(), loadedItems, Maps.newConcurrentMap()).close();
+        assertEquals("update not written by sync", "a1", loadedItems.get("a").value());
+        store.close();
+    }
+
+    @Test
+    public void noTombstonesLoadedWhenDisabled() {
+        LogPersistentStore<String, String> store =
+                open(newSingleThreadScheduledExecutor(), Maps.newConcurrentMap(), Maps.newConcurrentMap(), true);
+        store.put("a", "a1", new LogicalTimestamp(1));
+        store.put("b", "b1", new LogicalTimestamp(2));
+        store.remove("b", new LogicalTimestamp(3));
+        store.close();
+
+        Map<String, Timestamped<String>> loadedItems = Maps.newConcurrentMap();
+        Map<String, Timestamp> loadedTombstones = Maps.newConcurrentMap();
+        open(newSingleThreadScheduledExecutor(), loadedItems, loadedTombstones, true).close();
+        assertEquals("incorrect item count", 1, loadedItems.size());
+        assertTrue("tombstone loaded", loadedTombstones.isEmpty());
+    }
+}
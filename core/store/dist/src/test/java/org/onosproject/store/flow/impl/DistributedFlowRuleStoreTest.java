@@ -0,0 +1,352 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.flow.ReplicaInfo;
+import org.onosproject.store.flow.ReplicaInfoEvent;
+import org.onosproject.store.flow.ReplicaInfoEventListener;
+import org.onosproject.store.flow.ReplicaInfoService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.onlab.junit.TestTools.assertAfter;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.FLOW_TABLE_BACKUP;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.FLOW_TABLE_DIGEST;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.FLOW_TABLE_RESYNC;
+import static org.onosproject.store.flow.impl.FlowTableUpdateTest.rule;
+
+/**
+ * Tests the backup of flow tables between two instances of the
+ * distributed flow rule store.
+ */
+public class DistributedFlowRuleStoreTest {
+
+    private static final DeviceId DID = DeviceId.deviceId("of:1");
+    private static final NodeId NID1 = new NodeId("node1");
+    private static final NodeId NID2 = new NodeId("node2");
+    private static final int TIMEOUT_MILLIS = 2000;
+
+    private final Map<NodeId, TestClusterCommunicationService> network = Maps.newConcurrentMap();
+    private final TestReplicaInfoService replicaInfo = new TestReplicaInfoService();
+
+    private DistributedFlowRuleStore store1;
+    private DistributedFlowRuleStore store2;
+
+    @Before
+    public void setUp() {
+        replicaInfo.info = new ReplicaInfo(NID1, ImmutableList.of(NID2));
+        store1 = newStore(NID1);
+        store2 = newStore(NID2);
+    }
+
+    @After
+    public void tearDown() {
+        store1.deactivate(null);
+        store2.deactivate(null);
+    }
+
+    private DistributedFlowRuleStore newStore(NodeId nodeId) {
+        AtomicLong ids = new AtomicLong();
+        DistributedFlowRuleStore store = new DistributedFlowRuleStore();
+        store.replicaInfoManager = replicaInfo;
+        store.clusterCommunicator = new TestClusterCommunicationService(nodeId);
+        store.clusterService = new ClusterServiceAdapter() {
+            @Override
+            public ControllerNode getLocalNode() {
+                return new DefaultControllerNode(nodeId, IpAddress.valueOf("127.0.0.1"));
+            }
+        };
+        store.deviceService = new DeviceServiceAdapter();
+        store.coreService = new CoreServiceAdapter() {
+            @Override
+            public IdGenerator getIdGenerator(String topic) {
+                return ids::incrementAndGet;
+            }
+        };
+        store.configService = new ComponentConfigAdapter();
+        store.activate(null);
+        return store;
+    }
+
+    private static Set<FlowId> flowIds(DistributedFlowRuleStore store) {
+        return Sets.newHashSet(store.getFlowEntries(DID)).stream()
+                .map(FlowEntry::id)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<FlowId> flowIds(FlowRule... rules) {
+        return Sets.newHashSet(rules).stream().map(FlowRule::id).collect(Collectors.toSet());
+    }
+
+    private void awaitBackups(NodeId nodeId, MessageSubject subject, int count) {
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(count, network.get(nodeId).received.count(subject)));
+    }
+
+    @Test
+    public void failoverAdoptsBackup() {
+        FlowRule rule = rule(DID, 1);
+        store1.storeFlowRule(rule);
+        awaitBackups(NID2, FLOW_TABLE_BACKUP, 1);
+
+        replicaInfo.changeMaster(NID2, NID1);
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(flowIds(rule), flowIds(store2)));
+
+        // The demoted master kept its table as the standby copy
+        FlowRule other = rule(DID, 2);
+        store2.storeFlowRule(other);
+        awaitBackups(NID1, FLOW_TABLE_BACKUP, 1);
+        replicaInfo.changeMaster(NID1, NID2);
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(flowIds(rule, other), flowIds(store1)));
+    }
+
+    @Test
+    public void inSyncStandbyNotResynced() {
+        store1.storeFlowRule(rule(DID, 1));
+        awaitBackups(NID2, FLOW_TABLE_BACKUP, 1);
+
+        replicaInfo.changeMaster(NID2, NID1);
+        awaitBackups(NID1, FLOW_TABLE_DIGEST, 1);
+        assertEquals(0, network.get(NID1).sent.count(FLOW_TABLE_RESYNC));
+    }
+
+    @Test
+    public void gapTriggersResync() {
+        FlowRule lost = rule(DID, 1);
+        network.get(NID1).dropNext(FLOW_TABLE_BACKUP);
+        store1.storeFlowRule(lost);
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(1, network.get(NID1).sent.count(FLOW_TABLE_BACKUP)));
+
+        FlowRule rule = rule(DID, 2);
+        store1.storeFlowRule(rule);
+        // the update after the gap and the snapshot sent in response
+        awaitBackups(NID2, FLOW_TABLE_BACKUP, 2);
+        assertEquals(1, network.get(NID2).sent.count(FLOW_TABLE_RESYNC));
+
+        replicaInfo.changeMaster(NID2, NID1);
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(flowIds(lost, rule), flowIds(store2)));
+    }
+
+    @Test
+    public void snapshotReplacesBackup() {
+        FlowRule removed = rule(DID, 1);
+        store1.storeFlowRule(removed);
+        awaitBackups(NID2, FLOW_TABLE_BACKUP, 1);
+
+        network.get(NID1).dropNext(FLOW_TABLE_BACKUP);
+        store1.removeFlowRule(new DefaultFlowEntry(removed));
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(2, network.get(NID1).sent.count(FLOW_TABLE_BACKUP)));
+
+        FlowRule rule = rule(DID, 2);
+        store1.storeFlowRule(rule);
+        awaitBackups(NID2, FLOW_TABLE_BACKUP, 3);
+
+        replicaInfo.changeMaster(NID2, NID1);
+        assertAfter(TIMEOUT_MILLIS, () -> assertEquals(flowIds(rule), flowIds(store2)));
+    }
+
+    /**
+     * Replica info service with a single master and standby for all devices.
+     */
+    private static class TestReplicaInfoService implements ReplicaInfoService {
+
+        private final List<ReplicaInfoEventListener> listeners = new CopyOnWriteArrayList<>();
+        private volatile ReplicaInfo info;
+
+        void changeMaster(NodeId master, NodeId backup) {
+            info = new ReplicaInfo(master, ImmutableList.of(backup));
+            ReplicaInfoEvent event = new ReplicaInfoEvent(ReplicaInfoEvent.Type.MASTER_CHANGED, DID, info);
+            listeners.forEach(listener -> listener.event(event));
+        }
+
+        @Override
+        public ReplicaInfo getReplicaInfoFor(DeviceId deviceId) {
+            return info;
+        }
+
+        @Override
+        public void addListener(ReplicaInfoEventListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(ReplicaInfoEventListener listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Cluster communication service which delivers unicast messages to the
+     * subscribers of the other store instances.
+     */
+    private class TestClusterCommunicationService implements ClusterCommunicationService {
+
+        private final NodeId local;
+        private final Map<MessageSubject, Subscriber> subscribers = Maps.newConcurrentMap();
+        private final Set<MessageSubject> dropped = Sets.newConcurrentHashSet();
+
+        final Multiset<MessageSubject> sent = ConcurrentHashMultiset.create();
+        final Multiset<MessageSubject> received = ConcurrentHashMultiset.create();
+
+        TestClusterCommunicationService(NodeId local) {
+            this.local = local;
+            network.put(local, this);
+        }
+
+        void dropNext(MessageSubject subject) {
+            dropped.add(subject);
+        }
+
+        private boolean deliver(ClusterMessage message) {
+            Subscriber subscriber = subscribers.get(message.subject());
+            if (subscriber == null) {
+                return false;
+            }
+            subscriber.executor.execute(() -> {
+                subscriber.handler.handle(message);
+                received.add(message.subject());
+            });
+            return true;
+        }
+
+        @Override
+        public <M> boolean unicast(M message, MessageSubject subject,
+                                   Function<M, byte[]> encoder, NodeId toNodeId) {
+            sent.add(subject);
+            if (dropped.remove(subject)) {
+                // lost on the way
+                return true;
+            }
+            TestClusterCommunicationService peer = network.get(toNodeId);
+            return peer != null && peer.deliver(new ClusterMessage(local, subject, encoder.apply(message)));
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                                  ExecutorService executor) {
+            subscribers.put(subject, new Subscriber(subscriber, executor));
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+            subscribers.remove(subject);
+        }
+
+        @Override
+        public boolean broadcast(ClusterMessage message) {
+            return false;
+        }
+
+        @Override
+        public boolean broadcastIncludeSelf(ClusterMessage message) {
+            return false;
+        }
+
+        @Override
+        public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+            return false;
+        }
+
+        @Override
+        public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+            return false;
+        }
+
+        @Override
+        public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) {
+            return null;
+        }
+
+        @Override
+        public <M> void broadcast(M message, MessageSubject subject, Function<M, byte[]> encoder) {
+        }
+
+        @Override
+        public <M> void broadcastIncludeSelf(M message, MessageSubject subject,
+                                             Function<M, byte[]> encoder) {
+        }
+
+        @Override
+        public <M> void multicast(M message, MessageSubject subject,
+                                  Function<M, byte[]> encoder, Set<NodeId> nodeIds) {
+        }
+
+        @Override
+        public <M, R> CompletableFuture<R> sendAndReceive(M message, MessageSubject subject,
+                                                          Function<M, byte[]> encoder,
+                                                          Function<byte[], R> decoder, NodeId toNodeId) {
+            return null;
+        }
+
+        @Override
+        public <M, R> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                         Function<M, R> handler, Function<R, byte[]> encoder,
+                                         Executor executor) {
+        }
+
+        @Override
+        public <M> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                      Consumer<M> handler, Executor executor) {
+        }
+    }
+
+    private static final class Subscriber {
+        private final ClusterMessageHandler handler;
+        private final Executor executor;
+
+        private Subscriber(ClusterMessageHandler handler, Executor executor) {
+            this.handler = handler;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.store.flow.impl.DistributedFlowRuleStore.SERIALIZER;
+import static org.onosproject.store.flow.impl.FlowTableUpdateTest.rule;
+
+/**
+ * Unit tests for FlowTableDigest.
+ */
+public class FlowTableDigestTest {
+
+    private static final DeviceId DID = DeviceId.deviceId("of:1");
+
+    @Test
+    public void roundTrip() {
+        FlowTableDigest digest = new FlowTableDigest(DID, 3, 2, 0x1234567890L);
+
+        FlowTableDigest copy = SERIALIZER.decode(SERIALIZER.encode(digest));
+
+        assertEquals(DID, copy.deviceId());
+        assertEquals(3, copy.sequence());
+        assertTrue(copy.matches(digest));
+    }
+
+    @Test
+    public void matchIgnoresSequence() {
+        FlowTableDigest digest = new FlowTableDigest(DID, 3, 2, 42);
+
+        assertTrue(digest.matches(new FlowTableDigest(DID, 5, 2, 42)));
+        assertFalse(digest.matches(new FlowTableDigest(DID, 3, 1, 42)));
+        assertFalse(digest.matches(new FlowTableDigest(DID, 3, 2, 43)));
+        assertFalse(digest.matches(new FlowTableDigest(DeviceId.deviceId("of:2"), 3, 2, 42)));
+    }
+
+    @Test
+    public void checksumSameForCopy() {
+        FlowEntry entry = new DefaultFlowEntry(rule(DID, 1), FlowEntryState.ADDED, 10, 100, 6400);
+        FlowEntry copy = SERIALIZER.decode(SERIALIZER.encode(entry));
+        FlowEntry polled = new DefaultFlowEntry(rule(DID, 1), FlowEntryState.ADDED, 20, 200, 12800);
+
+        assertEquals(FlowTableDigest.checksum(entry), FlowTableDigest.checksum(copy));
+        assertEquals(FlowTableDigest.checksum(entry), FlowTableDigest.checksum(polled));
+    }
+
+    @Test
+    public void checksumDependsOnIdAndState() {
+        FlowEntry entry = new DefaultFlowEntry(rule(DID, 1), FlowEntryState.ADDED, 10, 100, 6400);
+
+        assertNotEquals(FlowTableDigest.checksum(entry),
+                        FlowTableDigest.checksum(new DefaultFlowEntry(rule(DID, 1), FlowEntryState.PENDING_ADD,
+                                                                      10, 100, 6400)));
+        assertNotEquals(FlowTableDigest.checksum(entry),
+                        FlowTableDigest.checksum(new DefaultFlowEntry(rule(DID, 2), FlowEntryState.ADDED,
+                                                                      10, 100, 6400)));
+    }
+}
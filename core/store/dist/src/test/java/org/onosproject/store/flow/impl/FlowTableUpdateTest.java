@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.onlab.packet.IpPrefix;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.store.flow.impl.DistributedFlowRuleStore.SERIALIZER;
+
+/**
+ * Unit tests for FlowTableUpdate.
+ */
+public class FlowTableUpdateTest {
+
+    private static final DeviceId DID = DeviceId.deviceId("of:1");
+
+    static FlowRule rule(DeviceId deviceId, int port) {
+        return DefaultFlowRule.builder()
+                .forDevice(deviceId)
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchInPort(PortNumber.portNumber(port))
+                                      .matchEthType((short) 0x0800)
+                                      .matchIPDst(IpPrefix.valueOf("10.0.0.0/24"))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                                       .setOutput(PortNumber.portNumber(port + 1))
+                                       .build())
+                .withPriority(40000)
+                .fromApp(new DefaultApplicationId(1, "test"))
+                .makePermanent()
+                .build();
+    }
+
+    @Test
+    public void roundTrip() {
+        FlowEntry entry = new DefaultFlowEntry(rule(DID, 1), FlowEntryState.ADDED, 10, 100, 6400);
+        FlowRule removed = rule(DID, 2);
+        FlowTableUpdate update = new FlowTableUpdate(DID, 7, false, ImmutableList.of(entry),
+                                                     ImmutableList.of(removed));
+
+        FlowTableUpdate copy = SERIALIZER.decode(SERIALIZER.encode(update));
+
+        assertEquals(DID, copy.deviceId());
+        assertEquals(7, copy.sequence());
+        assertFalse(copy.isSnapshot());
+        assertEquals(1, copy.entries().size());
+        FlowEntry entryCopy = copy.entries().get(0);
+        assertEquals(entry, entryCopy);
+        assertEquals(entry.id(), entryCopy.id());
+        assertEquals(FlowEntryState.ADDED, entryCopy.state());
+        assertEquals(100, entryCopy.packets());
+        assertEquals(6400, entryCopy.bytes());
+        assertEquals(ImmutableList.of(removed), copy.removed());
+        assertEquals(removed.id(), copy.removed().get(0).id());
+    }
+
+    @Test
+    public void snapshotRoundTrip() {
+        FlowTableUpdate update = new FlowTableUpdate(DID, 1, true, ImmutableList.of(), ImmutableList.of());
+
+        FlowTableUpdate copy = SERIALIZER.decode(SERIALIZER.encode(update));
+
+        assertTrue(copy.isSnapshot());
+        assertTrue(copy.entries().isEmpty());
+        assertTrue(copy.removed().isEmpty());
+    }
+}
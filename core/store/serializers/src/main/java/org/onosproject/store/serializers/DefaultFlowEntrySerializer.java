@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.serializers;
+
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.checkVersion;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.isLegacy;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.readLegacy;
+
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowRule;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo Serializer for {@link DefaultFlowEntry}.
+ * <p>
+ * The last seen time is local to the node observing flow statistics and is
+ * not carried over; a decoded entry is considered seen when it is read.
+ * Flow entries written field by field by earlier releases remain readable.
+ */
+public final class DefaultFlowEntrySerializer extends Serializer<DefaultFlowEntry> {
+
+    private static final byte VERSION = 1;
+
+    private static final FlowEntryState[] STATES = FlowEntryState.values();
+
+    /**
+     * Creates {@link DefaultFlowEntry} serializer instance.
+     */
+    public DefaultFlowEntrySerializer() {
+        // non-null, mutable
+        super(false, false);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, DefaultFlowEntry object) {
+        DefaultFlowRuleSerializer.writeRule(kryo, output, object);
+        output.writeByte(VERSION);
+        output.writeVarInt(object.state().ordinal(), true);
+        output.writeVarLong(object.life(), true);
+        output.writeVarLong(object.packets(), true);
+        output.writeVarLong(object.bytes(), true);
+        output.writeInt(object.errType());
+        output.writeInt(object.errCode());
+    }
+
+    @Override
+    public DefaultFlowEntry read(Kryo kryo, Input input, Class<DefaultFlowEntry> type) {
+        if (isLegacy(input)) {
+            return readLegacy(kryo, input, type);
+        }
+        FlowRule rule = DefaultFlowRuleSerializer.readRule(kryo, input);
+        checkVersion(input.readByte(), VERSION, type);
+        FlowEntryState state = STATES[input.readVarInt(true)];
+        long life = input.readVarLong(true);
+        long packets = input.readVarLong(true);
+        long bytes = input.readVarLong(true);
+        int errType = input.readInt();
+        int errCode = input.readInt();
+        if (errType == -1 && errCode == -1) {
+            return new DefaultFlowEntry(rule, state, life, packets, bytes);
+        }
+        DefaultFlowEntry entry = new DefaultFlowEntry(rule, errType, errCode);
+        entry.setState(state);
+        entry.setLife(life);
+        entry.setPackets(packets);
+        entry.setBytes(bytes);
+        return entry;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.serializers;
+
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.VERSIONED;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.checkVersion;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.isLegacy;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.readLegacy;
+
+import org.onosproject.core.GroupId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleExtPayLoad;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo Serializer for {@link DefaultFlowRule}.
+ * <p>
+ * Flow rules written field by field by earlier releases remain readable.
+ */
+public final class DefaultFlowRuleSerializer extends Serializer<DefaultFlowRule> {
+
+    private static final byte VERSION = 1;
+
+    /**
+     * Creates {@link DefaultFlowRule} serializer instance.
+     */
+    public DefaultFlowRuleSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, DefaultFlowRule object) {
+        writeRule(kryo, output, object);
+    }
+
+    @Override
+    public DefaultFlowRule read(Kryo kryo, Input input, Class<DefaultFlowRule> type) {
+        if (isLegacy(input)) {
+            return readLegacy(kryo, input, type);
+        }
+        return readRule(kryo, input);
+    }
+
+    /**
+     * Writes the flow rule attributes shared by flow rules and flow entries.
+     *
+     * @param kryo   Kryo instance
+     * @param output output to write to
+     * @param rule   flow rule to write
+     */
+    static void writeRule(Kryo kryo, Output output, FlowRule rule) {
+        output.writeByte(VERSIONED);
+        output.writeByte(VERSION);
+        kryo.writeObject(output, rule.deviceId());
+        output.writeLong(rule.id().value());
+        output.writeShort(rule.appId());
+        kryo.writeClassAndObject(output, rule.groupId());
+        output.writeVarInt(rule.priority(), true);
+        output.writeVarInt(rule.tableId(), true);
+        output.writeVarInt(rule.timeout(), true);
+        output.writeBoolean(rule.isPermanent());
+        kryo.writeClassAndObject(output, rule.selector());
+        kryo.writeClassAndObject(output, rule.treatment());
+        kryo.writeClassAndObject(output, rule.payLoad());
+    }
+
+    /**
+     * Reads flow rule attributes written by {@link #writeRule}, past the
+     * versioned payload marker.
+     *
+     * @param kryo  Kryo instance
+     * @param input input to read from
+     * @return flow rule
+     */
+    static DefaultFlowRule readRule(Kryo kryo, Input input) {
+        checkVersion(input.readByte(), VERSION, DefaultFlowRule.class);
+        return new DefaultFlowRule(new DecodedFlowRule(kryo, input));
+    }
+
+    /**
+     * Flow rule attributes as read from the input, in the order they were written.
+     */
+    private static final class DecodedFlowRule implements FlowRule {
+
+        private final DeviceId deviceId;
+        private final FlowId id;
+        private final short appId;
+        private final GroupId groupId;
+        private final int priority;
+        private final int tableId;
+        private final int timeout;
+        private final boolean permanent;
+        private final TrafficSelector selector;
+        private final TrafficTreatment treatment;
+        private final FlowRuleExtPayLoad payLoad;
+
+        private DecodedFlowRule(Kryo kryo, Input input) {
+            deviceId = kryo.readObject(input, DeviceId.class);
+            id = FlowId.valueOf(input.readLong());
+            appId = input.readShort();
+            groupId = (GroupId) kryo.readClassAndObject(input);
+            priority = input.readVarInt(true);
+            tableId = input.readVarInt(true);
+            timeout = input.readVarInt(true);
+            permanent = input.readBoolean();
+            selector = (TrafficSelector) kryo.readClassAndObject(input);
+            treatment = (TrafficTreatment) kryo.readClassAndObject(input);
+            payLoad = (FlowRuleExtPayLoad) kryo.readClassAndObject(input);
+        }
+
+        @Override
+        public FlowId id() {
+            return id;
+        }
+
+        @Override
+        public short appId() {
+            return appId;
+        }
+
+        @Override
+        public GroupId groupId() {
+            return groupId;
+        }
+
+        @Override
+        public int priority() {
+            return priority;
+        }
+
+        @Override
+        public DeviceId deviceId() {
+            return deviceId;
+        }
+
+        @Override
+        public TrafficSelector selector() {
+            return selector;
+        }
+
+        @Override
+        public TrafficTreatment treatment() {
+            return treatment;
+        }
+
+        @Override
+        public int timeout() {
+            return timeout;
+        }
+
+        @Override
+        public boolean isPermanent() {
+            return permanent;
+        }
+
+        @Override
+        public int tableId() {
+            return tableId;
+        }
+
+        @Override
+        public FlowRuleExtPayLoad payLoad() {
+            return payLoad;
+        }
+    }
+}
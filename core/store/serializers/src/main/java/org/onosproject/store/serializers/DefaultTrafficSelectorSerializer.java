@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.serializers;
+
+import java.util.Set;
+
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.criteria.Criterion;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+
+/**
+ * Kryo Serializer for {@link DefaultTrafficSelector}.
+ * <p>
+ * Selectors written field by field by earlier releases remain readable.
+ */
+public final class DefaultTrafficSelectorSerializer extends Serializer<DefaultTrafficSelector> {
+
+    // Flow rules, entries, selectors and treatments written field by field
+    // start with a class id or the not-null marker of the rule's appId, never
+    // with a zero byte; versioned payloads start with one.
+    static final byte VERSIONED = 0;
+
+    private static final byte VERSION = 1;
+
+    /**
+     * Creates {@link DefaultTrafficSelector} serializer instance.
+     */
+    public DefaultTrafficSelectorSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, DefaultTrafficSelector object) {
+        output.writeByte(VERSIONED);
+        output.writeByte(VERSION);
+        Set<Criterion> criteria = object.criteria();
+        output.writeVarInt(criteria.size(), true);
+        for (Criterion criterion : criteria) {
+            kryo.writeClassAndObject(output, criterion);
+        }
+    }
+
+    @Override
+    public DefaultTrafficSelector read(Kryo kryo, Input input, Class<DefaultTrafficSelector> type) {
+        if (isLegacy(input)) {
+            return readLegacy(kryo, input, type);
+        }
+        checkVersion(input.readByte(), VERSION, type);
+        TrafficSelector.Builder builder = DefaultTrafficSelector.builder();
+        int size = input.readVarInt(true);
+        for (int i = 0; i < size; i++) {
+            builder.add((Criterion) kryo.readClassAndObject(input));
+        }
+        return (DefaultTrafficSelector) builder.build();
+    }
+
+    /**
+     * Verifies that the wire format version read is one this serializer understands.
+     *
+     * @param version  version read from the input
+     * @param expected version written by this serializer
+     * @param type     type being read
+     * @throws KryoException if the version is not supported
+     */
+    static void checkVersion(byte version, byte expected, Class<?> type) {
+        if (version != expected) {
+            throw new KryoException("Unsupported " + type.getSimpleName()
+                                            + " wire format version " + version);
+        }
+    }
+
+    /**
+     * Returns whether the payload at the current position was written field
+     * by field by an earlier release. The marker of a versioned payload is
+     * consumed; a legacy payload is left to be read from its start.
+     *
+     * @param input input to read from
+     * @return true if the payload predates versioned formats
+     */
+    static boolean isLegacy(Input input) {
+        if (input.readByte() == VERSIONED) {
+            return false;
+        }
+        input.setPosition(input.position() - 1);
+        return true;
+    }
+
+    /**
+     * Reads a payload written by the field serializer of an earlier release.
+     *
+     * @param kryo  Kryo instance
+     * @param input input to read from
+     * @param type  type being read
+     * @param <T>   type being read
+     * @return object read
+     */
+    static <T> T readLegacy(Kryo kryo, Input input, Class<T> type) {
+        // Legacy payloads only show up while a cluster is being upgraded,
+        // so the field serializer is not kept around.
+        return new FieldSerializer<T>(kryo, type).read(kryo, input, type);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.serializers;
+
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.VERSIONED;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.checkVersion;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.isLegacy;
+import static org.onosproject.store.serializers.DefaultTrafficSelectorSerializer.readLegacy;
+
+import java.util.List;
+
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flow.instructions.Instruction;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo Serializer for {@link DefaultTrafficTreatment}.
+ * <p>
+ * Treatments written field by field by earlier releases remain readable.
+ */
+public final class DefaultTrafficTreatmentSerializer extends Serializer<DefaultTrafficTreatment> {
+
+    private static final byte VERSION = 1;
+
+    /**
+     * Creates {@link DefaultTrafficTreatment} serializer instance.
+     */
+    public DefaultTrafficTreatmentSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, DefaultTrafficTreatment object) {
+        output.writeByte(VERSIONED);
+        output.writeByte(VERSION);
+        writeInstructions(kryo, output, object.immediate());
+        writeInstructions(kryo, output, object.deferred());
+        kryo.writeClassAndObject(output, object.tableTransition());
+        output.writeBoolean(object.clearedDeferred());
+    }
+
+    @Override
+    public DefaultTrafficTreatment read(Kryo kryo, Input input, Class<DefaultTrafficTreatment> type) {
+        if (isLegacy(input)) {
+            return readLegacy(kryo, input, type);
+        }
+        checkVersion(input.readByte(), VERSION, type);
+        TrafficTreatment.Builder builder = DefaultTrafficTreatment.builder();
+        builder.immediate();
+        readInstructions(kryo, input, builder);
+        builder.deferred();
+        readInstructions(kryo, input, builder);
+        Instruction table = (Instruction) kryo.readClassAndObject(input);
+        if (table != null) {
+            builder.add(table);
+        }
+        if (input.readBoolean()) {
+            builder.wipeDeferred();
+        }
+        return (DefaultTrafficTreatment) builder.build();
+    }
+
+    private static void writeInstructions(Kryo kryo, Output output, List<Instruction> instructions) {
+        output.writeVarInt(instructions.size(), true);
+        for (Instruction instruction : instructions) {
+            kryo.writeClassAndObject(output, instruction);
+        }
+    }
+
+    private static void readInstructions(Kryo kryo, Input input, TrafficTreatment.Builder builder) {
+        int size = input.readVarInt(true);
+        for (int i = 0; i < size; i++) {
+            builder.add((Instruction) kryo.readClassAndObject(input));
+        }
+    }
+}
@@ -24,9 +24,14 @@ import com.esotericsoftware.kryo.io.Output;
 
 /**
 * Kryo Serializer for {@link DeviceId}.
+* <p>
+* Repeated device identifiers within an object graph are dictionary encoded.
 */
 public final class DeviceIdSerializer extends Serializer<DeviceId> {
 
+    // Kryo writes this byte for a null string only, never for a device id
+    private static final byte REFERENCE = (byte) 0x80;
+
     /**
      * Creates {@link DeviceId} serializer instance.
      */
@@ -37,12 +42,13 @@ public final class DeviceIdSerializer extends Serializer<DeviceId> {
 
     @Override
     public void write(Kryo kryo, Output output, DeviceId object) {
-        output.writeString(object.toString());
+        IdentifierDictionary.write(kryo, output, object, REFERENCE,
+                                   (out, id) -> out.writeString(id.toString()));
     }
 
     @Override
     public DeviceId read(Kryo kryo, Input input, Class<DeviceId> type) {
-        final String str = input.readString();
-        return DeviceId.deviceId(str);
+        return IdentifierDictionary.read(kryo, input, DeviceId.class, REFERENCE,
+                                         in -> DeviceId.deviceId(in.readString()));
     }
 }
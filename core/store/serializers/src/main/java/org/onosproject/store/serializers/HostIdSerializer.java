@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.serializers;
+
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.HostId;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo Serializer for {@link HostId}.
+ * <p>
+ * Repeated host identifiers within an object graph are dictionary encoded.
+ * The first occurrence is written field by field, as the default field
+ * serializer did, so host identifiers persisted by earlier releases remain
+ * readable.
+ */
+public final class HostIdSerializer extends Serializer<HostId> {
+
+    // the field format starts with the class of the MAC address, which is
+    // never null and therefore never written as 0
+    private static final byte REFERENCE = 0;
+
+    /**
+     * Creates {@link HostId} serializer instance.
+     */
+    public HostIdSerializer() {
+        // non-null, immutable
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, HostId object) {
+        IdentifierDictionary.write(kryo, output, object, REFERENCE, (out, id) -> {
+            kryo.writeClassAndObject(out, id.mac());
+            kryo.writeClassAndObject(out, id.vlanId());
+        });
+    }
+
+    @Override
+    public HostId read(Kryo kryo, Input input, Class<HostId> type) {
+        return IdentifierDictionary.read(kryo, input, HostId.class, REFERENCE,
+                in -> HostId.hostId((MacAddress) kryo.readClassAndObject(in),
+                                    (VlanId) kryo.readClassAndObject(in)));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.serializers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Dictionary encoding of recurring identifiers within a single serialized
+ * object graph.
+ * <p>
+ * The first occurrence of an identifier is written in full, in the format
+ * used before dictionary encoding was introduced, and assigned the next
+ * index; later occurrences of an equal identifier are written as a marker
+ * byte followed by that index. Each identifier type picks a marker which its
+ * full format never starts with, so data persisted by earlier releases
+ * remains readable. The dictionary lives in the Kryo graph context and is
+ * therefore discarded once the top-level object has been written or read, so
+ * encoded bytes never depend on state shared between nodes.
+ * </p>
+ * <p>
+ * Decoded identifiers are interned, so that equal identifiers arriving in
+ * different messages share a single instance.
+ * </p>
+ */
+final class IdentifierDictionary {
+
+    private static final Interner<Object> INTERNER = Interners.newWeakInterner();
+
+    // prohibit instantiation
+    private IdentifierDictionary() {
+    }
+
+    /**
+     * Writes the given identifier, or a reference to an earlier occurrence.
+     *
+     * @param kryo   Kryo instance writing the object graph
+     * @param output output to write to
+     * @param id     identifier to write
+     * @param marker byte the full format of the identifier never starts with
+     * @param writer writes the full identifier on first occurrence
+     * @param <T>    identifier type
+     */
+    static <T> void write(Kryo kryo, Output output, T id, byte marker,
+                          BiConsumer<Output, T> writer) {
+        Map<Object, Integer> written = context(kryo, id.getClass(), HashMap::new);
+        Integer index = written.get(id);
+        if (index != null) {
+            output.writeByte(marker);
+            output.writeVarInt(index, true);
+            return;
+        }
+        writer.accept(output, id);
+        written.put(id, written.size());
+    }
+
+    /**
+     * Reads an identifier written by {@link #write}, or written in full by
+     * an earlier release.
+     *
+     * @param kryo   Kryo instance reading the object graph
+     * @param input  input to read from
+     * @param type   identifier type
+     * @param marker byte the full format of the identifier never starts with
+     * @param reader reads the full identifier on first occurrence
+     * @param <T>    identifier type
+     * @return identifier
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T read(Kryo kryo, Input input, Class<T> type, byte marker,
+                      Function<Input, T> reader) {
+        List<Object> read = context(kryo, type, ArrayList::new);
+        if (input.readByte() == marker) {
+            return (T) read.get(input.readVarInt(true));
+        }
+        // the byte just read is still buffered; hand it back to the reader
+        input.setPosition(input.position() - 1);
+        T id = (T) INTERNER.intern(reader.apply(input));
+        read.add(id);
+        return id;
+    }
+    @SuppressWarnings("unchecked")
+    private static <C> C context(Kryo kryo, Class<?> type, Supplier<C> factory) {
+        ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+        C dictionary = (C) graphContext.get(type);
+        if (dictionary == null) {
+            dictionary = factory.get();
+            graphContext.put(type, dictionary);
+        }
+        return dictionary;
+    }
+}
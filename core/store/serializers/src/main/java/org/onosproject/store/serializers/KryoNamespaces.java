@@ -256,21 +256,23 @@ public final class KryoNamespaces {
                     Timestamp.class,
                     Leadership.class,
                     LeadershipEvent.class,
-                    LeadershipEvent.Type.class,
-                    HostId.class,
-                    HostDescription.class,
-                    DefaultHostDescription.class,
-                    DefaultFlowEntry.class,
-                    StoredFlowEntry.class,
-                    FlowRule.Type.class,
-                    DefaultFlowRule.class,
-                    DefaultFlowEntry.class,
+                    LeadershipEvent.Type.class)
+            .register(new HostIdSerializer(), HostId.class)
+            .register(HostDescription.class,
+                    DefaultHostDescription.class)
+            .register(new DefaultFlowEntrySerializer(), DefaultFlowEntry.class)
+            .register(StoredFlowEntry.class,
+                    FlowRule.Type.class)
+            .register(new DefaultFlowRuleSerializer(), DefaultFlowRule.class)
+            // Registered twice since long ago; the second registration is a
+            // no-op that only takes up an id, and must stay to keep later ids.
+            .register(DefaultFlowEntry.class,
                     DefaultPacketRequest.class,
                     PacketPriority.class,
                     FlowEntry.FlowEntryState.class,
-                    FlowId.class,
-                    DefaultTrafficSelector.class,
-                    PortCriterion.class,
+                    FlowId.class)
+            .register(new DefaultTrafficSelectorSerializer(), DefaultTrafficSelector.class)
+            .register(PortCriterion.class,
                     MetadataCriterion.class,
                     EthCriterion.class,
                     EthTypeCriterion.class,
@@ -298,9 +300,9 @@ public final class KryoNamespaces {
                     OchSignalTypeCriterion.class,
                     OpticalSignalTypeCriterion.class,
                     Criterion.class,
-                    Criterion.Type.class,
-                    DefaultTrafficTreatment.class,
-                    Instructions.DropInstruction.class,
+                    Criterion.Type.class)
+            .register(new DefaultTrafficTreatmentSerializer(), DefaultTrafficTreatment.class)
+            .register(Instructions.DropInstruction.class,
                     Instructions.OutputInstruction.class,
                     Instructions.GroupInstruction.class,
                     L0ModificationInstruction.class,
@@ -403,6 +405,7 @@ public final class KryoNamespaces {
                     org.onlab.packet.MplsLabel.class,
                     org.onlab.packet.MPLS.class
             )
+            .register(Instructions.TableTypeTransition.class)
 
             .build();
 
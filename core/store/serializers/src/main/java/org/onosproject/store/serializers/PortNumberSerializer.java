@@ -28,6 +28,10 @@ import com.esotericsoftware.kryo.io.Output;
 public final class PortNumberSerializer extends
         Serializer<PortNumber> {
 
+    // leading byte of the varint format; the fixed-size format starts with a boolean
+    private static final byte VARINT = 2;
+    private static final byte VARINT_NAMED = 3;
+
     /**
      * Creates {@link PortNumber} serializer instance.
      */
@@ -38,8 +42,8 @@ public final class PortNumberSerializer extends
 
     @Override
     public void write(Kryo kryo, Output output, PortNumber object) {
-        output.writeBoolean(object.hasName());
-        output.writeLong(object.toLong());
+        output.writeByte(object.hasName() ? VARINT_NAMED : VARINT);
+        output.writeVarLong(object.toLong(), true);
         if (object.hasName()) {
             output.writeString(object.name());
         }
@@ -47,7 +51,14 @@ public final class PortNumberSerializer extends
 
     @Override
     public PortNumber read(Kryo kryo, Input input, Class<PortNumber> type) {
-        if (input.readBoolean()) {
+        byte format = input.readByte();
+        if (format == VARINT || format == VARINT_NAMED) {
+            long number = input.readVarLong(true);
+            return format == VARINT_NAMED ? PortNumber.portNumber(number, input.readString())
+                                          : PortNumber.portNumber(number);
+        }
+        // written by earlier releases as a boolean followed by a fixed-size long
+        if (format != 0) {
             return PortNumber.portNumber(input.readLong(), input.readString());
         } else {
             return PortNumber.portNumber(input.readLong());
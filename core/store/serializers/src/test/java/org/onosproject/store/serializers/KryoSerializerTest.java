@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.onlab.util.Frequency;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.cluster.RoleInfo;
+import org.onosproject.core.DefaultApplicationId;
 import org.onosproject.core.DefaultGroupId;
 import org.onosproject.mastership.MastershipTerm;
 import org.onosproject.net.Annotations;
@@ -38,6 +39,7 @@ import org.onosproject.net.DefaultLink;
 import org.onosproject.net.DefaultPort;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.HostId;
 import org.onosproject.net.GridType;
 import org.onosproject.net.HostLocation;
 import org.onosproject.net.Link;
@@ -50,12 +52,17 @@ import org.onosproject.net.OmsPort;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.OduSignalType;
 import org.onosproject.net.SparseAnnotations;
+import org.onosproject.net.flow.DefaultFlowEntry;
 import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
 import org.onosproject.net.flow.FlowId;
 import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.intent.IntentId;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.net.resource.Bandwidth;
@@ -81,14 +88,23 @@ import org.onlab.packet.IpPrefix;
 import org.onlab.packet.Ip4Prefix;
 import org.onlab.packet.Ip6Prefix;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
 import org.onlab.util.KryoNamespace;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.time.Duration;
 
 import static java.util.Arrays.asList;
@@ -313,6 +329,54 @@ public class KryoSerializerTest {
         testSerializedEquals(new HostLocation(CP1, 1234L));
     }
 
+    @Test
+    public void testFlowRuleAndEntry() {
+        TrafficSelector selector = DefaultTrafficSelector.builder()
+                .matchEthType((short) 0x0800)
+                .matchIPDst(IpPrefix.valueOf("10.0.0.0/8"))
+                .build();
+        TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                .setOutput(P1)
+                .deferred()
+                .setOutput(P2)
+                .transition(2)
+                .wipeDeferred()
+                .build();
+        testSerializedEquals(selector);
+        testSerializedEquals(treatment);
+
+        FlowRule rule = DefaultFlowRule.builder()
+                .forDevice(DID1)
+                .withSelector(selector)
+                .withTreatment(treatment)
+                .withPriority(40000)
+                .fromApp(new DefaultApplicationId(7, "test"))
+                .makeTemporary(30)
+                .forTable(1)
+                .build();
+        FlowRule ruleCopy = serializer.decode(serializer.encode(rule));
+        assertEquals(rule, ruleCopy);
+        assertEquals(rule.id(), ruleCopy.id());
+        assertEquals(rule.appId(), ruleCopy.appId());
+        assertEquals(rule.groupId(), ruleCopy.groupId());
+        assertEquals(rule.treatment(), ruleCopy.treatment());
+        assertEquals(rule.timeout(), ruleCopy.timeout());
+        assertEquals(rule.isPermanent(), ruleCopy.isPermanent());
+
+        FlowEntry entry = new DefaultFlowEntry(rule, FlowEntryState.ADDED, 10, 20, 30);
+        FlowEntry entryCopy = serializer.decode(serializer.encode(entry));
+        assertEquals(entry, entryCopy);
+        assertEquals(FlowEntryState.ADDED, entryCopy.state());
+        assertEquals(10, entryCopy.life());
+        assertEquals(20, entryCopy.packets());
+        assertEquals(30, entryCopy.bytes());
+
+        FlowEntry failed = serializer.decode(serializer.encode(new DefaultFlowEntry(rule, 3, 4)));
+        assertEquals(FlowEntryState.FAILED, failed.state());
+        assertEquals(3, failed.errType());
+        assertEquals(4, failed.errCode());
+    }
+
     @Test
     public void testFlowId() {
         testSerializedEquals(FlowId.valueOf(0x12345678L));
@@ -427,6 +491,147 @@ public class KryoSerializerTest {
         assertAnnotationsEquals(copiedA12, A1_2);
     }
 
+    @Test
+    public void testLargeThenSmall() {
+        // grows the per-thread output buffer past the size it may keep
+        ImmutableList.Builder<DeviceId> builder = ImmutableList.builder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.add(deviceId("of:" + i));
+        }
+        ImmutableList<DeviceId> large = builder.build();
+        assertEquals(large, serializer.decode(serializer.encode(large)));
+
+        byte[] small = serializer.encode(DID1);
+        assertEquals(DID1, serializer.decode(small));
+        assertArrayEquals(small, serializer.encode(DID1));
+    }
+
+    @Test
+    public void testHostId() {
+        testSerializedEquals(HostId.hostId(MacAddress.valueOf("00:11:22:33:44:55")));
+        testSerializedEquals(HostId.hostId(MacAddress.valueOf("00:11:22:33:44:55"), VlanId.vlanId((short) 10)));
+        testSerializedEquals(HostId.NONE);
+    }
+
+    @Test
+    public void testRepeatedIdentifiers() {
+        // equal, but not identical, identifiers are encoded once per message
+        List<ConnectPoint> points = new ArrayList<>();
+        List<ConnectPoint> distinct = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            points.add(new ConnectPoint(deviceId("of:0000000000000001"), portNumber(i % 2)));
+            distinct.add(new ConnectPoint(deviceId(String.format("of:%016x", i)), portNumber(i % 2)));
+        }
+        byte[] repeated = serializer.encode(ImmutableList.copyOf(points));
+        assertTrue(repeated.length < serializer.encode(ImmutableList.copyOf(distinct)).length / 2);
+
+        List<ConnectPoint> copy = serializer.decode(repeated);
+        assertEquals(points, copy);
+        assertSame(copy.get(0).deviceId(), copy.get(1).deviceId());
+    }
+
+    @Test
+    public void testLegacyIdentifiers() {
+        // identifiers written before dictionary encoding remain readable
+        KryoSerializer legacy = identifierSerializer(builder -> builder
+                .register(HostId.class)
+                .register(new Serializer<DeviceId>() {
+                    @Override
+                    public void write(Kryo kryo, Output output, DeviceId object) {
+                        output.writeString(object.toString());
+                    }
+
+                    @Override
+                    public DeviceId read(Kryo kryo, Input input, Class<DeviceId> type) {
+                        throw new UnsupportedOperationException();
+                    }
+                }, DeviceId.class)
+                .register(new Serializer<PortNumber>() {
+                    @Override
+                    public void write(Kryo kryo, Output output, PortNumber object) {
+                        output.writeBoolean(object.hasName());
+                        output.writeLong(object.toLong());
+                        if (object.hasName()) {
+                            output.writeString(object.name());
+                        }
+                    }
+
+                    @Override
+                    public PortNumber read(Kryo kryo, Input input, Class<PortNumber> type) {
+                        throw new UnsupportedOperationException();
+                    }
+                }, PortNumber.class));
+        KryoSerializer current = identifierSerializer(builder -> builder
+                .register(new HostIdSerializer(), HostId.class)
+                .register(new DeviceIdSerializer(), DeviceId.class)
+                .register(new PortNumberSerializer(), PortNumber.class));
+
+        MacAddress mac = MacAddress.valueOf("00:11:22:33:44:55");
+        List<Object> identifiers = ImmutableList.of(
+                HostId.hostId(mac), HostId.hostId(mac), HostId.hostId(mac, VlanId.vlanId((short) 10)),
+                DID1, DID1, DID2, P1, P1, portNumber(3, "eth3"));
+        assertEquals(identifiers, current.decode(legacy.encode(identifiers)));
+        assertEquals(identifiers, current.decode(current.encode(identifiers)));
+    }
+
+    @Test
+    public void testLegacyFlowRules() {
+        // flow rules written field by field before the dedicated serializers remain readable
+        KryoSerializer legacy = flowSerializer(builder -> builder
+                .register(DefaultTrafficSelector.class,
+                          DefaultTrafficTreatment.class,
+                          DefaultFlowRule.class,
+                          DefaultFlowEntry.class));
+        KryoSerializer current = flowSerializer(builder -> builder
+                .register(new DefaultTrafficSelectorSerializer(), DefaultTrafficSelector.class)
+                .register(new DefaultTrafficTreatmentSerializer(), DefaultTrafficTreatment.class)
+                .register(new DefaultFlowRuleSerializer(), DefaultFlowRule.class)
+                .register(new DefaultFlowEntrySerializer(), DefaultFlowEntry.class));
+
+        FlowRule rule = DefaultFlowRule.builder()
+                .forDevice(DID1)
+                .withSelector(DefaultTrafficSelector.builder().matchEthType((short) 0x0800).build())
+                .withTreatment(DefaultTrafficTreatment.builder().setOutput(P1).transition(2).build())
+                .withPriority(40000)
+                .fromApp(new DefaultApplicationId(7, "test"))
+                .makePermanent()
+                .build();
+        FlowEntry entry = new DefaultFlowEntry(rule, FlowEntryState.ADDED, 10, 20, 30);
+        List<Object> flows = ImmutableList.of(rule, entry, rule.selector(), rule.treatment());
+        assertEquals(flows, current.decode(legacy.encode(flows)));
+        assertEquals(flows, current.decode(current.encode(flows)));
+
+        FlowEntry entryCopy = current.decode(legacy.encode(entry));
+        assertEquals(rule.treatment(), entryCopy.treatment());
+        assertEquals(20, entryCopy.packets());
+    }
+
+    // serializer registering the given flow serializers at the same ids
+    private static KryoSerializer flowSerializer(UnaryOperator<KryoNamespace.Builder> flows) {
+        return new KryoSerializer() {
+            @Override
+            protected void setupKryoPool() {
+                serializerPool = flows.apply(KryoNamespace.newBuilder()
+                        .register(KryoNamespaces.API))
+                        .build();
+            }
+        };
+    }
+
+    // serializer registering the given identifier serializers at the same ids
+    private static KryoSerializer identifierSerializer(UnaryOperator<KryoNamespace.Builder> identifiers) {
+        return new KryoSerializer() {
+            @Override
+            protected void setupKryoPool() {
+                serializerPool = identifiers.apply(KryoNamespace.newBuilder()
+                        .register(KryoNamespaces.BASIC)
+                        .register(new MacAddressSerializer(), MacAddress.class)
+                        .register(VlanId.class))
+                        .build();
+            }
+        };
+    }
+
     // code clone
     protected static void assertAnnotationsEquals(Annotations actual, SparseAnnotations... annotations) {
         SparseAnnotations expected = DefaultAnnotations.builder().build();
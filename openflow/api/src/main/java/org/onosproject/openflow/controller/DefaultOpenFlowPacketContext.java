@@ -121,6 +121,16 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
     }
 
     private OFPort pktinInPort() {
+        return packetInPort(pktin);
+    }
+
+    /**
+     * Returns the port a packet-in was received on.
+     *
+     * @param pktin packet-in message
+     * @return ingress port
+     */
+    public static OFPort packetInPort(OFPacketIn pktin) {
         if (pktin.getVersion() == OFVersion.OF_10) {
             return pktin.getInPort();
         }
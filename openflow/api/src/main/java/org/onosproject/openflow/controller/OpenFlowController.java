@@ -92,6 +92,21 @@ public interface OpenFlowController {
      */
     public void removePacketListener(PacketListener listener);
 
+    /**
+     * Adds a filter packet-ins go through before they are handed to the
+     * packet listeners. A packet-in is handed on only if all filters admit it.
+     *
+     * @param filter the packet-in filter
+     */
+    public void addPacketInFilter(PacketInFilter filter);
+
+    /**
+     * Removes a packet-in filter.
+     *
+     * @param filter the packet-in filter
+     */
+    public void removePacketInFilter(PacketInFilter filter);
+
     /**
      * Register a listener for OF msg events.
      *
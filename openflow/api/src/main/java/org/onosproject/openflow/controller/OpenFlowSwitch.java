@@ -35,10 +35,17 @@ public interface OpenFlowSwitch {
 
     /**
      * Writes the OFMessage list to the driver.
+     * <p>
+     * The messages are handed to the channel as a single write, so a batch
+     * of messages is encoded into one buffer rather than one per message.
+     * </p>
      *
      * @param msgs the messages to be written
+     * @return true if the messages were written to the channel; false if
+     * this controller is not the master of the switch or the channel is
+     * shut down
      */
-    public void sendMsg(List<OFMessage> msgs);
+    public boolean sendMsg(List<OFMessage> msgs);
 
     /**
      * Handle a message from the switch.
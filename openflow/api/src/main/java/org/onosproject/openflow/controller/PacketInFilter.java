@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller;
+
+/**
+ * Decides which packet-ins are handed to the packet listeners.
+ * <p>
+ * The filter is consulted on the I/O thread the packet-in was received on,
+ * before the packet-in is queued for the packet listeners, so it must not
+ * block.
+ * </p>
+ */
+public interface PacketInFilter {
+
+    /**
+     * Returns whether a packet-in is handed to the packet listeners.
+     *
+     * @param dpid switch data path identifier
+     * @param inPort port the packet was received on
+     * @return false to drop the packet-in
+     */
+    public boolean admit(Dpid dpid, int inPort);
+}
@@ -112,10 +112,11 @@ public abstract class AbstractOpenFlowSwitch extends AbstractHandlerBehaviour
     }
 
     @Override
-    public final void sendMsg(List<OFMessage> msgs) {
+    public final boolean sendMsg(List<OFMessage> msgs) {
         if (role == RoleState.MASTER) {
             try {
                 channel.write(msgs);
+                return true;
             } catch (RejectedExecutionException e) {
                 log.warn(e.getMessage());
                 if (!e.getMessage().contains(SHUTDOWN_MSG)) {
@@ -123,6 +124,7 @@ public abstract class AbstractOpenFlowSwitch extends AbstractHandlerBehaviour
                 }
             }
         }
+        return false;
     }
 
     @Override
@@ -67,6 +67,14 @@ public class OpenflowControllerAdapter implements OpenFlowController {
     public void removePacketListener(PacketListener listener) {
     }
 
+    @Override
+    public void addPacketInFilter(PacketInFilter filter) {
+    }
+
+    @Override
+    public void removePacketInFilter(PacketInFilter filter) {
+    }
+
     @Override
     public void write(Dpid dpid, OFMessage msg) {
     }
@@ -23,9 +23,12 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.net.driver.DriverService;
 import org.onosproject.openflow.controller.DefaultOpenFlowPacketContext;
 import org.onosproject.openflow.controller.Dpid;
@@ -34,6 +37,7 @@ import org.onosproject.openflow.controller.OpenFlowEventListener;
 import org.onosproject.openflow.controller.OpenFlowPacketContext;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
+import org.onosproject.openflow.controller.PacketInFilter;
 import org.onosproject.openflow.controller.PacketListener;
 import org.onosproject.openflow.controller.RoleState;
 import org.onosproject.openflow.controller.driver.OpenFlowAgent;
@@ -65,11 +69,14 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 
 @Component(immediate = true)
@@ -82,6 +89,33 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DriverService driverService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private static final int DEFAULT_PACKET_IN_THREADS = 8;
+    private static final int DEFAULT_PACKET_IN_QUEUE_SIZE = 1024;
+    private static final String DEFAULT_PACKET_IN_OVERLOAD_POLICY = "DROP_OLDEST";
+
+    @Property(name = "packetInThreads", intValue = DEFAULT_PACKET_IN_THREADS,
+            label = "Number of threads handling packet-ins; 0 handles them on the channel I/O threads")
+    private int packetInThreads = DEFAULT_PACKET_IN_THREADS;
+
+    @Property(name = "packetInQueueSize", intValue = DEFAULT_PACKET_IN_QUEUE_SIZE,
+            label = "Maximum number of packet-ins queued per switch")
+    private int packetInQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+
+    @Property(name = "packetInOverloadPolicy", value = DEFAULT_PACKET_IN_OVERLOAD_POLICY,
+            label = "Packet-in dropped when a switch queue is full: DROP_NEWEST or DROP_OLDEST")
+    private PacketInDispatcher.OverloadPolicy packetInOverloadPolicy =
+            PacketInDispatcher.OverloadPolicy.valueOf(DEFAULT_PACKET_IN_OVERLOAD_POLICY);
+
+    private volatile PacketInDispatcher packetInDispatcher;
+
+    protected Set<PacketInFilter> packetInFilters = new CopyOnWriteArraySet<>();
+
     private final ExecutorService executorMsgs =
         Executors.newFixedThreadPool(32, groupedThreads("onos/of", "event-stats-%d"));
 
@@ -119,14 +153,19 @@ public class OpenFlowControllerImpl implements OpenFlowController {
 
     @Activate
     public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
         Map<String, String> properties = readComponentConfiguration(context);
+        readPacketInConfiguration(context);
+        packetInDispatcher = newPacketInDispatcher();
         ctrl.setConfigParams(properties);
         ctrl.start(agent, driverService);
     }
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
         ctrl.stop();
+        packetInDispatcher.stop();
     }
 
     /**
@@ -148,11 +187,64 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         return outProperties;
     }
 
+    /**
+     * Extracts the packet-in dispatch settings from the component
+     * configuration context.
+     *
+     * @param context the component context
+     * @return true if the settings changed
+     */
+    private boolean readPacketInConfiguration(ComponentContext context) {
+        Dictionary<?, ?> properties = context.getProperties();
+        int newThreads;
+        int newQueueSize;
+        PacketInDispatcher.OverloadPolicy newPolicy;
+        try {
+            String s = get(properties, "packetInThreads");
+            newThreads = isNullOrEmpty(s) ? packetInThreads : Integer.parseInt(s.trim());
+
+            s = get(properties, "packetInQueueSize");
+            newQueueSize = isNullOrEmpty(s) ? packetInQueueSize : Integer.parseInt(s.trim());
+
+            s = get(properties, "packetInOverloadPolicy");
+            newPolicy = isNullOrEmpty(s) ? packetInOverloadPolicy
+                    : PacketInDispatcher.OverloadPolicy.valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException | ClassCastException e) {
+            log.warn("Ignoring invalid packet-in configuration", e);
+            return false;
+        }
+
+        if (newThreads < 0 || newQueueSize <= 0) {
+            log.warn("Ignoring invalid packet-in configuration: {} threads, queue of {}",
+                     newThreads, newQueueSize);
+            return false;
+        }
+        boolean changed = newThreads != packetInThreads || newQueueSize != packetInQueueSize
+                || newPolicy != packetInOverloadPolicy;
+        packetInThreads = newThreads;
+        packetInQueueSize = newQueueSize;
+        packetInOverloadPolicy = newPolicy;
+        log.info("Settings: packetInThreads={}, packetInQueueSize={}, packetInOverloadPolicy={}",
+                 packetInThreads, packetInQueueSize, packetInOverloadPolicy);
+        return changed;
+    }
+
     @Modified
     public void modified(ComponentContext context) {
-        // Blank @Modified method to catch modifications to the context.
-        // If no @Modified method exists, @Activate is called again
-        // when the context is modified.
+        // Also keeps @Activate from being called again when the context is
+        // modified; only the packet-in settings may change at runtime.
+        if (readPacketInConfiguration(context)) {
+            // The old dispatcher has to give up its per-switch metrics before
+            // the new one registers them under the same names; packet-ins
+            // arriving in between are dropped.
+            packetInDispatcher.stop();
+            packetInDispatcher = newPacketInDispatcher();
+        }
+    }
+
+    private PacketInDispatcher newPacketInDispatcher() {
+        return new PacketInDispatcher(packetInThreads, packetInQueueSize, packetInOverloadPolicy,
+                                      metricsService, connectedSwitches::containsKey);
     }
 
     @Override
@@ -207,6 +299,16 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         ofPacketListener.values().remove(listener);
     }
 
+    @Override
+    public void addPacketInFilter(PacketInFilter filter) {
+        packetInFilters.add(filter);
+    }
+
+    @Override
+    public void removePacketInFilter(PacketInFilter filter) {
+        packetInFilters.remove(filter);
+    }
+
     @Override
     public void addEventListener(OpenFlowEventListener listener) {
         ofEventListener.add(listener);
@@ -241,12 +343,14 @@ public class OpenFlowControllerImpl implements OpenFlowController {
             }
             break;
         case PACKET_IN:
-            OpenFlowPacketContext pktCtx = DefaultOpenFlowPacketContext
-            .packetContextFromPacketIn(this.getSwitch(dpid),
-                    (OFPacketIn) msg);
-            for (PacketListener p : ofPacketListener.values()) {
-                p.handlePacket(pktCtx);
+            OFPacketIn pktIn = (OFPacketIn) msg;
+            // Filtered before queueing, so that a storming port cannot push
+            // packet-ins of other ports out of the switch queue
+            if (!packetInFilters.isEmpty() && !admit(dpid, pktIn)) {
+                break;
             }
+            OpenFlowSwitch sw = this.getSwitch(dpid);
+            packetInDispatcher.dispatch(dpid, () -> handlePacketIn(sw, pktIn));
             break;
         // TODO: Consider using separate threadpool for sensitive messages.
         //    ie. Back to back error could cause us to starve.
@@ -328,6 +432,24 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         }
     }
 
+    private boolean admit(Dpid dpid, OFPacketIn pktIn) {
+        int inPort = DefaultOpenFlowPacketContext.packetInPort(pktIn).getPortNumber();
+        for (PacketInFilter filter : packetInFilters) {
+            if (!filter.admit(dpid, inPort)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void handlePacketIn(OpenFlowSwitch sw, OFPacketIn pktIn) {
+        OpenFlowPacketContext pktCtx = DefaultOpenFlowPacketContext
+                .packetContextFromPacketIn(sw, pktIn);
+        for (PacketListener p : ofPacketListener.values()) {
+            p.handlePacket(pktCtx);
+        }
+    }
+
     private synchronized Collection<OFFlowStatsEntry> publishFlowStats(Dpid dpid,
                                                                        OFFlowStatsReply reply) {
         //TODO: Get rid of synchronized
@@ -506,6 +628,7 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         @Override
         public void removeConnectedSwitch(Dpid dpid) {
             connectedSwitches.remove(dpid);
+            packetInDispatcher.remove(dpid);
             OpenFlowSwitch sw = activeMasterSwitches.remove(dpid);
             if (sw == null) {
                 log.warn("sw was null for {}", dpid);
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.openflow.controller.Dpid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Dispatches packet-in processing off the channel I/O threads.
+ * <p>
+ * Each switch has a bounded queue of pending packet-ins, drained by a shared
+ * pool of worker threads. At most one worker drains a given queue at a time,
+ * so packet-ins of a switch are handled in the order they were received,
+ * while a slow listener only holds back the switch whose packets it handles.
+ * When a queue is full, the overload policy decides which packet-in is
+ * dropped. With no worker threads, packet-ins are handled inline.
+ * </p>
+ * <p>
+ * Queues are created on the first packet-in of a connected switch. Packet-ins
+ * of a switch that has been removed, or arriving after the dispatcher has been
+ * stopped, are dropped rather than queued.
+ * </p>
+ * <p>
+ * Queue depth and dropped packet-ins are registered with the metrics service
+ * under the {@value #COMPONENT} component, with the switch DPID as the feature.
+ * </p>
+ */
+final class PacketInDispatcher {
+
+    static final String COMPONENT = "OpenFlowPacketIn";
+
+    static final String QUEUE_DEPTH = "queueDepth";
+    static final String DROPPED = "dropped";
+
+    // Packet-ins handled before a worker yields to other switches
+    private static final int DRAIN_BATCH = 64;
+
+    /**
+     * What to do with a packet-in arriving for a switch whose queue is full.
+     */
+    enum OverloadPolicy {
+        /**
+         * Drops the arriving packet-in.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drops the oldest queued packet-in to make room for the arriving one.
+         */
+        DROP_OLDEST
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ExecutorService executor;
+    private final int queueSize;
+    private final OverloadPolicy policy;
+    private final MetricsService metricsService;
+    private final MetricsComponent component;
+    private final Predicate<Dpid> connected;
+    private final Map<Dpid, SwitchQueue> queues = new ConcurrentHashMap<>();
+
+    // Guarded by this, along with queue creation and removal
+    private boolean stopped;
+
+    /**
+     * Creates a new packet-in dispatcher.
+     *
+     * @param threads number of worker threads; 0 handles packet-ins inline
+     * @param queueSize maximum number of queued packet-ins per switch
+     * @param policy overload policy
+     * @param metricsService metrics service
+     * @param connected tells whether a switch is still connected
+     */
+    PacketInDispatcher(int threads, int queueSize, OverloadPolicy policy,
+                       MetricsService metricsService, Predicate<Dpid> connected) {
+        checkArgument(threads >= 0, "Number of threads must not be negative");
+        checkArgument(queueSize > 0, "Queue size must be positive");
+        this.executor = threads == 0 ? null
+                : Executors.newFixedThreadPool(threads, groupedThreads("onos/of", "packet-in-%d"));
+        this.queueSize = queueSize;
+        this.policy = checkNotNull(policy);
+        this.metricsService = checkNotNull(metricsService);
+        this.component = metricsService.registerComponent(COMPONENT);
+        this.connected = checkNotNull(connected);
+    }
+
+    /**
+     * Queues a packet-in handling task for the given switch.
+     *
+     * @param dpid switch the packet-in was received from
+     * @param task packet-in handling task
+     * @return false if the task was dropped
+     */
+    boolean dispatch(Dpid dpid, Runnable task) {
+        if (executor == null) {
+            task.run();
+            return true;
+        }
+        SwitchQueue queue = queues.get(dpid);
+        if (queue == null) {
+            queue = createQueue(dpid);
+            if (queue == null) {
+                log.debug("Dropping packet-in from {}: switch removed or dispatcher stopped", dpid);
+                return false;
+            }
+        }
+        return queue.offer(task);
+    }
+
+    // Serialized with remove and stop, so that a packet-in racing with either
+    // cannot bring back the queue and metrics they have just discarded.
+    private synchronized SwitchQueue createQueue(Dpid dpid) {
+        if (stopped || !connected.test(dpid)) {
+            return null;
+        }
+        return queues.computeIfAbsent(dpid, SwitchQueue::new);
+    }
+
+    /**
+     * Discards the queue and metrics of a switch.
+     *
+     * @param dpid switch identifier
+     */
+    synchronized void remove(Dpid dpid) {
+        SwitchQueue queue = queues.remove(dpid);
+        if (queue != null) {
+            queue.remove();
+        }
+    }
+
+    /**
+     * Stops the worker threads, letting them finish the packet-ins they
+     * have already started on, and discards all queues and metrics.
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdown();
+        }
+        queues.keySet().forEach(this::remove);
+    }
+
+    // Pending packet-ins of a single switch; doubles as the drain task.
+    private final class SwitchQueue implements Runnable {
+
+        private final MetricsFeature feature;
+        private final BlockingQueue<Runnable> tasks = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Meter dropped;
+
+        private SwitchQueue(Dpid dpid) {
+            feature = component.registerFeature(dpid.toString());
+            dropped = metricsService.createMeter(component, feature, DROPPED);
+            metricsService.registerMetric(component, feature, QUEUE_DEPTH, (Gauge<Integer>) tasks::size);
+        }
+
+        private boolean offer(Runnable task) {
+            boolean accepted = tasks.offer(task);
+            if (!accepted && policy == OverloadPolicy.DROP_OLDEST) {
+                while (!accepted) {
+                    if (tasks.poll() != null) {
+                        dropped.mark();
+                    }
+                    accepted = tasks.offer(task);
+                }
+            } else if (!accepted) {
+                dropped.mark();
+            }
+            schedule();
+            return accepted;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    log.debug("Packet-in dispatcher stopped; leaving {} packet-ins unhandled", tasks.size());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("Packet-in handling failed", e);
+                }
+            }
+            scheduled.set(false);
+            // Packet-ins queued after the last poll saw this drain still scheduled
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void remove() {
+            tasks.clear();
+            metricsService.removeMetric(component, feature, DROPPED);
+            metricsService.removeMetric(component, feature, QUEUE_DEPTH);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import com.codahale.metrics.Metric;
+import org.junit.After;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.openflow.controller.Dpid;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.openflow.controller.impl.PacketInDispatcher.OverloadPolicy.DROP_NEWEST;
+import static org.onosproject.openflow.controller.impl.PacketInDispatcher.OverloadPolicy.DROP_OLDEST;
+
+public class PacketInDispatcherTest {
+
+    private static final Dpid DPID1 = new Dpid(1);
+    private static final Dpid DPID2 = new Dpid(2);
+
+    private PacketInDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void inline() {
+        dispatcher = new PacketInDispatcher(0, 1, DROP_NEWEST, new MetricsManager(), dpid -> true);
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        assertTrue(dispatcher.dispatch(DPID1, () -> threads.add(Thread.currentThread())));
+        assertEquals(caller, threads.get(0));
+    }
+
+    @Test
+    public void perSwitchOrder() throws InterruptedException {
+        int count = 1000;
+        dispatcher = new PacketInDispatcher(4, count, DROP_NEWEST, new MetricsManager(), dpid -> true);
+        List<Integer> first = new CopyOnWriteArrayList<>();
+        List<Integer> second = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2 * count);
+        for (int i = 0; i < count; i++) {
+            int n = i;
+            dispatcher.dispatch(DPID1, () -> {
+                first.add(n);
+                done.countDown();
+            });
+            dispatcher.dispatch(DPID2, () -> {
+                second.add(n);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, first.get(i).intValue());
+            assertEquals(i, second.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void slowSwitchDoesNotBlockOthers() throws InterruptedException {
+        dispatcher = new PacketInDispatcher(2, 4, DROP_NEWEST, new MetricsManager(), dpid -> true);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch handled = new CountDownLatch(1);
+        dispatcher.dispatch(DPID1, () -> await(release));
+        dispatcher.dispatch(DPID2, handled::countDown);
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        dispatcher = new PacketInDispatcher(1, 2, DROP_NEWEST, new MetricsManager(), dpid -> true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        dispatcher.dispatch(DPID1, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            int n = i;
+            boolean accepted = dispatcher.dispatch(DPID1, () -> {
+                handled.add(n);
+                done.countDown();
+            });
+            assertEquals(i < 2, accepted);
+        }
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, handled.get(0).intValue());
+        assertEquals(1, handled.get(1).intValue());
+        assertFalse(handled.contains(2));
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        dispatcher = new PacketInDispatcher(1, 2, DROP_OLDEST, new MetricsManager(), dpid -> true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        dispatcher.dispatch(DPID1, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            int n = i;
+            assertTrue(dispatcher.dispatch(DPID1, () -> {
+                handled.add(n);
+                done.countDown();
+            }));
+        }
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, handled.get(0).intValue());
+        assertEquals(2, handled.get(1).intValue());
+    }
+
+    @Test
+    public void removedSwitchNotRecreated() {
+        MetricsService metrics = new MetricsManager();
+        Set<Dpid> connected = ConcurrentHashMap.newKeySet();
+        connected.add(DPID1);
+        dispatcher = new PacketInDispatcher(1, 4, DROP_NEWEST, metrics, connected::contains);
+        assertTrue(dispatcher.dispatch(DPID1, () -> { }));
+        assertEquals(1, metrics.getGauges(PacketInDispatcherTest::queueDepth).size());
+
+        connected.remove(DPID1);
+        dispatcher.remove(DPID1);
+        assertFalse(dispatcher.dispatch(DPID1, () -> { }));
+        assertTrue(metrics.getGauges(PacketInDispatcherTest::queueDepth).isEmpty());
+    }
+
+    @Test
+    public void replaceAfterStop() {
+        MetricsService metrics = new MetricsManager();
+        dispatcher = new PacketInDispatcher(1, 4, DROP_NEWEST, metrics, dpid -> true);
+        assertTrue(dispatcher.dispatch(DPID1, () -> { }));
+
+        dispatcher.stop();
+        assertFalse(dispatcher.dispatch(DPID2, () -> { }));
+        assertTrue(metrics.getGauges(PacketInDispatcherTest::queueDepth).isEmpty());
+
+        dispatcher = new PacketInDispatcher(1, 4, DROP_NEWEST, metrics, dpid -> true);
+        assertTrue(dispatcher.dispatch(DPID1, () -> { }));
+        assertEquals(1, metrics.getGauges(PacketInDispatcherTest::queueDepth).size());
+    }
+
+    private static boolean queueDepth(String name, Metric metric) {
+        return name.endsWith(PacketInDispatcher.QUEUE_DEPTH);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -112,7 +112,8 @@ public class RoleManagerTest {
         }
 
         @Override
-        public void sendMsg(List<OFMessage> msgs) {
+        public boolean sendMsg(List<OFMessage> msgs) {
+            return false;
         }
 
 
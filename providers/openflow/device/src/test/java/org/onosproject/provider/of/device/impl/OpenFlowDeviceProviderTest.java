@@ -37,6 +37,7 @@ import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowEventListener;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
+import org.onosproject.openflow.controller.PacketInFilter;
 import org.onosproject.openflow.controller.PacketListener;
 import org.onosproject.openflow.controller.RoleState;
 import org.projectfloodlight.openflow.protocol.OFFactory;
@@ -275,6 +276,14 @@ public class OpenFlowDeviceProviderTest {
         public void removePacketListener(PacketListener listener) {
         }
 
+        @Override
+        public void addPacketInFilter(PacketInFilter filter) {
+        }
+
+        @Override
+        public void removePacketInFilter(PacketInFilter filter) {
+        }
+
         @Override
         public void addEventListener(OpenFlowEventListener listener) {
         }
@@ -309,7 +318,8 @@ public class OpenFlowDeviceProviderTest {
         }
 
         @Override
-        public void sendMsg(List<OFMessage> msgs) {
+        public boolean sendMsg(List<OFMessage> msgs) {
+            return false;
         }
 
         @Override
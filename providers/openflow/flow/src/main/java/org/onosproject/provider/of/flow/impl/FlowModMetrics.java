@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.of.flow.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.openflow.controller.Dpid;
+
+import com.codahale.metrics.Meter;
+
+/**
+ * Per switch flow-mod and channel write throughput metrics.
+ * <p>
+ * Metrics are registered with the metrics service under the
+ * {@value #COMPONENT} component, with the switch DPID as the feature.
+ * </p>
+ */
+final class FlowModMetrics {
+
+    static final String COMPONENT = "OpenFlowFlowMods";
+
+    static final String FLOW_MODS = "flowMods";
+    static final String CHANNEL_WRITES = "channelWrites";
+
+    private final MetricsService metricsService;
+    private final MetricsComponent component;
+    private final Map<Dpid, SwitchMetrics> switches = new ConcurrentHashMap<>();
+
+    /**
+     * Creates metrics backed by the given metrics service.
+     *
+     * @param metricsService metrics service
+     */
+    FlowModMetrics(MetricsService metricsService) {
+        this.metricsService = metricsService;
+        this.component = metricsService.registerComponent(COMPONENT);
+    }
+
+    /**
+     * Records a single channel write carrying the given number of flow-mods.
+     *
+     * @param dpid switch the messages were written to
+     * @param flowMods number of flow-mods in the write
+     */
+    void written(Dpid dpid, int flowMods) {
+        SwitchMetrics metrics = switches.computeIfAbsent(dpid, SwitchMetrics::new);
+        metrics.channelWrites.mark();
+        if (flowMods > 0) {
+            metrics.flowMods.mark(flowMods);
+        }
+    }
+
+    /**
+     * Removes the metrics of a switch from the metrics service.
+     *
+     * @param dpid switch identifier
+     */
+    void remove(Dpid dpid) {
+        SwitchMetrics metrics = switches.remove(dpid);
+        if (metrics != null) {
+            metrics.remove();
+        }
+    }
+
+    /**
+     * Removes all metrics registered so far from the metrics service.
+     */
+    void removeAll() {
+        switches.values().forEach(SwitchMetrics::remove);
+        switches.clear();
+    }
+
+    // Metrics for a single switch.
+    private final class SwitchMetrics {
+
+        private final MetricsFeature feature;
+        private final Meter flowMods;
+        private final Meter channelWrites;
+
+        private SwitchMetrics(Dpid dpid) {
+            feature = component.registerFeature(dpid.toString());
+            flowMods = metricsService.createMeter(component, feature, FLOW_MODS);
+            channelWrites = metricsService.createMeter(component, feature, CHANNEL_WRITES);
+        }
+
+        private void remove() {
+            metricsService.removeMetric(component, feature, FLOW_MODS);
+            metricsService.removeMetric(component, feature, CHANNEL_WRITES);
+        }
+    }
+}
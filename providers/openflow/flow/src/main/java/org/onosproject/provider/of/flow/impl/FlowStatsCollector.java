@@ -15,7 +15,15 @@
  */
 package org.onosproject.provider.of.flow.impl;
 
-import org.onlab.util.SharedExecutors;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.RoleState;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsRequest;
@@ -23,78 +31,193 @@ import org.projectfloodlight.openflow.types.OFPort;
 import org.projectfloodlight.openflow.types.TableId;
 import org.slf4j.Logger;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Collects flow statistics for the specified switch.
+ * <p>
+ * Polls run on the shared hashed wheel timer. Each switch polls at a fixed
+ * phase within the poll interval, derived from its DPID, so that switches
+ * are not polled in lockstep. When adaptive, a collector polls a few times
+ * at a quarter of the interval after its flow table changed, and backs off
+ * up to four times the interval while the table stays empty or very large.
+ * </p>
+ * <p>
+ * Poll duration and reply size are registered with the metrics service
+ * under the {@value #COMPONENT} component, with the switch DPID as the
+ * feature.
+ * </p>
  */
-class FlowStatsCollector {
+class FlowStatsCollector implements TimerTask {
 
     private final Logger log = getLogger(getClass());
 
     public static final int SECONDS = 1000;
 
+    static final String COMPONENT = "OpenFlowFlowStats";
+    static final String POLL_DURATION = "pollDuration";
+    static final String REPLY_ENTRIES = "replyEntries";
+
+    // Tables with at least this many entries are large enough to back off
+    static final int LARGE_TABLE = 10000;
+
+    private static final int MAX_BACKOFF = 4;
+    private static final int FAST_POLLS = 3;
+    private static final int FAST_FACTOR = 4;
+
+    private final HashedWheelTimer timer = org.onlab.util.Timer.getTimer();
     private final OpenFlowSwitch sw;
-    private Timer timer;
-    private TimerTask task;
+    private final MetricsService metricsService;
+    private final MetricsComponent component;
+    private final MetricsFeature feature;
+    private final Timer pollDuration;
+    private final Histogram replyEntries;
 
     private int pollInterval;
+    private boolean adaptive;
+
+    private Timeout timeout;
+    private long nextPoll;
+    private long requestSent;
+    private int lastEntries = -1;
+    private int backoff = 1;
+    private int fastPolls;
 
     /**
      * Creates a new collector for the given switch and poll frequency.
      *
-     * @param timer        timer to use for scheduling
-     * @param sw           switch to pull
-     * @param pollInterval poll frequency in seconds
+     * @param sw             switch to pull
+     * @param pollInterval   poll frequency in seconds
+     * @param adaptive       whether the poll frequency adapts to the flow table
+     * @param metricsService metrics service
      */
-    FlowStatsCollector(Timer timer, OpenFlowSwitch sw, int pollInterval) {
-        this.timer = timer;
+    FlowStatsCollector(OpenFlowSwitch sw, int pollInterval, boolean adaptive,
+                       MetricsService metricsService) {
         this.sw = sw;
         this.pollInterval = pollInterval;
+        this.adaptive = adaptive;
+        this.metricsService = metricsService;
+        this.component = metricsService.registerComponent(COMPONENT);
+        this.feature = component.registerFeature(new Dpid(sw.getId()).toString());
+        this.pollDuration = metricsService.createTimer(component, feature, POLL_DURATION);
+        this.replyEntries = metricsService.createHistogram(component, feature, REPLY_ENTRIES);
     }
 
     /**
      * Adjusts poll frequency.
      *
      * @param pollInterval poll frequency in seconds
+     * @param adaptive     whether the poll frequency adapts to the flow table
      */
-    synchronized void adjustPollInterval(int pollInterval) {
+    synchronized void adjustPollInterval(int pollInterval, boolean adaptive) {
         this.pollInterval = pollInterval;
-        task.cancel();
-        task = new InternalTimerTask();
-        timer.scheduleAtFixedRate(task, pollInterval * SECONDS, pollInterval * 1000);
+        this.adaptive = adaptive;
+        backoff = 1;
+        fastPolls = 0;
+        if (timeout != null) {
+            timeout.cancel();
+            schedule(phase());
+        }
+    }
+
+    /**
+     * Notes that flow rules were just sent to the switch, so that adaptive
+     * polling picks up the change soon.
+     */
+    synchronized void flowTableChanged() {
+        if (!adaptive || timeout == null) {
+            return;
+        }
+        fastPolls = FAST_POLLS;
+        backoff = 1;
+        long fast = fastDelay();
+        if (nextPoll - System.currentTimeMillis() > fast) {
+            timeout.cancel();
+            schedule(fast);
+        }
+    }
+
+    /**
+     * Records a complete flow statistics reply from the switch.
+     *
+     * @param entries number of flow entries in the reply
+     */
+    synchronized void replyReceived(int entries) {
+        if (requestSent != 0) {
+            pollDuration.update(System.nanoTime() - requestSent, TimeUnit.NANOSECONDS);
+            requestSent = 0;
+        }
+        replyEntries.update(entries);
+        if (lastEntries >= 0 && entries != lastEntries) {
+            fastPolls = FAST_POLLS;
+        }
+        boolean idleOrLarge = entries == 0 || entries >= LARGE_TABLE;
+        backoff = idleOrLarge && fastPolls == 0 ? Math.min(backoff * 2, MAX_BACKOFF) : 1;
+        lastEntries = entries;
     }
 
-    private class InternalTimerTask extends TimerTask {
-        @Override
-        public void run() {
-            if (sw.getRole() == RoleState.MASTER) {
-                log.trace("Collecting stats for {}", sw.getStringId());
-                OFFlowStatsRequest request = sw.factory().buildFlowStatsRequest()
-                        .setMatch(sw.factory().matchWildcardAll())
-                        .setTableId(TableId.ALL)
-                        .setOutPort(OFPort.NO_MASK)
-                        .build();
-                sw.sendMsg(request);
-            }
+    @Override
+    public synchronized void run(Timeout timeout) throws Exception {
+        if (timeout != this.timeout) {
+            // Cancelled and rescheduled in the meantime
+            return;
         }
+        if (sw.getRole() == RoleState.MASTER) {
+            log.trace("Collecting stats for {}", sw.getStringId());
+            OFFlowStatsRequest request = sw.factory().buildFlowStatsRequest()
+                    .setMatch(sw.factory().matchWildcardAll())
+                    .setTableId(TableId.ALL)
+                    .setOutPort(OFPort.NO_MASK)
+                    .build();
+            requestSent = System.nanoTime();
+            sw.sendMsg(request);
+        }
+        schedule(nextDelay());
     }
 
     public synchronized void start() {
-        // Initially start polling quickly. Then drop down to configured value
+        // First poll soon, at this switch's phase within the poll interval
         log.debug("Starting Stats collection thread for {}", sw.getStringId());
-        task = new InternalTimerTask();
-        SharedExecutors.getTimer().scheduleAtFixedRate(task, 1 * SECONDS,
-                                                       pollInterval * SECONDS);
+        schedule(SECONDS + phase());
     }
 
     public synchronized void stop() {
         log.debug("Stopping Stats collection thread for {}", sw.getStringId());
-        task.cancel();
-        task = null;
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        metricsService.removeMetric(component, feature, POLL_DURATION);
+        metricsService.removeMetric(component, feature, REPLY_ENTRIES);
+    }
+
+    private void schedule(long delay) {
+        nextPoll = System.currentTimeMillis() + delay;
+        timeout = timer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
     }
 
+    // Offset of this switch within the poll interval; consecutive DPIDs
+    // land far apart.
+    private long phase() {
+        long base = pollInterval * SECONDS;
+        long spread = (sw.getId() * 0x9E3779B97F4A7C15L) >>> 32;
+        return (spread * base) >>> 32;
+    }
+
+    private long fastDelay() {
+        return Math.max(SECONDS, pollInterval * SECONDS / FAST_FACTOR);
+    }
+
+    private long nextDelay() {
+        if (!adaptive) {
+            return pollInterval * SECONDS;
+        }
+        if (fastPolls > 0) {
+            fastPolls--;
+            return fastDelay();
+        }
+        return (long) pollInterval * SECONDS * backoff;
+    }
 }
@@ -28,6 +28,7 @@ import org.apache.felix.scr.annotations.Modified;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
@@ -64,13 +65,13 @@ import org.projectfloodlight.openflow.protocol.OFStatsType;
 import org.projectfloodlight.openflow.protocol.errormsg.OFFlowModFailedErrorMsg;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Timer;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -97,19 +98,29 @@ public class OpenFlowRuleProvider extends AbstractProvider
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService cfgService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     private static final int DEFAULT_POLL_FREQUENCY = 10;
     @Property(name = "flowPollFrequency", intValue = DEFAULT_POLL_FREQUENCY,
             label = "Frequency (in seconds) for polling flow statistics")
     private int flowPollFrequency = DEFAULT_POLL_FREQUENCY;
 
+    private static final boolean DEFAULT_ADAPTIVE_POLLING = false;
+    @Property(name = "adaptiveFlowPolling", boolValue = DEFAULT_ADAPTIVE_POLLING,
+            label = "Poll flow statistics faster after flow table changes and slower for "
+                    + "empty or very large tables; flow load rates assume the fixed frequency")
+    private boolean adaptiveFlowPolling = DEFAULT_ADAPTIVE_POLLING;
+
     private FlowRuleProviderService providerService;
 
     private final InternalFlowProvider listener = new InternalFlowProvider();
 
     private Cache<Long, InternalCacheEntry> pendingBatches;
 
-    private final Timer timer = new Timer("onos-openflow-collector");
-    private final Map<Dpid, FlowStatsCollector> collectors = Maps.newHashMap();
+    private FlowModMetrics metrics;
+
+    private final Map<Dpid, FlowStatsCollector> collectors = Maps.newConcurrentMap();
 
     /**
      * Creates an OpenFlow host provider.
@@ -126,6 +137,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
         controller.addEventListener(listener);
 
         pendingBatches = createBatchCache();
+        metrics = new FlowModMetrics(metricsService);
         createCollectors();
 
         log.info("Started");
@@ -135,6 +147,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
     public void deactivate(ComponentContext context) {
         cfgService.unregisterProperties(getClass(), false);
         stopCollectors();
+        metrics.removeAll();
         providerRegistry.unregister(this);
         providerService = null;
 
@@ -153,12 +166,21 @@ public class OpenFlowRuleProvider extends AbstractProvider
             newFlowPollFrequency = flowPollFrequency;
         }
 
-        if (newFlowPollFrequency != flowPollFrequency) {
+        boolean newAdaptiveFlowPolling;
+        try {
+            String s = get(properties, "adaptiveFlowPolling");
+            newAdaptiveFlowPolling = isNullOrEmpty(s) ? adaptiveFlowPolling : Boolean.parseBoolean(s.trim());
+        } catch (ClassCastException e) {
+            newAdaptiveFlowPolling = adaptiveFlowPolling;
+        }
+
+        if (newFlowPollFrequency != flowPollFrequency || newAdaptiveFlowPolling != adaptiveFlowPolling) {
             flowPollFrequency = newFlowPollFrequency;
+            adaptiveFlowPolling = newAdaptiveFlowPolling;
             adjustRate();
         }
 
-        log.info("Settings: flowPollFrequency={}", flowPollFrequency);
+        log.info("Settings: flowPollFrequency={}, adaptiveFlowPolling={}", flowPollFrequency, adaptiveFlowPolling);
     }
 
     private Cache<Long, InternalCacheEntry> createBatchCache() {
@@ -177,7 +199,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
     }
 
     private void createCollector(OpenFlowSwitch sw) {
-        FlowStatsCollector fsc = new FlowStatsCollector(timer, sw, flowPollFrequency);
+        FlowStatsCollector fsc = new FlowStatsCollector(sw, flowPollFrequency, adaptiveFlowPolling, metricsService);
         fsc.start();
         collectors.put(new Dpid(sw.getId()), fsc);
     }
@@ -189,7 +211,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
 
     private void adjustRate() {
         DefaultLoad.setPollInterval(flowPollFrequency);
-        collectors.values().forEach(fsc -> fsc.adjustPollInterval(flowPollFrequency));
+        collectors.values().forEach(fsc -> fsc.adjustPollInterval(flowPollFrequency, adaptiveFlowPolling));
     }
 
     @Override
@@ -208,8 +230,11 @@ public class OpenFlowRuleProvider extends AbstractProvider
             sw.sendMsg(msg);
             return;
         }
-        sw.sendMsg(FlowModBuilder.builder(flowRule, sw.factory(),
-                                          Optional.empty()).buildFlowAdd());
+        OFMessage mod = FlowModBuilder.builder(flowRule, sw.factory(),
+                                               Optional.empty()).buildFlowAdd();
+        if (sw.sendMsg(Collections.singletonList(mod))) {
+            flowModsSent(new Dpid(sw.getId()), 1);
+        }
     }
 
     @Override
@@ -228,8 +253,11 @@ public class OpenFlowRuleProvider extends AbstractProvider
             sw.sendMsg(msg);
             return;
         }
-        sw.sendMsg(FlowModBuilder.builder(flowRule, sw.factory(),
-                                          Optional.empty()).buildFlowDel());
+        OFMessage mod = FlowModBuilder.builder(flowRule, sw.factory(),
+                                               Optional.empty()).buildFlowDel();
+        if (sw.sendMsg(Collections.singletonList(mod))) {
+            flowModsSent(new Dpid(sw.getId()), 1);
+        }
     }
 
     @Override
@@ -245,14 +273,17 @@ public class OpenFlowRuleProvider extends AbstractProvider
 
         OpenFlowSwitch sw = controller.getSwitch(Dpid.dpid(batch.deviceId()
                                                                    .uri()));
+        // The whole batch and its barrier go out in a single channel write,
+        // which the encoder turns into a single buffer
+        List<OFMessage> msgs = new ArrayList<>(batch.size() + 1);
+        int flowMods = 0;
         OFFlowMod mod;
         for (FlowRuleBatchEntry fbe : batch.getOperations()) {
             // flow is the third party privacy flow
 
             FlowRuleExtPayLoad flowRuleExtPayLoad = fbe.target().payLoad();
             if (hasPayload(flowRuleExtPayLoad)) {
-                OFMessage msg = new ThirdPartyMessage(flowRuleExtPayLoad.payLoad());
-                sw.sendMsg(msg);
+                msgs.add(new ThirdPartyMessage(flowRuleExtPayLoad.payLoad()));
                 continue;
             }
             FlowModBuilder builder = FlowModBuilder.builder(fbe.target(), sw
@@ -272,11 +303,25 @@ public class OpenFlowRuleProvider extends AbstractProvider
                               fbe.operator(), fbe);
                     continue;
             }
-            sw.sendMsg(mod);
+            msgs.add(mod);
+            flowMods++;
         }
         OFBarrierRequest.Builder builder = sw.factory().buildBarrierRequest()
                 .setXid(batch.id());
-        sw.sendMsg(builder.build());
+        msgs.add(builder.build());
+        if (sw.sendMsg(msgs)) {
+            flowModsSent(new Dpid(sw.getId()), flowMods);
+        }
+    }
+
+    // Called only once the messages were written, as nothing is sent to
+    // switches this controller is not the master of
+    private void flowModsSent(Dpid dpid, int flowMods) {
+        metrics.written(dpid, flowMods);
+        FlowStatsCollector collector = collectors.get(dpid);
+        if (collector != null && flowMods > 0) {
+            collector.flowTableChanged();
+        }
     }
 
     private boolean hasPayload(FlowRuleExtPayLoad flowRuleExtPayLoad) {
@@ -299,6 +344,7 @@ public class OpenFlowRuleProvider extends AbstractProvider
             if (collector != null) {
                 collector.stop();
             }
+            metrics.remove(dpid);
         }
 
         @Override
@@ -391,6 +437,11 @@ public class OpenFlowRuleProvider extends AbstractProvider
                     .map(entry -> new FlowEntryBuilder(dpid, entry).build())
                     .collect(Collectors.toList());
 
+            FlowStatsCollector collector = collectors.get(dpid);
+            if (collector != null) {
+                collector.replyReceived(flowEntries.size());
+            }
+
             providerService.pushFlowMetrics(did, flowEntries);
         }
     }
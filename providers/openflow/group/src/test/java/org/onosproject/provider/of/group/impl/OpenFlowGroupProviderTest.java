@@ -27,6 +27,7 @@ import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowEventListener;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
+import org.onosproject.openflow.controller.PacketInFilter;
 import org.onosproject.openflow.controller.PacketListener;
 import org.onosproject.openflow.controller.RoleState;
 import org.projectfloodlight.openflow.protocol.OFFactories;
@@ -218,6 +219,16 @@ public class OpenFlowGroupProviderTest {
 
         }
 
+        @Override
+        public void addPacketInFilter(PacketInFilter filter) {
+
+        }
+
+        @Override
+        public void removePacketInFilter(PacketInFilter filter) {
+
+        }
+
         @Override
         public void addEventListener(OpenFlowEventListener listener) {
             this.eventListener = listener;
@@ -303,8 +314,8 @@ public class OpenFlowGroupProviderTest {
         }
 
         @Override
-        public void sendMsg(List<OFMessage> msgs) {
-
+        public boolean sendMsg(List<OFMessage> msgs) {
+            return false;
         }
 
         @Override
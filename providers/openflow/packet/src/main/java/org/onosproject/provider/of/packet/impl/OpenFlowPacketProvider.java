@@ -18,11 +18,22 @@ package org.onosproject.provider.of.packet.impl;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.CoreService;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.flow.instructions.Instruction;
 import org.onosproject.net.flow.instructions.Instructions.OutputInstruction;
 import org.onosproject.net.packet.DefaultInboundPacket;
@@ -37,9 +48,15 @@ import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowController;
 import org.onosproject.openflow.controller.OpenFlowPacketContext;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
+import org.onosproject.openflow.controller.OpenFlowSwitchListener;
+import org.onosproject.openflow.controller.PacketInFilter;
 import org.onosproject.openflow.controller.PacketListener;
+import org.onosproject.openflow.controller.RoleState;
+import org.osgi.service.component.ComponentContext;
 import org.projectfloodlight.openflow.protocol.OFPacketOut;
 import org.projectfloodlight.openflow.protocol.OFPortDesc;
+import org.projectfloodlight.openflow.protocol.OFPortReason;
+import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.action.OFAction;
 import org.projectfloodlight.openflow.protocol.ver10.OFFactoryVer10;
 import org.projectfloodlight.openflow.types.OFBufferId;
@@ -48,7 +65,14 @@ import org.slf4j.Logger;
 
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.onlab.util.Tools.get;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
 
@@ -67,10 +91,57 @@ public class OpenFlowPacketProvider extends AbstractProvider implements PacketPr
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected OpenFlowController controller;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected CoreService coreService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected FlowRuleService flowRuleService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private static final int DEFAULT_DEVICE_RATE = 0;
+    private static final int DEFAULT_PORT_RATE = 0;
+    private static final int DEFAULT_BLOCK_AFTER = 0;
+    private static final int DEFAULT_BLOCK_TIMEOUT = 60;
+
+    // Drop rules have to outrank any rule sending packets to the controller
+    private static final int BLOCK_PRIORITY = 65535;
+
+    @Property(name = "packetInDeviceRate", intValue = DEFAULT_DEVICE_RATE,
+            label = "Packet-ins per second admitted from each device; 0 for no limit")
+    private int packetInDeviceRate = DEFAULT_DEVICE_RATE;
+
+    @Property(name = "packetInPortRate", intValue = DEFAULT_PORT_RATE,
+            label = "Packet-ins per second admitted from each ingress port; 0 for no limit")
+    private int packetInPortRate = DEFAULT_PORT_RATE;
+
+    @Property(name = "packetInBlockAfter", intValue = DEFAULT_BLOCK_AFTER,
+            label = "Seconds a port stays over its packet-in limit before its packets "
+                    + "are dropped on the switch; 0 never drops them on the switch")
+    private int packetInBlockAfter = DEFAULT_BLOCK_AFTER;
+
+    @Property(name = "packetInBlockTimeout", intValue = DEFAULT_BLOCK_TIMEOUT,
+            label = "Seconds the rule dropping packets of a blocked port stays on the switch")
+    private int packetInBlockTimeout = DEFAULT_BLOCK_TIMEOUT;
+
+    private ApplicationId appId;
+
+    private PacketInLimiter limiter;
+
+    private ScheduledExecutorService blockExecutor;
+
     private PacketProviderService providerService;
 
     private final InternalPacketProvider listener = new InternalPacketProvider();
 
+    private final InternalPacketInFilter filter = new InternalPacketInFilter();
+
+    private final InternalSwitchListener switchListener = new InternalSwitchListener();
+
     /**
      * Creates an OpenFlow link provider.
      */
@@ -79,20 +150,75 @@ public class OpenFlowPacketProvider extends AbstractProvider implements PacketPr
     }
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        appId = coreService.registerApplication("org.onosproject.provider.openflow.packet");
+        limiter = new PacketInLimiter(metricsService);
+        blockExecutor = newSingleThreadScheduledExecutor(groupedThreads("onos/of", "packet-in-block"));
+        modified(context);
         providerService = providerRegistry.register(this);
         controller.addPacketListener(20, listener);
+        controller.addPacketInFilter(filter);
+        controller.addListener(switchListener);
         log.info("Started");
     }
 
     @Deactivate
-    public void deactivate() {
+    public void deactivate(ComponentContext context) {
+        cfgService.unregisterProperties(getClass(), false);
         providerRegistry.unregister(this);
+        controller.removeListener(switchListener);
+        controller.removePacketInFilter(filter);
         controller.removePacketListener(listener);
         providerService = null;
+        blockExecutor.shutdownNow();
+        flowRuleService.removeFlowRulesById(appId);
+        limiter.removeAll();
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context != null) {
+            Dictionary<?, ?> properties = context.getProperties();
+            int newDeviceRate;
+            int newPortRate;
+            int newBlockAfter;
+            int newBlockTimeout;
+            try {
+                String s = get(properties, "packetInDeviceRate");
+                newDeviceRate = isNullOrEmpty(s) ? packetInDeviceRate : Integer.parseInt(s.trim());
+
+                s = get(properties, "packetInPortRate");
+                newPortRate = isNullOrEmpty(s) ? packetInPortRate : Integer.parseInt(s.trim());
+
+                s = get(properties, "packetInBlockAfter");
+                newBlockAfter = isNullOrEmpty(s) ? packetInBlockAfter : Integer.parseInt(s.trim());
+
+                s = get(properties, "packetInBlockTimeout");
+                newBlockTimeout = isNullOrEmpty(s) ? packetInBlockTimeout : Integer.parseInt(s.trim());
+            } catch (NumberFormatException | ClassCastException e) {
+                log.warn("Ignoring invalid packet-in limits", e);
+                return;
+            }
+
+            if (newDeviceRate < 0 || newPortRate < 0 || newBlockAfter < 0 || newBlockTimeout <= 0) {
+                log.warn("Ignoring invalid packet-in limits: {}/s per device, {}/s per port, "
+                                 + "block after {}s for {}s",
+                         newDeviceRate, newPortRate, newBlockAfter, newBlockTimeout);
+                return;
+            }
+            packetInDeviceRate = newDeviceRate;
+            packetInPortRate = newPortRate;
+            packetInBlockAfter = newBlockAfter;
+            packetInBlockTimeout = newBlockTimeout;
+        }
+        limiter.configure(packetInDeviceRate, packetInPortRate, packetInBlockAfter, packetInBlockTimeout);
+        log.info("Settings: packetInDeviceRate={}, packetInPortRate={}, packetInBlockAfter={}, "
+                         + "packetInBlockTimeout={}",
+                 packetInDeviceRate, packetInPortRate, packetInBlockAfter, packetInBlockTimeout);
+    }
+
     @Override
     public void emit(OutboundPacket packet) {
         DeviceId devId = packet.sendThrough();
@@ -144,6 +270,26 @@ public class OpenFlowPacketProvider extends AbstractProvider implements PacketPr
                 .build();
     }
 
+    // Pushes a rule dropping all packets received on the port, and removes
+    // it once the port has been blocked for the configured time. An idle
+    // timeout would keep the rule as long as the storm lasts.
+    private void blockPort(ConnectPoint port) {
+        int timeout = packetInBlockTimeout;
+        log.warn("Port {} stays over its packet-in limit; dropping its packets on the switch for {}s",
+                 port, timeout);
+        FlowRule rule = new DefaultFlowRule(port.deviceId(),
+                                            DefaultTrafficSelector.builder().matchInPort(port.port()).build(),
+                                            DefaultTrafficTreatment.builder().drop().build(),
+                                            BLOCK_PRIORITY, appId, 0, true);
+        flowRuleService.applyFlowRules(rule);
+        blockExecutor.schedule(() -> unblockPort(port, rule), timeout, TimeUnit.SECONDS);
+    }
+
+    private void unblockPort(ConnectPoint port, FlowRule rule) {
+        log.info("Removing the rule dropping packets of port {}", port);
+        flowRuleService.removeFlowRules(rule);
+    }
+
     /**
      * Internal Packet Provider implementation.
      *
@@ -153,10 +299,10 @@ public class OpenFlowPacketProvider extends AbstractProvider implements PacketPr
         @Override
         public void handlePacket(OpenFlowPacketContext pktCtx) {
             DeviceId id = DeviceId.deviceId(Dpid.uri(pktCtx.dpid().value()));
+            ConnectPoint ingress = new ConnectPoint(id, PortNumber.portNumber(pktCtx.inPort()));
 
             DefaultInboundPacket inPkt = new DefaultInboundPacket(
-                    new ConnectPoint(id, PortNumber.portNumber(pktCtx.inPort())),
-                    pktCtx.parsed(), ByteBuffer.wrap(pktCtx.unparsed()));
+                    ingress, pktCtx.parsed(), ByteBuffer.wrap(pktCtx.unparsed()));
 
             DefaultOutboundPacket outPkt = null;
             if (!pktCtx.isBuffered()) {
@@ -172,5 +318,61 @@ public class OpenFlowPacketProvider extends AbstractProvider implements PacketPr
 
     }
 
+    /**
+     * Admits packet-ins within the configured limits.
+     */
+    private class InternalPacketInFilter implements PacketInFilter {
+
+        @Override
+        public boolean admit(Dpid dpid, int inPort) {
+            if (!limiter.isEnabled()) {
+                return true;
+            }
+            ConnectPoint ingress = new ConnectPoint(DeviceId.deviceId(Dpid.uri(dpid)),
+                                                    PortNumber.portNumber(inPort));
+            switch (limiter.admit(ingress, System.nanoTime())) {
+                case BLOCK:
+                    // Off the I/O thread the filter is called on
+                    blockExecutor.execute(() -> blockPort(ingress));
+                    return false;
+                case DROP:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Discards the packet-in limiter state of removed switches and ports.
+     */
+    private class InternalSwitchListener implements OpenFlowSwitchListener {
+
+        @Override
+        public void switchAdded(Dpid dpid) {
+        }
+
+        @Override
+        public void switchRemoved(Dpid dpid) {
+            limiter.removeDevice(DeviceId.deviceId(Dpid.uri(dpid)));
+        }
+
+        @Override
+        public void switchChanged(Dpid dpid) {
+        }
+
+        @Override
+        public void portChanged(Dpid dpid, OFPortStatus status) {
+            if (status.getReason() == OFPortReason.DELETE) {
+                PortNumber port = PortNumber.portNumber(status.getDesc().getPortNo().getPortNumber());
+                limiter.removePort(new ConnectPoint(DeviceId.deviceId(Dpid.uri(dpid)), port));
+            }
+        }
+
+        @Override
+        public void receivedRoleReply(Dpid dpid, RoleState requested, RoleState response) {
+        }
+    }
+
 
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.of.packet.impl;
+
+import com.codahale.metrics.Meter;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Token bucket admission control for packet-ins, per device and per
+ * ingress port.
+ * <p>
+ * Each limit allows a burst of one second worth of packet-ins. A port whose
+ * packet-ins exceed its limit during a number of consecutive one second
+ * windows is reported as one to block on the switch.
+ * </p>
+ * <p>
+ * Dropped packet-ins are counted with the metrics service under the
+ * {@value #COMPONENT} component, with the ingress connect point as the
+ * feature; feature {@value #ALL} counts drops across all ports.
+ * </p>
+ */
+final class PacketInLimiter {
+
+    static final String COMPONENT = "OpenFlowPacketInLimiter";
+    static final String DROPPED = "dropped";
+    static final String ALL = "all";
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Outcome of the admission of a packet-in.
+     */
+    enum Verdict {
+        /**
+         * The packet-in is within its limits.
+         */
+        ADMIT,
+
+        /**
+         * The packet-in is over a limit and must be dropped.
+         */
+        DROP,
+
+        /**
+         * The packet-in must be dropped, and its ingress port has stayed
+         * over its limit long enough to be blocked on the switch.
+         */
+        BLOCK
+    }
+
+    private final MetricsService metricsService;
+    private final MetricsComponent component;
+    private final Meter droppedAll;
+    private final Map<ConnectPoint, Meter> dropped = new ConcurrentHashMap<>();
+
+    private final Map<DeviceId, TokenBucket> devices = new ConcurrentHashMap<>();
+    private final Map<ConnectPoint, PortState> ports = new ConcurrentHashMap<>();
+
+    private volatile int deviceRate;
+    private volatile int portRate;
+    private volatile int blockAfter;
+    private volatile long blockTimeout;
+
+    /**
+     * Creates a limiter that admits all packet-ins until configured.
+     *
+     * @param metricsService metrics service
+     */
+    PacketInLimiter(MetricsService metricsService) {
+        this.metricsService = metricsService;
+        this.component = metricsService.registerComponent(COMPONENT);
+        this.droppedAll = metricsService.createMeter(component, component.registerFeature(ALL), DROPPED);
+    }
+
+    /**
+     * Sets the limits, discarding the current bucket state.
+     *
+     * @param deviceRate packet-ins per second admitted per device; 0 for no limit
+     * @param portRate packet-ins per second admitted per ingress port; 0 for no limit
+     * @param blockAfter consecutive seconds over its limit after which a port
+     *                   is blocked; 0 to never block ports
+     * @param blockTimeout seconds a port stays blocked
+     */
+    void configure(int deviceRate, int portRate, int blockAfter, int blockTimeout) {
+        checkArgument(deviceRate >= 0 && portRate >= 0, "Rates must not be negative");
+        checkArgument(blockAfter >= 0 && blockTimeout > 0, "Invalid port blocking settings");
+        this.deviceRate = deviceRate;
+        this.portRate = portRate;
+        this.blockAfter = blockAfter;
+        this.blockTimeout = TimeUnit.SECONDS.toNanos(blockTimeout);
+        devices.clear();
+        ports.clear();
+    }
+
+    /**
+     * Returns whether any limit is set.
+     *
+     * @return true if packet-ins may be dropped
+     */
+    boolean isEnabled() {
+        return deviceRate > 0 || portRate > 0;
+    }
+
+    /**
+     * Decides whether a packet-in is admitted.
+     *
+     * @param ingress connect point the packet-in was received on
+     * @param now current time in nanoseconds, as from {@link System#nanoTime()}
+     * @return admission verdict
+     */
+    Verdict admit(ConnectPoint ingress, long now) {
+        if (!isEnabled()) {
+            return Verdict.ADMIT;
+        }
+        PortState port = ports.computeIfAbsent(ingress, cp -> new PortState(now));
+        boolean overPort = port.bucket != null && !port.bucket.tryAcquire(now);
+        boolean overDevice = !overPort && deviceRate > 0
+                && !devices.computeIfAbsent(ingress.deviceId(), id -> new TokenBucket(deviceRate, now))
+                        .tryAcquire(now);
+        boolean block = port.record(now, overPort);
+        if (!overPort && !overDevice) {
+            return Verdict.ADMIT;
+        }
+        droppedAll.mark();
+        dropped.computeIfAbsent(ingress, cp -> metricsService.createMeter(
+                component, component.registerFeature(cp.toString()), DROPPED)).mark();
+        return block ? Verdict.BLOCK : Verdict.DROP;
+    }
+
+    /**
+     * Discards the state and metrics kept for a device and its ports.
+     *
+     * @param deviceId device identifier
+     */
+    void removeDevice(DeviceId deviceId) {
+        devices.remove(deviceId);
+        ports.keySet().removeIf(cp -> cp.deviceId().equals(deviceId));
+        dropped.keySet().stream()
+                .filter(cp -> cp.deviceId().equals(deviceId))
+                .forEach(this::removeDropped);
+    }
+
+    /**
+     * Discards the state and metrics kept for an ingress port.
+     *
+     * @param port connect point of the port
+     */
+    void removePort(ConnectPoint port) {
+        ports.remove(port);
+        removeDropped(port);
+    }
+
+    /**
+     * Removes all metrics registered so far from the metrics service.
+     */
+    void removeAll() {
+        dropped.keySet().forEach(this::removeDropped);
+        metricsService.removeMetric(component, component.registerFeature(ALL), DROPPED);
+    }
+
+    private void removeDropped(ConnectPoint cp) {
+        if (dropped.remove(cp) != null) {
+            metricsService.removeMetric(component, component.registerFeature(cp.toString()), DROPPED);
+        }
+    }
+
+    // Token bucket holding up to one second worth of tokens.
+    private static final class TokenBucket {
+
+        private final double perNano;
+        private final double capacity;
+        private double tokens;
+        private long last;
+
+        private TokenBucket(int perSecond, long now) {
+            this.perNano = perSecond / (double) WINDOW;
+            this.capacity = perSecond;
+            this.tokens = capacity;
+            this.last = now;
+        }
+
+        private synchronized boolean tryAcquire(long now) {
+            tokens = Math.min(capacity, tokens + (now - last) * perNano);
+            last = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    // Admission state of a single ingress port.
+    private final class PortState {
+
+        private final TokenBucket bucket;
+        private long windowStart;
+        private boolean overInWindow;
+        private int overWindows;
+        private long blockedUntil;
+
+        private PortState(long now) {
+            this.bucket = portRate > 0 ? new TokenBucket(portRate, now) : null;
+            this.windowStart = now;
+            this.blockedUntil = now;
+        }
+
+        // Tracks consecutive windows over the port limit; true if the port
+        // has to be blocked now.
+        private synchronized boolean record(long now, boolean overLimit) {
+            if (now - windowStart >= WINDOW) {
+                boolean consecutive = now - windowStart < 2 * WINDOW;
+                overWindows = consecutive && overInWindow ? overWindows + 1 : 0;
+                windowStart = now;
+                overInWindow = false;
+            }
+            overInWindow |= overLimit;
+            if (overLimit && blockAfter > 0 && overWindows >= blockAfter && now - blockedUntil >= 0) {
+                blockedUntil = now + blockTimeout;
+                overWindows = 0;
+                return true;
+            }
+            return false;
+        }
+    }
+}
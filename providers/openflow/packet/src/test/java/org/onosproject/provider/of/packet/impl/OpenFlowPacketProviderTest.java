@@ -20,11 +20,15 @@ import com.google.common.collect.Sets;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.ARP;
 import org.onlab.packet.Ethernet;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.core.CoreServiceAdapter;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRuleServiceAdapter;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.flow.instructions.Instruction;
 import org.onosproject.net.flow.instructions.Instructions;
@@ -42,6 +46,7 @@ import org.onosproject.openflow.controller.OpenFlowEventListener;
 import org.onosproject.openflow.controller.OpenFlowPacketContext;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.OpenFlowSwitchListener;
+import org.onosproject.openflow.controller.PacketInFilter;
 import org.onosproject.openflow.controller.PacketListener;
 import org.onosproject.openflow.controller.RoleState;
 import org.projectfloodlight.openflow.protocol.OFFactory;
@@ -99,14 +104,20 @@ public class OpenFlowPacketProviderTest {
     public void startUp() {
         provider.providerRegistry = registry;
         provider.controller = controller;
-        provider.activate();
+        provider.cfgService = new ComponentConfigAdapter();
+        provider.coreService = new CoreServiceAdapter();
+        provider.flowRuleService = new FlowRuleServiceAdapter();
+        provider.metricsService = new MetricsManager();
+        provider.activate(null);
         assertNotNull("listener should be registered", registry.listener);
+        assertNotNull("packet-in filter should be set", controller.filter);
     }
 
     @After
     public void teardown() {
-        provider.deactivate();
+        provider.deactivate(null);
         assertNull("listeners shouldn't be registered", registry.listener);
+        assertNull("packet-in filter shouldn't be set", controller.filter);
         provider.controller = null;
         provider.providerRegistry = null;
     }
@@ -248,6 +259,8 @@ public class OpenFlowPacketProviderTest {
     private class TestController implements OpenFlowController {
 
         PacketListener pktListener;
+        PacketInFilter filter;
+        OpenFlowSwitchListener switchListener;
         OpenFlowSwitch current;
 
         @Override
@@ -287,10 +300,14 @@ public class OpenFlowPacketProviderTest {
 
         @Override
         public void addListener(OpenFlowSwitchListener listener) {
+            switchListener = listener;
         }
 
         @Override
         public void removeListener(OpenFlowSwitchListener listener) {
+            if (switchListener == listener) {
+                switchListener = null;
+            }
         }
 
         @Override
@@ -302,6 +319,18 @@ public class OpenFlowPacketProviderTest {
         public void removePacketListener(PacketListener listener) {
         }
 
+        @Override
+        public void addPacketInFilter(PacketInFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public void removePacketInFilter(PacketInFilter filter) {
+            if (this.filter == filter) {
+                this.filter = null;
+            }
+        }
+
         @Override
         public void addEventListener(OpenFlowEventListener listener) {
         }
@@ -340,7 +369,8 @@ public class OpenFlowPacketProviderTest {
         }
 
         @Override
-        public void sendMsg(List<OFMessage> msgs) {
+        public boolean sendMsg(List<OFMessage> msgs) {
+            return false;
         }
 
         @Override
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.of.packet.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onosproject.net.ConnectPoint;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.provider.of.packet.impl.PacketInLimiter.Verdict.ADMIT;
+import static org.onosproject.provider.of.packet.impl.PacketInLimiter.Verdict.BLOCK;
+import static org.onosproject.provider.of.packet.impl.PacketInLimiter.Verdict.DROP;
+
+public class PacketInLimiterTest {
+
+    private static final ConnectPoint CP1 = ConnectPoint.deviceConnectPoint("of:1/1");
+    private static final ConnectPoint CP2 = ConnectPoint.deviceConnectPoint("of:1/2");
+    private static final ConnectPoint CP3 = ConnectPoint.deviceConnectPoint("of:2/1");
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final MetricsManager metrics = new MetricsManager();
+    private PacketInLimiter limiter;
+
+    @Before
+    public void setUp() {
+        limiter = new PacketInLimiter(metrics);
+    }
+
+    @Test
+    public void unlimited() {
+        assertFalse(limiter.isEnabled());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ADMIT, limiter.admit(CP1, 0));
+        }
+    }
+
+    @Test
+    public void portLimit() {
+        limiter.configure(0, 10, 0, 60);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ADMIT, limiter.admit(CP1, 0));
+        }
+        assertEquals(DROP, limiter.admit(CP1, 0));
+        assertEquals("other ports have their own limit", ADMIT, limiter.admit(CP2, 0));
+        assertEquals("tokens refill over time", ADMIT, limiter.admit(CP1, SECOND / 10));
+        assertEquals(1, metrics.getMeters((name, m) -> name.startsWith(PacketInLimiter.COMPONENT)
+                && name.contains(CP1.toString())).values().iterator().next().getCount());
+    }
+
+    @Test
+    public void deviceLimit() {
+        limiter.configure(10, 0, 0, 60);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ADMIT, limiter.admit(CP1, 0));
+            assertEquals(ADMIT, limiter.admit(CP2, 0));
+        }
+        assertEquals(DROP, limiter.admit(CP1, 0));
+        assertEquals(DROP, limiter.admit(CP2, 0));
+        assertEquals("other devices have their own limit", ADMIT, limiter.admit(CP3, 0));
+    }
+
+    @Test
+    public void blockAfterSustainedOverload() {
+        limiter.configure(0, 10, 2, 60);
+        long now = 0;
+        int blocked = 0;
+        // Twice the limit for five seconds
+        for (int i = 0; i < 100; i++) {
+            now += SECOND / 20;
+            if (limiter.admit(CP1, now) == BLOCK) {
+                blocked++;
+            }
+        }
+        assertEquals("port is blocked once per block timeout", 1, blocked);
+    }
+
+    @Test
+    public void noBlockForShortBursts() {
+        limiter.configure(0, 10, 2, 60);
+        long now = 0;
+        for (int second = 0; second < 10; second++) {
+            // A burst over the limit every other second only
+            int count = second % 2 == 0 ? 20 : 5;
+            for (int i = 0; i < count; i++) {
+                assertEquals(i < 10 ? ADMIT : DROP, limiter.admit(CP1, now));
+            }
+            now += SECOND;
+        }
+    }
+
+    @Test
+    public void removeDevice() {
+        limiter.configure(0, 1, 0, 60);
+        assertTrue(limiter.isEnabled());
+        for (ConnectPoint cp : new ConnectPoint[] {CP1, CP2, CP3}) {
+            assertEquals(ADMIT, limiter.admit(cp, 0));
+            assertEquals(DROP, limiter.admit(cp, 0));
+        }
+        assertEquals(3, dropMeters());
+
+        limiter.removeDevice(CP1.deviceId());
+        assertEquals("meters of the device's ports are removed", 1, dropMeters());
+        assertEquals("state of the device's ports is discarded", ADMIT, limiter.admit(CP1, 0));
+        assertEquals("other devices keep their state", DROP, limiter.admit(CP3, 0));
+
+        limiter.removePort(CP3);
+        assertEquals(0, dropMeters());
+        assertEquals(ADMIT, limiter.admit(CP3, 0));
+    }
+
+    private int dropMeters() {
+        return metrics.getMeters((name, m) -> name.startsWith(PacketInLimiter.COMPONENT)
+                && !name.contains(PacketInLimiter.ALL)).size();
+    }
+}
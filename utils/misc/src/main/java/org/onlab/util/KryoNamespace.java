@@ -28,6 +28,7 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.pool.KryoCallback;
 import com.esotericsoftware.kryo.pool.KryoFactory;
 import com.esotericsoftware.kryo.pool.KryoPool;
@@ -58,6 +59,20 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
      */
     public static final int INITIAL_ID = 11;
 
+    /**
+     * Largest buffer a thread keeps around for reuse between serializations.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Per-thread reusable output buffer used to serialize into byte arrays.
+     */
+    private static final ThreadLocal<PooledOutput> OUTPUT = new ThreadLocal<PooledOutput>() {
+        @Override
+        protected PooledOutput initialValue() {
+            return new PooledOutput();
+        }
+    };
 
     private final KryoPool pool = new KryoPool.Builder(this)
                                         .softReferences()
@@ -226,24 +241,41 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
 
     /**
      * Serializes given object to byte array using Kryo instance in pool.
+     * <p>
+     * The object is written into an output buffer owned by the calling thread,
+     * which is reused across calls; the only allocation is the returned array.
      *
      * @param obj Object to serialize
-     * @param bufferSize maximum size of serialized bytes
+     * @param bufferSize initial size of the output buffer, if one has to be allocated
      * @return serialized bytes
      */
     public byte[] serialize(final Object obj, final int bufferSize) {
-        ByteBufferOutput out = new ByteBufferOutput(bufferSize, MAX_BUFFER_SIZE);
+        PooledOutput pooled = OUTPUT.get();
+        if (pooled.inUse) {
+            // re-entrant call from within a serializer; use a private buffer
+            return serialize(obj, new Output(bufferSize, MAX_BUFFER_SIZE));
+        }
+        pooled.inUse = true;
         try {
-            Kryo kryo = borrow();
-            try {
-                kryo.writeClassAndObject(out, obj);
-                out.flush();
-                return out.toBytes();
-            } finally {
-                release(kryo);
+            pooled.output.clear();
+            return serialize(obj, pooled.output);
+        } finally {
+            if (pooled.output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+                // do not pin an oversized buffer to this thread
+                pooled.output = new Output(DEFAULT_BUFFER_SIZE, MAX_BUFFER_SIZE);
             }
+            pooled.inUse = false;
+        }
+    }
+
+    private byte[] serialize(final Object obj, final Output out) {
+        Kryo kryo = borrow();
+        try {
+            kryo.writeClassAndObject(out, obj);
+            out.flush();
+            return out.toBytes();
         } finally {
-            out.release();
+            release(kryo);
         }
     }
 
@@ -434,4 +466,12 @@ public final class KryoNamespace implements KryoFactory, KryoPool {
                     .toString();
         }
     }
+
+    /**
+     * Thread confined output buffer and its re-entrancy guard.
+     */
+    private static final class PooledOutput {
+        private Output output = new Output(DEFAULT_BUFFER_SIZE, MAX_BUFFER_SIZE);
+        private boolean inUse;
+    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+/**
+ * What to do with an outbound message when the connections to its
+ * destination have more data queued than the high water mark.
+ */
+public enum BackpressurePolicy {
+    /**
+     * Queues the message regardless of how much is already queued.
+     */
+    UNBOUNDED,
+
+    /**
+     * Blocks the sender until the queue drains below the low water mark,
+     * failing the send if that does not happen in time.
+     */
+    BLOCK,
+
+    /**
+     * Fails the send immediately.
+     */
+    FAIL,
+
+    /**
+     * Silently drops messages of low priority types and blocks the sender
+     * for all others.
+     */
+    DROP_LOW_PRIORITY
+}
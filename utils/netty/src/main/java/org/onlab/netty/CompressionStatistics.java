@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Running totals of payload compression for one message type.
+ */
+public final class CompressionStatistics {
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    void record(int uncompressed, int compressed) {
+        messages.incrementAndGet();
+        uncompressedBytes.addAndGet(uncompressed);
+        compressedBytes.addAndGet(compressed);
+    }
+
+    /**
+     * Returns the number of messages sent compressed.
+     *
+     * @return number of compressed messages
+     */
+    public long messages() {
+        return messages.get();
+    }
+
+    /**
+     * Returns the total payload size of the compressed messages before compression.
+     *
+     * @return uncompressed bytes
+     */
+    public long uncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    /**
+     * Returns the total payload size of the compressed messages after compression.
+     *
+     * @return compressed bytes
+     */
+    public long compressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Returns the ratio of uncompressed to compressed bytes.
+     *
+     * @return compression ratio, or 1 if nothing was compressed
+     */
+    public double ratio() {
+        long compressed = compressedBytes.get();
+        return compressed == 0 ? 1.0 : (double) uncompressedBytes.get() / compressed;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("messages", messages())
+                .add("uncompressedBytes", uncompressedBytes())
+                .add("compressedBytes", compressedBytes())
+                .toString();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Packs several messages bound for the same endpoint into the payload of a
+ * single message, and unpacks them on the receiving side.
+ * <p>
+ * All messages in a batch share the sender of the enclosing message, so only
+ * the id, type and payload of each are carried.
+ * </p>
+ */
+final class MessageBatch {
+
+    private MessageBatch() {
+    }
+
+    /**
+     * Encodes the given messages into a batch payload.
+     *
+     * @param messages messages to pack
+     * @return batch payload
+     */
+    static byte[] encode(List<InternalMessage> messages) {
+        byte[][] types = new byte[messages.size()][];
+        int length = 4;
+        for (int i = 0; i < types.length; i++) {
+            InternalMessage message = messages.get(i);
+            types[i] = message.type().getBytes(Charsets.UTF_8);
+            length += 8 + 4 + types[i].length + 4 + message.payload().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(types.length);
+        for (int i = 0; i < types.length; i++) {
+            InternalMessage message = messages.get(i);
+            buffer.putLong(message.id());
+            buffer.putInt(types[i].length);
+            buffer.put(types[i]);
+            buffer.putInt(message.payload().length);
+            buffer.put(message.payload());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the messages packed in a batch payload.
+     *
+     * @param sender sender of the batch
+     * @param payload batch payload
+     * @return messages in the order they were packed
+     */
+    static List<InternalMessage> decode(Endpoint sender, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int count = buffer.getInt();
+        ImmutableList.Builder<InternalMessage> messages = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            long id = buffer.getLong();
+            byte[] type = new byte[buffer.getInt()];
+            buffer.get(type);
+            byte[] messagePayload = new byte[buffer.getInt()];
+            buffer.get(messagePayload);
+            messages.add(new InternalMessage(id, sender, new String(type, Charsets.UTF_8), messagePayload));
+        }
+        return messages.build();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Compresses message payloads, wrapping the original message type and
+ * payload into the payload of a compressed message, and restores them on
+ * the receiving side.
+ * <p>
+ * Compression favors speed over ratio; serialized store state is repetitive
+ * enough that the fastest deflate level already shrinks it considerably.
+ * </p>
+ */
+final class MessageCompression {
+
+    // Type length, type and uncompressed payload length precede the compressed bytes.
+    private static final int HEADER_LENGTH = 4 + 4;
+
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private MessageCompression() {
+    }
+
+    /**
+     * Compresses the type and payload of the given message.
+     *
+     * @param message message to compress
+     * @return compressed payload, or null if compression does not reduce the message size
+     */
+    static byte[] compress(InternalMessage message) {
+        byte[] type = message.type().getBytes(Charsets.UTF_8);
+        byte[] payload = message.payload();
+        int limit = HEADER_LENGTH + type.length + payload.length;
+        byte[] output = new byte[limit];
+        ByteBuffer buffer = ByteBuffer.wrap(output);
+        buffer.putInt(type.length);
+        buffer.put(type);
+        buffer.putInt(payload.length);
+
+        Deflater deflater = DEFLATERS.get();
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            int offset = buffer.position();
+            while (!deflater.finished() && offset < limit) {
+                offset += deflater.deflate(output, offset, limit - offset);
+            }
+            return deflater.finished() && offset < limit ? Arrays.copyOf(output, offset) : null;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Restores the message carried by a compressed message.
+     *
+     * @param message compressed message
+     * @return original message
+     * @throws DataFormatException if the compressed payload is corrupt
+     */
+    static InternalMessage decompress(InternalMessage message) throws DataFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(message.payload());
+        byte[] type = new byte[buffer.getInt()];
+        buffer.get(type);
+        byte[] payload = new byte[buffer.getInt()];
+
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(message.payload(), buffer.position(), buffer.remaining());
+            int offset = 0;
+            while (offset < payload.length) {
+                int inflated = inflater.inflate(payload, offset, payload.length - offset);
+                // No progress means the stream ended early, ran out of input or
+                // asks for a preset dictionary; none of these can recover.
+                if (inflated == 0) {
+                    throw new DataFormatException(inflater.needsDictionary()
+                            ? "Compressed payload requires a preset dictionary"
+                            : "Truncated compressed payload");
+                }
+                offset += inflated;
+            }
+        } finally {
+            inflater.reset();
+        }
+        return new InternalMessage(message.id(), message.sender(), new String(type, Charsets.UTF_8), payload);
+    }
+}
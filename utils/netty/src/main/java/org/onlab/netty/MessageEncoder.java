@@ -18,9 +18,10 @@ package org.onlab.netty;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpAddress.Version;
@@ -32,9 +33,17 @@ import com.google.common.base.Charsets;
 
 /**
  * Encode InternalMessage out into a byte buffer.
+ * <p>
+ * Each message is written into a single buffer of exactly its encoded size,
+ * obtained from the channel allocator. That buffer is direct and pooled, so
+ * the transport writes it out without copying it again.
+ * </p>
  */
 @Sharable
-public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
+public class MessageEncoder extends MessageToMessageEncoder<InternalMessage> {
+
+    // Message id, address version and sender port, and the type and payload lengths.
+    private static final int FIXED_HEADER_LENGTH = 8 + 1 + 4 + 4 + 4;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -42,39 +51,65 @@ public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
     protected void encode(
             ChannelHandlerContext context,
             InternalMessage message,
-            ByteBuf out) throws Exception {
-
-        // write message id
-        out.writeLong(message.id());
+            List<Object> messages) throws Exception {
 
         Endpoint sender = message.sender();
-
         IpAddress senderIp = sender.host();
-        if (senderIp.version() == Version.INET) {
-            out.writeByte(0);
-        } else {
-            out.writeByte(1);
-        }
-        out.writeBytes(senderIp.toOctets());
+        byte[] messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
+        byte[] payload = message.payload();
 
-        // write sender port
-        out.writeInt(sender.port());
+        ByteBuf out = context.alloc().ioBuffer(encodedLength(senderIp, messageTypeBytes, payload));
+        boolean encoded = false;
+        try {
+            // write message id
+            out.writeLong(message.id());
 
-        byte[] messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
+            if (senderIp.version() == Version.INET) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(1);
+            }
+            out.writeBytes(senderIp.toOctets());
 
-        // write length of message type
-        out.writeInt(messageTypeBytes.length);
+            // write sender port
+            out.writeInt(sender.port());
 
-        // write message type bytes
-        out.writeBytes(messageTypeBytes);
+            // write length of message type
+            out.writeInt(messageTypeBytes.length);
 
-        byte[] payload = message.payload();
+            // write message type bytes
+            out.writeBytes(messageTypeBytes);
+
+            // write payload length
+            out.writeInt(payload.length);
 
-        // write payload length
-        out.writeInt(payload.length);
+            // write payload.
+            out.writeBytes(payload);
+
+            messages.add(out);
+            encoded = true;
+        } finally {
+            if (!encoded) {
+                out.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the given message is encoded into.
+     *
+     * @param message message
+     * @return encoded size in bytes
+     */
+    static int encodedLength(InternalMessage message) {
+        return encodedLength(message.sender().host(), message.type().getBytes(Charsets.UTF_8), message.payload());
+    }
 
-        // write payload.
-        out.writeBytes(payload);
+    private static int encodedLength(IpAddress senderIp, byte[] messageTypeBytes, byte[] payload) {
+        return FIXED_HEADER_LENGTH
+                + IpAddress.byteLength(senderIp.version())
+                + messageTypeBytes.length
+                + payload.length;
     }
 
     @Override
@@ -28,6 +28,7 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.epoll.EpollSocketChannel;
@@ -39,15 +40,22 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.zip.DataFormatException;
 
 import org.apache.commons.pool.KeyedPoolableObjectFactory;
 import org.apache.commons.pool.impl.GenericKeyedObjectPool;
@@ -57,10 +65,20 @@ import org.onosproject.store.cluster.messaging.MessagingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.util.Tools.groupedThreads;
 
 /**
  * Implementation of MessagingService based on <a href="http://netty.io/">Netty</a> framework.
@@ -70,6 +88,17 @@ public class NettyMessagingManager implements MessagingService {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private static final String REPLY_MESSAGE_TYPE = "NETTY_MESSAGING_REQUEST_REPLY";
+    private static final String BATCH_MESSAGE_TYPE = "NETTY_MESSAGING_BATCH";
+    private static final String COMPRESSED_MESSAGE_TYPE = "NETTY_MESSAGING_COMPRESSED";
+    private static final String CAPABILITIES_MESSAGE_TYPE = "NETTY_MESSAGING_CAPABILITIES";
+    // Wrapper message types this instance restores before dispatching.
+    private static final Set<String> LOCAL_CAPABILITIES = ImmutableSet.of(COMPRESSED_MESSAGE_TYPE);
+    private static final Joiner CAPABILITY_JOINER = Joiner.on(',');
+    private static final Splitter CAPABILITY_SPLITTER = Splitter.on(',').omitEmptyStrings();
+
+    private static final int CLIENT_HIGH_WATER_MARK = 10 * 64 * 1024;
+    private static final int CLIENT_LOW_WATER_MARK = 10 * 32 * 1024;
+    private static final long BLOCK_TIMEOUT_MILLIS = 1000;
 
     private final Endpoint localEp;
     private final ConcurrentMap<String, Consumer<InternalMessage>> handlers = new ConcurrentHashMap<>();
@@ -89,6 +118,30 @@ public class NettyMessagingManager implements MessagingService {
     private final GenericKeyedObjectPool<Endpoint, Channel> channels
             = new GenericKeyedObjectPool<Endpoint, Channel>(new OnosCommunicationChannelFactory());
 
+    private final ConcurrentMap<Endpoint, OutboundBatch> batches = new ConcurrentHashMap<>();
+    // Batching is disabled while the batch size is zero.
+    private volatile int batchSizeBytes = 0;
+    private volatile long batchWindowMicros = 0;
+    // Flushes batches whose window has passed. Flushing may have to connect
+    // to the peer, which must not happen on a Netty I/O thread.
+    private ScheduledExecutorService batchTimer;
+
+    private final ConcurrentMap<String, CompressionStatistics> compressionStats = new ConcurrentHashMap<>();
+    // Compression is disabled while the threshold is zero.
+    private volatile int compressionThresholdBytes = 0;
+
+    // Wrapper message types each peer has advertised. Peers that do not answer
+    // the probe, such as those running earlier releases, advertise nothing.
+    // Entries are dropped when a connection to the peer closes, as the peer
+    // may come back running a different release.
+    private final ConcurrentMap<Endpoint, CompletableFuture<Set<String>>> peerCapabilities =
+            new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Endpoint, OutboundQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong droppedMessages = new AtomicLong(0);
+    private volatile BackpressurePolicy backpressurePolicy = BackpressurePolicy.UNBOUNDED;
+    private volatile Set<String> lowPriorityTypes = ImmutableSet.of();
+
     private EventLoopGroup serverGroup;
     private EventLoopGroup clientGroup;
     private Class<? extends ServerChannel> serverChannelClass;
@@ -96,14 +149,21 @@ public class NettyMessagingManager implements MessagingService {
 
     private void initEventLoopGroup() {
         // try Epoll first and if that does work, use nio.
-        try {
-            clientGroup = new EpollEventLoopGroup();
-            serverGroup = new EpollEventLoopGroup();
-            serverChannelClass = EpollServerSocketChannel.class;
-            clientChannelClass = EpollSocketChannel.class;
-            return;
-        } catch (Throwable e) {
-            log.warn("Failed to initialize native (epoll) transport. Reason: {}. Proceeding with nio.", e.getMessage());
+        if (Epoll.isAvailable()) {
+            try {
+                clientGroup = new EpollEventLoopGroup();
+                serverGroup = new EpollEventLoopGroup();
+                serverChannelClass = EpollServerSocketChannel.class;
+                clientChannelClass = EpollSocketChannel.class;
+                log.info("Using native (epoll) transport");
+                return;
+            } catch (Throwable e) {
+                log.warn("Failed to initialize native (epoll) transport. Reason: {}. Proceeding with nio.",
+                         e.getMessage());
+                shutdownEventLoopGroups();
+            }
+        } else {
+            log.info("Native (epoll) transport is not available. Proceeding with nio.");
         }
         clientGroup = new NioEventLoopGroup();
         serverGroup = new NioEventLoopGroup();
@@ -133,13 +193,26 @@ public class NettyMessagingManager implements MessagingService {
         channels.setTestOnBorrow(true);
         channels.setTestOnReturn(true);
         initEventLoopGroup();
+        batchTimer = Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/messaging", "batch-flush"));
         startAcceptingConnections();
     }
 
     public void deactivate() throws Exception {
+        batchTimer.shutdownNow();
+        batches.values().forEach(OutboundBatch::flush);
         channels.close();
-        serverGroup.shutdownGracefully();
-        clientGroup.shutdownGracefully();
+        shutdownEventLoopGroups();
+    }
+
+    private void shutdownEventLoopGroups() {
+        if (serverGroup != null) {
+            serverGroup.shutdownGracefully();
+            serverGroup = null;
+        }
+        if (clientGroup != null) {
+            clientGroup.shutdownGracefully();
+            clientGroup = null;
+        }
     }
 
     /**
@@ -150,6 +223,90 @@ public class NettyMessagingManager implements MessagingService {
         return localEp;
     }
 
+    /**
+     * Configures batching of outbound messages.
+     * <p>
+     * When enabled, messages to the same endpoint are packed into a single
+     * message, which is sent once the batch holds the given number of payload
+     * bytes or once the flush window has passed since the first message was
+     * queued, whichever comes first. The receiving side unpacks batches before
+     * dispatching, so batching need not be enabled on both ends. Failures to
+     * send a batched message are not reported to the caller of sendAsync.
+     * </p>
+     *
+     * @param maxBytes payload bytes that trigger a flush; zero disables batching
+     * @param flushWindowMicros maximum time a message waits for a flush, in microseconds
+     */
+    public void setBatching(int maxBytes, long flushWindowMicros) {
+        checkArgument(maxBytes >= 0, "Batch size must not be negative");
+        checkArgument(flushWindowMicros > 0 || maxBytes == 0, "Flush window must be positive");
+        batchWindowMicros = flushWindowMicros;
+        batchSizeBytes = maxBytes;
+        if (maxBytes == 0) {
+            batches.values().forEach(OutboundBatch::flush);
+        }
+    }
+
+    /**
+     * Configures compression of large outbound message payloads.
+     * <p>
+     * Payloads of at least the given size are compressed unless compression
+     * does not make them smaller. Compressed messages are restored before
+     * dispatching on the receiving side regardless of its own configuration.
+     * Messages are only compressed for peers that have advertised support,
+     * so peers running earlier releases keep receiving plain messages.
+     * </p>
+     *
+     * @param thresholdBytes smallest payload size to compress; zero disables compression
+     */
+    public void setCompressionThreshold(int thresholdBytes) {
+        checkArgument(thresholdBytes >= 0, "Compression threshold must not be negative");
+        compressionThresholdBytes = thresholdBytes;
+    }
+
+    /**
+     * Returns compression statistics for each message type sent compressed.
+     *
+     * @return map of message type to compression statistics
+     */
+    public Map<String, CompressionStatistics> compressionStatistics() {
+        return ImmutableMap.copyOf(compressionStats);
+    }
+
+    /**
+     * Configures how sends behave when the connection to a peer is congested.
+     * <p>
+     * A peer is congested once more encoded message bytes are queued for it, across
+     * all pooled connections to it, than the high water mark. Sends from
+     * Netty I/O threads never block; they fail instead.
+     * </p>
+     *
+     * @param policy backpressure policy
+     * @param lowPriority message types dropped under the DROP_LOW_PRIORITY policy
+     */
+    public void setBackpressure(BackpressurePolicy policy, Set<String> lowPriority) {
+        backpressurePolicy = checkNotNull(policy);
+        lowPriorityTypes = ImmutableSet.copyOf(lowPriority);
+    }
+
+    /**
+     * Returns the encoded message bytes written to each peer and not yet sent.
+     *
+     * @return map of peer endpoint to queued bytes
+     */
+    public Map<Endpoint, Long> outboundQueueBytes() {
+        return ImmutableMap.copyOf(Maps.transformValues(queues, OutboundQueue::bytes));
+    }
+
+    /**
+     * Returns the number of messages dropped because their peer was congested.
+     *
+     * @return dropped message count
+     */
+    public long droppedMessages() {
+        return droppedMessages.get();
+    }
+
     @Override
     public void sendAsync(Endpoint ep, String type, byte[] payload) throws IOException {
         InternalMessage message = new InternalMessage(messageIdGenerator.incrementAndGet(),
@@ -164,11 +321,86 @@ public class NettyMessagingManager implements MessagingService {
             dispatchLocally(message);
             return;
         }
+        OutboundQueue queue = queues.get(ep);
+        if (queue != null && queue.shouldDrop(backpressurePolicy, lowPriorityTypes, message.type())) {
+            droppedMessages.incrementAndGet();
+            log.trace("Dropped {} message to congested peer {}", message.type(), ep);
+            return;
+        }
+        int threshold = compressionThresholdBytes;
+        InternalMessage outbound = threshold > 0 && message.payload().length >= threshold
+                && supports(ep, COMPRESSED_MESSAGE_TYPE) ? compress(message) : message;
+        if (batchSizeBytes > 0) {
+            batches.computeIfAbsent(ep, OutboundBatch::new).add(outbound);
+            return;
+        }
+        write(ep, outbound, true);
+    }
+
+    private boolean isCongested(Endpoint ep) {
+        OutboundQueue queue = queues.get(ep);
+        return backpressurePolicy != BackpressurePolicy.UNBOUNDED && queue != null && queue.isCongested();
+    }
+
+    /**
+     * Returns whether the given peer is known to restore the given wrapper
+     * message type. The peer is asked for its capabilities the first time;
+     * until it answers, it is assumed to support none.
+     */
+    private boolean supports(Endpoint ep, String wrapperType) {
+        CompletableFuture<Set<String>> capabilities = peerCapabilities.get(ep);
+        if (capabilities == null) {
+            CompletableFuture<Set<String>> probe = new CompletableFuture<>();
+            capabilities = peerCapabilities.putIfAbsent(ep, probe);
+            if (capabilities == null) {
+                capabilities = probe;
+                probeCapabilities(ep, probe);
+            }
+        }
+        return capabilities.getNow(ImmutableSet.of()).contains(wrapperType);
+    }
+
+    private void probeCapabilities(Endpoint ep, CompletableFuture<Set<String>> capabilities) {
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        Long messageId = messageIdGenerator.incrementAndGet();
+        responseFutures.put(messageId, response);
+        response.whenComplete((payload, error) -> capabilities.complete(error == null
+                ? ImmutableSet.copyOf(CAPABILITY_SPLITTER.split(new String(payload, Charsets.UTF_8)))
+                : ImmutableSet.of()));
+        // Written directly so that the probe itself is never batched, compressed or blocked.
+        try {
+            write(ep, new InternalMessage(messageId, localEp, CAPABILITIES_MESSAGE_TYPE, new byte[0]), false);
+        } catch (IOException e) {
+            // Ask again on the next send rather than treating the peer as unable.
+            peerCapabilities.remove(ep, capabilities);
+            responseFutures.invalidate(messageId);
+            response.completeExceptionally(e);
+        }
+    }
+
+    private InternalMessage compress(InternalMessage message) {
+        byte[] compressed = MessageCompression.compress(message);
+        if (compressed == null) {
+            return message;
+        }
+        compressionStats.computeIfAbsent(message.type(), type -> new CompressionStatistics())
+                .record(message.payload().length, compressed.length);
+        return new InternalMessage(message.id(), message.sender(), COMPRESSED_MESSAGE_TYPE, compressed);
+    }
+
+    private void write(Endpoint ep, InternalMessage message, boolean mayBlock) throws IOException {
         Channel channel = null;
         try {
             try {
                 channel = channels.borrowObject(ep);
-                channel.writeAndFlush(message).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                OutboundQueue queue = queues.computeIfAbsent(
+                        ep, e -> new OutboundQueue(e, CLIENT_HIGH_WATER_MARK, CLIENT_LOW_WATER_MARK));
+                int size = MessageEncoder.encodedLength(message);
+                queue.reserve(size, backpressurePolicy, mayBlock && !channel.eventLoop().inEventLoop(),
+                              BLOCK_TIMEOUT_MILLIS);
+                channel.writeAndFlush(message)
+                        .addListener(f -> queue.release(size))
+                        .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             } finally {
                 channels.returnObject(ep, channel);
             }
@@ -224,11 +456,13 @@ public class NettyMessagingManager implements MessagingService {
 
     private void startAcceptingConnections() throws InterruptedException {
         ServerBootstrap b = new ServerBootstrap();
-        b.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024);
-        b.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024);
         b.option(ChannelOption.SO_RCVBUF, 1048576);
-        b.option(ChannelOption.TCP_NODELAY, true);
         b.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        // Accepted connections carry replies and must use pooled buffers too.
+        b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024);
+        b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024);
+        b.childOption(ChannelOption.TCP_NODELAY, true);
+        b.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
         b.group(serverGroup, clientGroup)
             .channel(serverChannelClass)
             .childHandler(new OnosCommunicationChannelInitializer())
@@ -250,15 +484,17 @@ public class NettyMessagingManager implements MessagingService {
         @Override
         public void destroyObject(Endpoint ep, Channel channel) throws Exception {
             channel.close();
+            peerCapabilities.remove(ep);
         }
 
         @Override
         public Channel makeObject(Endpoint ep) throws Exception {
             Bootstrap bootstrap = new Bootstrap();
             bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 10 * 64 * 1024);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 10 * 32 * 1024);
+            bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, CLIENT_HIGH_WATER_MARK);
+            bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, CLIENT_LOW_WATER_MARK);
             bootstrap.option(ChannelOption.SO_SNDBUF, 1048576);
+            bootstrap.option(ChannelOption.TCP_NODELAY, true);
             bootstrap.group(clientGroup);
             // TODO: Make this faster:
             // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
@@ -301,6 +537,12 @@ public class NettyMessagingManager implements MessagingService {
 
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, InternalMessage message) throws Exception {
+            if (CAPABILITIES_MESSAGE_TYPE.equals(message.type())) {
+                // Answered on the probing connection, which must not block this I/O thread.
+                byte[] capabilities = CAPABILITY_JOINER.join(LOCAL_CAPABILITIES).getBytes(Charsets.UTF_8);
+                ctx.writeAndFlush(new InternalMessage(message.id(), localEp, REPLY_MESSAGE_TYPE, capabilities));
+                return;
+            }
             dispatchLocally(message);
         }
 
@@ -311,8 +553,93 @@ public class NettyMessagingManager implements MessagingService {
         }
     }
 
+    /**
+     * Messages queued for a single endpoint while batching is enabled.
+     */
+    private final class OutboundBatch {
+
+        private final Endpoint ep;
+        // Guarded by this; writes also happen under the lock to keep batches in order.
+        private List<InternalMessage> pending = new ArrayList<>();
+        private int batchedBytes = 0;
+
+        private OutboundBatch(Endpoint ep) {
+            this.ep = ep;
+        }
+
+        private synchronized void add(InternalMessage message) {
+            pending.add(message);
+            batchedBytes += message.payload().length;
+            if (batchedBytes >= batchSizeBytes) {
+                flush(true);
+            } else if (pending.size() == 1) {
+                scheduleFlush();
+            }
+        }
+
+        private void scheduleFlush() {
+            batchTimer.schedule(this::flushOnTimer, batchWindowMicros, TimeUnit.MICROSECONDS);
+        }
+
+        private synchronized void flushOnTimer() {
+            // The timer serves all peers and must not wait for a congested one;
+            // the batch keeps growing until a sender reaches the size trigger.
+            if (isCongested(ep) && !pending.isEmpty()) {
+                scheduleFlush();
+            } else {
+                flush(false);
+            }
+        }
+
+        private synchronized void flush() {
+            flush(true);
+        }
+
+        private synchronized void flush(boolean mayBlock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<InternalMessage> messages = pending;
+            pending = new ArrayList<>();
+            batchedBytes = 0;
+            InternalMessage message = messages.size() == 1 ? messages.get(0)
+                    : new InternalMessage(messageIdGenerator.incrementAndGet(),
+                                          localEp,
+                                          BATCH_MESSAGE_TYPE,
+                                          MessageBatch.encode(messages));
+            try {
+                write(ep, message, mayBlock);
+            } catch (IOException e) {
+                log.debug("Failed to send {} batched messages to {}", messages.size(), ep, e);
+                failRequests(messages, e);
+            }
+        }
+
+        private void failRequests(List<InternalMessage> messages, IOException cause) {
+            messages.stream()
+                    .filter(message -> !REPLY_MESSAGE_TYPE.equals(message.type()))
+                    .map(message -> responseFutures.getIfPresent(message.id()))
+                    .filter(future -> future != null)
+                    .forEach(future -> future.completeExceptionally(cause));
+        }
+    }
+
     private void dispatchLocally(InternalMessage message) throws IOException {
         String type = message.type();
+        if (COMPRESSED_MESSAGE_TYPE.equals(type)) {
+            try {
+                dispatchLocally(MessageCompression.decompress(message));
+            } catch (DataFormatException e) {
+                log.warn("Dropping corrupt compressed message {} from {}", message.id(), message.sender(), e);
+            }
+            return;
+        }
+        if (BATCH_MESSAGE_TYPE.equals(type)) {
+            for (InternalMessage batched : MessageBatch.decode(message.sender(), message.payload())) {
+                dispatchLocally(batched);
+            }
+            return;
+        }
         if (REPLY_MESSAGE_TYPE.equals(type)) {
             try {
                 CompletableFuture<byte[]> futureResponse =
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+/**
+ * Encoded message bytes written to a peer and not yet sent, across all
+ * pooled connections to it, and the backpressure applied to senders while
+ * the peer is congested.
+ */
+final class OutboundQueue {
+
+    private final Endpoint ep;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param ep peer endpoint
+     * @param highWaterMark queued bytes at which the peer is congested
+     * @param lowWaterMark queued bytes below which blocked senders resume
+     */
+    OutboundQueue(Endpoint ep, long highWaterMark, long lowWaterMark) {
+        this.ep = ep;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    /**
+     * Returns the number of queued bytes.
+     *
+     * @return queued bytes
+     */
+    long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns whether the peer is congested.
+     *
+     * @return true if at least the high water mark is queued
+     */
+    boolean isCongested() {
+        return bytes.get() >= highWaterMark;
+    }
+
+    /**
+     * Returns whether a message of the given type is to be dropped rather
+     * than queued.
+     *
+     * @param policy backpressure policy
+     * @param lowPriorityTypes message types dropped under the DROP_LOW_PRIORITY policy
+     * @param type message type
+     * @return true if the message is to be dropped
+     */
+    boolean shouldDrop(BackpressurePolicy policy, Set<String> lowPriorityTypes, String type) {
+        return policy == BackpressurePolicy.DROP_LOW_PRIORITY && lowPriorityTypes.contains(type) && isCongested();
+    }
+
+    /**
+     * Accounts for a message about to be written, first applying the
+     * backpressure policy if the peer is congested.
+     *
+     * @param size encoded size of the message
+     * @param policy backpressure policy
+     * @param mayBlock whether the calling thread may wait for the queue to drain
+     * @param timeoutMillis maximum time to wait for the queue to drain
+     * @throws IOException if the queue is congested and the message may not be queued
+     */
+    void reserve(int size, BackpressurePolicy policy, boolean mayBlock, long timeoutMillis) throws IOException {
+        if (policy != BackpressurePolicy.UNBOUNDED && isCongested()) {
+            if (policy == BackpressurePolicy.FAIL || !mayBlock) {
+                throw new IOException("Outbound queue to " + ep + " is full");
+            }
+            try {
+                if (!awaitDrained(timeoutMillis)) {
+                    throw new IOException("Timed out waiting for outbound queue to " + ep + " to drain");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for outbound queue to " + ep + " to drain", e);
+            }
+        }
+        bytes.addAndGet(size);
+    }
+
+    /**
+     * Accounts for a message that has been sent or has failed.
+     *
+     * @param size encoded size of the message
+     */
+    void release(int size) {
+        long remaining = bytes.addAndGet(-size);
+        // Only wake senders when the queue drops below the low water mark
+        if (remaining < lowWaterMark && remaining + size >= lowWaterMark) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (bytes.get() >= lowWaterMark) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
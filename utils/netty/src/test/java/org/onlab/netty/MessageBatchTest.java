@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.util.List;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests packing and unpacking of message batches.
+ */
+public class MessageBatchTest {
+
+    private static final Endpoint SENDER = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+
+    @Test
+    public void roundTrip() {
+        List<InternalMessage> messages = ImmutableList.of(
+                new InternalMessage(1L, SENDER, "first", RandomUtils.nextBytes(10)),
+                new InternalMessage(2L, SENDER, "second", new byte[0]),
+                new InternalMessage(3L, SENDER, "th\u00efrd", RandomUtils.nextBytes(2000)));
+
+        List<InternalMessage> decoded = MessageBatch.decode(SENDER, MessageBatch.encode(messages));
+
+        assertEquals(messages.size(), decoded.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(messages.get(i).id(), decoded.get(i).id());
+            assertEquals(messages.get(i).type(), decoded.get(i).type());
+            assertEquals(SENDER, decoded.get(i).sender());
+            assertArrayEquals(messages.get(i).payload(), decoded.get(i).payload());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that messages survive a round trip through MessageEncoder and MessageDecoder.
+ */
+public class MessageCodecTest {
+
+    private static final Endpoint SENDER = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+
+    private InternalMessage roundTrip(InternalMessage message) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new MessageEncoder());
+        assertTrue(encoder.writeOutbound(message));
+        ByteBuf encoded = (ByteBuf) encoder.readOutbound();
+        assertEquals(MessageEncoder.encodedLength(message), encoded.readableBytes());
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new MessageDecoder());
+        assertTrue(decoder.writeInbound(encoded));
+        return (InternalMessage) decoder.readInbound();
+    }
+
+    private void assertRoundTrip(int payloadLength) {
+        byte[] payload = RandomUtils.nextBytes(payloadLength);
+        InternalMessage decoded = roundTrip(new InternalMessage(42L, SENDER, "test-type", payload));
+        assertEquals(42L, decoded.id());
+        assertEquals(SENDER, decoded.sender());
+        assertEquals("test-type", decoded.type());
+        assertArrayEquals(payload, decoded.payload());
+    }
+
+    @Test
+    public void smallPayload() {
+        assertRoundTrip(100);
+    }
+
+    @Test
+    public void largePayload() {
+        assertRoundTrip(64 * 1024);
+    }
+
+    @Test
+    public void emptyPayload() {
+        assertRoundTrip(0);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+import com.google.common.base.Charsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests compression of message payloads.
+ */
+public class MessageCompressionTest {
+
+    private static final Endpoint SENDER = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+
+    @Test
+    public void roundTrip() throws Exception {
+        byte[] payload = new byte[64 * 1024];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i % 17);
+        }
+        InternalMessage message = new InternalMessage(7L, SENDER, "anti-entropy", payload);
+
+        byte[] compressed = MessageCompression.compress(message);
+        assertTrue("payload should compress", compressed.length < payload.length / 4);
+
+        InternalMessage restored = MessageCompression.decompress(
+                new InternalMessage(7L, SENDER, "compressed", compressed));
+        assertEquals(7L, restored.id());
+        assertEquals(SENDER, restored.sender());
+        assertEquals("anti-entropy", restored.type());
+        assertArrayEquals(payload, restored.payload());
+    }
+
+    @Test
+    public void incompressiblePayload() {
+        InternalMessage message = new InternalMessage(1L, SENDER, "random", RandomUtils.nextBytes(4096));
+        assertNull(MessageCompression.compress(message));
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void truncatedPayload() throws Exception {
+        byte[] payload = new byte[8192];
+        Arrays.fill(payload, (byte) 1);
+        byte[] compressed = MessageCompression.compress(new InternalMessage(1L, SENDER, "ones", payload));
+        MessageCompression.decompress(new InternalMessage(1L, SENDER, "compressed",
+                                                          Arrays.copyOf(compressed, compressed.length / 2)));
+    }
+
+    @Test(expected = DataFormatException.class, timeout = 5000)
+    public void presetDictionary() throws Exception {
+        byte[] payload = new byte[8192];
+        Arrays.fill(payload, (byte) 1);
+        Deflater deflater = new Deflater();
+        deflater.setDictionary(new byte[]{1, 1, 1, 1});
+        deflater.setInput(payload);
+        deflater.finish();
+        byte[] deflated = new byte[payload.length];
+        int length = deflater.deflate(deflated);
+        deflater.end();
+
+        byte[] type = "ones".getBytes(Charsets.UTF_8);
+        ByteBuffer compressed = ByteBuffer.allocate(4 + type.length + 4 + length);
+        compressed.putInt(type.length).put(type).putInt(payload.length).put(deflated, 0, length);
+        MessageCompression.decompress(new InternalMessage(1L, SENDER, "compressed", compressed.array()));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+import com.google.common.collect.ImmutableSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the accounting and backpressure of outbound queues.
+ */
+public class OutboundQueueTest {
+
+    private static final Endpoint PEER = new Endpoint(IpAddress.valueOf("10.0.0.2"), 9876);
+    private static final int HIGH = 1000;
+    private static final int LOW = 500;
+    private static final Set<String> LOW_PRIORITY = ImmutableSet.of("ecm-anti-entropy");
+
+    private OutboundQueue congestedQueue() throws IOException {
+        OutboundQueue queue = new OutboundQueue(PEER, HIGH, LOW);
+        queue.reserve(HIGH, BackpressurePolicy.UNBOUNDED, false, 0);
+        assertTrue(queue.isCongested());
+        return queue;
+    }
+
+    @Test
+    public void queuedBytes() throws IOException {
+        OutboundQueue queue = new OutboundQueue(PEER, HIGH, LOW);
+        queue.reserve(300, BackpressurePolicy.BLOCK, true, 0);
+        queue.reserve(700, BackpressurePolicy.BLOCK, true, 0);
+        assertEquals(1000, queue.bytes());
+        assertTrue(queue.isCongested());
+
+        queue.release(300);
+        assertEquals(700, queue.bytes());
+        assertFalse(queue.isCongested());
+        queue.release(700);
+        assertEquals(0, queue.bytes());
+    }
+
+    @Test
+    public void unboundedQueuesAtLimit() throws IOException {
+        OutboundQueue queue = congestedQueue();
+        queue.reserve(100, BackpressurePolicy.UNBOUNDED, false, 0);
+        assertEquals(HIGH + 100, queue.bytes());
+    }
+
+    @Test
+    public void failRejectsAtLimit() throws IOException {
+        OutboundQueue queue = congestedQueue();
+        try {
+            queue.reserve(100, BackpressurePolicy.FAIL, true, 1000);
+            fail("Send to a congested peer should fail");
+        } catch (IOException e) {
+            assertEquals(HIGH, queue.bytes());
+        }
+    }
+
+    @Test
+    public void blockWaitsForLowWaterMark() throws Exception {
+        OutboundQueue queue = congestedQueue();
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                queue.reserve(100, BackpressurePolicy.BLOCK, true, 10000);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        // no longer congested, but still above the low water mark
+        queue.release(400);
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        queue.release(200);
+        blocked.get(5, TimeUnit.SECONDS);
+        assertEquals(HIGH - 600 + 100, queue.bytes());
+    }
+
+    @Test
+    public void blockTimesOutAtLimit() throws IOException {
+        OutboundQueue queue = congestedQueue();
+        try {
+            queue.reserve(100, BackpressurePolicy.BLOCK, true, 50);
+            fail("Send should time out while the peer stays congested");
+        } catch (IOException e) {
+            assertEquals(HIGH, queue.bytes());
+        }
+    }
+
+    @Test
+    public void blockFailsWhereBlockingIsNotAllowed() throws IOException {
+        OutboundQueue queue = congestedQueue();
+        try {
+            queue.reserve(100, BackpressurePolicy.BLOCK, false, 1000);
+            fail("Send from a thread that may not block should fail");
+        } catch (IOException e) {
+            assertEquals(HIGH, queue.bytes());
+        }
+    }
+
+    @Test
+    public void dropLowPriorityAtLimit() throws IOException {
+        OutboundQueue queue = new OutboundQueue(PEER, HIGH, LOW);
+        BackpressurePolicy policy = BackpressurePolicy.DROP_LOW_PRIORITY;
+        assertFalse(queue.shouldDrop(policy, LOW_PRIORITY, "ecm-anti-entropy"));
+
+        queue.reserve(HIGH, policy, true, 0);
+        assertTrue(queue.shouldDrop(policy, LOW_PRIORITY, "ecm-anti-entropy"));
+        assertFalse(queue.shouldDrop(policy, LOW_PRIORITY, "ecm-update"));
+        assertFalse(queue.shouldDrop(policy, LOW_PRIORITY, "ecm-anti-entropy-digest"));
+        assertFalse(queue.shouldDrop(BackpressurePolicy.BLOCK, LOW_PRIORITY, "ecm-anti-entropy"));
+
+        // other messages are held back as under the BLOCK policy
+        try {
+            queue.reserve(100, policy, true, 50);
+            fail("Send should time out while the peer stays congested");
+        } catch (IOException e) {
+            assertEquals(HIGH, queue.bytes());
+        }
+    }
+}